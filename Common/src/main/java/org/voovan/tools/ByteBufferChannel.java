@@ -234,6 +234,7 @@ public class ByteBufferChannel {
 
 	/**
 	 * 清空通道
+	 * 		和构造时一样 limit 置为 0, 否则之后写入空数据时 limit 仍是容量大小
 	 */
 	public void clear(){
 		if(isReleased()){
@@ -243,6 +244,7 @@ public class ByteBufferChannel {
 		lock.lock();
 		try{
 			byteBuffer.clear();
+			byteBuffer.limit(0);
 			size = 0;
 		} finally {
 			lock.unlock();
@@ -143,8 +143,11 @@ public class TByteBuffer {
     public static void release(ByteBuffer byteBuffer){
         if(byteBuffer!=null && !byteBuffer.hasArray()) {
             try {
+                //切片和复制出的缓冲区共享内存, 没有 cleaner
                 Cleaner cleaner = TReflect.getFieldValue(byteBuffer, "cleaner");
-                cleaner.clean();
+                if(cleaner != null) {
+                    cleaner.clean();
+                }
             } catch (ReflectiveOperationException e) {
                 e.printStackTrace();
             }
@@ -5,6 +5,8 @@ import org.voovan.tools.reflect.TReflect;
 
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
 import java.util.*;
 import java.util.Map.Entry;
 import java.util.regex.Matcher;
@@ -565,4 +567,45 @@ public class TString {
 		return shortBuffer.toString();
 
 	}
+
+	//URL 和 Cookie 中都可以安全使用的字符
+	private static final char[] ID_CHARS = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".toCharArray();
+
+	//每个线程独立的随机数生成器, 避免共享的 SecureRandom 上的锁竞争
+	private static final ThreadLocal<SecureRandom> SECURE_RANDOMS = new ThreadLocal<SecureRandom>(){
+		@Override
+		protected SecureRandom initialValue() {
+			try {
+				return SecureRandom.getInstance("SHA1PRNG");
+			} catch (NoSuchAlgorithmException e) {
+				return new SecureRandom();
+			}
+		}
+	};
+
+	/**
+	 * 生成不可预测的随机标识
+	 * 		128 位随机数编码为 22 个 URL 安全的字符, 可用作 Session ID 等需要防止猜测的标识
+	 * @return 随机标识
+	 */
+	public static String generateRandomId() {
+		byte[] bytes = new byte[16];
+		SECURE_RANDOMS.get().nextBytes(bytes);
+
+		char[] result = new char[22];
+		int bits = 0;
+		int bitCount = 0;
+		int index = 0;
+		for (byte b : bytes) {
+			bits = (bits << 8) | (b & 0xFF);
+			bitCount += 8;
+			while (bitCount >= 6) {
+				bitCount -= 6;
+				result[index++] = ID_CHARS[(bits >> bitCount) & 0x3F];
+			}
+		}
+		//剩余的 2 位
+		result[index] = ID_CHARS[(bits << (6 - bitCount)) & 0x3F];
+		return new String(result);
+	}
 }
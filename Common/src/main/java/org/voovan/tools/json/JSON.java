@@ -31,6 +31,23 @@ public class JSON {
 		}
 		return jsonString;
 	}
+
+	/**
+	 * 将 Java 对象 转换成 JSON字符串, 并追加到 StringBuilder 中
+	 * 		用于将多个对象写入同一个缓冲区, 或者直接将缓冲区写入输出, 避免产生中间字符串
+	 * @param object   		待转换的对象
+	 * @param stringBuilder	输出的 StringBuilder
+	 * @return			    是否转换成功
+	 */
+	public static boolean toJSON(Object object, StringBuilder stringBuilder){
+		try {
+			JSONEncode.fromObject(object, stringBuilder);
+			return true;
+		} catch (ReflectiveOperationException e) {
+			Logger.error("Reflective Operation failed",e);
+			return false;
+		}
+	}
 	
 	/**
 	 * 将 JSON字符串 转换成 Java 对象
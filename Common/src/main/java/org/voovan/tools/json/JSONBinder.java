@@ -0,0 +1,587 @@
+package org.voovan.tools.json;
+
+import org.voovan.tools.TObject;
+import org.voovan.tools.TString;
+import org.voovan.tools.reflect.AccessorFactory;
+import org.voovan.tools.reflect.FieldAccessor;
+import org.voovan.tools.reflect.TReflect;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * JSON 到 Java 对象的绑定器
+ * 		直接从 JSONTokenizer 读取 Token 填充目标对象, 不产生中间的 Map 和 List.
+ * 		每个类的绑定器只创建一次, 预先取得构造方法, 属性, 属性的范型类型和忽略大小写的属性名索引
+ *
+ * @author helyho
+ *
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class JSONBinder {
+	private static Map<Class<?>, JSONBinder> binders = new ConcurrentHashMap<Class<?>, JSONBinder>();
+	private static Map<Type, BindType> bindTypes = new ConcurrentHashMap<Type, BindType>();
+	private static final BindType OBJECT_TYPE = new BindType(Object.class);
+
+	private Class<?> clazz;
+	private Constructor<?> constructor;
+	private Map<String, FieldBinder> fieldBinders;
+	private Map<String, FieldBinder> ignoreCaseFieldBinders;
+
+	private JSONBinder(Class<?> clazz) {
+		this.clazz = clazz;
+		this.fieldBinders = new HashMap<String, FieldBinder>();
+		this.ignoreCaseFieldBinders = new HashMap<String, FieldBinder>();
+
+		try {
+			constructor = clazz.getDeclaredConstructor();
+			constructor.setAccessible(true);
+		} catch (NoSuchMethodException e) {
+			//没有无参构造方法时使用 Unsafe 分配
+			constructor = null;
+		}
+
+		//子类的属性在前, 同名属性以子类为准
+		for (Field field : TReflect.getFields(clazz)) {
+			if (Modifier.isStatic(field.getModifiers())) {
+				continue;
+			}
+			field.setAccessible(true);
+			FieldBinder fieldBinder = new FieldBinder(field);
+			if (!fieldBinders.containsKey(field.getName())) {
+				fieldBinders.put(field.getName(), fieldBinder);
+			}
+			String lowerCaseName = field.getName().toLowerCase();
+			if (!ignoreCaseFieldBinders.containsKey(lowerCaseName)) {
+				ignoreCaseFieldBinders.put(lowerCaseName, fieldBinder);
+			}
+		}
+	}
+
+	/**
+	 * 获取类的绑定器
+	 * @param clazz 类对象
+	 * @return 绑定器
+	 */
+	public static JSONBinder getBinder(Class<?> clazz) {
+		JSONBinder binder = binders.get(clazz);
+		if (binder == null) {
+			binder = new JSONBinder(clazz);
+			binders.put(clazz, binder);
+		}
+		return binder;
+	}
+
+	/**
+	 * 将 JSON 绑定到指定类型的对象
+	 * @param <T> 范型
+	 * @param tokenizer JSON 词法分析器
+	 * @param type 目标类型
+	 * @param ignoreCase 是否在属性匹配时忽略大小写
+	 * @return 绑定后的对象, JSON 不是 {} 或者 [] 包裹的对象时返回 null
+	 * @throws ParseException 解析异常
+	 * @throws ReflectiveOperationException 反射异常
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> T fromJSON(JSONTokenizer tokenizer, Type type, boolean ignoreCase) throws ParseException, ReflectiveOperationException {
+		int token = tokenizer.next();
+		if (token != JSONTokenizer.START_OBJECT && token != JSONTokenizer.START_ARRAY) {
+			return null;
+		}
+		return (T) readValue(tokenizer, token, getBindType(type), ignoreCase);
+	}
+
+	/**
+	 * 将已经解析的 JSON (Map, List 和值) 绑定到指定类型的对象
+	 * 		与 JSONDecode.parse 的结果配合使用, 例如 JSONPath 获取的节点
+	 * @param <T> 范型
+	 * @param parsedObj 已经解析的 JSON 对象
+	 * @param type 目标类型
+	 * @param ignoreCase 是否在属性匹配时忽略大小写
+	 * @return 绑定后的对象
+	 * @throws ParseException 解析异常
+	 * @throws ReflectiveOperationException 反射异常
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> T fromParsed(Object parsedObj, Type type, boolean ignoreCase) throws ParseException, ReflectiveOperationException {
+		return (T) bindParsed(parsedObj, getBindType(type), ignoreCase);
+	}
+
+	/**
+	 * 读取一个值并转换成目标类型
+	 * @param tokenizer JSON 词法分析器
+	 * @param token 值的第一个 Token
+	 * @param type 目标类型
+	 * @param ignoreCase 是否在属性匹配时忽略大小写
+	 * @return 转换后的对象
+	 * @throws ParseException 解析异常
+	 * @throws ReflectiveOperationException 反射异常
+	 */
+	static Object readValue(JSONTokenizer tokenizer, int token, Type type, boolean ignoreCase)
+			throws ParseException, ReflectiveOperationException {
+		return readValue(tokenizer, token, getBindType(type), ignoreCase);
+	}
+
+	/**
+	 * 获取目标类型, 同一个类型只解析一次
+	 * @param type 目标类型
+	 * @return 目标类型
+	 */
+	private static BindType getBindType(Type type) {
+		BindType bindType = bindTypes.get(type);
+		if (bindType == null) {
+			bindType = new BindType(type);
+			bindTypes.put(type, bindType);
+		}
+		return bindType;
+	}
+
+	/**
+	 * 读取一个值并转换成目标类型
+	 * @param tokenizer JSON 词法分析器
+	 * @param token 值的第一个 Token
+	 * @param bindType 目标类型
+	 * @param ignoreCase 是否在属性匹配时忽略大小写
+	 * @return 转换后的对象
+	 * @throws ParseException 解析异常
+	 * @throws ReflectiveOperationException 反射异常
+	 */
+	private static Object readValue(JSONTokenizer tokenizer, int token, BindType bindType, boolean ignoreCase)
+			throws ParseException, ReflectiveOperationException {
+		Class<?> clazz = bindType.clazz;
+		if (token == JSONTokenizer.VALUE) {
+			Object value = tokenizer.getValue();
+			//大数使用原始文本构造, 不经过 Float 和 Long 损失精度
+			if (value != null && isBigNumber(clazz)) {
+				return toBigNumber(tokenizer.getString(), clazz);
+			}
+			return convert(value, bindType, ignoreCase);
+		} else if (token == JSONTokenizer.START_OBJECT) {
+			if (clazz == Object.class || bindType.isMap) {
+				return readMap(tokenizer, bindType, ignoreCase);
+			} else if (bindType.isComplex) {
+				return getBinder(clazz).readObject(tokenizer, ignoreCase);
+			} else {
+				//其他类型使用 Map 转换
+				Map<String, ?> map = TObject.cast(readMap(tokenizer, OBJECT_TYPE, ignoreCase));
+				return TReflect.getObjectFromMap(bindType.type, map, ignoreCase);
+			}
+		} else if (token == JSONTokenizer.START_ARRAY) {
+			if (clazz.isArray()) {
+				Collection<?> collection = readCollection(tokenizer, ArrayList.class, bindType.getArgument(0), ignoreCase);
+				Object array = Array.newInstance(clazz.getComponentType(), collection.size());
+				int i = 0;
+				for (Object item : collection) {
+					Array.set(array, i++, item);
+				}
+				return array;
+			} else if (clazz == Object.class || bindType.isCollection) {
+				return readCollection(tokenizer, clazz, bindType.getArgument(0), ignoreCase);
+			} else {
+				Map<String, ?> map = TObject.cast(TObject.asMap("value", readCollection(tokenizer, ArrayList.class, OBJECT_TYPE, ignoreCase)));
+				return TReflect.getObjectFromMap(bindType.type, map, ignoreCase);
+			}
+		} else {
+			throw new ParseException("Unexpected end of JSON", tokenizer.getPosition());
+		}
+	}
+
+	/**
+	 * 将已经解析的值转换成目标类型
+	 * 		类型已经符合时直接返回, 不复制 Map 和 List
+	 * @param value 已经解析的值
+	 * @param bindType 目标类型
+	 * @param ignoreCase 是否在属性匹配时忽略大小写
+	 * @return 转换后的对象
+	 * @throws ParseException 解析异常
+	 * @throws ReflectiveOperationException 反射异常
+	 */
+	@SuppressWarnings("unchecked")
+	private static Object bindParsed(Object value, BindType bindType, boolean ignoreCase)
+			throws ParseException, ReflectiveOperationException {
+		Class<?> clazz = bindType.clazz;
+		if (value instanceof Map) {
+			Map<?, ?> map = (Map<?, ?>) value;
+			if (clazz == Object.class || clazz.isInstance(value) && isRawKey(bindType.getArgument(0)) && bindType.getArgument(1).clazz == Object.class) {
+				return value;
+			} else if (bindType.isMap) {
+				Map<Object, Object> result = (Map<Object, Object>) newInstance(clazz, HashMap.class, TreeMap.class, ConcurrentHashMap.class);
+				BindType keyType = bindType.getArgument(0);
+				BindType valueType = bindType.getArgument(1);
+				for (Map.Entry<?, ?> entry : map.entrySet()) {
+					Object key = entry.getKey();
+					if (key != null && keyType.clazz != Object.class && !keyType.clazz.isInstance(key)) {
+						key = TString.toObject(key.toString(), keyType.type, ignoreCase);
+					}
+					result.put(key, bindParsed(entry.getValue(), valueType, ignoreCase));
+				}
+				return result;
+			} else if (bindType.isComplex) {
+				return getBinder(clazz).bindMap(map, ignoreCase);
+			} else {
+				return TReflect.getObjectFromMap(bindType.type, (Map<String, ?>) map, ignoreCase);
+			}
+		} else if (value instanceof Collection) {
+			Collection<?> collection = (Collection<?>) value;
+			if (clazz.isArray()) {
+				BindType itemType = bindType.getArgument(0);
+				Object array = Array.newInstance(clazz.getComponentType(), collection.size());
+				int i = 0;
+				for (Object item : collection) {
+					Array.set(array, i++, bindParsed(item, itemType, ignoreCase));
+				}
+				return array;
+			} else if (clazz == Object.class || clazz.isInstance(value) && bindType.getArgument(0).clazz == Object.class) {
+				return value;
+			} else if (bindType.isCollection) {
+				Collection<Object> result = (Collection<Object>) newInstance(clazz, ArrayList.class, LinkedHashSet.class, TreeSet.class);
+				BindType itemType = bindType.getArgument(0);
+				for (Object item : collection) {
+					Object bindItem = bindParsed(item, itemType, ignoreCase);
+					if (bindItem != null) {
+						result.add(bindItem);
+					}
+				}
+				return result;
+			} else {
+				return TReflect.getObjectFromMap(bindType.type, TObject.asMap("value", value), ignoreCase);
+			}
+		} else {
+			return convert(value, bindType, ignoreCase);
+		}
+	}
+
+	/**
+	 * Map 的 key 是否不需要转换, 解析结果中 Map 的 key 总是 String
+	 * @param keyType key 的类型
+	 * @return true: 不需要转换
+	 */
+	private static boolean isRawKey(BindType keyType) {
+		return keyType.clazz == Object.class || keyType.clazz == String.class;
+	}
+
+	/**
+	 * 读取 {} 包裹的对象到 Map
+	 * @param tokenizer JSON 词法分析器
+	 * @param bindType Map 的类型
+	 * @param ignoreCase 是否在属性匹配时忽略大小写
+	 * @return Map 对象
+	 * @throws ParseException 解析异常
+	 * @throws ReflectiveOperationException 反射异常
+	 */
+	@SuppressWarnings("unchecked")
+	private static Object readMap(JSONTokenizer tokenizer, BindType bindType, boolean ignoreCase)
+			throws ParseException, ReflectiveOperationException {
+		Class<?> clazz = bindType.clazz;
+		Map<Object, Object> map = (Map<Object, Object>) newInstance(clazz, HashMap.class, TreeMap.class, ConcurrentHashMap.class);
+
+		BindType keyType = bindType.getArgument(0);
+		BindType valueType = bindType.getArgument(1);
+		int token;
+		while ((token = tokenizer.next()) != JSONTokenizer.END_OBJECT) {
+			if (token != JSONTokenizer.KEY) {
+				throw new ParseException("Expect a key of object", tokenizer.getPosition());
+			}
+			Object key = tokenizer.getString();
+			if (keyType.clazz != Object.class && keyType.clazz != String.class) {
+				key = TString.toObject((String) key, keyType.type, ignoreCase);
+			}
+
+			token = tokenizer.next();
+			if (token == JSONTokenizer.END_OBJECT) {
+				break;
+			}
+			map.put(key, readValue(tokenizer, token, valueType, ignoreCase));
+		}
+		return map;
+	}
+
+	/**
+	 * 构造 Map 或者 Collection 对象
+	 * 		接口和抽象类使用第一个可以赋值给它的常用类型
+	 * @param clazz 目标类型
+	 * @param defaultClasses 常用类型
+	 * @return 新的对象
+	 * @throws ReflectiveOperationException 反射异常
+	 */
+	private static Object newInstance(Class<?> clazz, Class<?>... defaultClasses) throws ReflectiveOperationException {
+		if (clazz != Object.class && !Modifier.isAbstract(clazz.getModifiers()) && !Modifier.isInterface(clazz.getModifiers())) {
+			return TReflect.newInstance(clazz);
+		}
+
+		for (Class<?> defaultClass : defaultClasses) {
+			if (clazz.isAssignableFrom(defaultClass)) {
+				return defaultClass.newInstance();
+			}
+		}
+		throw new InstantiationException("Can't create instance of " + clazz.getName());
+	}
+
+	/**
+	 * 读取 [] 包裹的数组到 Collection, 数组中的 null 值会被忽略
+	 * @param tokenizer JSON 词法分析器
+	 * @param clazz Collection 的类型
+	 * @param itemType 元素的类型
+	 * @param ignoreCase 是否在属性匹配时忽略大小写
+	 * @return Collection 对象
+	 * @throws ParseException 解析异常
+	 * @throws ReflectiveOperationException 反射异常
+	 */
+	@SuppressWarnings("unchecked")
+	private static Collection<Object> readCollection(JSONTokenizer tokenizer, Class<?> clazz, BindType itemType, boolean ignoreCase)
+			throws ParseException, ReflectiveOperationException {
+		Collection<Object> collection = (Collection<Object>) newInstance(clazz, ArrayList.class, LinkedHashSet.class, TreeSet.class);
+
+		int token;
+		while ((token = tokenizer.next()) != JSONTokenizer.END_ARRAY) {
+			Object item = readValue(tokenizer, token, itemType, ignoreCase);
+			if (item != null) {
+				collection.add(item);
+			}
+		}
+		return collection;
+	}
+
+	/**
+	 * 读取 {} 包裹的对象, 填充到新的对象中, 类中不存在的属性被忽略
+	 * @param tokenizer JSON 词法分析器
+	 * @param ignoreCase 是否在属性匹配时忽略大小写
+	 * @return 填充后的对象
+	 * @throws ParseException 解析异常
+	 * @throws ReflectiveOperationException 反射异常
+	 */
+	private Object readObject(JSONTokenizer tokenizer, boolean ignoreCase) throws ParseException, ReflectiveOperationException {
+		Object obj = constructor == null ? TReflect.allocateInstance(clazz) : constructor.newInstance();
+
+		int token;
+		while ((token = tokenizer.next()) != JSONTokenizer.END_OBJECT) {
+			if (token != JSONTokenizer.KEY) {
+				throw new ParseException("Expect a key of object", tokenizer.getPosition());
+			}
+			String key = tokenizer.getString();
+			FieldBinder fieldBinder = ignoreCase ? ignoreCaseFieldBinders.get(key.toLowerCase()) : fieldBinders.get(key);
+
+			token = tokenizer.next();
+			if (token == JSONTokenizer.END_OBJECT) {
+				break;
+			}
+
+			if (fieldBinder == null) {
+				skipValue(tokenizer, token);
+			} else {
+				fieldBinder.bind(obj, readValue(tokenizer, token, fieldBinder.bindType, ignoreCase));
+			}
+		}
+		return obj;
+	}
+
+	/**
+	 * 将已经解析的 Map 填充到新的对象中, 类中不存在的属性被忽略
+	 * @param map 已经解析的 Map
+	 * @param ignoreCase 是否在属性匹配时忽略大小写
+	 * @return 填充后的对象
+	 * @throws ParseException 解析异常
+	 * @throws ReflectiveOperationException 反射异常
+	 */
+	private Object bindMap(Map<?, ?> map, boolean ignoreCase) throws ParseException, ReflectiveOperationException {
+		Object obj = constructor == null ? TReflect.allocateInstance(clazz) : constructor.newInstance();
+
+		for (Map.Entry<?, ?> entry : map.entrySet()) {
+			if (entry.getKey() == null) {
+				continue;
+			}
+			String key = entry.getKey().toString();
+			FieldBinder fieldBinder = ignoreCase ? ignoreCaseFieldBinders.get(key.toLowerCase()) : fieldBinders.get(key);
+			if (fieldBinder != null) {
+				fieldBinder.bind(obj, bindParsed(entry.getValue(), fieldBinder.bindType, ignoreCase));
+			}
+		}
+		return obj;
+	}
+
+	/**
+	 * 跳过一个值
+	 * @param tokenizer JSON 词法分析器
+	 * @param token 值的第一个 Token
+	 * @throws ParseException 解析异常
+	 */
+	static void skipValue(JSONTokenizer tokenizer, int token) throws ParseException {
+		if (token != JSONTokenizer.START_OBJECT && token != JSONTokenizer.START_ARRAY) {
+			return;
+		}
+
+		int depth = tokenizer.getDepth() - 1;
+		while (tokenizer.getDepth() > depth) {
+			if (tokenizer.next() == JSONTokenizer.END) {
+				throw new ParseException("Unexpected end of JSON", tokenizer.getPosition());
+			}
+		}
+	}
+
+	/**
+	 * 将 JSON 中的字符串, 数字, 布尔值转换成目标类型
+	 * @param value JSON 中的值
+	 * @param bindType 目标类型
+	 * @param ignoreCase 是否在属性匹配时忽略大小写
+	 * @return 转换后的对象
+	 * @throws ReflectiveOperationException 反射异常
+	 * @throws ParseException 解析异常
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private static Object convert(Object value, BindType bindType, boolean ignoreCase) throws ReflectiveOperationException, ParseException {
+		Class<?> clazz = bindType.clazz;
+		if (value == null || clazz == Object.class || clazz.isInstance(value)) {
+			return value;
+		} else if (clazz == String.class) {
+			return value.toString();
+		} else if ((value instanceof Integer || value instanceof Long) && (clazz == int.class || clazz == long.class)) {
+			//整数直接转换, 不经过字符串
+			return clazz == int.class ? (Object) ((Number) value).intValue() : (Object) ((Number) value).longValue();
+		} else if (clazz.isPrimitive() || Number.class.isAssignableFrom(clazz) && TReflect.isBasicType(clazz)
+				|| clazz == Boolean.class || clazz == Character.class) {
+			return TString.toObject(value.toString(), clazz);
+		} else if (isBigNumber(clazz)) {
+			return toBigNumber(value.toString(), clazz);
+		} else if (clazz.isEnum()) {
+			return Enum.valueOf((Class<Enum>) clazz, value.toString());
+		} else if (value instanceof String && !TReflect.isExtendsByClass(clazz, Date.class)) {
+			//字符串中包含的 JSON 对象
+			return TString.toObject((String) value, bindType.type, ignoreCase);
+		} else {
+			return TReflect.getObjectFromMap(bindType.type, TObject.asMap("value", value), ignoreCase);
+		}
+	}
+
+	/**
+	 * 是否是 BigDecimal 或者 BigInteger
+	 * @param clazz 目标类型
+	 * @return true: 是大数类型
+	 */
+	private static boolean isBigNumber(Class<?> clazz) {
+		return clazz == BigDecimal.class || clazz == BigInteger.class;
+	}
+
+	/**
+	 * 将数字的文本转换成 BigDecimal 或者 BigInteger
+	 * @param text 数字的文本
+	 * @param clazz 目标类型
+	 * @return 转换后的对象
+	 * @throws ParseException 文本不是合法的数字
+	 */
+	private static Object toBigNumber(String text, Class<?> clazz) throws ParseException {
+		try {
+			return clazz == BigDecimal.class ? new BigDecimal(text.trim()) : new BigInteger(text.trim());
+		} catch (NumberFormatException e) {
+			throw new ParseException("Can't convert \"" + text + "\" to " + clazz.getSimpleName(), 0);
+		}
+	}
+
+	/**
+	 * 属性绑定器
+	 */
+	private static class FieldBinder {
+		private Field field;
+		private FieldAccessor fieldAccessor;
+		private BindType bindType;
+
+		public FieldBinder(Field field) {
+			this.field = field;
+			this.fieldAccessor = AccessorFactory.getFieldAccessor(field);
+			this.bindType = new BindType(field.getGenericType());
+		}
+
+		public void bind(Object obj, Object value) throws ReflectiveOperationException {
+			//基本类型的属性不接受 null, 保留默认值
+			if (value == null && bindType.clazz.isPrimitive()) {
+				return;
+			}
+
+			try {
+				fieldAccessor.set(obj, value);
+			} catch (IllegalArgumentException e) {
+				throw new ReflectiveOperationException("Fill object " + obj.getClass().getCanonicalName() +
+						"#" + field.getName() + " failed", e);
+			}
+		}
+	}
+
+	/**
+	 * 目标类型
+	 * 		缓存原始类型和范型参数, 范型参数只解析一次
+	 */
+	private static class BindType {
+		private Type type;
+		private Class<?> clazz;
+		private Type[] arguments;
+		private BindType[] argumentBindTypes;
+		private boolean isMap;
+		private boolean isCollection;
+		private boolean isComplex;
+
+		public BindType(Type type) {
+			this.type = type;
+			if (type instanceof Class) {
+				clazz = (Class<?>) type;
+				if (clazz.isArray()) {
+					arguments = new Type[]{clazz.getComponentType()};
+				}
+			} else if (type instanceof ParameterizedType) {
+				clazz = (Class<?>) ((ParameterizedType) type).getRawType();
+				arguments = ((ParameterizedType) type).getActualTypeArguments();
+			} else if (type instanceof GenericArrayType) {
+				Type componentType = ((GenericArrayType) type).getGenericComponentType();
+				Class<?> componentClass = new BindType(componentType).clazz;
+				clazz = Array.newInstance(componentClass, 0).getClass();
+				arguments = new Type[]{componentType};
+			} else {
+				//TypeVariable 和 WildcardType 无法确定类型
+				clazz = Object.class;
+			}
+
+			isMap = Map.class.isAssignableFrom(clazz);
+			isCollection = Collection.class.isAssignableFrom(clazz);
+			isComplex = !isMap && !isCollection && !clazz.isArray() && !clazz.isEnum() &&
+					!TReflect.isBasicType(clazz) && !TReflect.isSystemType(clazz);
+		}
+
+		/**
+		 * 获取范型参数的类型
+		 * @param index 范型参数的位置
+		 * @return 范型参数的类型, 没有范型参数时为 Object
+		 */
+		public BindType getArgument(int index) {
+			if (arguments == null || index >= arguments.length) {
+				return OBJECT_TYPE;
+			}
+
+			BindType[] currentArgumentBindTypes = argumentBindTypes;
+			if (currentArgumentBindTypes == null) {
+				currentArgumentBindTypes = new BindType[arguments.length];
+				for (int i = 0; i < arguments.length; i++) {
+					currentArgumentBindTypes[i] = new BindType(arguments[i]);
+				}
+				argumentBindTypes = currentArgumentBindTypes;
+			}
+			return currentArgumentBindTypes[index];
+		}
+	}
+}
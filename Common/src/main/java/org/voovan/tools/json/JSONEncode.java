@@ -1,15 +1,26 @@
 package org.voovan.tools.json;
 
-import org.voovan.tools.TObject;
-import org.voovan.tools.TString;
+import org.voovan.tools.TDateTime;
+import org.voovan.tools.json.annotation.NotJSON;
+import org.voovan.tools.reflect.AccessorFactory;
+import org.voovan.tools.reflect.FieldAccessor;
 import org.voovan.tools.reflect.TReflect;
+import org.voovan.tools.reflect.annotation.NotSerialization;
 
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * JSON打包类
+ * 		所有的值追加到同一个 StringBuilder 中, 自定义对象使用按类缓存的序列化器, 不再先转换成 Map
  *
  * @author helyho
  * <p>
@@ -18,125 +29,233 @@ import java.util.Map;
  * Licence: Apache v2 License
  */
 public class JSONEncode {
+    private static Map<Class<?>, ClassSerializer> serializers = new ConcurrentHashMap<Class<?>, ClassSerializer>();
+    private static final int MAX_CACHED_BUILDER_SIZE = 64 * 1024;
+
+    private static ThreadLocal<StringBuilder> threadStringBuilder = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(512);
+        }
+    };
+
     /**
-     * 分析自定义对象为JSON字符串
+     * 将对象转换成JSON字符串
      *
-     * @param object 自定义对象
-     * @return JSON字符串
-     * @throws ReflectiveOperationException
+     * @param object 要转换的对象
+     * @return 类型:String 		对象对应的JSON字符串
+     * @throws ReflectiveOperationException 反射异常
      */
-    private static String complexObject(Object object) throws ReflectiveOperationException {
-        return mapObject(TReflect.getMapfromObject(object));
+    public static String fromObject(Object object) throws ReflectiveOperationException {
+        StringBuilder stringBuilder = threadStringBuilder.get();
+        //正在使用时 (例如在 toString 中再次调用) 使用新的 StringBuilder
+        if (stringBuilder.length() > 0) {
+            stringBuilder = new StringBuilder(512);
+        }
+
+        try {
+            fromObject(object, stringBuilder);
+            return stringBuilder.toString();
+        } finally {
+            stringBuilder.setLength(0);
+            if (stringBuilder.capacity() > MAX_CACHED_BUILDER_SIZE) {
+                threadStringBuilder.remove();
+            }
+        }
     }
 
     /**
-     * 分析Map对象为JSON字符串
+     * 将对象转换成JSON字符串, 并追加到 StringBuilder 中
      *
-     * @param mapObject map对象
-     * @return JSON字符串
-     * @throws ReflectiveOperationException
+     * @param object 要转换的对象
+     * @param stringBuilder 输出的 StringBuilder
+     * @throws ReflectiveOperationException 反射异常
      */
-    private static String mapObject(Map<?, ?> mapObject) throws ReflectiveOperationException {
-        String mapString = "{";
-        StringBuilder ContentStringBuilder = new StringBuilder();
-        String ContentString = null;
-
-        Object[] keys = mapObject.keySet().toArray();
-
-        for (Object mapkey : keys) {
-            Object key = fromObject(mapkey);
-            String Value = fromObject(mapObject.get(mapkey));
-            ContentStringBuilder.append(key);
-            ContentStringBuilder.append(":");
-            ContentStringBuilder.append(Value);
-            ContentStringBuilder.append(",");
+    @SuppressWarnings("unchecked")
+    public static void fromObject(Object object, StringBuilder stringBuilder) throws ReflectiveOperationException {
+        if (object == null) {
+            stringBuilder.append("null");
+        } else if (object instanceof String) {
+            appendString(object.toString(), stringBuilder);
+        } else if (object instanceof Integer || object instanceof Long || object instanceof Short) {
+            stringBuilder.append(((Number) object).longValue());
+        } else if (object instanceof Float || object instanceof Double || object instanceof Boolean) {
+            stringBuilder.append(object.toString());
+        } else if (object instanceof Map) {
+            mapObject((Map<Object, Object>) object, stringBuilder);
+        } else if (object instanceof Collection) {
+            collectionObject((Collection<Object>) object, stringBuilder);
+        } else if (object.getClass().isArray()) {
+            arrayObject(object, stringBuilder);
+        } else if (TReflect.isBasicType(object.getClass())) {
+            //这里这么做的目的是方便 js 中通过 eval 方法产生 js 对象
+            appendString(object.toString(), stringBuilder);
+        } else if (object instanceof Number) {
+            //BigDecimal, BigInteger 等数字类型
+            stringBuilder.append(object.toString());
+        } else if (object instanceof Date) {
+            appendString(TDateTime.format((Date) object, TDateTime.STANDER_DATETIME_TEMPLATE), stringBuilder);
+        } else if (object instanceof Enum) {
+            appendString(((Enum<?>) object).name(), stringBuilder);
+        } else {
+            getSerializer(object.getClass()).serialize(object, stringBuilder);
         }
+    }
 
-        ContentString = ContentStringBuilder.toString();
-        if (!ContentString.trim().isEmpty()){
-            ContentString = ContentString.substring(0, ContentString.length() - 1);
+    /**
+     * 分析Map对象为JSON字符串
+     *
+     * @param mapObject map对象
+     * @param stringBuilder 输出的 StringBuilder
+     * @throws ReflectiveOperationException 反射异常
+     */
+    private static void mapObject(Map<Object, Object> mapObject, StringBuilder stringBuilder) throws ReflectiveOperationException {
+        stringBuilder.append('{');
+        boolean first = true;
+        for (Map.Entry<Object, Object> entry : mapObject.entrySet()) {
+            if (!first) {
+                stringBuilder.append(',');
+            }
+            first = false;
+            fromObject(entry.getKey(), stringBuilder);
+            stringBuilder.append(':');
+            fromObject(entry.getValue(), stringBuilder);
         }
-
-        mapString = mapString + ContentString + "}";
-
-        return mapString;
+        stringBuilder.append('}');
     }
 
     /**
      * 分析Collection对象为JSON字符串
      *
-     * @param listObject List对象
-     * @return JSON字符串
-     * @throws ReflectiveOperationException
+     * @param collectionObject Collection对象
+     * @param stringBuilder 输出的 StringBuilder
+     * @throws ReflectiveOperationException 反射异常
      */
-    private static String CollectionObject(List<Object> listObject) throws ReflectiveOperationException {
-        return arrayObject(listObject.toArray());
+    private static void collectionObject(Collection<Object> collectionObject, StringBuilder stringBuilder) throws ReflectiveOperationException {
+        stringBuilder.append('[');
+        boolean first = true;
+        for (Object item : collectionObject) {
+            if (!first) {
+                stringBuilder.append(',');
+            }
+            first = false;
+            fromObject(item, stringBuilder);
+        }
+        stringBuilder.append(']');
     }
 
     /**
      * 分析Array对象为JSON字符串
      *
-     * @param arrayObject Array对象
-     * @throws ReflectiveOperationException
-     * @return JSON字符串
+     * @param arrayObject Array对象, 包括基本类型的数组
+     * @param stringBuilder 输出的 StringBuilder
+     * @throws ReflectiveOperationException 反射异常
      */
-    private static String arrayObject(Object[] arrayObject) throws ReflectiveOperationException {
-        String arrayString = "[";
-        String ContentString = "";
-        StringBuilder ContentStringBuilder = new StringBuilder();
-
-        for (Object object : arrayObject) {
-            String Value = fromObject(object);
-            ContentStringBuilder.append(Value);
-            ContentStringBuilder.append(",");
+    private static void arrayObject(Object arrayObject, StringBuilder stringBuilder) throws ReflectiveOperationException {
+        stringBuilder.append('[');
+        int length = Array.getLength(arrayObject);
+        for (int i = 0; i < length; i++) {
+            if (i > 0) {
+                stringBuilder.append(',');
+            }
+            fromObject(Array.get(arrayObject, i), stringBuilder);
         }
+        stringBuilder.append(']');
+    }
 
-        ContentString = ContentStringBuilder.toString();
-
-        if (!ContentString.trim().isEmpty()) {
-            ContentString = ContentString.substring(0, ContentString.length() - 1);
+    /**
+     * 追加双引号包裹的字符串
+     *      转义字符转换成 \\u00XX 的形式, 与 TString.convertEscapeChar 相同
+     *
+     * @param value 字符串
+     * @param stringBuilder 输出的 StringBuilder
+     */
+    private static void appendString(String value, StringBuilder stringBuilder) {
+        stringBuilder.append('"');
+        int start = 0;
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            String escape;
+            switch (value.charAt(i)) {
+                case '\\': escape = "\\u005c"; break;
+                case '\f': escape = "\\u000c"; break;
+                case '\'': escape = "\\u0027"; break;
+                case '\r': escape = "\\u000d"; break;
+                case '"':  escape = "\\u0022"; break;
+                case '\b': escape = "\\u0008"; break;
+                case '\t': escape = "\\u0009"; break;
+                case '\n': escape = "\\u000a"; break;
+                default: continue;
+            }
+            stringBuilder.append(value, start, i).append(escape);
+            start = i + 1;
         }
+        stringBuilder.append(value, start, length);
+        stringBuilder.append('"');
+    }
 
-        arrayString = arrayString + ContentString + "]";
-        return arrayString;
+    /**
+     * 获取类的序列化器
+     * @param clazz 类对象
+     * @return 序列化器
+     */
+    private static ClassSerializer getSerializer(Class<?> clazz) {
+        ClassSerializer serializer = serializers.get(clazz);
+        if (serializer == null) {
+            serializer = new ClassSerializer(clazz);
+            serializers.put(clazz, serializer);
+        }
+        return serializer;
     }
 
     /**
-     * 将对象转换成JSON字符串
-     *
-     * @param object 要转换的对象
-     * @return 类型:String 		对象对应的JSON字符串
-     * @throws ReflectiveOperationException 反射异常
+     * 自定义对象的序列化器
+     *      按类创建一次, 预先取得需要序列化的属性和转义后的属性名
      */
-    @SuppressWarnings("unchecked")
-    public static String fromObject(Object object) throws ReflectiveOperationException {
-        String value = null;
+    private static class ClassSerializer {
+        private FieldAccessor[] fieldAccessors;
+        private String[] keys;
 
-        if (object == null) {
-            value = "null";
-        } else if (object instanceof Map) {
-            Map<Object, Object> mapObject = (Map<Object, Object>) object;
-            value = mapObject(mapObject);
-        } else if (object instanceof Collection) {
-            List<Object> listObject = TObject.cast(object);
-            value = CollectionObject(listObject);
-        } else if (object.getClass().isArray()) {
-            Object[] arrayObject = TObject.cast(object);
-            value = arrayObject(arrayObject);
-        } else if (object instanceof Integer ||  object instanceof Float ||
-                object instanceof Double || object instanceof Boolean ||
-                object instanceof Long || object instanceof Short) {
-            value = object.toString();
-        } else if (TReflect.isBasicType(object.getClass())) {
-            //这里这么做的目的是方便 js 中通过 eval 方法产生 js 对象
-            String strValue = TString.convertEscapeChar(object.toString());
-            value = "\"" + strValue + "\"";
-        }  else {
-            value = complexObject(object);
-        }
+        public ClassSerializer(Class<?> clazz) {
+            //属性的顺序与通过 HashMap 转换时的顺序相同, 保持输出结果不变
+            Map<Field, Object> fieldMap = new HashMap<Field, Object>();
+            for (Field field : TReflect.getFields(clazz)) {
+                if (!Modifier.isStatic(field.getModifiers()) &&
+                        field.getAnnotation(NotJSON.class) == null &&
+                        field.getAnnotation(NotSerialization.class) == null) {
+                    fieldMap.put(field, null);
+                }
+            }
 
-        return value;
-    }
+            //忽略内部类对外部类的引用
+            Map<String, Field> nameMap = new HashMap<String, Field>();
+            for (Field field : fieldMap.keySet()) {
+                if (!field.getName().contains("$")) {
+                    nameMap.put(field.getName(), field);
+                }
+            }
 
+            List<Field> fieldList = new ArrayList<Field>(nameMap.values());
+            fieldAccessors = new FieldAccessor[fieldList.size()];
+            keys = new String[fieldList.size()];
+            for (int i = 0; i < fieldList.size(); i++) {
+                fieldAccessors[i] = AccessorFactory.getFieldAccessor(fieldList.get(i));
+                StringBuilder keyBuilder = new StringBuilder();
+                appendString(fieldList.get(i).getName(), keyBuilder);
+                keys[i] = keyBuilder.append(':').toString();
+            }
+        }
 
+        public void serialize(Object object, StringBuilder stringBuilder) throws ReflectiveOperationException {
+            stringBuilder.append('{');
+            for (int i = 0; i < fieldAccessors.length; i++) {
+                if (i > 0) {
+                    stringBuilder.append(',');
+                }
+                stringBuilder.append(keys[i]);
+                fromObject(fieldAccessors[i].get(object), stringBuilder);
+            }
+            stringBuilder.append('}');
+        }
+    }
 }
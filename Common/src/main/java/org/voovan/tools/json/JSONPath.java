@@ -1,11 +1,10 @@
 package org.voovan.tools.json;
 
 import org.voovan.tools.TObject;
-import org.voovan.tools.TString;
-import org.voovan.tools.reflect.TReflect;
 
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -33,46 +32,13 @@ public class JSONPath {
 
     /**
      * 获取JSONPath 对应的节点数据,忽略段大小写
+     *      路径编译后按路径字符串缓存, 重复使用同一个路径时不再拆分路径
      * @param pathQry JSONPath 路径
      * @return  节点的数据
      * @throws ReflectiveOperationException 反射操作异常
      */
     public Object value(String pathQry) throws ReflectiveOperationException {
-        Object currentPathObject = parsedObj;
-        String[] pathElems = pathQry.split("/");
-        ArrayList result = new ArrayList();
-
-        for (String pathElem : pathElems) {
-            pathElem = pathElem.trim();
-
-            if (pathElem.isEmpty()) {
-                continue;
-            }
-
-            //获取 list 索引位置
-            if ( pathElem.indexOf("[") > -1 &&  pathElem.indexOf("]") > -1 ) {
-                String[] pathElemSegms = pathElem.trim().split("\\[");
-
-                for(int i=0;i<pathElemSegms.length;i++ ){
-                    String pathElemSegm = pathElemSegms[i];
-                    if(pathElemSegm.isEmpty()){
-                        continue;
-                    }
-                    if(pathElemSegm.endsWith("]")){
-                        int index = Integer.parseInt(TString.removeSuffix(pathElemSegms[i]));
-                        currentPathObject = ((List)currentPathObject).get(index);
-                    }else {
-                        currentPathObject = (List) ((Map) currentPathObject).get(pathElemSegms[i]);
-                    }
-                }
-            }else{
-                currentPathObject =  ((Map)currentPathObject).get(pathElem);
-            }
-
-
-        }
-
-        return currentPathObject;
+        return JSONPathExpression.compile(pathQry).value(parsedObj);
     }
 
 
@@ -103,12 +69,7 @@ public class JSONPath {
             return null;
         }
 
-        if (TReflect.isSystemType(clazz)) {
-                return (T)TObject.cast(value);
-        } else {
-            Object obj = TReflect.getObjectFromMap(clazz, (Map<String, ?>) value, true);
-            return TObject.cast(obj);
-        }
+        return JSONBinder.fromParsed(value, clazz, true);
     }
 
     /**
@@ -142,15 +103,8 @@ public class JSONPath {
             return null;
         }
 
-        Map map = null;
         for(Object value :listObjects){
-            if(value instanceof Map){
-                map = (Map)value;
-            }else{
-                map = TObject.asMap("", value);
-            }
-
-            T obj = (T) TReflect.getObjectFromMap(elemClazz, map, true);
+            T obj = JSONBinder.fromParsed(value, elemClazz, true);
             resultList.add(obj);
         }
 
@@ -195,17 +149,18 @@ public class JSONPath {
             return null;
         }
 
-        Map map = null;
         for(Map.Entry<String,?> entry : mapValue.entrySet()){
             String key = entry.getKey();
             Object value = entry.getValue();
+            //复制一份再加入 key, 不修改解析后的 JSON 对象
+            Map<String, Object> map;
             if(value instanceof Map){
-                map = (Map) value;
+                map = new HashMap<String, Object>((Map<String, ?>) value);
             }else{
-                map = TObject.asMap("", value);
+                map = new HashMap<String, Object>();
             }
             map.put(keyFieldName,key);
-            T obj = (T) TReflect.getObjectFromMap(elemClazz, map, true);
+            T obj = JSONBinder.fromParsed(map, elemClazz, true);
             resultList.add(obj);
         }
 
@@ -0,0 +1,221 @@
+package org.voovan.tools.json;
+
+import org.voovan.tools.TString;
+
+import java.lang.reflect.Type;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 编译后的 JSONPath 路径
+ * 		路径只在编译时拆分一次, 按路径字符串缓存, 可以在不同的 JSON 对象上重复使用.
+ * 		路径的格式: /key/key[0]/[1]/key, 其中 [n] 为 List 的索引
+ * 		既可以在已经解析的 Map 和 List 上取值, 也可以在读取 JSON 字符串的同时取值,
+ * 		只构造路径指向的节点, 其他的节点直接跳过
+ *
+ * @author helyho
+ *
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class JSONPathExpression {
+	//缓存的路径数量上限, 防止动态拼接的路径占满内存
+	private static final int MAX_CACHED_EXPRESSIONS = 4096;
+	private static ConcurrentHashMap<String, JSONPathExpression> expressions = new ConcurrentHashMap<String, JSONPathExpression>();
+	//已经占用的缓存位置数量, 先占位再放入缓存, 保证并发编译时缓存数量不超过上限
+	private static AtomicInteger cachedCount = new AtomicInteger(0);
+
+	private String path;
+	//每一段的 key, 为 null 时这一段是 List 的索引
+	private String[] keys;
+	private int[] indexes;
+
+	private JSONPathExpression(String path) {
+		this.path = path;
+
+		List<String> keyList = new ArrayList<String>();
+		List<Integer> indexList = new ArrayList<Integer>();
+		for (String pathElem : path.split("/")) {
+			pathElem = pathElem.trim();
+			if (pathElem.isEmpty()) {
+				continue;
+			}
+
+			//获取 list 索引位置, 例如 key[0][1]
+			if (pathElem.indexOf("[") > -1 && pathElem.indexOf("]") > -1) {
+				for (String pathElemSegm : pathElem.split("\\[")) {
+					if (pathElemSegm.isEmpty()) {
+						continue;
+					}
+					if (pathElemSegm.endsWith("]")) {
+						keyList.add(null);
+						indexList.add(Integer.parseInt(TString.removeSuffix(pathElemSegm)));
+					} else {
+						keyList.add(pathElemSegm);
+						indexList.add(-1);
+					}
+				}
+			} else {
+				keyList.add(pathElem);
+				indexList.add(-1);
+			}
+		}
+
+		keys = keyList.toArray(new String[keyList.size()]);
+		indexes = new int[indexList.size()];
+		for (int i = 0; i < indexes.length; i++) {
+			indexes[i] = indexList.get(i);
+		}
+	}
+
+	/**
+	 * 编译 JSONPath 路径, 同一个路径只编译一次
+	 * @param path JSONPath 路径
+	 * @return 编译后的路径
+	 */
+	public static JSONPathExpression compile(String path) {
+		JSONPathExpression expression = expressions.get(path);
+		if (expression == null) {
+			expression = new JSONPathExpression(path);
+			if (cachedCount.incrementAndGet() <= MAX_CACHED_EXPRESSIONS) {
+				JSONPathExpression cachedExpression = expressions.putIfAbsent(path, expression);
+				if (cachedExpression != null) {
+					//其他线程已经缓存了这个路径, 释放占用的位置
+					cachedCount.decrementAndGet();
+					expression = cachedExpression;
+				}
+			} else {
+				//缓存已满, 不缓存这个路径
+				cachedCount.decrementAndGet();
+			}
+		}
+		return expression;
+	}
+
+	/**
+	 * 获取路径字符串
+	 * @return 路径字符串
+	 */
+	public String getPath() {
+		return path;
+	}
+
+	/**
+	 * 在已经解析的 JSON 对象上获取路径对应的节点
+	 * @param parsedObj JSONDecode.parse 解析后的对象
+	 * @return 节点的数据, 节点不存在时返回 null
+	 */
+	public Object value(Object parsedObj) {
+		Object currentPathObject = parsedObj;
+		for (int i = 0; i < keys.length && currentPathObject != null; i++) {
+			if (keys[i] != null) {
+				currentPathObject = currentPathObject instanceof Map ? ((Map<?, ?>) currentPathObject).get(keys[i]) : null;
+			} else if (currentPathObject instanceof List) {
+				List<?> list = (List<?>) currentPathObject;
+				currentPathObject = indexes[i] < list.size() ? list.get(indexes[i]) : null;
+			} else {
+				currentPathObject = null;
+			}
+		}
+		return currentPathObject;
+	}
+
+	/**
+	 * 读取 JSON 字符串并获取路径对应的节点
+	 * 		路径以外的节点只做词法分析, 不构造 Map 和 List
+	 * @param tokenizer JSON 词法分析器
+	 * @param type 节点转换的目标类型, 为 Object 时 {} 转换为 Map, [] 转换为 List
+	 * @param ignoreCase 节点转换成对象时是否忽略属性的大小写
+	 * @param <T> 范型
+	 * @return 转换后的节点, 节点不存在时返回 null
+	 * @throws ParseException 解析异常
+	 * @throws ReflectiveOperationException 反射异常
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T extract(JSONTokenizer tokenizer, Type type, boolean ignoreCase) throws ParseException, ReflectiveOperationException {
+		int token = tokenizer.next();
+		for (int i = 0; i < keys.length; i++) {
+			token = keys[i] != null ? seekKey(tokenizer, token, keys[i]) : seekIndex(tokenizer, token, indexes[i]);
+			if (token == JSONTokenizer.END) {
+				return null;
+			}
+		}
+
+		if (token == JSONTokenizer.END) {
+			return null;
+		}
+		return (T) JSONBinder.readValue(tokenizer, token, type, ignoreCase);
+	}
+
+	/**
+	 * 读取 JSON 字符串并获取路径对应的节点
+	 * @param jsonStr JSON 字符串
+	 * @param type 节点转换的目标类型
+	 * @param <T> 范型
+	 * @return 转换后的节点, 节点不存在时返回 null
+	 * @throws ParseException 解析异常
+	 * @throws ReflectiveOperationException 反射异常
+	 */
+	public <T> T extract(String jsonStr, Type type) throws ParseException, ReflectiveOperationException {
+		return extract(new JSONTokenizer(jsonStr), type, true);
+	}
+
+	/**
+	 * 在 {} 包裹的对象中查找 key, 跳过其他 key 的值
+	 * @param tokenizer JSON 词法分析器
+	 * @param token 当前的 Token
+	 * @param key 查找的 key
+	 * @return key 对应的值的第一个 Token, 不存在时返回 END
+	 * @throws ParseException 解析异常
+	 */
+	private static int seekKey(JSONTokenizer tokenizer, int token, String key) throws ParseException {
+		if (token != JSONTokenizer.START_OBJECT) {
+			return JSONTokenizer.END;
+		}
+
+		while ((token = tokenizer.next()) == JSONTokenizer.KEY) {
+			boolean matched = key.equals(tokenizer.getString());
+			token = tokenizer.next();
+			if (token == JSONTokenizer.END_OBJECT || token == JSONTokenizer.END) {
+				break;
+			}
+			if (matched) {
+				return token;
+			}
+			JSONBinder.skipValue(tokenizer, token);
+		}
+		return JSONTokenizer.END;
+	}
+
+	/**
+	 * 在 [] 包裹的数组中查找索引位置的值, 与解析时一致, 数组中的 null 值不占用索引
+	 * @param tokenizer JSON 词法分析器
+	 * @param token 当前的 Token
+	 * @param index 索引位置
+	 * @return 索引位置的值的第一个 Token, 不存在时返回 END
+	 * @throws ParseException 解析异常
+	 */
+	private static int seekIndex(JSONTokenizer tokenizer, int token, int index) throws ParseException {
+		if (token != JSONTokenizer.START_ARRAY) {
+			return JSONTokenizer.END;
+		}
+
+		int currentIndex = 0;
+		while ((token = tokenizer.next()) != JSONTokenizer.END_ARRAY && token != JSONTokenizer.END) {
+			if (token == JSONTokenizer.VALUE && tokenizer.getValue() == null) {
+				continue;
+			}
+			if (currentIndex == index) {
+				return token;
+			}
+			JSONBinder.skipValue(tokenizer, token);
+			currentIndex++;
+		}
+		return JSONTokenizer.END;
+	}
+}
@@ -0,0 +1,471 @@
+package org.voovan.tools.json;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+
+/**
+ * JSON 词法分析器
+ * 		单次顺序扫描字符数组, 使用显式的栈记录所在的对象或数组, 不做递归.
+ * 		兼容 JSONDecode 原有的宽松格式: 注释 (// 和 /* *&#47;), 不带引号的 Key 和值, 使用 = 分隔的 Key,
+ * 		function 值以及多余的 ","
+ *
+ * 		使用方式:
+ * 			while((token = tokenizer.next()) != JSONTokenizer.END){
+ * 				...
+ * 			}
+ *
+ * @author helyho
+ *
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class JSONTokenizer {
+	public static final int END = 0;
+	public static final int START_OBJECT = 1;
+	public static final int END_OBJECT = 2;
+	public static final int START_ARRAY = 3;
+	public static final int END_ARRAY = 4;
+	public static final int KEY = 5;
+	public static final int VALUE = 6;
+
+	private static final byte IN_OBJECT = 1;
+	private static final byte IN_ARRAY = 2;
+
+	private char[] chars;
+	private int position;
+	private int limit;
+
+	//所在的对象或数组
+	private byte[] stack = new byte[16];
+	private int depth = 0;
+	//对象中下一个元素是否是 Key
+	private boolean expectKey = false;
+
+	//当前 Token 在字符数组中的范围, 字符串不包含首尾的引号
+	private int tokenStart;
+	private int tokenEnd;
+	private boolean quoted;
+	private boolean escaped;
+
+	/**
+	 * 构造函数
+	 * @param jsonStr JSON 字符串
+	 */
+	public JSONTokenizer(String jsonStr) {
+		this(jsonStr.toCharArray());
+	}
+
+	/**
+	 * 构造函数
+	 * @param chars JSON 字符数组
+	 */
+	public JSONTokenizer(char[] chars) {
+		this(chars, 0, chars.length);
+	}
+
+	/**
+	 * 构造函数
+	 * @param chars JSON 字符数组
+	 * @param offset 起始位置
+	 * @param length 长度
+	 */
+	public JSONTokenizer(char[] chars, int offset, int length) {
+		this.chars = chars;
+		this.position = offset;
+		this.limit = offset + length;
+	}
+
+	/**
+	 * 构造函数
+	 * @param bytes UTF-8 编码的 JSON 字节数组
+	 */
+	public JSONTokenizer(byte[] bytes) {
+		this(ByteBuffer.wrap(bytes));
+	}
+
+	/**
+	 * 构造函数
+	 * 		从 position 读到 limit, 不改变 byteBuffer 的 position
+	 * @param byteBuffer UTF-8 编码的 JSON 字节缓冲区
+	 */
+	public JSONTokenizer(ByteBuffer byteBuffer) {
+		CharBuffer charBuffer = StandardCharsets.UTF_8.decode(byteBuffer.duplicate());
+		this.chars = charBuffer.array();
+		this.position = charBuffer.arrayOffset() + charBuffer.position();
+		this.limit = charBuffer.arrayOffset() + charBuffer.limit();
+	}
+
+	/**
+	 * 获取当前的扫描位置
+	 * @return 扫描位置
+	 */
+	public int getPosition() {
+		return position;
+	}
+
+	/**
+	 * 获取当前的嵌套深度
+	 * @return 嵌套深度
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * 读取下一个 Token
+	 * @return Token 类型: END, START_OBJECT, END_OBJECT, START_ARRAY, END_ARRAY, KEY, VALUE
+	 * @throws ParseException 解析异常
+	 */
+	public int next() throws ParseException {
+		while (true) {
+			skipBlank();
+			if (position >= limit) {
+				return END;
+			}
+
+			char c = chars[position];
+			switch (c) {
+				case '{':
+					position++;
+					push(IN_OBJECT);
+					expectKey = true;
+					return START_OBJECT;
+				case '[':
+					position++;
+					push(IN_ARRAY);
+					expectKey = false;
+					return START_ARRAY;
+				case '}':
+					pop(IN_OBJECT);
+					return END_OBJECT;
+				case ']':
+					pop(IN_ARRAY);
+					return END_ARRAY;
+				case ',':
+					position++;
+					expectKey = depth > 0 && stack[depth - 1] == IN_OBJECT;
+					continue;
+				case ':':
+				case '=':
+					position++;
+					continue;
+				default:
+					break;
+			}
+
+			if (expectKey) {
+				readKey();
+				expectKey = false;
+				return KEY;
+			} else {
+				readValue();
+				return VALUE;
+			}
+		}
+	}
+
+	private void push(byte type) {
+		if (depth == stack.length) {
+			byte[] newStack = new byte[depth * 2];
+			System.arraycopy(stack, 0, newStack, 0, depth);
+			stack = newStack;
+		}
+		stack[depth++] = type;
+	}
+
+	private void pop(byte type) throws ParseException {
+		if (depth == 0 || stack[depth - 1] != type) {
+			throw new ParseException("Unexpected '" + chars[position] + "'", position);
+		}
+		position++;
+		depth--;
+		expectKey = false;
+	}
+
+	/**
+	 * 跳过空白字符和注释
+	 * @throws ParseException 解析异常
+	 */
+	private void skipBlank() throws ParseException {
+		while (position < limit) {
+			char c = chars[position];
+			if (c <= ' ' || Character.isWhitespace(c)) {
+				position++;
+			} else if (c == '/' && position + 1 < limit && chars[position + 1] == '/') {
+				position += 2;
+				while (position < limit && chars[position] != '\n') {
+					position++;
+				}
+			} else if (c == '/' && position + 1 < limit && chars[position + 1] == '*') {
+				int commentEnd = indexOf("*/", position + 2);
+				if (commentEnd < 0) {
+					throw new ParseException("Unclosed comment", position);
+				}
+				position = commentEnd + 2;
+			} else {
+				return;
+			}
+		}
+	}
+
+	private int indexOf(String str, int from) {
+		char first = str.charAt(0);
+		for (int i = from; i <= limit - str.length(); i++) {
+			if (chars[i] == first && chars[i + 1] == str.charAt(1)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * 读取双引号包裹的字符串, 转义字符保持原样
+	 * @throws ParseException 解析异常
+	 */
+	private void readString() throws ParseException {
+		int start = position;
+		escaped = false;
+		position++;
+		while (position < limit) {
+			char c = chars[position];
+			if (c == '\\') {
+				escaped = true;
+				position += 2;
+			} else if (c == '"') {
+				tokenStart = start + 1;
+				tokenEnd = position;
+				quoted = true;
+				position++;
+				return;
+			} else {
+				position++;
+			}
+		}
+		throw new ParseException("Unclosed string", start);
+	}
+
+	/**
+	 * 读取 Key, 不带引号的 Key 以 :, = 或者空白字符结束
+	 * @throws ParseException 解析异常
+	 */
+	private void readKey() throws ParseException {
+		if (chars[position] == '"') {
+			readString();
+			return;
+		}
+
+		tokenStart = position;
+		while (position < limit) {
+			char c = chars[position];
+			if (c == ':' || c == '=' || c == ',' || c == '}' || c <= ' ') {
+				break;
+			}
+			position++;
+		}
+		tokenEnd = position;
+		quoted = false;
+		escaped = false;
+	}
+
+	/**
+	 * 读取值, 不带引号的值以 ",", "}", "]" 或者注释结束, function 值以配对的 "}" 结束
+	 * @throws ParseException 解析异常
+	 */
+	private void readValue() throws ParseException {
+		if (chars[position] == '"') {
+			readString();
+			return;
+		}
+
+		quoted = false;
+		escaped = false;
+		tokenStart = position;
+
+		if (startsWith("function")) {
+			readFunction();
+			return;
+		}
+
+		while (position < limit) {
+			char c = chars[position];
+			if (c == ',' || c == '}' || c == ']' ||
+					(c == '/' && position + 1 < limit && (chars[position + 1] == '/' || chars[position + 1] == '*'))) {
+				break;
+			}
+			position++;
+		}
+
+		tokenEnd = position;
+		while (tokenEnd > tokenStart && (chars[tokenEnd - 1] <= ' ' || Character.isWhitespace(chars[tokenEnd - 1]))) {
+			tokenEnd--;
+		}
+	}
+
+	/**
+	 * 读取 function 值, 直到函数体配对的 "}" 为止, 函数体中的字符串不参与配对
+	 * @throws ParseException 解析异常
+	 */
+	private void readFunction() throws ParseException {
+		int braceDepth = 0;
+		while (position < limit) {
+			char c = chars[position];
+			if (c == '"' || c == '\'') {
+				position++;
+				while (position < limit && chars[position] != c) {
+					position += chars[position] == '\\' ? 2 : 1;
+				}
+			} else if (c == '{') {
+				braceDepth++;
+			} else if (c == '}') {
+				braceDepth--;
+				if (braceDepth == 0) {
+					position++;
+					tokenEnd = position;
+					return;
+				}
+			}
+			position++;
+		}
+		throw new ParseException("Unclosed function", tokenStart);
+	}
+
+	private boolean startsWith(String prefix) {
+		if (limit - position < prefix.length()) {
+			return false;
+		}
+		for (int i = 0; i < prefix.length(); i++) {
+			if (chars[position + i] != prefix.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 当前 Token 是否是双引号包裹的字符串
+	 * @return true: 是字符串, false: 不是字符串
+	 */
+	public boolean isQuoted() {
+		return quoted;
+	}
+
+	/**
+	 * 获取当前 Token 的原始文本, 字符串不包含首尾的引号
+	 * @return 原始文本
+	 */
+	public String getString() {
+		return new String(chars, tokenStart, tokenEnd - tokenStart);
+	}
+
+	/**
+	 * 获取当前值 Token 转换后的对象
+	 * 		字符串还原 \u000a, \u000d, " 三个转义字符, 其他转义字符保持原样;
+	 * 		整数转换为 Integer 或者 Long, 带小数点的数转换为 Float;
+	 * 		true, false 转换为 Boolean; null 转换为 null; 其他值 (包括 function) 保持原始文本
+	 * @return 转换后的对象
+	 */
+	public Object getValue() {
+		if (quoted) {
+			String value = getString();
+			if (escaped) {
+				value = value.replace("\\u000a", "\n").replace("\\u000d", "\r").replace("\\u0022", "\"");
+			}
+			return value;
+		}
+
+		int length = tokenEnd - tokenStart;
+		switch (numberType()) {
+			case 1:
+				if (length <= 18) {
+					long longValue = parseLong();
+					if (longValue <= Integer.MAX_VALUE && longValue >= -Integer.MAX_VALUE) {
+						return (int) longValue;
+					}
+					return longValue;
+				}
+				try {
+					return Long.parseLong(getString());
+				} catch (NumberFormatException e) {
+					return getString();
+				}
+			case 2:
+				return Float.valueOf(getString());
+			default:
+				break;
+		}
+
+		if (length == 4 && matches("null")) {
+			return null;
+		} else if ((length == 4 && matchesIgnoreCase("true")) || (length == 5 && matchesIgnoreCase("false"))) {
+			return length == 4;
+		} else {
+			return getString();
+		}
+	}
+
+	/**
+	 * 判断当前 Token 的数字类型
+	 * @return 0: 不是数字, 1: 整数, 2: 带小数点的数
+	 */
+	private int numberType() {
+		int i = tokenStart;
+		if (i < tokenEnd && chars[i] == '-') {
+			i++;
+		}
+
+		int digitStart = i;
+		while (i < tokenEnd && chars[i] >= '0' && chars[i] <= '9') {
+			i++;
+		}
+		if (i == digitStart) {
+			return 0;
+		}
+		if (i == tokenEnd) {
+			return 1;
+		}
+
+		if (chars[i] != '.') {
+			return 0;
+		}
+		i++;
+		int fractionStart = i;
+		while (i < tokenEnd && chars[i] >= '0' && chars[i] <= '9') {
+			i++;
+		}
+		return i > fractionStart && i == tokenEnd ? 2 : 0;
+	}
+
+	private long parseLong() {
+		int i = tokenStart;
+		boolean negative = chars[i] == '-';
+		if (negative) {
+			i++;
+		}
+		long value = 0;
+		for (; i < tokenEnd; i++) {
+			value = value * 10 + (chars[i] - '0');
+		}
+		return negative ? -value : value;
+	}
+
+	private boolean matches(String str) {
+		for (int i = 0; i < str.length(); i++) {
+			if (chars[tokenStart + i] != str.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean matchesIgnoreCase(String str) {
+		for (int i = 0; i < str.length(); i++) {
+			if (Character.toLowerCase(chars[tokenStart + i]) != str.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
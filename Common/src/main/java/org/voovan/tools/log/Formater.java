@@ -3,13 +3,16 @@ package org.voovan.tools.log;
 import org.voovan.tools.*;
 
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Vector;
+import java.util.TimeZone;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  *	格式化日志信息并输出
@@ -35,10 +38,29 @@ import java.util.Vector;
  * Licence: Apache v2 License
  */
 public class Formater {
+	private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+	private static final String[] TOKENS = new String[]{"t", "s", "n", "I", "P", "SI", "L", "M", "F", "C", "T", "D", "R"};
+
+	//每个线程复用的格式化上下文
+	private static final ThreadLocal<LogContext> LOG_CONTEXTS = new ThreadLocal<LogContext>(){
+		@Override
+		protected LogContext initialValue() {
+			return new LogContext();
+		}
+	};
+
+	private static volatile DateValue dateValue = new DateValue(0);
+
 	private String template;
-	private LoggerThread loggerThread;
+	private volatile LoggerThread loggerThread;
 	private List<String> logLevel;
-	private String dateStamp; 
+	private String dateStamp;
+	//下一次检查日志文件日期的时间
+	private volatile long nextDayMillis;
+
+	//预先解析的模板, 元素是字面量字符串或者 Token 对象
+	private Object[] segments;
+	private String infoIndent;
 
 	/**
 	 * 构造函数
@@ -46,11 +68,22 @@ public class Formater {
 	 */
 	public Formater(String template) {
 		this.template = template;
-		logLevel = new Vector<String>();
+		logLevel = new CopyOnWriteArrayList<String>();
 		for(String level : StaticParam.getLogConfig("LogLevel",StaticParam.LOG_LEVEL).split(",")){
 			logLevel.add(level.trim());
 		}
 		dateStamp = TDateTime.now("YYYYMMdd");
+		nextDayMillis = nextDayMillis(System.currentTimeMillis());
+
+		//栈信息只在模板中使用 SI/L/M/F/C 时获取
+		segments = parseTemplate(template);
+
+		//缩进中的 Token 只能是空白字符
+		String indent = StaticParam.getLogConfig("InfoIndent",StaticParam.LOG_INFO_INDENT);
+		if(indent != null) {
+			indent = indent.replace("{{s}}", " ").replace("{{t}}", "\t").replace("{{n}}", "\r\n");
+		}
+		infoIndent = indent;
 	}
 
 	/**
@@ -62,37 +95,45 @@ public class Formater {
 	}
 
 	/**
-	 * 获得当前栈元素信息
-	 * @return 栈信息元素
+	 * 判断日志级别是否需要记录
+	 * 		在构造日志消息之前调用, 不需要记录的日志不产生任何开销
+	 * @param level 日志级别
+	 * @return true: 需要记录, false: 不需要记录
 	 */
-	public static StackTraceElement currentStackLine() {
-		StackTraceElement[] stackTraceElements = TEnv.getStackElements();
-		return stackTraceElements[6];
+	public boolean isLevelEnabled(String level) {
+		return logLevel.contains("ALL") || logLevel.contains(level);
 	}
 
 	/**
-	 * 获取当前线程名称
-	 * @return 当前线程名
+	 * 获得当前栈元素信息
+	 * 		日志调用方的栈元素, 即 Logger 之外的第一个栈元素
+	 * @return 栈信息元素
 	 */
-	private static String currentThreadName() {
-		Thread currentThread = Thread.currentThread();
-		return currentThread.getName()+" : "+currentThread.getId();
+	public static StackTraceElement currentStackLine() {
+		StackTraceElement[] stackTraceElements = TEnv.getStackElements();
+		String loggerClassName = Logger.class.getName();
+		String formaterClassName = Formater.class.getName();
+		int callerIndex = stackTraceElements.length - 1;
+		for(int i = stackTraceElements.length - 1; i >= 0; i--){
+			String className = stackTraceElements[i].getClassName();
+			if(className.equals(loggerClassName) || className.equals(formaterClassName)){
+				break;
+			}
+			callerIndex = i;
+		}
+		return stackTraceElements[callerIndex];
 	}
 
 	/**
 	 * 消息缩进
-	 * @param message 消息对象
-	 * @return 随进后的消息
+	 * @param message 消息
+	 * @return 缩进后的消息
 	 */
-	private String preIndentMessage(Message message){
-		String infoIndent = StaticParam.getLogConfig("InfoIndent",StaticParam.LOG_INFO_INDENT);
-		String msg = message.getMessage();
-		if(infoIndent!=null && !infoIndent.isEmpty()){
-			msg = infoIndent + msg;
-			msg = msg.replaceAll("\n", "\n" + infoIndent);
-			message.setMessage(msg);
+	private String indent(String message){
+		if(infoIndent==null || infoIndent.isEmpty()){
+			return message;
 		}
-		return msg;
+		return infoIndent + message.replace("\n", "\n" + infoIndent);
 	}
 
 	/**
@@ -102,37 +143,23 @@ public class Formater {
      */
 	public Map<String, String> newLogtokens(Message message){
 		Map<String, String> tokens = new HashMap<String, String>();
-		StackTraceElement stackTraceElement = currentStackLine();
-		
-		//Message和栈信息公用
-		tokens.put("t", "\t");
-		tokens.put("s", " ");
-		tokens.put("n", "\r\n");
-		tokens.put("I", preIndentMessage(message)); //日志消息
-		
-		//栈信息独享
-		
-		tokens.put("P", TObject.nullDefault(message.getLevel(),"INFO"));			//信息级别
-		tokens.put("SI", stackTraceElement.toString());									//堆栈信息
-		tokens.put("L", Integer.toString((stackTraceElement.getLineNumber())));			//行号
-		tokens.put("M", stackTraceElement.getMethodName());								//方法名
-		tokens.put("F", stackTraceElement.getFileName());								//源文件名
-		tokens.put("C", stackTraceElement.getClassName());								//类名
-		tokens.put("T", currentThreadName());											//线程
-		tokens.put("D", TDateTime.now("YYYY-MM-dd HH:mm:ss:SS z"));						//当前时间 
-		tokens.put("R", Long.toString(System.currentTimeMillis() - StaticParam.getStartTimeMillis())); //系统运行时间
-		
+		LogContext logContext = LOG_CONTEXTS.get();
+		logContext.reset(message.getLevel(), indent(message.getMessage()));
+		for(String token : TOKENS){
+			StringBuilder stringBuilder = new StringBuilder();
+			appendToken(stringBuilder, token, logContext);
+			tokens.put(token, stringBuilder.toString());
+		}
 		return tokens;
 	}
-	
+
 	/**
 	 * 格式化消息
 	 * @param message 消息对象
 	 * @return 格式化后的消息
 	 */
 	public String format(Message message) {
-		Map<String, String> tokens = newLogtokens(message);
-		return TString.tokenReplace(template, tokens);
+		return format(message.getLevel(), message.getMessage()).toString();
 	}
 
 	/**
@@ -141,26 +168,192 @@ public class Formater {
 	 * @return 格式化后的消息
      */
 	public String simpleFormat(Message message){
-		//消息缩进
-		Map<String, String> tokens = newLogtokens(message);
-		preIndentMessage(message);
-		return TString.tokenReplace(message.getMessage(), tokens);
+		return simpleFormat(message.getMessage()).toString();
 	}
-	
+
+	/**
+	 * 按模板格式化消息到当前线程复用的缓冲区
+	 * @param level 日志级别
+	 * @param message 消息
+	 * @return 格式化后的消息, 在当前线程下一次格式化之前有效
+	 */
+	private StringBuilder format(String level, String message) {
+		LogContext logContext = LOG_CONTEXTS.get();
+		logContext.reset(level, indent(message));
+		StringBuilder stringBuilder = logContext.stringBuilder;
+		stringBuilder.setLength(0);
+		appendSegments(stringBuilder, segments, logContext);
+		return stringBuilder;
+	}
+
+	/**
+	 * 简单格式化消息到当前线程复用的缓冲区
+	 * 		消息本身作为模板
+	 * @param message 消息
+	 * @return 格式化后的消息, 在当前线程下一次格式化之前有效
+	 */
+	private StringBuilder simpleFormat(String message) {
+		LogContext logContext = LOG_CONTEXTS.get();
+		String indentedMessage = indent(indent(message));
+		logContext.reset("SIMPLE", indentedMessage);
+		StringBuilder stringBuilder = logContext.stringBuilder;
+		stringBuilder.setLength(0);
+		appendText(stringBuilder, indentedMessage, logContext);
+		return stringBuilder;
+	}
+
+	/**
+	 * 解析模板
+	 * @param template 模板
+	 * @return 字面量字符串和 Token 对象组成的数组
+	 */
+	private static Object[] parseTemplate(String template) {
+		List<Object> segmentList = new ArrayList<Object>();
+		int position = 0;
+		while(position < template.length()){
+			int tokenStart = template.indexOf("{{", position);
+			int tokenEnd = tokenStart < 0 ? -1 : template.indexOf("}}", tokenStart + 2);
+			if(tokenEnd < 0){
+				segmentList.add(template.substring(position));
+				break;
+			}
+
+			if(tokenStart > position) {
+				segmentList.add(template.substring(position, tokenStart));
+			}
+
+			String tokenName = template.substring(tokenStart + 2, tokenEnd);
+			if(Arrays.asList(TOKENS).contains(tokenName)){
+				segmentList.add(new Token(tokenName));
+			} else {
+				//未定义的 Token 原样输出
+				segmentList.add(template.substring(tokenStart, tokenEnd + 2));
+			}
+			position = tokenEnd + 2;
+		}
+		return segmentList.toArray();
+	}
+
+	private void appendSegments(StringBuilder stringBuilder, Object[] segments, LogContext logContext){
+		for(Object segment : segments){
+			if(segment instanceof Token){
+				appendToken(stringBuilder, ((Token)segment).name, logContext);
+			} else {
+				stringBuilder.append((String)segment);
+			}
+		}
+	}
+
+	/**
+	 * 写入文本, 文本中包含 Token 时替换 Token
+	 * @param stringBuilder 缓冲区
+	 * @param text 文本
+	 * @param logContext 格式化上下文
+	 */
+	private void appendText(StringBuilder stringBuilder, String text, LogContext logContext){
+		if(text.contains("{{")){
+			appendSegments(stringBuilder, parseTemplate(text), logContext);
+		} else {
+			stringBuilder.append(text);
+		}
+	}
+
+	private void appendToken(StringBuilder stringBuilder, String token, LogContext logContext){
+		switch (token) {
+			case "t":
+				stringBuilder.append('\t');
+				break;
+			case "s":
+				stringBuilder.append(' ');
+				break;
+			case "n":
+				stringBuilder.append("\r\n");
+				break;
+			case "I":
+				//日志消息
+				if("SIMPLE".equals(logContext.level) || !logContext.message.contains("{{")) {
+					stringBuilder.append(logContext.message);
+				} else {
+					//消息中的 Token 同样会被替换
+					String message = logContext.message;
+					logContext.message = "";
+					appendText(stringBuilder, message, logContext);
+					logContext.message = message;
+				}
+				break;
+			case "P":
+				//信息级别
+				stringBuilder.append(logContext.level == null ? "INFO" : logContext.level);
+				break;
+			case "SI":
+				//堆栈信息
+				stringBuilder.append(logContext.stackLine());
+				break;
+			case "L":
+				//行号
+				stringBuilder.append(logContext.stackLine().getLineNumber());
+				break;
+			case "M":
+				//方法名
+				stringBuilder.append(logContext.stackLine().getMethodName());
+				break;
+			case "F":
+				//源文件名
+				stringBuilder.append(logContext.stackLine().getFileName());
+				break;
+			case "C":
+				//类名
+				stringBuilder.append(logContext.stackLine().getClassName());
+				break;
+			case "T":
+				//线程
+				Thread currentThread = Thread.currentThread();
+				stringBuilder.append(currentThread.getName()).append(" : ").append(currentThread.getId());
+				break;
+			case "D":
+				//当前时间
+				appendDate(stringBuilder);
+				break;
+			case "R":
+				//系统运行时间
+				stringBuilder.append(System.currentTimeMillis() - StaticParam.getStartTimeMillis());
+				break;
+			default:
+				stringBuilder.append("{{").append(token).append("}}");
+				break;
+		}
+	}
+
+	/**
+	 * 写入当前时间, 格式: YYYY-MM-dd HH:mm:ss:SS z
+	 * 		毫秒之外的部分每秒只格式化一次
+	 * @param stringBuilder 缓冲区
+	 */
+	private static void appendDate(StringBuilder stringBuilder){
+		long now = System.currentTimeMillis();
+		long second = now / 1000;
+		DateValue currentDateValue = dateValue;
+		if(currentDateValue.second != second){
+			currentDateValue = new DateValue(second);
+			dateValue = currentDateValue;
+		}
+
+		int millis = (int)(now % 1000);
+		stringBuilder.append(currentDateValue.prefix);
+		if(millis < 10){
+			stringBuilder.append('0');
+		}
+		stringBuilder.append(millis);
+		stringBuilder.append(currentDateValue.suffix);
+	}
+
 	/**
 	 * 消息类型是否可以记录
 	 * @param message 消息对象
 	 * @return 是否可写入
 	 */
 	public boolean messageWritable(Message message){
-		if(logLevel.contains("ALL")){
-			return true;
-		}
-		else if(logLevel.contains(message.getLevel())){
-			return true;
-		}else{
-			return false;
-		}
+		return isLevelEnabled(message.getLevel());
 	}
 	
 	/**
@@ -169,30 +362,114 @@ public class Formater {
 	 */
 	public void writeFormatedLog(Message message) {
 		if(messageWritable(message)){
-			if("SIMPLE".equals(message.getLevel())){
-				writeLog(simpleFormat(message)+"\r\n");
-			}else{
-				writeLog(format(message));
+			writeFormatedLog(message.getLevel(), message.getMessage());
+		}
+	}
+
+	/**
+	 * 格式化并写入消息
+	 * 		调用方需要先判断日志级别
+	 * @param level 日志级别
+	 * @param message 消息
+	 */
+	public void writeFormatedLog(String level, String message) {
+		if("SIMPLE".equals(level)){
+			StringBuilder stringBuilder = simpleFormat(message);
+			stringBuilder.append("\r\n");
+			writeLog(encode(stringBuilder), false);
+		}else{
+			writeLog(encode(format(level, message)), "DEBUG".equals(level));
+		}
+	}
+
+	/**
+	 * 编码格式化后的消息
+	 * @param stringBuilder 格式化后的消息
+	 * @return 字节数组
+	 */
+	private static byte[] encode(StringBuilder stringBuilder){
+		int length = stringBuilder.length();
+		byte[] bytes = new byte[length];
+		for(int i = 0; i < length; i++){
+			char c = stringBuilder.charAt(i);
+			if(c >= 0x80){
+				//包含非 ASCII 字符时使用默认字符集编码
+				return stringBuilder.toString().getBytes();
 			}
+			bytes[i] = (byte)c;
 		}
+		return bytes;
 	}
-	
+
 	/**
 	 * 写入消息
 	 * @param msg 消息字符串
 	 */
-	public synchronized void writeLog(String msg) {
+	public void writeLog(String msg) {
+		writeLog(msg.getBytes());
+	}
+
+	/**
+	 * 写入编码后的消息
+	 * @param bytes 消息字节
+	 */
+	public void writeLog(byte[] bytes) {
+		writeLog(bytes, false);
+	}
+
+	/**
+	 * 写入编码后的消息
+	 * @param bytes 消息字节
+	 * @param debug 是否是 DEBUG 日志, 队列已满时按照 LogOverflowPolicy 可能被丢弃
+	 */
+	public void writeLog(byte[] bytes, boolean debug) {
 		if(Logger.isState()){
-			if (loggerThread == null || loggerThread.isFinished()) {
-				this.loggerThread = LoggerThread.start(getOutputStreams());
+			LoggerThread currentLoggerThread = loggerThread;
+			if (currentLoggerThread == null || currentLoggerThread.isFinished() || System.currentTimeMillis() >= nextDayMillis) {
+				currentLoggerThread = prepareLoggerThread();
 			}
+			currentLoggerThread.addLogMessage(bytes, debug);
+		}
+	}
+
+	/**
+	 * 获取日志线程
+	 * @return 日志线程, 尚未输出过日志时为 null
+	 */
+	public LoggerThread getLoggerThread() {
+		return loggerThread;
+	}
+
+	/**
+	 * 启动日志线程, 日期变化时产生新的日志文件
+	 * @return 日志线程
+	 */
+	private synchronized LoggerThread prepareLoggerThread() {
+		if (loggerThread == null || loggerThread.isFinished()) {
+			this.loggerThread = LoggerThread.start(getOutputStreams());
+		}
+
+		long now = System.currentTimeMillis();
+		if(now >= nextDayMillis){
 			//如果日志发生变化则产生新的文件
-			if(!dateStamp.equals(TDateTime.now("YYYYMMdd"))){
+			String currentDateStamp = TDateTime.now("YYYYMMdd");
+			if(!dateStamp.equals(currentDateStamp)){
+				dateStamp = currentDateStamp;
 				loggerThread.setOutputStreams(getOutputStreams());
 			}
-			
-			loggerThread.addLogMessage(msg);
+			nextDayMillis = nextDayMillis(now);
 		}
+		return loggerThread;
+	}
+
+	/**
+	 * 计算下一个本地日期的开始时间
+	 * @param now 当前时间
+	 * @return 下一天的开始时间
+	 */
+	private static long nextDayMillis(long now){
+		int offset = TimeZone.getDefault().getOffset(now);
+		return ((now + offset) / DAY_MILLIS + 1) * DAY_MILLIS - offset;
 	}
 	
 	/**
@@ -236,8 +513,8 @@ public class Formater {
 	protected static OutputStream[] getOutputStreams(){
 		String[] LogTypes = StaticParam.getLogConfig("LogType",StaticParam.LOG_TYPE).split(",");
 		String logFile = getFormatedLogFilePath();
-		
-	
+		long logFileMaxSize = Long.parseLong(StaticParam.getLogConfig("LogFileMaxSize", StaticParam.LOG_FILE_MAX_SIZE).trim()) * 1024 * 1024;
+
 		OutputStream[] outputStreams = new OutputStream[LogTypes.length];
 		for (int i = 0; i < LogTypes.length; i++) {
 			String logType = LogTypes[i].trim();
@@ -250,8 +527,8 @@ public class Formater {
 				break;
 			case "FILE":
 				try {
-					outputStreams[i] = new FileOutputStream(logFile,true);
-				} catch (FileNotFoundException e) {
+					outputStreams[i] = new RollingFileOutputStream(logFile, logFileMaxSize);
+				} catch (IOException e) {
 					System.out.println("log file: ["+logFile+"] is not found.\r\n");
 				}
 				break;
@@ -262,4 +539,54 @@ public class Formater {
 		return outputStreams;
 		
 	}
+
+	/**
+	 * 模板中的 Token
+	 */
+	private static class Token {
+		private String name;
+
+		private Token(String name) {
+			this.name = name;
+		}
+	}
+
+	/**
+	 * 格式化上下文, 栈信息只在模板需要时获取
+	 */
+	private static class LogContext {
+		private StringBuilder stringBuilder = new StringBuilder(512);
+		private String level;
+		private String message;
+		private StackTraceElement stackLine;
+
+		private void reset(String level, String message) {
+			this.level = level;
+			this.message = message;
+			this.stackLine = null;
+		}
+
+		private StackTraceElement stackLine() {
+			if (stackLine == null) {
+				stackLine = currentStackLine();
+			}
+			return stackLine;
+		}
+	}
+
+	/**
+	 * 当前秒的时间
+	 */
+	private static class DateValue {
+		private long second;
+		private String prefix;
+		private String suffix;
+
+		private DateValue(long second) {
+			Date date = new Date(second * 1000);
+			this.second = second;
+			this.prefix = TDateTime.format(date, "YYYY-MM-dd HH:mm:ss:");
+			this.suffix = TDateTime.format(date, " z");
+		}
+	}
 }
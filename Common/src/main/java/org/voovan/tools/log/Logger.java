@@ -39,22 +39,28 @@ public class Logger {
 	 * @return true: 包含, false: 不包含
 	 */
 	public static boolean isLogLevel(String logLevel){
-		if(formater.getLogLevel().contains("ALL")){
-			return true;
-		}
+		return formater.isLevelEnabled(logLevel);
+	}
 
-		if(formater.getLogLevel().contains(logLevel)){
-			return true;
-		}else{
-			return false;
-		}
+	/**
+	 * 判断日志是否需要输出
+	 * 		在构造消息之前判断, 不需要输出的日志不做任何格式化
+	 * @param logLevel 日志级别
+	 * @return true: 输出, false: 不输出
+	 */
+	private static boolean isEnabled(String logLevel){
+		return state && formater.isLevelEnabled(logLevel);
 	}
 
-	public static void debug(Object msg) {
+	/**
+	 * 格式化并输出日志
+	 * @param logLevel 日志级别
+	 * @param msg 消息
+	 */
+	private static void write(String logLevel, Object msg) {
 		try {
 			msg = TObject.nullDefault(msg,"null");
-			Message message = Message.newInstance("DEBUG", msg.toString());
-			formater.writeFormatedLog(message);
+			formater.writeFormatedLog(logLevel, msg.toString());
 		} catch (Exception oe) {
 			simple("Logger system error:"+oe.getMessage()+"\r\n");
 			simple(TEnv.getStackElementsMessage(oe.getStackTrace()));
@@ -62,140 +68,92 @@ public class Logger {
 		}
 	}
 
+	/**
+	 * 生成异常的消息
+	 * @param msg 消息
+	 * @param e 异常
+	 * @return 消息字符串
+	 */
+	private static String exceptionMessage(Object msg, Exception e) {
+		return e.getClass().getCanonicalName() + ": " + msg + "\r\n"
+				+ TString.indent(TEnv.getStackElementsMessage(e.getStackTrace()), 8);
+	}
+
+	public static void debug(Object msg) {
+		if(isEnabled("DEBUG")) {
+			write("DEBUG", msg);
+		}
+	}
+
 	public static void info(Object msg) {
-		try {
-			msg = TObject.nullDefault(msg,"null");
-			Message message = Message.newInstance("INFO", msg.toString());
-			formater.writeFormatedLog(message);
-		} catch (Exception oe) {
-			simple("Logger system error:"+oe.getMessage()+"\r\n");
-			simple(TEnv.getStackElementsMessage(oe.getStackTrace()));
-			simple("Output message is: " + msg);
+		if(isEnabled("INFO")) {
+			write("INFO", msg);
 		}
 	}
 
 	public static void warn(Object msg) {
-		try {
-			msg = TObject.nullDefault(msg,"null");
-			Message message = Message.newInstance("WARN", msg.toString());
-			formater.writeFormatedLog(message);
-		} catch (Exception oe) {
-			simple("Logger system error:"+oe.getMessage()+"\r\n");
-			simple(TEnv.getStackElementsMessage(oe.getStackTrace()));
-			simple("Output message is: " + msg);
+		if(isEnabled("WARN")) {
+			write("WARN", msg);
 		}
 	}
 
 	public static void warn(Exception e) {
-		try {
-			String msg = e.getClass().getCanonicalName() + ": " + e.getMessage() + "\r\n"
-					+ TString.indent(TEnv.getStackElementsMessage(e.getStackTrace()), 8);
-			Message message = Message.newInstance("WARN", msg);
-			formater.writeFormatedLog(message);
-		} catch (Exception oe) {
-			simple("Logger system error:"+oe.getMessage()+"\r\n");
-			simple(TEnv.getStackElementsMessage(oe.getStackTrace()));
-			simple("Output message is: " + e.getMessage());
+		if(isEnabled("WARN")) {
+			write("WARN", exceptionMessage(e.getMessage(), e));
 		}
 	}
 
 	public static void warn(Object msg, Exception e) {
-		try {
-			msg = TObject.nullDefault(msg,"null");
-			String msgStr = e.getClass().getCanonicalName() + ": " + msg + "\r\n"
-					+ TString.indent(TEnv.getStackElementsMessage(e.getStackTrace()), 8);
-			Message message = Message.newInstance("WARN", msgStr);
-			formater.writeFormatedLog(message);
-		} catch (Exception oe) {
-			simple("Logger system error:"+oe.getMessage()+"\r\n");
-			simple(TEnv.getStackElementsMessage(oe.getStackTrace()));
-			simple("Output message is: " + msg);
+		if(isEnabled("WARN")) {
+			write("WARN", exceptionMessage(TObject.nullDefault(msg,"null"), e));
 		}
 	}
 
 	public static void error(Object msg) {
-		try {
-			msg = TObject.nullDefault(msg,"null");
-			Message message = Message.newInstance("ERROR", msg.toString());
-			formater.writeFormatedLog(message);
-		} catch (Exception oe) {
-			simple("Logger system error:"+oe.getMessage()+"\r\n");
-			simple(TEnv.getStackElementsMessage(oe.getStackTrace()));
-			simple("Output message is: " + msg);
+		if(isEnabled("ERROR")) {
+			write("ERROR", msg);
 		}
 	}
 
 	public static void error(Exception e) {
-		try {
-			String msg = e.getClass().getCanonicalName() + ": " + e.getMessage() + "\r\n"
-					+ TString.indent(TEnv.getStackElementsMessage(e.getStackTrace()), 8);
-			Message message = Message.newInstance("ERROR", msg);
-			formater.writeFormatedLog(message);
-		} catch (Exception oe) {
-			simple("Logger system error:"+oe.getMessage()+"\r\n");
-			simple(TEnv.getStackElementsMessage(oe.getStackTrace()));
-			simple("Output message is: " + e.getMessage());
+		if(isEnabled("ERROR")) {
+			write("ERROR", exceptionMessage(e.getMessage(), e));
 		}
 	}
 
 	public static void error(Object msg, Exception e) {
-		try {
+		if(isEnabled("ERROR")) {
 			msg = TObject.nullDefault(msg,"null");
-			String msgStr = msg + " => " +  e.getClass().getCanonicalName() + ": " + e.getMessage() + "\r\n"
-					+ TString.indent(TEnv.getStackElementsMessage(e.getStackTrace()), 8);
-			Message message = Message.newInstance("ERROR", msgStr);
-			formater.writeFormatedLog(message);
-		} catch (Exception oe) {
-			simple("Logger system error:"+oe.getMessage()+"\r\n");
-			simple(TEnv.getStackElementsMessage(oe.getStackTrace()));
-			simple("Output message is: " + msg);
+			write("ERROR", msg + " => " + exceptionMessage(e.getMessage(), e));
 		}
 	}
 
 	public static void fatal(Object msg) {
-		try {
-			msg = TObject.nullDefault(msg,"null");
-			Message message = Message.newInstance("FATAL", msg.toString());
-			formater.writeFormatedLog(message);
-		} catch (Exception oe) {
-			simple("Logger system error:"+oe.getMessage()+"\r\n");
-			simple(TEnv.getStackElementsMessage(oe.getStackTrace()));
-			simple("Output message is: " + msg);
+		if(isEnabled("FATAL")) {
+			write("FATAL", msg);
 		}
 	}
 
 	public static void fatal(Exception e) {
-		try {
-			String msg = e.getClass().getCanonicalName() + ": " + e.getMessage() + "\r\n"
-					+ TString.indent(TEnv.getStackElementsMessage(e.getStackTrace()), 8);
-			Message message = Message.newInstance("FATAL", msg);
-			formater.writeFormatedLog(message);
-		} catch (Exception oe) {
-			simple("Logger system error:"+oe.getMessage()+"\r\n");
-			simple(TEnv.getStackElementsMessage(oe.getStackTrace()));
-			simple("Output message is: " + e.getMessage());
+		if(isEnabled("FATAL")) {
+			write("FATAL", exceptionMessage(e.getMessage(), e));
 		}
 	}
 
 	public static void fatal(Object msg, Exception e) {
-		try {
-			msg = TObject.nullDefault(msg,"null");
-			String msgStr = e.getClass().getCanonicalName() + ": " + msg + "\r\n"
-					+ TString.indent(TEnv.getStackElementsMessage(e.getStackTrace()), 8);
-			Message message = Message.newInstance("FATAL", msgStr);
-			formater.writeFormatedLog(message);
-		} catch (Exception oe) {
-			simple("Logger system error:"+oe.getMessage()+"\r\n");
-			simple(TEnv.getStackElementsMessage(oe.getStackTrace()));
-			simple("Output message is: " + msg);
+		if(isEnabled("FATAL")) {
+			write("FATAL", exceptionMessage(TObject.nullDefault(msg,"null"), e));
 		}
 	}
 
 	public static void simple(Object msg) {
+		if(!isEnabled("SIMPLE")) {
+			return;
+		}
+
 		try {
 			msg = TObject.nullDefault(msg,"null");
-			Message message = Message.newInstance("SIMPLE", msg.toString());
-			formater.writeFormatedLog(message);
+			formater.writeFormatedLog("SIMPLE", msg.toString());
 		} catch (Exception oe) {
 			System.out.println("Logger system error:"+oe.getMessage()+"\r\n");
 			System.out.println(TEnv.getStackElementsMessage(oe.getStackTrace()));
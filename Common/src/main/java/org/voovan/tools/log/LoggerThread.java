@@ -4,13 +4,18 @@ import org.voovan.tools.TEnv;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * 日志输出线程
- * 
+ * 		日志消息放入无锁队列, 输出线程每次取出队列中的所有消息合并写入, 每批只 flush 一次.
+ * 		队列达到上限时按照 OverflowPolicy 处理新的消息
+ *
  * @author helyho
  *
  * Voovan Framework.
@@ -18,23 +23,79 @@ import java.util.concurrent.atomic.AtomicBoolean;
  * Licence: Apache v2 License
  */
 public class LoggerThread implements Runnable {
-	private ArrayBlockingQueue<String>	logQueue;
-	private OutputStream[] outputStreams;
+
+	/**
+	 * 队列已满时的处理策略
+	 */
+	public enum OverflowPolicy {
+		//等待队列有空闲位置
+		BLOCK,
+		//丢弃 DEBUG 日志, 其他日志等待队列有空闲位置
+		DROP_DEBUG,
+		//丢弃队列中最早的日志
+		DROP_OLDEST
+	}
+
+	private static final int BATCH_SIZE = 64 * 1024;
+
+	private ConcurrentLinkedQueue<byte[]> logQueue;
+	private AtomicInteger queueSize;
+	private int maxQueueSize;
+	private OverflowPolicy overflowPolicy;
+	private AtomicLong droppedCount;
+	private volatile OutputStream[] outputStreams;
+	//等待输出线程切换的新输出流
+	private volatile OutputStream[] newOutputStreams;
 	private AtomicBoolean finished = new AtomicBoolean(true);
+	private volatile Thread thread;
+	private volatile boolean waiting;
+	private byte[] batch;
 
 	/**
 	 * 构造函数
 	 * @param outputStreams 输出流数组
 	 */
 	public LoggerThread(OutputStream[] outputStreams) {
-		this.logQueue = new ArrayBlockingQueue<String>(100000);
+		this(outputStreams, Integer.parseInt(StaticParam.getLogConfig("LogQueueSize", StaticParam.LOG_QUEUE_SIZE).trim()),
+				OverflowPolicy.valueOf(StaticParam.getLogConfig("LogOverflowPolicy", StaticParam.LOG_OVERFLOW_POLICY).trim()));
+	}
+
+	/**
+	 * 构造函数
+	 * @param outputStreams 输出流数组
+	 * @param maxQueueSize 队列中最多缓存的消息数
+	 * @param overflowPolicy 队列已满时的处理策略
+	 */
+	public LoggerThread(OutputStream[] outputStreams, int maxQueueSize, OverflowPolicy overflowPolicy) {
+		this.logQueue = new ConcurrentLinkedQueue<byte[]>();
+		this.queueSize = new AtomicInteger(0);
+		this.maxQueueSize = maxQueueSize;
+		this.overflowPolicy = overflowPolicy;
+		this.droppedCount = new AtomicLong(0);
 		this.outputStreams = outputStreams;
+		this.batch = new byte[BATCH_SIZE];
 	}
-	
+
 	public boolean isFinished() {
 		return finished.get();
 	}
 
+	/**
+	 * 获取因队列已满而丢弃的消息数
+	 * @return 丢弃的消息数
+	 */
+	public long getDroppedCount() {
+		return droppedCount.get();
+	}
+
+	/**
+	 * 获取队列中等待输出的消息数
+	 * @return 消息数
+	 */
+	public int getQueueSize() {
+		return queueSize.get();
+	}
+
 	/**
 	 * 获取日志输出流集合
 	 * @return 输出流数组
@@ -45,24 +106,43 @@ public class LoggerThread implements Runnable {
 
 	/**
 	 * 设置日志输出流集合
+	 * 		由输出线程在两批消息之间切换, 并关闭原来的文件输出流
 	 * @param outputStreams 输出流数组
 	 */
 	public void setOutputStreams(OutputStream[] outputStreams) {
-        this.outputStreams = outputStreams;
+		if(thread == null) {
+			this.outputStreams = outputStreams;
+		} else {
+			this.newOutputStreams = outputStreams;
+			LockSupport.unpark(thread);
+		}
 	}
 
 	/**
 	 * 关闭所有的OutputStream
 	 */
 	public void closeAllOutputStreams() {
-		try {
-			for (OutputStream outputStream : outputStreams) {
-				if (outputStream != null) {
+		closeOutputStreams(outputStreams, true);
+	}
+
+	/**
+	 * 关闭输出流
+	 * @param outputStreams 输出流数组
+	 * @param closeStandard 是否关闭标准输出和标准错误输出
+	 */
+	private static void closeOutputStreams(OutputStream[] outputStreams, boolean closeStandard) {
+		if (outputStreams == null) {
+			return;
+		}
+
+		for (OutputStream outputStream : outputStreams) {
+			try {
+				if (outputStream != null && (closeStandard || (outputStream != System.out && outputStream != System.err))) {
 					outputStream.close();
 				}
+			} catch (IOException e) {
+				e.printStackTrace();
 			}
-		} catch (IOException e) {
-			e.printStackTrace();
 		}
 	}
 
@@ -72,55 +152,147 @@ public class LoggerThread implements Runnable {
 	 * @param msg 消息字符串
      */
 	public void addLogMessage(String msg) {
-		logQueue.add(msg);
+		addLogMessage(msg.getBytes(), false);
+	}
+
+	/**
+	 * 增加编码后的消息
+	 *
+	 * @param msg 消息字节
+	 */
+	public void addLogMessage(byte[] msg) {
+		addLogMessage(msg, false);
+	}
+
+	/**
+	 * 增加编码后的消息
+	 *
+	 * @param msg 消息字节
+	 * @param debug 是否是 DEBUG 日志, 用于 DROP_DEBUG 策略
+	 */
+	public void addLogMessage(byte[] msg, boolean debug) {
+		while (queueSize.get() >= maxQueueSize) {
+			if (overflowPolicy == OverflowPolicy.DROP_OLDEST) {
+				if (logQueue.poll() != null) {
+					queueSize.decrementAndGet();
+					droppedCount.incrementAndGet();
+				}
+				break;
+			} else if (overflowPolicy == OverflowPolicy.DROP_DEBUG && debug) {
+				droppedCount.incrementAndGet();
+				return;
+			} else if (isFinished() || Thread.currentThread() == thread) {
+				//输出线程已经结束或者在输出线程中记录日志, 等待会导致死锁
+				droppedCount.incrementAndGet();
+				return;
+			} else {
+				LockSupport.unpark(thread);
+				LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+			}
+		}
+
+		logQueue.offer(msg);
+		queueSize.incrementAndGet();
+
+		if (waiting) {
+			LockSupport.unpark(thread);
+		}
+	}
+
+	/**
+	 * 取出队列中的所有消息合并输出
+	 * @return 输出的消息数
+	 * @throws IOException IO 异常
+	 */
+	private int drain() throws IOException {
+		int count = 0;
+		int length = 0;
+		byte[] msg;
+		while ((msg = logQueue.poll()) != null) {
+			queueSize.decrementAndGet();
+			count++;
+
+			if (length + msg.length > batch.length) {
+				write(batch, length);
+				length = 0;
+			}
+
+			if (msg.length > batch.length) {
+				write(msg, msg.length);
+			} else {
+				System.arraycopy(msg, 0, batch, length, msg.length);
+				length += msg.length;
+			}
+		}
+
+		if (length > 0) {
+			write(batch, length);
+		}
+
+		if (count > 0) {
+			for (OutputStream outputStream : outputStreams) {
+				if (outputStream != null) {
+					outputStream.flush();
+				}
+			}
+		}
+		return count;
+	}
+
+	private void write(byte[] bytes, int length) throws IOException {
+		for (OutputStream outputStream : outputStreams) {
+			if (outputStream != null) {
+				outputStream.write(bytes, 0, length);
+			}
+		}
 	}
 
 	@Override
 	public void run() {
-		String formatedMessage = null;
-
+		thread = Thread.currentThread();
 		finished.set(false);
 
 		Thread mainThread = TEnv.getMainThread();
 		try {
-            while (true) {
-                    formatedMessage = logQueue.poll(1000, TimeUnit.MILLISECONDS);
-                    if (formatedMessage != null && outputStreams!=null) {
-                        for (OutputStream outputStream : outputStreams) {
-                            if (outputStream != null) {
-                                outputStream.write(formatedMessage.getBytes());
-                                outputStream.flush();
-                            }
-                        }
-                    }
-                    //如果主线程结束,则日志线程也退出
-                    if(mainThread!=null && mainThread.getState() == Thread.State.TERMINATED){
-                        break;
-                    }
-
-                    if(mainThread == null){
-                        break;
-                    }
-            }
-
-            finished.set(true);
-
-		} catch (IOException | InterruptedException e) {
+			while (true) {
+				OutputStream[] currentNewOutputStreams = newOutputStreams;
+				if (currentNewOutputStreams != null) {
+					closeOutputStreams(outputStreams, false);
+					outputStreams = currentNewOutputStreams;
+					newOutputStreams = null;
+				}
+
+				int count = 0;
+				try {
+					count = drain();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+
+				if (count > 0) {
+					continue;
+				}
+
+				//如果主线程结束,则日志线程也退出
+				if (mainThread == null || mainThread.getState() == Thread.State.TERMINATED) {
+					drain();
+					break;
+				}
+
+				waiting = true;
+				if (logQueue.isEmpty() && newOutputStreams == null) {
+					LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1000));
+				}
+				waiting = false;
+			}
+		} catch (IOException e) {
 			e.printStackTrace();
 		} finally {
-			try {
-                for (OutputStream outputStream : outputStreams) {
-                    if (outputStream != null) {
-                        outputStream.close();
-                    }
-                }
-			} catch (IOException e) {
-				e.printStackTrace();
-			}
+			finished.set(true);
+			closeAllOutputStreams();
 		}
-
 	}
-	
+
 	/**
 	 * 获取 Web 访问日志记录对象
 	 * @param outputStreams 输出流数组
@@ -128,9 +300,11 @@ public class LoggerThread implements Runnable {
 	 */
 	public static LoggerThread start(OutputStream[] outputStreams) {
 		LoggerThread loggerThread = new LoggerThread(outputStreams);
-	Thread loggerMainThread = new Thread(loggerThread,"VOOVAN@LOGGER_THREAD");
+		//线程开始运行前就标记为未结束, 避免重复启动
+		loggerThread.finished.set(false);
+		Thread loggerMainThread = new Thread(loggerThread,"VOOVAN@LOGGER_THREAD");
 		loggerMainThread.start();
 		return loggerThread;
 	}
-	
+
 }
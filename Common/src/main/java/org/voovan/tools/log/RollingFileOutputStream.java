@@ -0,0 +1,86 @@
+package org.voovan.tools.log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 按大小滚动的日志文件输出流
+ * 		写入的数据将超过最大长度时, 将当前文件重命名为 文件名.1, 文件名.2 ... 并重新创建日志文件.
+ * 		只由日志线程写入, 不做同步
+ *
+ * @author helyho
+ *
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class RollingFileOutputStream extends OutputStream {
+	private String filePath;
+	private long maxSize;
+	private long size;
+	private FileOutputStream fileOutputStream;
+
+	/**
+	 * 构造函数
+	 * @param filePath 文件路径
+	 * @param maxSize 文件最大长度, 小于等于 0 时不滚动
+	 * @throws IOException IO 异常
+	 */
+	public RollingFileOutputStream(String filePath, long maxSize) throws IOException {
+		this.filePath = filePath;
+		this.maxSize = maxSize;
+		open();
+	}
+
+	private void open() throws IOException {
+		File file = new File(filePath);
+		fileOutputStream = new FileOutputStream(file, true);
+		size = file.length();
+	}
+
+	/**
+	 * 关闭当前文件, 重命名后重新创建日志文件
+	 * @throws IOException IO 异常
+	 */
+	private void roll() throws IOException {
+		fileOutputStream.close();
+
+		int index = 1;
+		File rollFile = new File(filePath + "." + index);
+		while (rollFile.exists()) {
+			index++;
+			rollFile = new File(filePath + "." + index);
+		}
+
+		if (!new File(filePath).renameTo(rollFile)) {
+			System.out.println("Log util Waring: rename log file " + filePath + " failed!");
+		}
+		open();
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		write(new byte[]{(byte) b}, 0, 1);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		if (maxSize > 0 && size > 0 && size + len > maxSize) {
+			roll();
+		}
+		fileOutputStream.write(b, off, len);
+		size += len;
+	}
+
+	@Override
+	public void flush() throws IOException {
+		fileOutputStream.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		fileOutputStream.close();
+	}
+}
@@ -27,6 +27,9 @@ public class StaticParam {
 										"--------------------------------------------------------------------------------------------------------------------------------------------------" +
 										"{{n}}{{I}}{{n}}{{n}}";
 	public final static String LOG_INFO_INDENT = "";
+	public final static String LOG_QUEUE_SIZE = "100000";
+	public final static String LOG_OVERFLOW_POLICY = "DROP_DEBUG";
+	public final static String LOG_FILE_MAX_SIZE = "0";
 
 	/**
 	 * 读取日志配置文件信息
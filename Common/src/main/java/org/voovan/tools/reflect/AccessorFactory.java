@@ -0,0 +1,289 @@
+package org.voovan.tools.reflect;
+
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 属性访问器和方法调用器工厂
+ * 		每个属性和方法只生成一次访问器, 缓存在线程安全的 Map 中.
+ * 		没有参数和只有一个参数的实例方法 (getter, setter 等) 通过 LambdaMetafactory 生成直接调用的类,
+ * 		其他方法使用展开参数的 MethodHandle, 都无法生成时使用 Method.invoke
+ *
+ * @author helyho
+ *
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class AccessorFactory {
+	private static Map<Field, FieldAccessor> fieldAccessors = new ConcurrentHashMap<Field, FieldAccessor>();
+	private static Map<Method, MethodInvoker> methodInvokers = new ConcurrentHashMap<Method, MethodInvoker>();
+
+	private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+	//用于构造拥有私有访问权限的 Lookup, 不可用时为 null
+	private static final Constructor<MethodHandles.Lookup> LOOKUP_CONSTRUCTOR = getLookupConstructor();
+
+	/**
+	 * 获取属性访问器
+	 * @param field 属性对象
+	 * @return 属性访问器
+	 */
+	public static FieldAccessor getFieldAccessor(Field field) {
+		FieldAccessor fieldAccessor = fieldAccessors.get(field);
+		if (fieldAccessor == null) {
+			fieldAccessor = new FieldAccessor(field);
+			fieldAccessors.put(field, fieldAccessor);
+		}
+		return fieldAccessor;
+	}
+
+	/**
+	 * 获取方法调用器
+	 * @param method 方法对象
+	 * @return 方法调用器
+	 */
+	public static MethodInvoker getMethodInvoker(Method method) {
+		MethodInvoker methodInvoker = methodInvokers.get(method);
+		if (methodInvoker == null) {
+			methodInvoker = createMethodInvoker(method);
+			methodInvokers.put(method, methodInvoker);
+		}
+		return methodInvoker;
+	}
+
+	/**
+	 * 生成方法调用器
+	 * @param method 方法对象
+	 * @return 方法调用器
+	 */
+	private static MethodInvoker createMethodInvoker(Method method) {
+		method.setAccessible(true);
+
+		if (!Modifier.isStatic(method.getModifiers()) && !method.isVarArgs() && method.getParameterTypes().length <= 1) {
+			MethodHandles.Lookup lookup = getLookup(method.getDeclaringClass(), method.getModifiers());
+			if (lookup != null) {
+				try {
+					return createLambdaInvoker(lookup, method);
+				} catch (Throwable e) {
+					//无法生成时使用 MethodHandle
+				}
+			}
+		}
+
+		try {
+			return new HandleInvoker(method);
+		} catch (Throwable e) {
+			return new ReflectInvoker(method);
+		}
+	}
+
+	/**
+	 * 通过 LambdaMetafactory 生成直接调用方法的调用器
+	 * @param lookup 拥有方法访问权限的 Lookup
+	 * @param method 方法对象
+	 * @return 方法调用器
+	 * @throws Throwable 生成失败
+	 */
+	private static MethodInvoker createLambdaInvoker(MethodHandles.Lookup lookup, Method method) throws Throwable {
+		MethodHandle handle = lookup.unreflect(method);
+		Class<?> declaringClass = method.getDeclaringClass();
+		Class<?>[] parameterTypes = method.getParameterTypes();
+		Class<?> returnType = method.getReturnType();
+		MethodType instantiatedType = MethodType.methodType(returnType, declaringClass, parameterTypes).wrap();
+
+		if (returnType == void.class) {
+			instantiatedType = instantiatedType.changeReturnType(void.class);
+			if (parameterTypes.length == 0) {
+				Consumer<Object> consumer = (Consumer<Object>) LambdaMetafactory.metafactory(lookup, "accept",
+						MethodType.methodType(Consumer.class), MethodType.methodType(void.class, Object.class),
+						handle, instantiatedType).getTarget().invoke();
+				return new ConsumerInvoker(method, consumer);
+			} else {
+				BiConsumer<Object, Object> consumer = (BiConsumer<Object, Object>) LambdaMetafactory.metafactory(lookup, "accept",
+						MethodType.methodType(BiConsumer.class), MethodType.methodType(void.class, Object.class, Object.class),
+						handle, instantiatedType).getTarget().invoke();
+				return new BiConsumerInvoker(method, consumer);
+			}
+		} else {
+			if (parameterTypes.length == 0) {
+				Function<Object, Object> function = (Function<Object, Object>) LambdaMetafactory.metafactory(lookup, "apply",
+						MethodType.methodType(Function.class), MethodType.methodType(Object.class, Object.class),
+						handle, instantiatedType).getTarget().invoke();
+				return new FunctionInvoker(method, function);
+			} else {
+				BiFunction<Object, Object, Object> function = (BiFunction<Object, Object, Object>) LambdaMetafactory.metafactory(lookup, "apply",
+						MethodType.methodType(BiFunction.class), MethodType.methodType(Object.class, Object.class, Object.class),
+						handle, instantiatedType).getTarget().invoke();
+				return new BiFunctionInvoker(method, function);
+			}
+		}
+	}
+
+	/**
+	 * 获取生成调用类使用的 Lookup
+	 * 		生成的类和 Lookup 的类在同一个 ClassLoader 中, 需要能够访问方法所在的类
+	 * @param declaringClass 方法所在的类
+	 * @param modifiers 方法的修饰符
+	 * @return Lookup 对象, 无法获取时返回 null
+	 */
+	private static MethodHandles.Lookup getLookup(Class<?> declaringClass, int modifiers) {
+		//公共类的公共方法, 并且当前 ClassLoader 可以加载方法所在的类时使用当前类的 Lookup
+		if (Modifier.isPublic(declaringClass.getModifiers()) && Modifier.isPublic(modifiers)) {
+			try {
+				if (Class.forName(declaringClass.getName(), false, AccessorFactory.class.getClassLoader()) == declaringClass) {
+					return LOOKUP;
+				}
+			} catch (ClassNotFoundException e) {
+				//当前 ClassLoader 无法加载, 使用方法所在的类的 Lookup
+			}
+		}
+
+		if (LOOKUP_CONSTRUCTOR != null) {
+			try {
+				return LOOKUP_CONSTRUCTOR.newInstance(declaringClass);
+			} catch (ReflectiveOperationException | RuntimeException e) {
+				return null;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * 获取 Lookup 的私有构造方法
+	 * @return 构造方法, 不可用时为 null
+	 */
+	private static Constructor<MethodHandles.Lookup> getLookupConstructor() {
+		try {
+			Constructor<MethodHandles.Lookup> constructor = MethodHandles.Lookup.class.getDeclaredConstructor(Class.class);
+			constructor.setAccessible(true);
+			return constructor;
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+	/**
+	 * 使用 Method.invoke 的调用器
+	 */
+	private static class ReflectInvoker extends MethodInvoker {
+		public ReflectInvoker(Method method) {
+			super(method);
+		}
+
+		@Override
+		public Object invoke(Object obj, Object... args) throws ReflectiveOperationException {
+			return method.invoke(obj, args);
+		}
+
+		@Override
+		protected Object directInvoke(Object obj, Object[] args) throws Throwable {
+			return method.invoke(obj, args);
+		}
+	}
+
+	/**
+	 * 使用展开参数的 MethodHandle 的调用器
+	 */
+	private static class HandleInvoker extends MethodInvoker {
+		private MethodHandle handle;
+
+		public HandleInvoker(Method method) throws IllegalAccessException {
+			super(method);
+			MethodHandle methodHandle = LOOKUP.unreflect(method).asFixedArity();
+			int parameterCount = method.getParameterTypes().length;
+			if (Modifier.isStatic(method.getModifiers())) {
+				methodHandle = MethodHandles.dropArguments(methodHandle, 0, Object.class);
+			}
+			//转换成 (Object, Object[])Object
+			handle = methodHandle.asType(MethodType.genericMethodType(parameterCount + 1))
+					.asSpreader(Object[].class, parameterCount);
+		}
+
+		@Override
+		protected Object directInvoke(Object obj, Object[] args) throws Throwable {
+			return handle.invokeExact(obj, args);
+		}
+	}
+
+	/**
+	 * 没有参数并且有返回值的方法的调用器
+	 */
+	private static class FunctionInvoker extends MethodInvoker {
+		private Function<Object, Object> function;
+
+		public FunctionInvoker(Method method, Function<Object, Object> function) {
+			super(method);
+			this.function = function;
+		}
+
+		@Override
+		protected Object directInvoke(Object obj, Object[] args) {
+			return function.apply(obj);
+		}
+	}
+
+	/**
+	 * 只有一个参数并且有返回值的方法的调用器
+	 */
+	private static class BiFunctionInvoker extends MethodInvoker {
+		private BiFunction<Object, Object, Object> function;
+
+		public BiFunctionInvoker(Method method, BiFunction<Object, Object, Object> function) {
+			super(method);
+			this.function = function;
+		}
+
+		@Override
+		protected Object directInvoke(Object obj, Object[] args) {
+			return function.apply(obj, args[0]);
+		}
+	}
+
+	/**
+	 * 没有参数并且没有返回值的方法的调用器
+	 */
+	private static class ConsumerInvoker extends MethodInvoker {
+		private Consumer<Object> consumer;
+
+		public ConsumerInvoker(Method method, Consumer<Object> consumer) {
+			super(method);
+			this.consumer = consumer;
+		}
+
+		@Override
+		protected Object directInvoke(Object obj, Object[] args) {
+			consumer.accept(obj);
+			return null;
+		}
+	}
+
+	/**
+	 * 只有一个参数并且没有返回值的方法的调用器
+	 */
+	private static class BiConsumerInvoker extends MethodInvoker {
+		private BiConsumer<Object, Object> consumer;
+
+		public BiConsumerInvoker(Method method, BiConsumer<Object, Object> consumer) {
+			super(method);
+			this.consumer = consumer;
+		}
+
+		@Override
+		protected Object directInvoke(Object obj, Object[] args) {
+			consumer.accept(obj, args[0]);
+			return null;
+		}
+	}
+}
@@ -0,0 +1,190 @@
+package org.voovan.tools.reflect;
+
+import org.voovan.tools.TUnsafe;
+import sun.misc.Unsafe;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+/**
+ * 属性访问器
+ * 		实例属性通过 Unsafe 按偏移量直接读写, 不经过 Field.get 和 Field.set.
+ * 		静态属性, volatile 属性以及类型需要转换的赋值使用 Field 完成, 异常与 Field.get 和 Field.set 一致
+ *
+ * @author helyho
+ *
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class FieldAccessor {
+	private static final Unsafe UNSAFE = TUnsafe.getUnsafe();
+
+	//属性类型的分类, 用于选择 Unsafe 的读写方法
+	private static final int OBJECT = 0;
+	private static final int INT = 1;
+	private static final int LONG = 2;
+	private static final int BOOLEAN = 3;
+	private static final int DOUBLE = 4;
+	private static final int FLOAT = 5;
+	private static final int SHORT = 6;
+	private static final int BYTE = 7;
+	private static final int CHAR = 8;
+
+	private final Field field;
+	private final Class<?> declaringClass;
+	private final Class<?> type;
+	private final int kind;
+	private final long offset;
+	private final boolean direct;
+
+	/**
+	 * 构造函数
+	 * @param field 属性对象
+	 */
+	public FieldAccessor(Field field) {
+		this.field = field;
+		this.field.setAccessible(true);
+		this.declaringClass = field.getDeclaringClass();
+		this.type = field.getType();
+		this.kind = getKind(type);
+
+		int modifiers = field.getModifiers();
+		this.direct = UNSAFE != null && !Modifier.isStatic(modifiers) && !Modifier.isVolatile(modifiers);
+		this.offset = direct ? UNSAFE.objectFieldOffset(field) : -1;
+	}
+
+	/**
+	 * 获取属性对象
+	 * @return 属性对象
+	 */
+	public Field getField() {
+		return field;
+	}
+
+	/**
+	 * 读取属性的值
+	 * @param obj 对象, 静态属性可以为 null
+	 * @return 属性的值, 基本类型返回包装类型
+	 * @throws ReflectiveOperationException 反射异常
+	 */
+	public Object get(Object obj) throws ReflectiveOperationException {
+		if (!direct) {
+			return field.get(obj);
+		}
+
+		checkObject(obj);
+		switch (kind) {
+			case INT:
+				return UNSAFE.getInt(obj, offset);
+			case LONG:
+				return UNSAFE.getLong(obj, offset);
+			case BOOLEAN:
+				return UNSAFE.getBoolean(obj, offset);
+			case DOUBLE:
+				return UNSAFE.getDouble(obj, offset);
+			case FLOAT:
+				return UNSAFE.getFloat(obj, offset);
+			case SHORT:
+				return UNSAFE.getShort(obj, offset);
+			case BYTE:
+				return UNSAFE.getByte(obj, offset);
+			case CHAR:
+				return UNSAFE.getChar(obj, offset);
+			default:
+				return UNSAFE.getObject(obj, offset);
+		}
+	}
+
+	/**
+	 * 更新属性的值
+	 * 		基本类型的属性需要值的类型与包装类型相同才直接写入, 否则使用 Field.set 完成类型放宽转换
+	 * @param obj 对象, 静态属性可以为 null
+	 * @param value 属性的值
+	 * @throws ReflectiveOperationException 反射异常
+	 */
+	public void set(Object obj, Object value) throws ReflectiveOperationException {
+		if (!direct) {
+			field.set(obj, value);
+			return;
+		}
+
+		checkObject(obj);
+		if (kind == OBJECT) {
+			if (value != null && !type.isInstance(value)) {
+				//类型不符时由 Field.set 抛出异常
+				field.set(obj, value);
+				return;
+			}
+			UNSAFE.putObject(obj, offset, value);
+		} else if (kind == INT && value instanceof Integer) {
+			UNSAFE.putInt(obj, offset, (Integer) value);
+		} else if (kind == LONG && value instanceof Long) {
+			UNSAFE.putLong(obj, offset, (Long) value);
+		} else if (kind == BOOLEAN && value instanceof Boolean) {
+			UNSAFE.putBoolean(obj, offset, (Boolean) value);
+		} else if (kind == DOUBLE && value instanceof Double) {
+			UNSAFE.putDouble(obj, offset, (Double) value);
+		} else if (kind == FLOAT && value instanceof Float) {
+			UNSAFE.putFloat(obj, offset, (Float) value);
+		} else if (kind == SHORT && value instanceof Short) {
+			UNSAFE.putShort(obj, offset, (Short) value);
+		} else if (kind == BYTE && value instanceof Byte) {
+			UNSAFE.putByte(obj, offset, (Byte) value);
+		} else if (kind == CHAR && value instanceof Character) {
+			UNSAFE.putChar(obj, offset, (Character) value);
+		} else {
+			field.set(obj, value);
+		}
+	}
+
+	/**
+	 * 获取属性类型的分类
+	 * @param type 属性类型
+	 * @return 属性类型的分类
+	 */
+	private static int getKind(Class<?> type) {
+		if (type == int.class) {
+			return INT;
+		} else if (type == long.class) {
+			return LONG;
+		} else if (type == boolean.class) {
+			return BOOLEAN;
+		} else if (type == double.class) {
+			return DOUBLE;
+		} else if (type == float.class) {
+			return FLOAT;
+		} else if (type == short.class) {
+			return SHORT;
+		} else if (type == byte.class) {
+			return BYTE;
+		} else if (type == char.class) {
+			return CHAR;
+		} else {
+			return OBJECT;
+		}
+	}
+
+	/**
+	 * 检查对象是否包含这个属性, 避免按偏移量读写其他类型的对象
+	 * @param obj 对象
+	 */
+	private void checkObject(Object obj) {
+		if (!declaringClass.isInstance(obj)) {
+			throw objectError(obj);
+		}
+	}
+
+	/**
+	 * 构造对象不包含这个属性时的异常
+	 * @param obj 对象
+	 * @return 异常对象
+	 */
+	private RuntimeException objectError(Object obj) {
+		if (obj == null) {
+			return new NullPointerException("Field " + declaringClass.getName() + "." + field.getName() + " need an object");
+		}
+		return new IllegalArgumentException("Can not access field " + declaringClass.getName() + "." + field.getName() +
+				" on " + obj.getClass().getName());
+	}
+}
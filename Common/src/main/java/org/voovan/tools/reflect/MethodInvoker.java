@@ -0,0 +1,115 @@
+package org.voovan.tools.reflect;
+
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * 方法调用器
+ * 		由 AccessorFactory 为每个方法生成一次, 参数类型与方法完全匹配时直接调用,
+ * 		需要类型放宽转换或者参数不匹配时使用 Method.invoke, 异常与 Method.invoke 一致
+ *
+ * @author helyho
+ *
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public abstract class MethodInvoker {
+	private static final Object[] EMPTY_ARGS = new Object[0];
+
+	protected Method method;
+	private Class<?> declaringClass;
+	private Class<?>[] parameterTypes;
+	//参数的包装类型, 非基本类型的参数为 null
+	private Class<?>[] wrapperTypes;
+	private boolean isStatic;
+
+	/**
+	 * 构造函数
+	 * @param method 方法对象
+	 */
+	protected MethodInvoker(Method method) {
+		this.method = method;
+		this.method.setAccessible(true);
+		this.declaringClass = method.getDeclaringClass();
+		this.parameterTypes = method.getParameterTypes();
+		this.isStatic = Modifier.isStatic(method.getModifiers());
+
+		this.wrapperTypes = new Class<?>[parameterTypes.length];
+		for (int i = 0; i < parameterTypes.length; i++) {
+			if (parameterTypes[i].isPrimitive()) {
+				wrapperTypes[i] = MethodType.methodType(parameterTypes[i]).wrap().returnType();
+			}
+		}
+	}
+
+	/**
+	 * 获取方法对象
+	 * @return 方法对象
+	 */
+	public Method getMethod() {
+		return method;
+	}
+
+	/**
+	 * 调用方法
+	 * @param obj 执行方法的对象, 静态方法可以为 null
+	 * @param args 方法参数
+	 * @return 方法返回结果, 没有返回值时为 null
+	 * @throws ReflectiveOperationException 反射异常, 方法抛出的异常包装在 InvocationTargetException 中
+	 */
+	public Object invoke(Object obj, Object... args) throws ReflectiveOperationException {
+		if (args == null) {
+			args = EMPTY_ARGS;
+		}
+
+		if (!isMatched(obj, args)) {
+			return method.invoke(obj, args);
+		}
+
+		try {
+			return directInvoke(obj, args);
+		} catch (Throwable e) {
+			throw new InvocationTargetException(e);
+		}
+	}
+
+	/**
+	 * 直接调用方法, 对象和参数已经检查过类型
+	 * @param obj 执行方法的对象
+	 * @param args 方法参数
+	 * @return 方法返回结果
+	 * @throws Throwable 方法抛出的异常
+	 */
+	protected abstract Object directInvoke(Object obj, Object[] args) throws Throwable;
+
+	/**
+	 * 对象和参数的类型是否与方法完全匹配
+	 * @param obj 执行方法的对象
+	 * @param args 方法参数
+	 * @return true: 完全匹配
+	 */
+	private boolean isMatched(Object obj, Object[] args) {
+		if (args.length != parameterTypes.length) {
+			return false;
+		}
+
+		if (!isStatic && !declaringClass.isInstance(obj)) {
+			return false;
+		}
+
+		for (int i = 0; i < args.length; i++) {
+			Object arg = args[i];
+			if (wrapperTypes[i] != null) {
+				if (arg == null || arg.getClass() != wrapperTypes[i]) {
+					return false;
+				}
+			} else if (arg != null && !parameterTypes[i].isInstance(arg)) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -15,6 +15,7 @@ import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 反射工具类
@@ -27,10 +28,15 @@ import java.util.Map.Entry;
  */
 public class TReflect {
 
-	private static Map<String, Field> fields = new HashMap<String ,Field>();
-	private static Map<String, Method> methods = new HashMap<String ,Method>();
-	private static Map<String, Field[]> fieldArrays = new HashMap<String ,Field[]>();
-	private static Map<String, Method[]> methodArrays = new HashMap<String ,Method[]>();
+	private static Map<String, Method> methods = new ConcurrentHashMap<String ,Method>();
+	private static Map<String, Field[]> fieldArrays = new ConcurrentHashMap<String ,Field[]>();
+	private static Map<String, Method[]> methodArrays = new ConcurrentHashMap<String ,Method[]>();
+	//每个类的 Field 名称索引, 查找不到的名称不缓存, 名称可能来自外部请求
+	private static Map<String, Map<String, Field>> fieldIndexes = new ConcurrentHashMap<String, Map<String, Field>>();
+	private static Map<String, Map<String, Field>> fieldIgnoreCaseIndexes = new ConcurrentHashMap<String, Map<String, Field>>();
+	//查找不到的方法, ConcurrentHashMap 不能保存 null 值, 限制数量防止无限增长
+	private static final int MISSING_CACHE_SIZE = 1024;
+	private static Set<String> missingMethods = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
 
 	/**
 	 * 获得类所有的Field
@@ -39,12 +45,10 @@ public class TReflect {
 	 * @return Field数组
 	 */
 	public static Field[] getFields(Class<?> clazz) {
-		String mark = clazz.getCanonicalName();
-		Field[] fields = null;
+		String mark = clazz.getName();
+		Field[] fields = fieldArrays.get(mark);
 
-		if(fieldArrays.containsKey(mark)){
-			fields = fieldArrays.get(mark);
-		}else {
+		if(fields == null){
 			ArrayList<Field> fieldArray = new ArrayList<Field>();
 			for (; clazz!=null && clazz != Object.class; clazz = clazz.getSuperclass()) {
 				Field[] tmpFields = clazz.getDeclaredFields();
@@ -69,27 +73,7 @@ public class TReflect {
 	 */
 	public static Field findField(Class<?> clazz, String fieldName)
 			throws ReflectiveOperationException {
-
-		String mark = clazz.getCanonicalName()+"#"+fieldName;
-
-        if(fields.containsKey(mark)){
-            return fields.get(mark);
-        }else {
-            Field field = null;
-
-            for (; clazz!=null && clazz != Object.class; clazz = clazz.getSuperclass()) {
-                try {
-                    field = clazz.getDeclaredField(fieldName);
-                    break;
-                }catch(ReflectiveOperationException e){
-                    field = null;
-                }
-            }
-
-            fields.put(mark, field);
-
-            return field;
-        }
+		return getFieldIndex(clazz, false).get(fieldName);
 	}
 
 	/**
@@ -102,20 +86,32 @@ public class TReflect {
      */
 	public static Field findFieldIgnoreCase(Class<?> clazz, String fieldName)
 			throws ReflectiveOperationException{
+		return fieldName == null ? null : getFieldIndex(clazz, true).get(fieldName.toLowerCase());
+	}
 
-		String mark = clazz.getCanonicalName()+"#"+fieldName;
+	/**
+	 * 获取类的 Field 名称索引
+	 * 		子类的 Field 优先, 与逐级调用 getDeclaredField 的结果一致
+	 * @param clazz      类对象
+	 * @param ignoreCase 是否使用小写的名称作为索引
+	 * @return Field 名称和 Field 对象的 Map
+	 */
+	private static Map<String, Field> getFieldIndex(Class<?> clazz, boolean ignoreCase) {
+		Map<String, Map<String, Field>> indexes = ignoreCase ? fieldIgnoreCaseIndexes : fieldIndexes;
+		String mark = clazz.getName();
 
-		if(fields.containsKey(mark)){
-			return fields.get(mark);
-		}else {
+		Map<String, Field> index = indexes.get(mark);
+		if(index == null) {
+			index = new HashMap<String, Field>();
 			for (Field field : getFields(clazz)) {
-				if (field.getName().equalsIgnoreCase(fieldName)) {
-					fields.put(mark, field);
-					return field;
+				String name = ignoreCase ? field.getName().toLowerCase() : field.getName();
+				if(!index.containsKey(name)) {
+					index.put(name, field);
 				}
 			}
+			indexes.put(mark, index);
 		}
-		return null;
+		return index;
 	}
 
 	/**
@@ -168,8 +164,7 @@ public class TReflect {
 	static public <T> T getFieldValue(Object obj, String fieldName)
 			throws ReflectiveOperationException {
 		Field field = findField(obj.getClass(), fieldName);
-		field.setAccessible(true);
-		return (T) field.get(obj);
+		return (T) AccessorFactory.getFieldAccessor(field).get(obj);
 	}
 
 	/**
@@ -184,8 +179,7 @@ public class TReflect {
 	public static void setFieldValue(Object obj, String fieldName,
 			Object fieldValue) throws ReflectiveOperationException {
 		Field field = findField(obj.getClass(), fieldName);
-		field.setAccessible(true);
-		field.set(obj, fieldValue);
+		AccessorFactory.getFieldAccessor(field).set(obj, fieldValue);
 	}
 
 	/**
@@ -203,7 +197,7 @@ public class TReflect {
 			if (!Modifier.isStatic(field.getModifiers()) &&
 					field.getAnnotation(NotJSON.class)==null &&
 					field.getAnnotation(NotSerialization.class)==null) {
-				Object value = getFieldValue(obj, field.getName());
+				Object value = AccessorFactory.getFieldAccessor(field).get(obj);
 				result.put(field, value);
 			}
 		}
@@ -220,16 +214,15 @@ public class TReflect {
 	 */
 	public static Method findMethod(Class<?> clazz, String name,
 									Class<?>... paramTypes) throws ReflectiveOperationException {
-		String mark = clazz.getCanonicalName()+"#"+name;
+		String mark = clazz.getName()+"#"+name;
 		for(Class<?> paramType : paramTypes){
-			mark = mark + "$" + paramType.getCanonicalName();
+			mark = mark + "$" + paramType.getName();
 		}
 
-		if(methods.containsKey(mark)){
-			return methods.get(mark);
+		Method method = methods.get(mark);
+		if(method != null || missingMethods.contains(mark)){
+			return method;
 		}else {
-			Method method = null;
-
 			for (; clazz!=null && clazz != Object.class; clazz = clazz.getSuperclass()) {
 				try {
 					method = clazz.getDeclaredMethod(name, paramTypes);
@@ -239,7 +232,11 @@ public class TReflect {
 				}
 			}
 
-			methods.put(mark, method);
+			if(method != null) {
+				methods.put(mark, method);
+			} else if(missingMethods.size() < MISSING_CACHE_SIZE) {
+				missingMethods.add(mark);
+			}
 			return method;
 		}
 	}
@@ -254,13 +251,10 @@ public class TReflect {
 	 */
 	public static Method[] findMethod(Class<?> clazz, String name,
 									int paramCount) throws ReflectiveOperationException {
-		Method[] methods = null;
-
-		String mark = clazz.getCanonicalName()+"#"+name+"@"+paramCount;
+		String mark = clazz.getName()+"#"+name+"@"+paramCount;
 
-		if(methodArrays.containsKey(mark)){
-			return methodArrays.get(mark);
-		} else {
+		Method[] methods = methodArrays.get(mark);
+		if(methods == null) {
 			ArrayList<Method> methodList = new ArrayList<Method>();
 			Method[] allMethods = getMethods(clazz, name);
 			for (Method method : allMethods) {
@@ -283,13 +277,10 @@ public class TReflect {
      */
 	public static Method[] getMethods(Class<?> clazz) {
 
-		Method[] methods = null;
-
-		String mark = clazz.getCanonicalName();
+		String mark = clazz.getName();
 
-		if(methodArrays.containsKey(mark)){
-			return methodArrays.get(mark);
-		} else {
+		Method[] methods = methodArrays.get(mark);
+		if(methods == null) {
 			List<Method> methodList = new ArrayList<Method>();
 			for (; clazz!=null && clazz != Object.class; clazz = clazz.getSuperclass()) {
 				Method[] tmpMethods = clazz.getDeclaredMethods();
@@ -311,13 +302,10 @@ public class TReflect {
 	 */
 	public static Method[] getMethods(Class<?> clazz,String name) {
 
-		Method[] methods = null;
+		String mark = clazz.getName()+"#"+name;
 
-		String mark = clazz.getCanonicalName()+"#"+name;
-
-		if(methodArrays.containsKey(mark)){
-			return methodArrays.get(mark);
-		} else {
+		Method[] methods = methodArrays.get(mark);
+		if(methods == null) {
 			ArrayList<Method> methodList = new ArrayList<Method>();
 			Method[] allMethods = getMethods(clazz);
 			for (Method method : allMethods) {
@@ -365,7 +353,7 @@ public class TReflect {
 	 */
 	public static Object invokeMethod(Object obj, Method method, Object... parameters)
 			throws ReflectiveOperationException {
-		return method.invoke(obj, parameters);
+		return AccessorFactory.getMethodInvoker(method).invoke(obj, parameters);
 	}
 
 	/**
@@ -385,8 +373,7 @@ public class TReflect {
 		Class objClass = (obj instanceof Class) ? (Class)obj : obj.getClass();
 		try {
 			 method = findMethod(objClass, name, parameterTypes);
-			 method.setAccessible(true);
-			 return method.invoke(obj, args);
+			 return AccessorFactory.getMethodInvoker(method).invoke(obj, args);
 		}catch(Exception e){
 			Exception lastExecption = e;
 
@@ -435,8 +422,7 @@ public class TReflect {
 								}
 							}
 							method = similarMethod;
-							method.setAccessible(true);
-							return method.invoke(obj, convertedParams);
+							return AccessorFactory.getMethodInvoker(method).invoke(obj, convertedParams);
 						} catch (Exception ex) {
 							lastExecption = (Exception) ex.getCause();
 							continue;
@@ -756,7 +742,7 @@ public class TReflect {
 										value.getClass().getName());
 							}
 						}
-						setFieldValue(obj, fieldName, value);
+						AccessorFactory.getFieldAccessor(field).set(obj, value);
 					}catch(Exception e){
 						throw new ReflectiveOperationException("Fill object " + obj.getClass().getCanonicalName() +
 								"#"+fieldName+" failed",e);
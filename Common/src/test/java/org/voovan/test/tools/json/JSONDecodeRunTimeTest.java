@@ -0,0 +1,84 @@
+package org.voovan.test.tools.json;
+
+import org.voovan.tools.json.JSON;
+import org.voovan.tools.json.JSONDecode;
+import org.voovan.tools.json.JSONTokenizer;
+import org.voovan.tools.log.Logger;
+
+import java.text.ParseException;
+
+/**
+ * JSON 解析性能测试
+ * 		分别测试 TestObject 的 JSON 字符串的词法分析, 解析成 Map 和解析成 TestObject 的耗时,
+ * 		同时测试 LegacyJSONDecode 中旧的实现作为对比
+ *
+ * @author helyho
+ *
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class JSONDecodeRunTimeTest {
+	private static final int WARMUP = 20000;
+	private static final int COUNT = 200000;
+
+	public static void main(String[] args) throws ParseException, ReflectiveOperationException {
+		TestObject testObject = new TestObject();
+		testObject.setString("helyho");
+		testObject.setBint(32);
+		testObject.getList().add("listitem1");
+		testObject.getList().add("listitem2");
+		testObject.getList().add("listitem3");
+		testObject.getMap().put("mapitem1", "mapitem1");
+		testObject.getMap().put("mapitem2", "mapitem2");
+		testObject.getTb2().setString("bingo");
+		testObject.getTb2().setBint(56);
+		testObject.getTb2().getList().add("tb2 list item");
+		testObject.getTb2().getMap().put("tb2 map item", "tb2 map item");
+
+		String jsonString = JSON.toJSON(testObject);
+		Logger.simple(jsonString);
+
+		for (int round = 0; round < 2; round++) {
+			int count = round == 0 ? WARMUP : COUNT;
+
+			long start = System.nanoTime();
+			for (int i = 0; i < count; i++) {
+				JSONTokenizer tokenizer = new JSONTokenizer(jsonString);
+				while (tokenizer.next() != JSONTokenizer.END) {
+				}
+			}
+			long tokenizeTime = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (int i = 0; i < count; i++) {
+				JSONDecode.parse(jsonString);
+			}
+			long parseTime = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (int i = 0; i < count; i++) {
+				JSON.toObject(jsonString, TestObject.class);
+			}
+			long toObjectTime = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (int i = 0; i < count; i++) {
+				LegacyJSONDecode.parse(jsonString);
+			}
+			long legacyParseTime = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (int i = 0; i < count; i++) {
+				LegacyJSONDecode.fromJSON(jsonString, TestObject.class, false);
+			}
+			long legacyToObjectTime = System.nanoTime() - start;
+
+			if (round > 0) {
+				Logger.simple("----Tokenize:    " + tokenizeTime / count + " ns/op");
+				Logger.simple("----Parse Map:   " + parseTime / count + " ns/op, legacy: " + legacyParseTime / count + " ns/op");
+				Logger.simple("----Parse Object:" + toObjectTime / count + " ns/op, legacy: " + legacyToObjectTime / count + " ns/op");
+			}
+		}
+	}
+}
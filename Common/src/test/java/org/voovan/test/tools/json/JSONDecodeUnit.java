@@ -2,10 +2,18 @@ package org.voovan.test.tools.json;
 
 import junit.framework.TestCase;
 import org.voovan.tools.TObject;
+import org.voovan.tools.json.JSON;
+import org.voovan.tools.json.JSONBinder;
 import org.voovan.tools.json.JSONDecode;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 public class JSONDecodeUnit extends TestCase {
 
@@ -68,4 +76,122 @@ public class JSONDecodeUnit extends TestCase {
 
 	}
 
+	public void testBindIgnoreCase() throws Exception{
+		String jsonString = "{\"BINT\":32, \"Unknown\":{\"a\":[1,2]}, \"TB2\":{\"Bint\":\"56\", \"List\":[\"item1\", \"item2\"]}}";
+
+		TestObject object = JSONDecode.fromJSON(jsonString, TestObject.class, true);
+		assertEquals(32, object.getBint());
+		assertEquals(56, object.getTb2().getBint());
+		assertEquals(2, object.getTb2().getList().size());
+		assertEquals("item2", object.getTb2().getList().get(1));
+
+		object = JSONDecode.fromJSON(jsonString, TestObject.class, false);
+		assertEquals(0, object.getBint());
+	}
+
+	public void testBindNestedObject() throws Exception{
+		String jsonString = "{\"name\":\"root\", \"child\":{\"name\":\"child\", \"child\":{\"name\":\"leaf\"}}, " +
+				"\"extra\":{\"a\":[1, {\"b\":2}]}}";
+
+		BindObject object = JSONDecode.fromJSON(jsonString, BindObject.class);
+		assertEquals("root", object.name);
+		assertEquals("child", object.child.name);
+		assertEquals("leaf", object.child.child.name);
+		assertNull(object.child.child.child);
+
+		//Object 类型的属性解析成 Map 和 List
+		Map<String, Object> extra = TObject.cast(object.extra);
+		List<Object> a = TObject.cast(extra.get("a"));
+		assertEquals(1, a.get(0));
+		assertEquals(2, ((Map<?, ?>) a.get(1)).get("b"));
+	}
+
+	public void testBindSetAndSortedMap() throws Exception{
+		String jsonString = "{\"ids\":[3, 1, 3, 2], \"scores\":{\"b\":\"2\", \"a\":1, \"c\":3}}";
+
+		BindObject object = JSONDecode.fromJSON(jsonString, BindObject.class);
+		assertEquals(3, object.ids.size());
+		assertTrue(object.ids.containsAll(Arrays.asList(1, 2, 3)));
+
+		assertTrue(object.scores instanceof TreeMap);
+		assertEquals(Arrays.asList("a", "b", "c"), Arrays.asList(object.scores.keySet().toArray()));
+		assertEquals(Integer.valueOf(2), object.scores.get("b"));
+	}
+
+	public void testBindPrimitiveArray() throws Exception{
+		String jsonString = "{\"values\":[1, 2, 3], \"ratios\":[0.5, 1, 2.25], \"names\":[\"a\", \"b\"]}";
+
+		BindObject object = JSONDecode.fromJSON(jsonString, BindObject.class);
+		assertTrue(Arrays.equals(new int[]{1, 2, 3}, object.values));
+		assertTrue(Arrays.equals(new double[]{0.5, 1, 2.25}, object.ratios));
+		assertTrue(Arrays.equals(new String[]{"a", "b"}, object.names));
+
+		int[] values = JSONDecode.fromJSON("[4, 5]", int[].class);
+		assertTrue(Arrays.equals(new int[]{4, 5}, values));
+	}
+
+	public void testBindObjectList() throws Exception{
+		String jsonString = "{\"items\":[1, 12345678901, 1.5, \"text\", true, {\"k\":\"v\"}, [1, 2], null]}";
+
+		//List<Object> 的元素保持解析后的类型, null 元素被忽略
+		BindObject object = JSONDecode.fromJSON(jsonString, BindObject.class);
+		assertEquals(7, object.items.size());
+		assertEquals(1, object.items.get(0));
+		assertEquals(12345678901L, object.items.get(1));
+		assertEquals(1.5F, object.items.get(2));
+		assertEquals("text", object.items.get(3));
+		assertEquals(Boolean.TRUE, object.items.get(4));
+		assertEquals("v", ((Map<?, ?>) object.items.get(5)).get("k"));
+		assertEquals(2, ((List<?>) object.items.get(6)).size());
+	}
+
+	public void testBindNullToPrimitive() throws Exception{
+		BindObject object = JSONDecode.fromJSON("{\"count\":null, \"flag\":null, \"name\":null}", BindObject.class);
+		assertEquals(7, object.count);
+		assertTrue(object.flag);
+		assertNull(object.name);
+
+		Map<String, Object> parsed = TObject.cast(JSONDecode.parse("{\"count\":null}"));
+		object = JSONBinder.fromParsed(parsed, BindObject.class, false);
+		assertEquals(7, object.count);
+	}
+
+	public void testBindBigNumber() throws Exception{
+		String jsonString = "{\"amount\":12345678901234567890.123456789, \"big\":123456789012345678901234567890, " +
+				"\"price\":\"0.10\"}";
+
+		BindObject object = JSONDecode.fromJSON(jsonString, BindObject.class);
+		assertEquals(new BigDecimal("12345678901234567890.123456789"), object.amount);
+		assertEquals(new BigInteger("123456789012345678901234567890"), object.big);
+		assertEquals(new BigDecimal("0.10"), object.price);
+
+		//编码后再解析, 数值和精度不变
+		BindObject result = JSONDecode.fromJSON(JSON.toJSON(object), BindObject.class);
+		assertEquals(object.amount, result.amount);
+		assertEquals(object.big, result.big);
+		assertEquals(object.price, result.price);
+
+		//已经解析的值绑定到大数类型
+		Map<String, Object> parsed = TObject.cast(JSONDecode.parse("{\"amount\":1.25, \"big\":42}"));
+		object = JSONBinder.fromParsed(parsed, BindObject.class, false);
+		assertEquals(new BigDecimal("1.25"), object.amount);
+		assertEquals(BigInteger.valueOf(42), object.big);
+	}
+
+	public static class BindObject {
+		private String name;
+		private BindObject child;
+		private Object extra;
+		private Set<Integer> ids;
+		private SortedMap<String, Integer> scores;
+		private int[] values;
+		private double[] ratios;
+		private String[] names;
+		private List<Object> items;
+		private int count = 7;
+		private boolean flag = true;
+		private BigDecimal amount;
+		private BigInteger big;
+		private BigDecimal price;
+	}
 }
@@ -6,6 +6,14 @@ import org.voovan.tools.json.JSON;
 import org.voovan.tools.json.JSONDecode;
 import org.voovan.tools.json.JSONEncode;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.TreeSet;
+
 public class JSONEncodeUnit extends TestCase {
 
 	public JSONEncodeUnit(String name) {
@@ -38,4 +46,100 @@ public class JSONEncodeUnit extends TestCase {
 		assertEquals(jsonStr,targetStr);
 
 	}
+
+	public void testEnum() throws Exception{
+		assertEquals("\"GREEN\"", JSONEncode.fromObject(Color.GREEN));
+
+		EncodeObject object = new EncodeObject();
+		object.color = Color.RED;
+		String jsonStr = JSONEncode.fromObject(object);
+		assertTrue(jsonStr, jsonStr.contains("\"color\":\"RED\""));
+		assertEquals(Color.RED, JSONDecode.fromJSON(jsonStr, EncodeObject.class).color);
+	}
+
+	public void testSetAndPrimitiveArray() throws Exception{
+		assertEquals("[\"b\",\"a\"]", JSONEncode.fromObject(new LinkedHashSet<String>(Arrays.asList("b", "a"))));
+		assertEquals("[1,2,3]", JSONEncode.fromObject(new TreeSet<Integer>(Arrays.asList(3, 1, 2))));
+
+		assertEquals("[1,2,3]", JSONEncode.fromObject(new int[]{1, 2, 3}));
+		assertEquals("[1,-2]", JSONEncode.fromObject(new long[]{1, -2}));
+		assertEquals("[0.5,1.0]", JSONEncode.fromObject(new double[]{0.5, 1}));
+		assertEquals("[true,false]", JSONEncode.fromObject(new boolean[]{true, false}));
+		assertEquals("[]", JSONEncode.fromObject(new int[0]));
+		assertEquals("[[1],[2,3]]", JSONEncode.fromObject(new int[][]{{1}, {2, 3}}));
+	}
+
+	public void testBigNumber() throws Exception{
+		assertEquals("12345678901234567890.123456789", JSONEncode.fromObject(new BigDecimal("12345678901234567890.123456789")));
+		assertEquals("123456789012345678901234567890", JSONEncode.fromObject(new BigInteger("123456789012345678901234567890")));
+
+		EncodeObject object = new EncodeObject();
+		object.amount = new BigDecimal("0.10");
+		object.big = BigInteger.TEN;
+		String jsonStr = JSONEncode.fromObject(object);
+		assertTrue(jsonStr, jsonStr.contains("\"amount\":0.10"));
+		assertTrue(jsonStr, jsonStr.contains("\"big\":10"));
+	}
+
+	public void testNestedFromObject() throws Exception{
+		Map<String, Object> map = new LinkedHashMap<String, Object>();
+		map.put("a", "x");
+		map.put("n", new NestedNumber(42));
+		map.put("b", "y");
+
+		//转换过程中再次调用 fromObject 时使用新的 StringBuilder, 外层的结果不受影响
+		assertEquals("{\"a\":\"x\",\"n\":42,\"b\":\"y\"}", JSONEncode.fromObject(map));
+		assertEquals("\"z\"", JSONEncode.fromObject("z"));
+	}
+
+	public enum Color {
+		RED, GREEN
+	}
+
+	public static class EncodeObject {
+		private Color color;
+		private BigDecimal amount;
+		private BigInteger big;
+	}
+
+	/**
+	 * toString 中调用 JSONEncode.fromObject 的数字类型
+	 */
+	public static class NestedNumber extends Number {
+		private static final long serialVersionUID = 1L;
+		private long value;
+
+		public NestedNumber(long value) {
+			this.value = value;
+		}
+
+		@Override
+		public int intValue() {
+			return (int) value;
+		}
+
+		@Override
+		public long longValue() {
+			return value;
+		}
+
+		@Override
+		public float floatValue() {
+			return value;
+		}
+
+		@Override
+		public double doubleValue() {
+			return value;
+		}
+
+		@Override
+		public String toString() {
+			try {
+				return JSONEncode.fromObject(value);
+			} catch (ReflectiveOperationException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+	}
 }
@@ -0,0 +1,57 @@
+package org.voovan.test.tools.json;
+
+import junit.framework.TestCase;
+import org.voovan.tools.json.JSONPath;
+import org.voovan.tools.json.JSONPathExpression;
+
+import java.util.List;
+import java.util.Map;
+
+public class JSONPathUnit extends TestCase {
+
+	public static class Port {
+		private String protocol;
+		private int targetPort;
+		private int publishedPort;
+	}
+
+	public JSONPathUnit(String name) {
+		super(name);
+	}
+
+	public void testValue() throws Exception {
+		JSONPath jsonPath = new JSONPath(JSONPathTest.tmpStr);
+		assertEquals(108573, jsonPath.value("/[0]/Version/Index"));
+		assertEquals("127.0.0.1", jsonPath.value("/[0]/Spec/TaskTemplate/ContainerSpec/Args[1]"));
+		assertNull(jsonPath.value("/[0]/Spec/NotExists/Name"));
+		assertNull(jsonPath.value("/[3]/Spec"));
+		assertEquals("default", jsonPath.value("/[0]/Spec/Name/Child", "default"));
+
+		Port port = jsonPath.value("/[0]/Endpoint/Ports[0]", Port.class);
+		assertEquals("tcp", port.protocol);
+		assertEquals(8080, port.publishedPort);
+
+		List<Port> ports = jsonPath.listObject("/[0]/Endpoint/Spec/Ports", Port.class);
+		assertEquals(1, ports.size());
+		assertEquals(80, ports.get(0).targetPort);
+
+		assertSame(JSONPathExpression.compile("/[0]/Version/Index"), JSONPathExpression.compile("/[0]/Version/Index"));
+	}
+
+	@SuppressWarnings("rawtypes")
+	public void testExtract() throws Exception {
+		JSONPath jsonPath = new JSONPath(JSONPathTest.tmpStr);
+		String[] paths = new String[]{"/[0]/Version/Index", "/[0]/Spec/TaskTemplate/ContainerSpec/Args[1]",
+				"/[0]/Endpoint/VirtualIPs", "/[0]/Spec/Mode", "/[0]/Spec/Unknown", "/[0]/Spec/Networks[1]"};
+		for (String path : paths) {
+			Object value = JSONPathExpression.compile(path).extract(JSONPathTest.tmpStr, Object.class);
+			assertEquals(path, jsonPath.value(path), value);
+		}
+
+		Port port = JSONPathExpression.compile("/[0]/Endpoint/Ports[0]").extract(JSONPathTest.tmpStr, Port.class);
+		assertEquals(80, port.targetPort);
+
+		List virtualIPs = JSONPathExpression.compile("[0]/Endpoint/VirtualIPs").extract(JSONPathTest.tmpStr, List.class);
+		assertEquals("10.0.0.2/24", ((Map) virtualIPs.get(1)).get("Addr"));
+	}
+}
@@ -0,0 +1,182 @@
+package org.voovan.test.tools.log;
+
+import junit.framework.TestCase;
+import org.voovan.tools.TDateTime;
+import org.voovan.tools.log.Formater;
+import org.voovan.tools.log.Logger;
+import org.voovan.tools.log.LoggerThread;
+import org.voovan.tools.log.Message;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * 日志格式化测试
+ * 		逐个检查模板中的 Token, 以及日志调用方的栈信息
+ *
+ * @author helyho
+ *
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class FormaterUnit extends TestCase {
+
+	public void testWhitespaceTokens() {
+		assertEquals("a b\tc\r\nd", format("a{{s}}b{{t}}c{{n}}d", "INFO", "msg"));
+	}
+
+	public void testLevel() {
+		assertEquals("[WARN]", format("[{{P}}]", "WARN", "msg"));
+		//没有级别时输出 INFO
+		assertEquals("[INFO]", format("[{{P}}]", null, "msg"));
+	}
+
+	public void testMessageIndent() {
+		String indent = indent();
+		assertEquals(indent + "msg", format("{{I}}", "INFO", "msg"));
+		assertEquals(indent + "line1\n" + indent + "line2", format("{{I}}", "INFO", "line1\nline2"));
+		assertEquals("<" + indent + "msg>", format("<{{I}}>", "INFO", "msg"));
+	}
+
+	public void testTokenInMessage() {
+		//消息中的 Token 同样会被替换, 消息中的 {{I}} 不会递归替换消息本身
+		assertEquals(indent() + "a b[INFO]", format("{{I}}", "INFO", "a{{s}}b[{{P}}]{{I}}"));
+	}
+
+	public void testUnknownToken() {
+		//未定义的 Token 和不完整的 Token 原样输出
+		assertEquals("{{X}} {{P", format("{{X}}{{s}}{{P", "INFO", "msg"));
+		assertEquals("plain text", format("plain text", "INFO", "msg"));
+		assertEquals("", format("", "INFO", "msg"));
+	}
+
+	public void testThread() {
+		Thread currentThread = Thread.currentThread();
+		assertEquals(currentThread.getName() + " : " + currentThread.getId(), format("{{T}}", "INFO", "msg"));
+	}
+
+	public void testDate() {
+		//与 TDateTime 按 "YYYY-MM-dd HH:mm:ss:SS z" 格式化的结果一致
+		for (int i = 0; i < 20; i++) {
+			long startTime = System.currentTimeMillis();
+			String date = format("{{D}}", "INFO", "msg");
+			long endTime = System.currentTimeMillis();
+
+			boolean matched = false;
+			for (long time = startTime; time <= endTime && !matched; time++) {
+				matched = date.equals(TDateTime.format(new Date(time), "YYYY-MM-dd HH:mm:ss:SS z"));
+			}
+			assertTrue(date, matched);
+			sleep(7);
+		}
+	}
+
+	public void testRunTime() {
+		String runTime = format("{{R}}", "INFO", "msg");
+		assertTrue(runTime, Long.parseLong(runTime) >= 0);
+	}
+
+	public void testCallerFrame() {
+		Formater formater = new Formater("{{F}}|{{L}}|{{M}}|{{C}}|{{SI}}");
+		int line = new Throwable().getStackTrace()[0].getLineNumber() + 1;
+		String result = formater.format(new Message("INFO", "msg"));
+
+		//调用 Formater 的方法所在的栈元素
+		StackTraceElement expected = new StackTraceElement(FormaterUnit.class.getName(), "testCallerFrame", "FormaterUnit.java", line);
+		assertEquals("FormaterUnit.java|" + line + "|testCallerFrame|" + FormaterUnit.class.getName() + "|" + expected, result);
+	}
+
+	public void testLogTokens() {
+		Formater formater = new Formater("");
+		int line = new Throwable().getStackTrace()[0].getLineNumber() + 1;
+		Map<String, String> tokens = formater.newLogtokens(new Message("ERROR", "msg"));
+
+		assertEquals(" ", tokens.get("s"));
+		assertEquals("\t", tokens.get("t"));
+		assertEquals("\r\n", tokens.get("n"));
+		assertTrue(tokens.get("I").endsWith("msg"));
+		assertEquals("ERROR", tokens.get("P"));
+		assertEquals("FormaterUnit.java", tokens.get("F"));
+		assertEquals(String.valueOf(line), tokens.get("L"));
+		assertEquals("testLogTokens", tokens.get("M"));
+		assertEquals(FormaterUnit.class.getName(), tokens.get("C"));
+	}
+
+	public void testSimpleFormat() {
+		Formater formater = new Formater("[{{P}}] {{I}}");
+		String indent = indent();
+
+		//消息本身作为模板, 不使用 Formater 的模板
+		assertEquals(indent + indent + "a b", formater.simpleFormat(new Message("SIMPLE", "a{{s}}b")));
+	}
+
+	public void testLoggerCaller() throws Exception {
+		Field formaterField = Logger.class.getDeclaredField("formater");
+		formaterField.setAccessible(true);
+		Formater formater = (Formater) formaterField.get(null);
+		Logger.simple("FormaterUnit start");
+		LoggerThread loggerThread = formater.getLoggerThread();
+		assertNotNull(loggerThread);
+
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		loggerThread.setOutputStreams(new OutputStream[]{outputStream});
+		try {
+			for (int i = 0; i < 500 && loggerThread.getOutputStreams()[0] != outputStream; i++) {
+				sleep(10);
+			}
+
+			int line = new Throwable().getStackTrace()[0].getLineNumber() + 1;
+			Logger.info("FormaterUnit caller");
+			for (int i = 0; i < 500 && !outputStream.toString().contains("FormaterUnit caller"); i++) {
+				sleep(10);
+			}
+
+			//日志的调用方是 Logger 的调用方, 而不是 Logger 或者 Formater
+			String log = outputStream.toString();
+			assertTrue(log, log.contains("FormaterUnit caller"));
+			assertTrue(log, log.contains("(FormaterUnit.java:" + line + ")"));
+		} finally {
+			loggerThread.setOutputStreams(ConfigFormater.configOutputStreams());
+		}
+	}
+
+	private static String format(String template, String level, String message) {
+		return new Formater(template).format(new Message(level, message));
+	}
+
+	/**
+	 * 获取日志配置中的消息缩进
+	 * 		格式化单行消息后去掉消息本身
+	 * @return 缩进字符串
+	 */
+	private static String indent() {
+		String message = format("{{I}}", "INFO", "msg");
+		assertTrue(message.endsWith("msg"));
+		return message.substring(0, message.length() - 3);
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * 用于恢复日志配置中的输出流
+	 */
+	private static class ConfigFormater extends Formater {
+		private ConfigFormater() {
+			super("");
+		}
+
+		private static OutputStream[] configOutputStreams() {
+			return getOutputStreams();
+		}
+	}
+}
@@ -0,0 +1,198 @@
+package org.voovan.test.tools.log;
+
+import junit.framework.TestCase;
+import org.voovan.tools.log.LoggerThread;
+import org.voovan.tools.log.LoggerThread.OverflowPolicy;
+import org.voovan.tools.log.RollingFileOutputStream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 日志输出线程测试
+ * 		队列上限、溢出策略和按大小滚动的日志文件
+ *
+ * @author helyho
+ *
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class LoggerThreadUnit extends TestCase {
+
+	public void testDropOldest() throws Exception {
+		GateOutputStream outputStream = new GateOutputStream(false);
+		LoggerThread loggerThread = new LoggerThread(new OutputStream[]{outputStream}, 3, OverflowPolicy.DROP_OLDEST);
+		for (int i = 1; i <= 5; i++) {
+			loggerThread.addLogMessage("m" + i + ";");
+		}
+
+		//队列已满时丢弃最早的消息
+		assertEquals(3, loggerThread.getQueueSize());
+		assertEquals(2, loggerThread.getDroppedCount());
+
+		start(loggerThread);
+		outputStream.waitFor("m3;m4;m5;");
+	}
+
+	public void testDropDebug() throws Exception {
+		GateOutputStream outputStream = new GateOutputStream(true);
+		LoggerThread loggerThread = new LoggerThread(new OutputStream[]{outputStream}, 2, OverflowPolicy.DROP_DEBUG);
+		start(loggerThread);
+		loggerThread.addLogMessage("m0;".getBytes());
+		outputStream.waitWriting();
+
+		loggerThread.addLogMessage("m1;".getBytes(), false);
+		loggerThread.addLogMessage("m2;".getBytes(), true);
+
+		//队列已满时丢弃 DEBUG 日志, 其他日志等待
+		loggerThread.addLogMessage("debug;".getBytes(), true);
+		assertEquals(1, loggerThread.getDroppedCount());
+		CountDownLatch added = addInThread(loggerThread, "m3;", false);
+		assertFalse(added.await(200, TimeUnit.MILLISECONDS));
+
+		outputStream.open();
+		assertTrue(added.await(5, TimeUnit.SECONDS));
+		outputStream.waitFor("m0;m1;m2;m3;");
+		assertEquals(1, loggerThread.getDroppedCount());
+	}
+
+	public void testBlock() throws Exception {
+		GateOutputStream outputStream = new GateOutputStream(true);
+		LoggerThread loggerThread = new LoggerThread(new OutputStream[]{outputStream}, 2, OverflowPolicy.BLOCK);
+		start(loggerThread);
+		loggerThread.addLogMessage("m0;".getBytes());
+		outputStream.waitWriting();
+
+		loggerThread.addLogMessage("m1;".getBytes());
+		loggerThread.addLogMessage("m2;".getBytes());
+
+		//队列已满时 DEBUG 日志也等待, 不丢弃消息
+		CountDownLatch added = addInThread(loggerThread, "debug;", true);
+		assertFalse(added.await(200, TimeUnit.MILLISECONDS));
+		assertEquals(2, loggerThread.getQueueSize());
+
+		outputStream.open();
+		assertTrue(added.await(5, TimeUnit.SECONDS));
+		outputStream.waitFor("m0;m1;m2;debug;");
+		assertEquals(0, loggerThread.getDroppedCount());
+	}
+
+	public void testFullQueueWithoutThread() {
+		LoggerThread loggerThread = new LoggerThread(new OutputStream[]{new ByteArrayOutputStream()}, 1, OverflowPolicy.BLOCK);
+		loggerThread.addLogMessage("m1;");
+
+		//输出线程没有运行时等待会导致死锁, 直接丢弃
+		loggerThread.addLogMessage("m2;");
+		assertEquals(1, loggerThread.getQueueSize());
+		assertEquals(1, loggerThread.getDroppedCount());
+	}
+
+	public void testRollingFile() throws IOException {
+		File dir = new File(System.getProperty("java.io.tmpdir"), "voovan-rolling-log-" + System.nanoTime());
+		dir.mkdirs();
+		String filePath = new File(dir, "sysout.log").getPath();
+		try {
+			RollingFileOutputStream outputStream = new RollingFileOutputStream(filePath, 10);
+			outputStream.write("123456".getBytes());
+			outputStream.write("123456".getBytes());
+			outputStream.write("123456".getBytes());
+			//超过上限的单次写入不拆分
+			outputStream.write("12345678901234".getBytes());
+			outputStream.close();
+
+			assertEquals(6, new File(filePath + ".1").length());
+			assertEquals(6, new File(filePath + ".2").length());
+			assertEquals(6, new File(filePath + ".3").length());
+			assertEquals(14, new File(filePath).length());
+			assertFalse(new File(filePath + ".4").exists());
+		} finally {
+			File[] files = dir.listFiles();
+			if (files != null) {
+				for (File file : files) {
+					file.delete();
+				}
+			}
+			dir.delete();
+		}
+	}
+
+	private static void start(LoggerThread loggerThread) {
+		Thread thread = new Thread(loggerThread, "LOGGER_THREAD_UNIT");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	private static CountDownLatch addInThread(final LoggerThread loggerThread, final String msg, final boolean debug) {
+		final CountDownLatch added = new CountDownLatch(1);
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				loggerThread.addLogMessage(msg.getBytes(), debug);
+				added.countDown();
+			}
+		});
+		thread.setDaemon(true);
+		thread.start();
+		return added;
+	}
+
+	/**
+	 * 可以阻塞写入的输出流, 用来模拟慢速的日志输出
+	 */
+	private static class GateOutputStream extends OutputStream {
+		private final ByteArrayOutputStream content = new ByteArrayOutputStream();
+		private final CountDownLatch writing = new CountDownLatch(1);
+		private final CountDownLatch gate = new CountDownLatch(1);
+
+		private GateOutputStream(boolean closed) {
+			if (!closed) {
+				gate.countDown();
+			}
+		}
+
+		private void open() {
+			gate.countDown();
+		}
+
+		private void waitWriting() throws InterruptedException {
+			assertTrue(writing.await(5, TimeUnit.SECONDS));
+		}
+
+		private void waitFor(String expected) throws InterruptedException {
+			for (int i = 0; i < 500 && !expected.equals(toString()); i++) {
+				Thread.sleep(10);
+			}
+			assertEquals(expected, toString());
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[]{(byte) b}, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			writing.countDown();
+			try {
+				gate.await();
+			} catch (InterruptedException e) {
+				throw new IOException(e);
+			}
+			synchronized (content) {
+				content.write(b, off, len);
+			}
+		}
+
+		@Override
+		public String toString() {
+			synchronized (content) {
+				return new String(content.toByteArray());
+			}
+		}
+	}
+}
@@ -0,0 +1,112 @@
+package org.voovan.test.tools.reflect;
+
+import junit.framework.TestCase;
+import org.voovan.tools.reflect.AccessorFactory;
+import org.voovan.tools.reflect.FieldAccessor;
+import org.voovan.tools.reflect.MethodInvoker;
+import org.voovan.tools.reflect.TReflect;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+public class AccessorFactoryUnit extends TestCase {
+
+	public static class Bean {
+		private int count = 1;
+		private long total = 2;
+		private String name = "bean";
+		private volatile boolean closed;
+
+		private int getCount() {
+			return count;
+		}
+
+		private void setCount(int count) {
+			this.count = count;
+		}
+
+		public String join(String prefix, int index, long value) {
+			return prefix + index + value;
+		}
+
+		public void fail() {
+			throw new IllegalStateException("fail");
+		}
+	}
+
+	public static class SubBean extends Bean {
+		private String name = "sub";
+	}
+
+	public AccessorFactoryUnit(String name) {
+		super(name);
+	}
+
+	public void testFieldAccessor() throws Exception {
+		Bean bean = new Bean();
+		FieldAccessor countAccessor = AccessorFactory.getFieldAccessor(Bean.class.getDeclaredField("count"));
+		assertSame(countAccessor, AccessorFactory.getFieldAccessor(Bean.class.getDeclaredField("count")));
+		assertEquals(1, countAccessor.get(bean));
+		countAccessor.set(bean, 5);
+		assertEquals(5, bean.count);
+
+		//int 放宽转换成 long
+		TReflect.setFieldValue(bean, "total", 3);
+		assertEquals(3L, bean.total);
+		TReflect.setFieldValue(bean, "name", null);
+		assertNull(bean.name);
+		TReflect.setFieldValue(bean, "closed", true);
+		assertTrue(bean.closed);
+
+		try {
+			TReflect.setFieldValue(bean, "name", 1);
+			fail("Set Integer to String field");
+		} catch (IllegalArgumentException e) {
+		}
+
+		try {
+			countAccessor.get("bean");
+			fail("Get field from other object");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	public void testFindField() throws Exception {
+		//子类的 Field 优先
+		assertEquals(SubBean.class, TReflect.findField(SubBean.class, "name").getDeclaringClass());
+		assertEquals(Bean.class, TReflect.findField(SubBean.class, "count").getDeclaringClass());
+		assertSame(TReflect.findField(SubBean.class, "name"), TReflect.findFieldIgnoreCase(SubBean.class, "NAME"));
+		assertSame(TReflect.findField(Bean.class, "total"), TReflect.findFieldIgnoreCase(Bean.class, "Total"));
+
+		//查找不到时返回 null
+		assertNull(TReflect.findField(SubBean.class, "Name"));
+		assertNull(TReflect.findFieldIgnoreCase(SubBean.class, "missing"));
+		assertNull(TReflect.findFieldIgnoreCase(SubBean.class, null));
+	}
+
+	public void testMethodInvoker() throws Exception {
+		Bean bean = new Bean();
+		TReflect.invokeMethod(bean, "setCount", 9);
+		assertEquals(9, TReflect.invokeMethod(bean, "getCount"));
+		assertEquals("a12", TReflect.invokeMethod(bean, "join", "a", 1, 2L));
+
+		Method join = Bean.class.getMethod("join", String.class, int.class, long.class);
+		MethodInvoker invoker = AccessorFactory.getMethodInvoker(join);
+		assertSame(invoker, AccessorFactory.getMethodInvoker(join));
+		//int 放宽转换成 long
+		assertEquals("b34", invoker.invoke(bean, "b", 3, 4));
+
+		try {
+			invoker.invoke(bean, "b", 3);
+			fail("Invoke with wrong argument count");
+		} catch (IllegalArgumentException e) {
+		}
+
+		try {
+			TReflect.invokeMethod(bean, "fail");
+			fail("Invoke method throws exception");
+		} catch (InvocationTargetException e) {
+			assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+	}
+}
@@ -238,15 +238,17 @@ public class TSQL {
 		HashMap<String,Integer> columns = new HashMap<String,Integer>();
 		
 		//遍历结果集字段信息
-		int columnCount = resultset.getMetaData().getColumnCount();
+		ResultSetMetaData metaData = resultset.getMetaData();
+		int columnCount = metaData.getColumnCount();
 		for(int i=1;i<=columnCount;i++){
-			columns.put(resultset.getMetaData().getColumnLabel(i),resultset.getMetaData().getColumnType(i));
+			columns.put(metaData.getColumnLabel(i),metaData.getColumnType(i));
 		}
-		//组装Map
+		//组装Map, 取值方法使用 ResultSet 接口中的方法, 调用器按方法缓存
 		for(Entry<String, Integer> columnEntry : columns.entrySet())
 		{
 			String methodName =getDataMethod(columnEntry.getValue());
-			Object value = TReflect.invokeMethod(resultset, methodName, columnEntry.getKey());
+			Method method = TReflect.findMethod(ResultSet.class, methodName, String.class);
+			Object value = TReflect.invokeMethod(resultset, method, columnEntry.getKey());
 			resultMap.put(columnEntry.getKey(), value);
 		}
 		return resultMap;
@@ -117,7 +117,8 @@ public class EventProcess {
 			// 由于之前有消息分割器在工作,所以这里读取的消息都是完成的消息包.
 			// 有可能缓冲区没有读完
 			// 按消息包出发 onRecive 事件
-			while (session.getByteBufferChannel().size() > 0) {
+			// 处理消息时可能关闭分割器(例如流式读取), 此时剩余的数据由调用方直接读取
+			while (messageLoader.isUseSpliter() && session.getByteBufferChannel().size() > 0) {
 
 				byteBuffer = messageLoader.read();
 
@@ -309,8 +310,19 @@ public class EventProcess {
 			} else if (eventName == EventName.ON_DISCONNECT) {
 				EventProcess.onDisconnect(event);
 			} else if (eventName == EventName.ON_RECEIVE) {
-				EventProcess.onRead(event);
-				event.getSession().setReceiving(false);
+				IoSession session = event.getSession();
+				try {
+					EventProcess.onRead(event);
+				} finally {
+					session.setReceiving(false);
+				}
+
+				//处理期间到达的数据触发的接收事件会被丢弃, 这里重新触发, 避免数据滞留在缓冲区中
+				//停用分割器时数据由调用方直接读取, 不需要重新触发
+				if (session.isConnected() && session.getMessageLoader().isUseSpliter() &&
+						session.getByteBufferChannel().size() > 0) {
+					EventTrigger.fireReceiveThread(session);
+				}
 			} else if (eventName == EventName.ON_SENT) {
 				EventProcess.onSent(event, event.getOther());
 			} else if (eventName == EventName.ON_EXCEPTION) {
@@ -2,15 +2,19 @@ package org.voovan.network;
 
 import org.voovan.network.exception.ReadMessageException;
 import org.voovan.network.exception.SendMessageException;
+import org.voovan.network.udp.UdpSocket;
 import org.voovan.tools.ByteBufferChannel;
-import org.voovan.tools.TEnv;
-import org.voovan.tools.TObject;
 import org.voovan.tools.log.Logger;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Map;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 
 /**
@@ -23,32 +27,56 @@ import java.util.concurrent.ConcurrentHashMap;
  * Licence: Apache v2 License
  */
 public abstract class IoSession<T extends SocketContext> {
-	
+
+	//文件发送时使用的线程缓冲区,避免每次发送文件都分配堆外内存
+	private static ThreadLocal<ByteBuffer> FILE_SEND_BUFFER = new ThreadLocal<ByteBuffer>();
+	private static final int FILE_SEND_BUFFER_SIZE = 1024 * 64;
+
 	private Map<Object, Object> attributes;
 	private SSLParser sslParser;
 
-	private boolean receiving;
+	private AtomicBoolean receiving;
 	private MessageLoader messageLoader;
 	private ByteBufferChannel byteBufferChannel;
 	private T socketContext;
 
+	//同步读写模式使用的消息队列
+	private static final int SYNC_QUEUE_SIZE = 1024;
+	private static final long SYNC_CHECK_INTERVAL = 100;
+	private static final Object SYNC_DISCONNECT = new Object();
+	private BlockingQueue<Object> syncQueue;
+
+	//调用方直接读取缓冲区时允许积压的数据上限, 0 表示不限制
+	private volatile int readBacklogLimit;
+
 	/**
 	 * 构造函数
 	 * @param socketContext socketContext对象
 	 */
 	public IoSession(T socketContext){
 		attributes = new ConcurrentHashMap<Object, Object>();
+		receiving = new AtomicBoolean(false);
 		this.socketContext = socketContext;
 		byteBufferChannel = new ByteBufferChannel(socketContext.getBufferSize());
 		messageLoader = new MessageLoader(this);
+		syncQueue = new LinkedBlockingQueue<Object>(SYNC_QUEUE_SIZE);
 	}
 
 	public boolean isReceiving() {
-		return receiving;
+		return receiving.get();
 	}
 
 	protected void setReceiving(boolean receiving) {
-		this.receiving = receiving;
+		this.receiving.set(receiving);
+	}
+
+	/**
+	 * 尝试进入接收状态
+	 * 		同一时间只有一个线程可以处理接收事件
+	 * @return true: 成功进入接收状态, false: 已经有线程在处理接收事件
+	 */
+	protected boolean tryReceiving() {
+		return this.receiving.compareAndSet(false, true);
 	}
 
 	/**
@@ -165,33 +193,89 @@ public abstract class IoSession<T extends SocketContext> {
 
 	/**
 	 * 同步读取消息
-	 * 			消息会经过 filter 的 decoder 函数处理后再返回
-	 * @return 读取出的对象
+	 * 			消息会经过 filter 的 decoder 函数处理后再返回, 等待时间为 Socket 的超时时间
+	 * @return 读取出的对象, 连接断开时返回 null
 	 * @throws ReadMessageException  读取消息异常
 	 */
 	public Object syncRead() throws ReadMessageException {
-		Object readObject = null;
-		while(true){
-			readObject = getAttribute("SocketResponse");
-			if(readObject!=null){
-				removeAttribute("SocketResponse");
-				break;
-			}else {
-				Exception exception = TObject.cast(getAttribute("SocketException"));
-				if (exception != null) {
-					removeAttribute("SocketException");
+		return syncRead(socketContext.getReadTimeout());
+	}
+
+	/**
+	 * 同步读取消息
+	 * 			消息会经过 filter 的 decoder 函数处理后再返回, 多个消息按接收的顺序返回
+	 * @param timeout 等待消息的超时时间, 单位: 毫秒, 小于等于 0 时一直等待到收到消息或者连接断开
+	 * @return 读取出的对象, 连接断开时返回 null
+	 * @throws ReadMessageException  读取消息异常或等待超时
+	 */
+	public Object syncRead(int timeout) throws ReadMessageException {
+		//与 Socket 的读取超时一致, 0 表示不超时
+		long deadline = timeout > 0 ? System.currentTimeMillis() + timeout : Long.MAX_VALUE;
+		try {
+			while (true) {
+				//连接断开时按顺序取完队列中的消息后返回 null
+				boolean isActive = isActive();
+				long waitTime = Math.min(deadline - System.currentTimeMillis(), SYNC_CHECK_INTERVAL);
+				Object readObject = isActive ? syncQueue.poll(Math.max(waitTime, 0), TimeUnit.MILLISECONDS) : syncQueue.poll();
+
+				if (readObject == SYNC_DISCONNECT || (readObject == null && !isActive)) {
+					return null;
+				} else if (readObject instanceof SyncException) {
+					Exception exception = ((SyncException) readObject).exception;
 					throw new ReadMessageException("Method syncRead error! Error by " +
 							exception.getClass().getSimpleName() + ". " + exception.getMessage(), exception);
+				} else if (readObject != null) {
+					return readObject;
+				} else if (System.currentTimeMillis() >= deadline) {
+					throw new ReadMessageException("Method syncRead error! Timeout: " + timeout + "ms");
 				}
 			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ReadMessageException("Method syncRead interrupted", e);
+		}
+	}
 
-			if(!isConnected()){
-				break;
+	/**
+	 * 将同步模式接收的消息加入队列
+	 * 			队列满时阻塞接收线程, 直到 syncRead 取出消息或者连接断开
+	 * @param obj 接收的消息
+	 */
+	public void offerSyncMessage(Object obj) {
+		try {
+			while(!syncQueue.offer(obj, SYNC_CHECK_INTERVAL, TimeUnit.MILLISECONDS)){
+				if(!isActive()){
+					Logger.warn("Session is closed, the sync message is dropped.");
+					return;
+				}
 			}
-			TEnv.sleep(1);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
 		}
+	}
+
+	/**
+	 * 将同步模式发生的异常加入队列, syncRead 读取到时抛出
+	 * @param exception 异常对象
+	 */
+	public void offerSyncException(Exception exception) {
+		offerSyncMessage(new SyncException(exception));
+	}
+
+	/**
+	 * 通知同步读取连接已经断开, 正在等待的 syncRead 立即返回
+	 */
+	public void offerSyncDisconnect() {
+		//队列已满时 syncRead 会按间隔检查连接状态
+		syncQueue.offer(SYNC_DISCONNECT);
+	}
 
-		return readObject;
+	/**
+	 * 会话是否可用, UDP 会话没有连接状态, 以通道是否打开判断
+	 * @return true: 可用, false: 不可用
+	 */
+	private boolean isActive(){
+		return socketContext instanceof UdpSocket ? isOpen() : isConnected();
 	}
 
 	/**
@@ -202,8 +286,10 @@ public abstract class IoSession<T extends SocketContext> {
 	 */
 	public void syncSend(Object obj) throws SendMessageException{
 		//等待 ssl 握手完成
-		while(sslParser!=null && !sslParser.handShakeDone){
-			TEnv.sleep(1);
+		if(sslParser!=null && !sslParser.isHandShakeDone()){
+			if(!sslParser.waitHandShake(socketContext.getReadTimeout())){
+				throw new SendMessageException("Method syncSend error! SSL hand shake failed or timeout.");
+			}
 		}
 
 		if (obj != null) {
@@ -218,8 +304,6 @@ public abstract class IoSession<T extends SocketContext> {
 		}
 	}
 
-
-
 	/**
 	 * 设置是否使用分割器读取
 	 * @param useSpliter true 使用分割器读取,false 不使用分割器读取,且不会出发 onRecive 事件
@@ -228,6 +312,32 @@ public abstract class IoSession<T extends SocketContext> {
 		messageLoader.setUseSpliter(useSpliter);
 	}
 
+	/**
+	 * 设置缓冲区中允许积压的数据上限
+	 * 		调用方关闭分割器直接读取缓冲区时(例如流式读取 HTTP 响应的内容段)使用,
+	 * 		积压的数据超过上限时暂停接收, 调用方取走数据后调用 resumeRead 恢复接收
+	 * @param readBacklogLimit 积压的数据上限, 单位: 字节, 0 表示不限制
+	 */
+	public void setReadBacklogLimit(int readBacklogLimit) {
+		this.readBacklogLimit = readBacklogLimit;
+		resumeRead();
+	}
+
+	/**
+	 * 缓冲区中积压的数据是否超过上限
+	 * @return true: 超过上限, 需要暂停接收
+	 */
+	public boolean isReadBacklogFull() {
+		return readBacklogLimit > 0 && !messageLoader.isUseSpliter() && byteBufferChannel.size() > readBacklogLimit;
+	}
+
+	/**
+	 * 恢复因缓冲区积压而暂停的接收
+	 * 		没有暂停或者积压的数据仍然超过上限时不做任何操作
+	 */
+	public void resumeRead() {
+	}
+
 
 	/**
 	 * 发送SSL消息
@@ -250,6 +360,76 @@ public abstract class IoSession<T extends SocketContext> {
 		return -1;
 	}
 
+	/**
+	 * 发送文件
+	 * 		注意直接调用不会出发 onSent 事件
+	 * 		SSL 连接时文件内容需要经过 SSLEngine 加密,所以使用缓冲区读取后发送,
+	 * 		否则由具体的会话实现决定发送方式(例如 NIO 使用 FileChannel.transferTo)
+	 * @param fileChannel 文件通道
+	 * @param position    文件的起始位置
+	 * @param length      发送的长度
+	 * @return 发送的字节数
+	 * @throws IOException IO 异常
+	 */
+	public long sendFile(FileChannel fileChannel, long position, long length) throws IOException {
+		if(sslParser!=null && sslParser.isHandShakeDone()) {
+			return sendFileByBuffer(fileChannel, position, length);
+		}else{
+			return sendFile0(fileChannel, position, length);
+		}
+	}
+
+	/**
+	 * 发送文件
+	 * 		默认使用线程缓冲区按块读取文件并发送, 子类可以覆盖实现零拷贝的发送方式
+	 * @param fileChannel 文件通道
+	 * @param position    文件的起始位置
+	 * @param length      发送的长度
+	 * @return 发送的字节数
+	 * @throws IOException IO 异常
+	 */
+	protected long sendFile0(FileChannel fileChannel, long position, long length) throws IOException {
+		return sendFileByBuffer(fileChannel, position, length);
+	}
+
+	/**
+	 * 使用线程缓冲区按块读取文件并发送
+	 * @param fileChannel 文件通道
+	 * @param position    文件的起始位置
+	 * @param length      发送的长度
+	 * @return 发送的字节数
+	 * @throws IOException IO 异常
+	 */
+	protected long sendFileByBuffer(FileChannel fileChannel, long position, long length) throws IOException {
+		ByteBuffer buffer = FILE_SEND_BUFFER.get();
+		if(buffer == null){
+			buffer = ByteBuffer.allocateDirect(FILE_SEND_BUFFER_SIZE);
+			FILE_SEND_BUFFER.set(buffer);
+		}
+
+		long totalSendByte = 0;
+		while(totalSendByte < length && isConnected()){
+			buffer.clear();
+			long remaining = length - totalSendByte;
+			if(remaining < buffer.capacity()){
+				buffer.limit((int)remaining);
+			}
+
+			int readSize = fileChannel.read(buffer, position + totalSendByte);
+			if(readSize <= 0){
+				break;
+			}
+
+			buffer.flip();
+			if(send(buffer) < 0){
+				break;
+			}
+			totalSendByte = totalSendByte + readSize;
+		}
+		buffer.clear();
+		return totalSendByte;
+	}
+
 	/**
 	 * 直接从缓冲区读取数据
 	 * @param byteBuffer 字节缓冲对象ByteBuffer,读取 前需要使用 enabledMessageSpliter(false) 停止分割器的工作,除非有特殊的需求.
@@ -303,4 +483,15 @@ public abstract class IoSession<T extends SocketContext> {
 	
 	@Override
 	public abstract String toString();
+
+	/**
+	 * 同步模式的异常, 和消息一起排队以保证顺序
+	 */
+	private static class SyncException {
+		private Exception exception;
+
+		public SyncException(Exception exception) {
+			this.exception = exception;
+		}
+	}
 }
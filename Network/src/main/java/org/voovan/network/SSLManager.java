@@ -1,6 +1,7 @@
 package org.voovan.network;
 
 import org.voovan.tools.TString;
+import org.voovan.tools.log.Logger;
 
 import javax.net.ssl.*;
 import java.io.FileInputStream;
@@ -8,6 +9,8 @@ import java.io.IOException;
 import java.security.*;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
+import java.util.List;
+import java.util.function.BiFunction;
 
 /**
  * SSL管理器
@@ -24,6 +27,7 @@ public class SSLManager {
 	private SSLEngine engine;
 	private boolean needClientAuth;
 	private String protocol;
+	private String[] applicationProtocols;
 	
 	/**
 	 * 构造函数
@@ -55,6 +59,23 @@ public class SSLManager {
 		return engine;
 	}
 	
+	/**
+	 * 获取 ALPN 协商支持的应用层协议
+	 * @return 应用层协议列表, 按优先级排列
+	 */
+	public String[] getApplicationProtocols() {
+		return applicationProtocols;
+	}
+
+	/**
+	 * 设置 ALPN 协商支持的应用层协议
+	 * 		服务端按这里的优先级从客户端提供的协议中选择, 例如 "h2", "http/1.1"
+	 * @param applicationProtocols 应用层协议列表, 按优先级排列
+	 */
+	public void setApplicationProtocols(String... applicationProtocols) {
+		this.applicationProtocols = applicationProtocols;
+	}
+
 	/**
 	 * 读取管理证书
 	 * @param manageCertFile   证书地址
@@ -144,9 +165,36 @@ public class SSLManager {
 		createSSLEngine(protocol, session.socketContext().getHost(), session.socketContext().getPort());
 		engine.setUseClientMode(false);
 		engine.setNeedClientAuth(needClientAuth);
+		if(applicationProtocols != null) {
+			setApplicationProtocolSelector(engine);
+		}
 		return new SSLParser(engine, session);
 	}
 	
+	/**
+	 * 设置 ALPN 协议选择器
+	 * 		SSLEngine 的 ALPN 接口需要 JDK 8u252 及以上版本, 低版本的 JDK 不进行 ALPN 协商
+	 * @param engine SSLEngine 对象
+	 */
+	private void setApplicationProtocolSelector(SSLEngine engine){
+		try {
+			engine.setHandshakeApplicationProtocolSelector(new BiFunction<SSLEngine, List<String>, String>() {
+				@Override
+				public String apply(SSLEngine sslEngine, List<String> clientProtocols) {
+					for (String applicationProtocol : applicationProtocols) {
+						if (clientProtocols.contains(applicationProtocol)) {
+							return applicationProtocol;
+						}
+					}
+					return null;
+				}
+			});
+		} catch (NoSuchMethodError e) {
+			Logger.warn("ALPN is not supported by current JDK, application protocol negotiation is disabled");
+			applicationProtocols = null;
+		}
+	}
+
 	private static class DefaultTrustManager implements X509TrustManager {
 
 		@Override
@@ -12,6 +12,10 @@ import javax.net.ssl.SSLException;
 import javax.net.ssl.SSLSession;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * SSL 解析器
@@ -29,6 +33,7 @@ public class SSLParser {
 	private ByteBuffer netData;
 	private IoSession session;
 	boolean handShakeDone = false;
+	private CompletableFuture<Boolean> handShakeFuture = new CompletableFuture<Boolean>();
 	/**
 	 * 构造函数
 	 * @param engine  SSLEngine对象
@@ -50,6 +55,31 @@ public class SSLParser {
 		return handShakeDone;
 	}
 
+	/**
+	 * 获取握手完成的 Future
+	 * 		握手结束后以握手是否成功完成
+	 * @return 握手完成的 Future
+	 */
+	public CompletableFuture<Boolean> getHandShakeFuture() {
+		return handShakeFuture;
+	}
+
+	/**
+	 * 等待握手完成
+	 * @param timeout 超时时间, 单位: 毫秒, 小于等于 0 时一直等待到握手结束或者连接关闭
+	 * @return true: 握手成功, false: 握手失败或者等待超时
+	 */
+	public boolean waitHandShake(int timeout) {
+		try {
+			return timeout > 0 ? handShakeFuture.get(timeout, TimeUnit.MILLISECONDS) : handShakeFuture.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		} catch (ExecutionException | TimeoutException e) {
+			return false;
+		}
+	}
+
 	/**
 	 * 获取 SSLEngine
 	 * @return  SSLEngine 对象
@@ -179,34 +209,37 @@ public class SSLParser {
 	}
 	
 	public boolean doHandShake() throws IOException{
-		
-		engine.beginHandshake();
-		int handShakeCount = 0;
-		HandshakeStatus handshakeStatus = engine.getHandshakeStatus();
-		while(!handShakeDone && handShakeCount<20){
-			handShakeCount++;
-			switch (handshakeStatus) {
-				case NEED_TASK:
-					handshakeStatus = runDelegatedTasks();
-					break;
-				case NEED_WRAP:
-					handshakeStatus = doHandShakeWarp();
-					break;
-				case NEED_UNWRAP:
-					handshakeStatus = doHandShakeUnwarp();
- 					break;
-				case FINISHED:
-					handshakeStatus = engine.getHandshakeStatus();
-					break;
-				case NOT_HANDSHAKING:
-					handShakeDone = true;
-					break;
-				default:
-					break;
+		try {
+			engine.beginHandshake();
+			int handShakeCount = 0;
+			HandshakeStatus handshakeStatus = engine.getHandshakeStatus();
+			while (!handShakeDone && handShakeCount < 20) {
+				handShakeCount++;
+				switch (handshakeStatus) {
+					case NEED_TASK:
+						handshakeStatus = runDelegatedTasks();
+						break;
+					case NEED_WRAP:
+						handshakeStatus = doHandShakeWarp();
+						break;
+					case NEED_UNWRAP:
+						handshakeStatus = doHandShakeUnwarp();
+						break;
+					case FINISHED:
+						handshakeStatus = engine.getHandshakeStatus();
+						break;
+					case NOT_HANDSHAKING:
+						handShakeDone = true;
+						break;
+					default:
+						break;
+				}
 			}
-//			TEnv.sleep(1);
+			return handShakeDone;
+		} finally {
+			//通知等待握手的发送线程
+			handShakeFuture.complete(handShakeDone);
 		}
-		return handShakeDone;
 	}
 
 	/**
@@ -239,6 +272,8 @@ public class SSLParser {
 	}
 
 	public void release(){
+		//连接关闭时握手还没有完成, 唤醒等待握手的线程
+		handShakeFuture.complete(handShakeDone);
 		TByteBuffer.release(netData);
 		TByteBuffer.release(appData);
 	}
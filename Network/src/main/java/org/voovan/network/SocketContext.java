@@ -20,6 +20,7 @@ public abstract class SocketContext {
 	protected String host;
 	protected int port;
 	protected int readTimeout;
+	protected int sendTimeout;
 	
 	protected IoHandler handler;
 	protected Chain<IoFilter> filterChain;
@@ -60,6 +61,7 @@ public abstract class SocketContext {
 	 */
 	protected void copyFrom(SocketContext parentSocketContext){
 		this.readTimeout = parentSocketContext.readTimeout;
+		this.sendTimeout = parentSocketContext.sendTimeout;
 		this.handler = parentSocketContext.handler;
 		this.filterChain = parentSocketContext.filterChain;
 		this.messageSplitter = parentSocketContext.messageSplitter;
@@ -131,6 +133,23 @@ public abstract class SocketContext {
 	public int getReadTimeout() {
 		return readTimeout;
 	}
+
+	/**
+	 * 获取发送超时时间
+	 * @return 发送超时时间, 单位: 毫秒, 0 表示不限制
+	 */
+	public int getSendTimeout() {
+		return sendTimeout;
+	}
+
+	/**
+	 * 设置发送超时时间
+	 * 		单次写操作超过这个时间仍未完成时关闭连接, 避免对端停止接收后发送线程被一直占用
+	 * @param sendTimeout 发送超时时间, 单位: 毫秒, 0 表示不限制
+	 */
+	public void setSendTimeout(int sendTimeout) {
+		this.sendTimeout = sendTimeout;
+	}
 	
 	/**
 	 * 获取连接模式
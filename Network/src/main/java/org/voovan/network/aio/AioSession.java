@@ -2,16 +2,22 @@ package org.voovan.network.aio;
 
 import org.voovan.network.IoSession;
 import org.voovan.network.MessageSplitter;
+import org.voovan.tools.TByteBuffer;
 import org.voovan.tools.TObject;
 import org.voovan.tools.log.Logger;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.FileChannel;
 import java.nio.channels.WritePendingException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * NIO 会话连接对象
@@ -24,7 +30,12 @@ import java.util.concurrent.Future;
  */
 public class AioSession extends IoSession<AioSocket>  {
 
+	//文件内存映射时每次映射的最大窗口
+	private static final long MAPPED_WINDOW_SIZE = 1024 * 1024 * 4;
+
 	private AsynchronousSocketChannel	socketChannel;
+	//因缓冲区积压暂停接收时保存的读缓冲区
+	private AtomicReference<ByteBuffer> pausedReadBuffer = new AtomicReference<ByteBuffer>();
 
 
 	/**
@@ -110,32 +121,117 @@ public class AioSession extends IoSession<AioSocket>  {
 		return readSize;
 	}
 
+	/**
+	 * 发送数据
+	 * 		返回时写操作一定已经完成或者失败, 调用方可以安全地释放缓冲区(例如文件的内存映射)
+	 * 		设置了发送超时时间时, 写操作超时后关闭连接
+	 * @param buffer 需要发送的缓冲区
+	 * @return 发送的字节数
+	 * @throws IOException IO 异常
+	 */
 	@Override
 	protected int send0(ByteBuffer buffer) throws IOException {
 		int totalSendByte = 0;
 		if (isConnected() && buffer != null) {
-			//循环发送直到全部内容发送完毕
-			while(isConnected() && buffer.remaining()!=0){
-				try {
-					Future<Integer> sendResult = socketChannel.write(buffer);
-					if(sendResult==null){
+			int sendTimeout = this.socketContext().getSendTimeout();
+			boolean interrupted = false;
+			try {
+				//循环发送直到全部内容发送完毕
+				while (isConnected() && buffer.remaining() != 0) {
+					Future<Integer> sendResult;
+					try {
+						sendResult = socketChannel.write(buffer);
+					} catch (WritePendingException e) {
+						continue;
+					}
+
+					if (sendResult == null) {
 						break;
 					}
 
-					try {
-						totalSendByte += sendResult.get();
-					} catch (InterruptedException | ExecutionException e) {
-						close();
+					//被中断时写操作仍在进行, 继续等待它结束后再返回
+					boolean timeout = false;
+					while (true) {
+						try {
+							if (sendTimeout > 0 && !timeout) {
+								totalSendByte += sendResult.get(sendTimeout, TimeUnit.MILLISECONDS);
+							} else {
+								totalSendByte += sendResult.get();
+							}
+							break;
+						} catch (InterruptedException e) {
+							interrupted = true;
+						} catch (TimeoutException e) {
+							//写操作超时, 关闭连接中止写操作, 继续等待它结束后再返回
+							Logger.warn("Session " + this + " send timeout, close it.");
+							timeout = true;
+							close();
+						} catch (ExecutionException e) {
+							close();
+							return totalSendByte;
+						}
 					}
+				}
+			} finally {
+				if (interrupted) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+		return totalSendByte;
+	}
 
-				}catch(WritePendingException e){
-					continue;
+	/**
+	 * 发送文件
+	 * 		AsynchronousSocketChannel 不支持 transferTo, 这里按窗口将文件映射到内存后直接发送,
+	 * 		send0 返回时窗口的写操作已经结束, 之后立刻释放映射, 文件内容不经过 Java 堆
+	 * @param fileChannel 文件通道
+	 * @param position    文件的起始位置
+	 * @param length      发送的长度
+	 * @return 发送的字节数
+	 * @throws IOException IO 异常
+	 */
+	@Override
+	protected long sendFile0(FileChannel fileChannel, long position, long length) throws IOException {
+		long totalSendByte = 0;
+		while(isConnected() && totalSendByte < length){
+			long mappedSize = Math.min(MAPPED_WINDOW_SIZE, length - totalSendByte);
+			MappedByteBuffer mappedByteBuffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, position + totalSendByte, mappedSize);
+			try {
+				int sendSize = send0(mappedByteBuffer);
+				if(sendSize <= 0){
+					break;
 				}
+				totalSendByte += sendSize;
+			} finally {
+				TByteBuffer.release(mappedByteBuffer);
 			}
 		}
 		return totalSendByte;
 	}
 
+	/**
+	 * 缓冲区积压的数据超过上限时暂停接收
+	 * 		保存读缓冲区, 由 resumeRead 重新发起读取
+	 * @param buffer 读缓冲区
+	 */
+	void pauseRead(ByteBuffer buffer) {
+		pausedReadBuffer.set(buffer);
+
+		//保存之前调用方已经取走了数据, 不会再有线程恢复接收
+		resumeRead();
+	}
+
+	@Override
+	public void resumeRead() {
+		if(pausedReadBuffer.get() != null && !isReadBacklogFull()) {
+			ByteBuffer buffer = pausedReadBuffer.getAndSet(null);
+			if(buffer != null && isConnected()) {
+				this.socketContext().catchRead(buffer);
+			}
+		}
+	}
+
 	@Override
 	protected MessageSplitter getMessagePartition() {
 		return this.socketContext().messageSplitter();
@@ -71,8 +71,12 @@ public class ReadCompletionHandler implements CompletionHandler<Integer,  ByteBu
 					// 接收完成后重置buffer对象
 					buffer.clear();
 
-					// 继续接收 Read 请求
-					if(aioSocket.isConnected()) {
+					// 调用方直接读取缓冲区时(例如流式读取 HTTP 响应的内容段)积压过多则暂停接收,
+					// 不占用完成线程, 由调用方取走数据后恢复
+					if(session.isReadBacklogFull()) {
+						session.pauseRead(buffer);
+					} else if(aioSocket.isConnected()) {
+						// 继续接收 Read 请求
 						aioSocket.catchRead(buffer);
 					}
 				}
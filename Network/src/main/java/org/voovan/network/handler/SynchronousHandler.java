@@ -5,6 +5,7 @@ import org.voovan.network.IoSession;
 
 /**
  * Socket 同步通信 handler
+ * 		接收的消息和异常按顺序放入 Session 的同步消息队列, 由 syncRead 读取
  *
  * @author helyho
  *
@@ -21,11 +22,12 @@ public class SynchronousHandler implements IoHandler {
 
     @Override
     public void onDisconnect(IoSession session) {
+        session.offerSyncDisconnect();
     }
 
     @Override
     public Object onReceive(IoSession session, Object obj) {
-        session.setAttribute("SocketResponse",obj);
+        session.offerSyncMessage(obj);
         return null;
     }
 
@@ -36,6 +38,6 @@ public class SynchronousHandler implements IoHandler {
 
     @Override
     public void onException(IoSession session, Exception e) {
-        session.setAttribute("SocketException",e);
+        session.offerSyncException(e);
     }
 }
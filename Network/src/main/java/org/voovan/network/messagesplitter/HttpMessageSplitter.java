@@ -5,7 +5,6 @@ import org.voovan.network.MessageSplitter;
 import org.voovan.tools.TByteBuffer;
 import org.voovan.tools.TString;
 
-import java.math.BigInteger;
 import java.nio.ByteBuffer;
 
 /**
@@ -20,11 +19,26 @@ import java.nio.ByteBuffer;
 public class HttpMessageSplitter implements MessageSplitter {
 
 	private static final String	BODY_TAG	= "\r\n\r\n";
+	private static final byte[] HTTP2_PREFACE = "PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes();
+	private static final int HTTP2_FRAME_HEAD_LENGTH = 9;
 	private int result = -1;
 
 	private int contentLength = -1;
     boolean isChunked = false;
 
+    private long maxWebSocketFrameSize;
+
+    public HttpMessageSplitter() {
+        this(0);
+    }
+
+    /**
+     * 构造函数
+     * @param maxWebSocketFrameSize WebSocket 帧负载的最大字节数, 小于等于 0 不限制
+     */
+    public HttpMessageSplitter(long maxWebSocketFrameSize) {
+        this.maxWebSocketFrameSize = maxWebSocketFrameSize;
+    }
 
     @Override
 	public int canSplite(IoSession session, ByteBuffer byteBuffer) {
@@ -33,8 +47,22 @@ public class HttpMessageSplitter implements MessageSplitter {
 			return -1;
 		}
 
-        if( "WebSocket".equals(session.getAttribute("Type")) ){
+        //HTTP/2 连接序言, 必须在 HTTP 头判断之前, 序言本身也包含一个 HTTP 头的结束符
+        if(isExpectHttp2Preface(session)) {
+            int prefaceResult = isHttp2Preface(byteBuffer);
+            if (prefaceResult != 0) {
+                return prefaceResult;
+            }
+        }
+
+        if( "HTTP2".equals(session.getAttribute("Type")) ){
+            result = isHttp2Frame(byteBuffer);
+        }else if( "WebSocket".equals(session.getAttribute("Type")) ){
             result = isWebSocketFrame(byteBuffer);
+            //超过上限的帧不再等待接收完整, 直接交给解码器拒绝
+            if(result == -1 && maxWebSocketFrameSize > 0 && getWebSocketPayloadLength(byteBuffer) > maxWebSocketFrameSize){
+                result = byteBuffer.remaining();
+            }
             result = result==0 ? -1 : result;
         }else{
             result = isHttpFrame(byteBuffer);
@@ -44,6 +72,51 @@ public class HttpMessageSplitter implements MessageSplitter {
         return result;
 	}
 
+    /**
+     * 会话是否可能收到 HTTP/2 连接序言
+     * 		只有还没有处理过请求的新连接, 或者 h2c 升级之后还没有收到序言的连接才会收到序言
+     * @param session 会话对象
+     * @return true: 需要判断连接序言, false: 不需要判断连接序言
+     */
+    public static boolean isExpectHttp2Preface(IoSession session){
+        Object type = session.getAttribute("Type");
+        return type == null || ("HTTP2".equals(type) && !session.containAttribute("Http2Preface"));
+    }
+
+    /**
+     * 判断缓冲区中的数据是否是 HTTP/2 连接序言
+     * @param byteBuffer 缓冲区对象
+     * @return 0: 不是连接序言, -1: 连接序言还不完整, 大于 0: 连接序言的长度
+     */
+    public static int isHttp2Preface(ByteBuffer byteBuffer){
+        int position = byteBuffer.position();
+        int length = Math.min(byteBuffer.remaining(), HTTP2_PREFACE.length);
+        for(int i=0; i<length; i++){
+            if(byteBuffer.get(position + i) != HTTP2_PREFACE[i]){
+                return 0;
+            }
+        }
+        return length == HTTP2_PREFACE.length ? length : -1;
+    }
+
+    /**
+     * 判断缓冲区中的数据是否是一个完整的 HTTP/2 帧
+     * @param byteBuffer 缓冲区对象
+     * @return -1: 帧还不完整, 大于 0: 帧的长度
+     */
+    public static int isHttp2Frame(ByteBuffer byteBuffer){
+        if(byteBuffer.remaining() < HTTP2_FRAME_HEAD_LENGTH){
+            return -1;
+        }
+
+        int position = byteBuffer.position();
+        int frameLength = HTTP2_FRAME_HEAD_LENGTH + (((byteBuffer.get(position) & 0xff) << 16) |
+                ((byteBuffer.get(position + 1) & 0xff) << 8) |
+                (byteBuffer.get(position + 2) & 0xff));
+
+        return byteBuffer.remaining() >= frameLength ? frameLength : -1;
+    }
+
     private int isHttpFrame(ByteBuffer byteBuffer){
         int bodyTagIndex = 0;
         byte[] buffer = TByteBuffer.toArray(byteBuffer);
@@ -88,12 +161,44 @@ public class HttpMessageSplitter implements MessageSplitter {
         return true;
     }
 
+    /**
+     * 读取 WebSocket 帧头部声明的负载长度
+     * @param buffer 缓冲区对象
+     * @return 负载长度, -1: 帧头部还不完整
+     */
+    public static long getWebSocketPayloadLength(ByteBuffer buffer) {
+        int position = buffer.position();
+        if (buffer.remaining() < 2) {
+            return -1;
+        }
+
+        long payloadlength = buffer.get(position + 1) & 0x7f;
+        if (payloadlength > 125) {
+            int lengthBytes = payloadlength == 126 ? 2 : 8;
+            if (buffer.remaining() < 2 + lengthBytes) {
+                return -1;
+            }
+
+            payloadlength = 0;
+            for (int i = 0; i < lengthBytes; i++) {
+                payloadlength = (payloadlength << 8) | (buffer.get(position + 2 + i) & 0xff);
+            }
+
+            //最高位被置位的长度视为无限大
+            if (payloadlength < 0) {
+                payloadlength = Long.MAX_VALUE;
+            }
+        }
+        return payloadlength;
+    }
+
     /**
      * 判断缓冲区中的数据是否是一个 WebSocket 帧
      * @param buffer 缓冲区对象
      * @return WebSocket 帧报文长度,-1不是WebSocket 帧, 大于0 返回的 WebSocket 的长度
      */
     public static int isWebSocketFrame(ByteBuffer buffer) {
+        int position = buffer.position();
         // 接受数据的大小
         int maxpacketsize = buffer.remaining();
         // 期望数据包的实际大小
@@ -101,20 +206,19 @@ public class HttpMessageSplitter implements MessageSplitter {
         if (maxpacketsize < expectPackagesize) {
             return -1;
         }
-        byte finByte = buffer.get();
-        boolean fin = finByte >> 8 != 0;
-        byte rsv = (byte) ((finByte & ~(byte) 128) >> 4);
-        if (rsv != 0) {
-            return -1;
-        }
-        byte maskByte = buffer.get();
-        boolean mask = (maskByte & -128) != 0;
-        int payloadlength = (byte) (maskByte & ~(byte) 128);
-        int optcode = (byte) (finByte & 15);
 
-        if(optcode < 0 && optcode > 10){
+        //使用绝对位置读取, 不改变缓冲区的 position
+        int finByte = buffer.get(position) & 0xff;
+        boolean fin = (finByte & 0x80) != 0;
+        //RSV1 由 permessage-deflate 扩展使用, RSV2 和 RSV3 必须为 0
+        int rsv = (finByte >> 4) & 0x03;
+        if (rsv != 0) {
             return -1;
         }
+        int maskByte = buffer.get(position + 1) & 0xff;
+        boolean mask = (maskByte & 0x80) != 0;
+        long payloadlength = maskByte & 0x7f;
+        int optcode = finByte & 0x0f;
 
         if (!fin) {
             if (optcode == 9 || optcode == 10 || optcode == 8) {
@@ -122,27 +226,25 @@ public class HttpMessageSplitter implements MessageSplitter {
             }
         }
 
-        if (payloadlength >= 0 && payloadlength <= 125) {
-        } else {
+        if (payloadlength > 125) {
             if (optcode == 9 || optcode == 10 || optcode == 8) {
                 return -1;
             }
-            if (payloadlength == 126) {
-                expectPackagesize += 2;
-                byte[] sizebytes = new byte[3];
-                sizebytes[1] = buffer.get();
-                sizebytes[2] = buffer.get();
-                payloadlength = new BigInteger(sizebytes).intValue();
-            } else {
-                expectPackagesize += 8;
-                byte[] bytes = new byte[8];
-                for (int i = 0; i < 8; i++) {
-                    bytes[i] = buffer.get();
-                }
-                long length = new BigInteger(bytes).longValue();
-                if (length <= Integer.MAX_VALUE) {
-                    payloadlength = (int) length;
-                }
+
+            int lengthBytes = payloadlength == 126 ? 2 : 8;
+            expectPackagesize += lengthBytes;
+            if (maxpacketsize < expectPackagesize) {
+                return -1;
+            }
+
+            payloadlength = 0;
+            for (int i = 0; i < lengthBytes; i++) {
+                payloadlength = (payloadlength << 8) | (buffer.get(position + 2 + i) & 0xff);
+            }
+
+            //超出范围的长度只截取帧头部, 由帧解析时报告错误
+            if (payloadlength < 0 || payloadlength > Integer.MAX_VALUE - expectPackagesize - 4) {
+                payloadlength = 0;
             }
         }
 
@@ -151,10 +253,8 @@ public class HttpMessageSplitter implements MessageSplitter {
 
         // 如果实际接受的数据小于数据包的大小则报错
         if (maxpacketsize < expectPackagesize) {
-            buffer.position(0);
             return -1;
         } else {
-            buffer.position(0);
             return expectPackagesize;
         }
     }
@@ -6,6 +6,9 @@ import org.voovan.tools.log.Logger;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
 
 /**
@@ -18,6 +21,9 @@ import java.nio.channels.SocketChannel;
  * Licence: Apache v2 License
  */
 public class NioSession extends IoSession<NioSocket> {
+	//未设置发送超时时间时, 发送文件等待可写的最长时间, 单位: 毫秒
+	private static final int SEND_FILE_TIMEOUT = 30000;
+
 	private SocketChannel		socketChannel;
 
 	/**
@@ -123,6 +129,55 @@ public class NioSession extends IoSession<NioSocket> {
 	}
 
 
+	/**
+	 * 发送文件
+	 * 		使用 FileChannel.transferTo 直接将文件内容发送到 SocketChannel, 文件内容不经过 Java 堆.
+	 * 		Socket 的发送缓冲区已满时 transferTo 返回 0, 这时通过临时的 Selector 等待可写, 不空转
+	 * 		等待可写的时间为发送超时时间, 未设置发送超时时间时使用 SEND_FILE_TIMEOUT, 不会无限期等待
+	 * @param fileChannel 文件通道
+	 * @param position    文件的起始位置
+	 * @param length      发送的长度
+	 * @return 发送的字节数
+	 * @throws IOException IO 异常, 等待可写超时也会抛出
+	 */
+	@Override
+	protected long sendFile0(FileChannel fileChannel, long position, long length) throws IOException {
+		long totalSendByte = 0;
+		int sendTimeout = socketContext().getSendTimeout() > 0 ? socketContext().getSendTimeout() : SEND_FILE_TIMEOUT;
+		Selector writeSelector = null;
+		try {
+			//循环发送直到全部内容发送完毕
+			while (isConnected() && totalSendByte < length) {
+				long sendSize = fileChannel.transferTo(position + totalSendByte, length - totalSendByte, socketChannel);
+				if (sendSize < 0) {
+					break;
+				}
+
+				if (sendSize == 0) {
+					if (writeSelector == null) {
+						writeSelector = Selector.open();
+						socketChannel.register(writeSelector, SelectionKey.OP_WRITE);
+					}
+
+					//在截止时间前等待可写, select 被提前唤醒时继续等待剩余的时间
+					long deadline = System.currentTimeMillis() + sendTimeout;
+					while (writeSelector.select(Math.max(deadline - System.currentTimeMillis(), 1)) == 0) {
+						if (!isConnected() || System.currentTimeMillis() >= deadline) {
+							throw new IOException("Send file timeout");
+						}
+					}
+					writeSelector.selectedKeys().clear();
+				}
+				totalSendByte += sendSize;
+			}
+		} finally {
+			if (writeSelector != null) {
+				writeSelector.close();
+			}
+		}
+		return totalSendByte;
+	}
+
 	@Override
 	protected MessageSplitter getMessagePartition() {
 		return this.socketContext().messageSplitter();
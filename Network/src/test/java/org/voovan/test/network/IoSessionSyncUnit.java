@@ -0,0 +1,252 @@
+package org.voovan.test.network;
+
+import junit.framework.TestCase;
+import org.voovan.network.IoSession;
+import org.voovan.network.MessageSplitter;
+import org.voovan.network.SocketContext;
+import org.voovan.network.exception.ReadMessageException;
+import org.voovan.network.handler.SynchronousHandler;
+import org.voovan.tools.TEnv;
+
+import java.io.IOException;
+import java.net.SocketOption;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 同步读取消息队列测试
+ * 		通过 SynchronousHandler 向会话的同步消息队列放入消息, 不需要真实的连接
+ *
+ * @author helyho
+ *
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class IoSessionSyncUnit extends TestCase {
+	//与 IoSession 中同步消息队列的容量一致
+	private static final int SYNC_QUEUE_SIZE = 1024;
+
+	private SynchronousHandler handler = new SynchronousHandler();
+
+	public void testReadInOrder() throws ReadMessageException {
+		TestSession session = new TestSession();
+		handler.onReceive(session, "a");
+		handler.onReceive(session, "b");
+		assertEquals("a", session.syncRead(1000));
+		assertEquals("b", session.syncRead(1000));
+	}
+
+	public void testReadTimeout() {
+		TestSession session = new TestSession();
+		long startTime = System.currentTimeMillis();
+		try {
+			session.syncRead(200);
+			fail("syncRead should time out");
+		} catch (ReadMessageException e) {
+			assertTrue(e.getMessage().contains("Timeout"));
+		}
+		assertTrue(System.currentTimeMillis() - startTime >= 200);
+	}
+
+	public void testReadWithoutTimeout() throws Exception {
+		final TestSession session = new TestSession();
+		new Thread(new Runnable() {
+			@Override
+			public void run() {
+				//超过检查间隔后才收到消息, 超时时间为 0 时一直等待
+				TEnv.sleep(300);
+				handler.onReceive(session, "late");
+			}
+		}).start();
+		assertEquals("late", session.syncRead(0));
+	}
+
+	public void testException() {
+		TestSession session = new TestSession();
+		handler.onReceive(session, "a");
+		handler.onException(session, new IOException("broken"));
+		try {
+			assertEquals("a", session.syncRead(1000));
+			session.syncRead(1000);
+			fail("syncRead should throw the queued exception");
+		} catch (ReadMessageException e) {
+			assertTrue(e.getMessage().contains("IOException. broken"));
+		}
+	}
+
+	public void testDisconnectWakesReader() throws Exception {
+		final TestSession session = new TestSession();
+		final CountDownLatch finished = new CountDownLatch(1);
+		final AtomicReference<Object> result = new AtomicReference<Object>("none");
+		new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					result.set(session.syncRead(0));
+				} catch (ReadMessageException e) {
+					result.set(e);
+				}
+				finished.countDown();
+			}
+		}).start();
+
+		TEnv.sleep(100);
+		session.connected = false;
+		handler.onDisconnect(session);
+		assertTrue(finished.await(1, TimeUnit.SECONDS));
+		assertNull(result.get());
+	}
+
+	public void testDrainAfterDisconnect() throws ReadMessageException {
+		TestSession session = new TestSession();
+		handler.onReceive(session, "a");
+		handler.onReceive(session, "b");
+		session.connected = false;
+
+		//连接断开后先按顺序取完队列中的消息, 然后返回 null
+		assertEquals("a", session.syncRead(1000));
+		assertEquals("b", session.syncRead(1000));
+		assertNull(session.syncRead(1000));
+	}
+
+	public void testFullQueueBlocksReceiver() throws Exception {
+		final TestSession session = new TestSession();
+		for (int i = 0; i < SYNC_QUEUE_SIZE; i++) {
+			handler.onReceive(session, i);
+		}
+
+		//队列已满时接收线程阻塞, 不丢弃消息
+		final CountDownLatch offered = new CountDownLatch(1);
+		new Thread(new Runnable() {
+			@Override
+			public void run() {
+				handler.onReceive(session, "last");
+				offered.countDown();
+			}
+		}).start();
+		assertFalse(offered.await(300, TimeUnit.MILLISECONDS));
+
+		assertEquals(0, session.syncRead(1000));
+		assertTrue(offered.await(1, TimeUnit.SECONDS));
+		for (int i = 1; i < SYNC_QUEUE_SIZE; i++) {
+			assertEquals(i, session.syncRead(1000));
+		}
+		assertEquals("last", session.syncRead(1000));
+	}
+
+	public void testFullQueueReleasedOnClose() throws Exception {
+		final TestSession session = new TestSession();
+		for (int i = 0; i < SYNC_QUEUE_SIZE; i++) {
+			handler.onReceive(session, i);
+		}
+
+		//连接断开后阻塞的接收线程丢弃消息并返回
+		final CountDownLatch offered = new CountDownLatch(1);
+		new Thread(new Runnable() {
+			@Override
+			public void run() {
+				handler.onReceive(session, "dropped");
+				offered.countDown();
+			}
+		}).start();
+		assertFalse(offered.await(200, TimeUnit.MILLISECONDS));
+		session.connected = false;
+		assertTrue(offered.await(1, TimeUnit.SECONDS));
+	}
+
+	private static class TestSocketContext extends SocketContext {
+		private TestSocketContext() {
+			super("127.0.0.1", 0, 1000);
+		}
+
+		@Override
+		public <T> void setOption(SocketOption<T> name, T value) throws IOException {
+		}
+
+		@Override
+		public void start() throws IOException {
+		}
+
+		@Override
+		public boolean isOpen() {
+			return true;
+		}
+
+		@Override
+		public boolean isConnected() {
+			return true;
+		}
+
+		@Override
+		public boolean close() {
+			return true;
+		}
+	}
+
+	private static class TestSession extends IoSession<TestSocketContext> {
+		private volatile boolean connected = true;
+
+		private TestSession() {
+			super(new TestSocketContext());
+		}
+
+		@Override
+		protected int send0(ByteBuffer buffer) throws IOException {
+			return 0;
+		}
+
+		@Override
+		protected int read0(ByteBuffer buffer) throws IOException {
+			return 0;
+		}
+
+		@Override
+		public String loaclAddress() {
+			return "127.0.0.1";
+		}
+
+		@Override
+		public int loaclPort() {
+			return 0;
+		}
+
+		@Override
+		public String remoteAddress() {
+			return "127.0.0.1";
+		}
+
+		@Override
+		public int remotePort() {
+			return 0;
+		}
+
+		@Override
+		protected MessageSplitter getMessagePartition() {
+			return null;
+		}
+
+		@Override
+		public boolean isConnected() {
+			return connected;
+		}
+
+		@Override
+		public boolean isOpen() {
+			return connected;
+		}
+
+		@Override
+		public boolean close() {
+			connected = false;
+			return true;
+		}
+
+		@Override
+		public String toString() {
+			return "TestSession";
+		}
+	}
+}
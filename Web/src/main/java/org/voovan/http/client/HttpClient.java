@@ -1,12 +1,16 @@
 package org.voovan.http.client;
 
+import org.voovan.http.message.HttpBodyReader;
 import org.voovan.http.message.Request;
 import org.voovan.http.message.Response;
 import org.voovan.http.message.packet.Cookie;
 import org.voovan.http.message.packet.Header;
 import org.voovan.http.message.packet.Part;
+import org.voovan.http.websocket.PerMessageDeflate;
 import org.voovan.http.websocket.WebSocketFrame;
 import org.voovan.http.websocket.WebSocketRouter;
+import org.voovan.http.websocket.WebSocketTools;
+import org.voovan.network.EventTrigger;
 import org.voovan.network.IoSession;
 import org.voovan.network.SSLManager;
 import org.voovan.network.aio.AioSocket;
@@ -20,14 +24,25 @@ import org.voovan.tools.log.Logger;
 
 import java.io.File;
 import java.io.IOException;
+import java.net.StandardSocketOptions;
 import java.net.URL;
 import java.net.URLEncoder;
 import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.security.NoSuchAlgorithmException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 /**
  * HTTP 请求调用
@@ -46,6 +61,17 @@ public class HttpClient {
 	private String urlString;
 	private boolean isSSL = false;
 	private boolean isWebSocket = false;
+	private String hostString;
+	private HttpClientHandler handler;
+	private boolean keepAlive = true;
+	private volatile HttpBodyReader bodyReader;
+	private boolean webSocketCompress = false;
+	private boolean webSocketNoContextTakeover = false;
+	private int webSocketMaxMessageSize = 16 * 1024 * 1024;
+	private int webSocketPingInterval = 30;
+	//等待发送的请求, 和登记的响应 Future 顺序一致
+	private Queue<PendingRequest> sendQueue = new ConcurrentLinkedQueue<PendingRequest>();
+	private AtomicBoolean sending = new AtomicBoolean(false);
 
 	/**
 	 * 构建函数
@@ -129,18 +155,15 @@ public class HttpClient {
 				port = 443;
 			}
 
+			this.hostString = hostString;
+			handler = new HttpClientHandler();
 			parameters = new HashMap<String, Object>();
-
-			request = new Request();
-			//初始化请求参数,默认值
-			request.header().put("Host", hostString);
-			request.header().put("Pragma", "no-cache");
-			request.header().put("Accept", "text/html,application/xhtml+xml,application/xml;q=0.9,image/webp,*/*;q=0.8");
-			request.header().put("User-Agent", "Voovan Http Client");
-			request.header().put("Accept-Encoding","gzip");
-			request.header().put("Connection","keep-alive");
+			initRequest();
 
 			socket = new AioSocket(hostString, port==-1?80:port, timeOut*1000);
+			//请求头和报文主体分开写入, 关闭 Nagle 算法避免等待延迟确认
+			socket.setOption(StandardSocketOptions.TCP_NODELAY, true);
+			socket.handler(handler);
 			socket.filterChain().add(new HttpClientFilter());
 			socket.messageSplitter(new HttpMessageSplitter());
 
@@ -161,6 +184,47 @@ public class HttpClient {
 	}
 
 
+	/**
+	 * 初始化请求对象,设置默认的请求头
+	 */
+	private void initRequest(){
+		request = new Request();
+		//初始化请求参数,默认值
+		request.header().put("Host", hostString);
+		request.header().put("Pragma", "no-cache");
+		request.header().put("Accept", "text/html,application/xhtml+xml,application/xml;q=0.9,image/webp,*/*;q=0.8");
+		request.header().put("User-Agent", "Voovan Http Client");
+		request.header().put("Accept-Encoding","gzip");
+		request.header().put("Connection","keep-alive");
+	}
+
+	/**
+	 * 重置请求状态
+	 * 		连接归还到连接池时调用, 清除上一个使用者设置的请求头、Cookie 和参数, 连接本身保持不变
+	 */
+	void reset(){
+		parameters.clear();
+		initRequest();
+	}
+
+	/**
+	 * 获取请求的 URL 地址
+	 * @return URL 地址
+	 */
+	String getUrlString() {
+		return urlString;
+	}
+
+	/**
+	 * 判断连接是否可以继续用于后续的请求
+	 * 		服务端响应 Connection: close 或者 HTTP/1.0 没有声明 keep-alive 时连接不可复用,
+	 * 		还有请求在等待响应或者流式读取的内容段没有读取完成时同样不可复用
+	 * @return true: 可复用, false: 不可复用
+	 */
+	public boolean isKeepAlive(){
+		return keepAlive && !isWebSocket && handler.getPendingSize() == 0 && bodyReader == null && isConnect();
+	}
+
 	/**
 	 * 读取流
 	 * @return 字节缓冲对象ByteBuffer
@@ -174,10 +238,7 @@ public class HttpClient {
 			session.enabledMessageSpliter(false);
 			int readSize = session.read(tmpBuffer);
 
-            if(session.getAttribute("SocketException") instanceof Exception){
-                session.close();
-                return null;
-            }else if(readSize > 0) {
+            if(readSize > 0) {
                 return tmpBuffer;
             } else if(readSize == 0){
 				tmpBuffer.flip();
@@ -198,6 +259,38 @@ public class HttpClient {
 		return this;
 	}
 
+	/**
+	 * 设置 WebSocket 连接是否请求 permessage-deflate 压缩扩展
+	 * @param webSocketCompress true: 请求压缩, false: 不请求压缩
+	 * @param noContextTakeover 客户端是否不保持压缩上下文, 不保持时压缩率降低但占用的内存更少
+	 * @return    HttpClient 对象
+	 */
+	public HttpClient setWebSocketCompress(boolean webSocketCompress, boolean noContextTakeover){
+		this.webSocketCompress = webSocketCompress;
+		this.webSocketNoContextTakeover = noContextTakeover;
+		return this;
+	}
+
+	/**
+	 * 设置 WebSocket 压缩帧解压后负载的最大字节数, 默认与服务端一致为 16M
+	 * @param webSocketMaxMessageSize 最大字节数, 超过时帧的错误码为 1009, 小于等于 0 不限制
+	 * @return    HttpClient 对象
+	 */
+	public HttpClient setWebSocketMaxMessageSize(int webSocketMaxMessageSize){
+		this.webSocketMaxMessageSize = webSocketMaxMessageSize;
+		return this;
+	}
+
+	/**
+	 * 设置 WebSocket 连接收到 pong 后再次发送 ping 的间隔时间
+	 * @param webSocketPingInterval 间隔时间(s), 小于等于 0 不发送 ping
+	 * @return    HttpClient 对象
+	 */
+	public HttpClient setWebSocketPingInterval(int webSocketPingInterval){
+		this.webSocketPingInterval = webSocketPingInterval;
+		return this;
+	}
+
 	/**
 	 * 设置报文形式
 	 * @param bodyType  Http 报文形式
@@ -398,45 +491,216 @@ public class HttpClient {
 	 * @throws ReadMessageException  读取异常
 	 */
 	public Response send(String urlString) throws SendMessageException, ReadMessageException {
+		return waitResponse(asyncSend(urlString));
+	}
+
+	/**
+	 * 连接并发送请求, 以流的方式读取响应的内容段
+	 * 		响应头部解析完成后立即返回, 返回的 Response 对象不包含内容段.
+	 * 		内容段通过 getBodyReader() 或 readBody(WritableByteChannel) 边读取边解码(chunked, gzip, deflate),
+	 * 		内容段读取完成前连接上的后续响应不会被处理, 没有读取完成就关闭 HttpBodyReader 会关闭连接.
+	 * @param urlString 请求 URL
+	 * @return 只包含头部的 Response 对象
+	 * @throws SendMessageException  发送异常
+	 * @throws ReadMessageException  读取异常
+	 */
+	public Response sendStream(String urlString) throws SendMessageException, ReadMessageException {
+		return waitResponse(asyncSend(urlString, true));
+	}
+
+	/**
+	 * 等待响应
+	 * 		最多等待 Socket 的读取超时时间, 超时后关闭连接, 避免之后到达的响应和后续的请求错位
+	 * @param responseFuture 响应的 Future 对象
+	 * @return Response 对象
+	 * @throws SendMessageException  发送异常
+	 * @throws ReadMessageException  读取异常, 包括等待超时
+	 */
+	private Response waitResponse(CompletableFuture<Response> responseFuture) throws SendMessageException, ReadMessageException {
+		try {
+			int readTimeout = socket.getReadTimeout();
+			return readTimeout > 0 ? responseFuture.get(readTimeout, TimeUnit.MILLISECONDS) : responseFuture.get();
+		} catch (TimeoutException e) {
+			close();
+			throw new ReadMessageException("HttpClient wait response timeout", e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ReadMessageException("HttpClient wait response interrupted", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if(cause instanceof SendMessageException){
+				throw (SendMessageException) cause;
+			} else if(cause instanceof ReadMessageException){
+				throw (ReadMessageException) cause;
+			} else {
+				throw new ReadMessageException("HttpClient read response error", e);
+			}
+		}
+	}
+
+	/**
+	 * 异步发送请求
+	 * 		请求发送后立即返回, 响应由 Socket 的读取线程解码后直接完成 Future, 调用线程不会被阻塞.
+	 * 		在响应返回前可以继续发送请求(HTTP/1.1 管道化), 响应按请求的发送顺序完成对应的 Future.
+	 * 		注意: Future 的回调在 Socket 的读取线程中执行, 回调中不要执行耗时的操作,
+	 * 		也不要同步等待同一个连接上的其他请求的响应.
+	 * @param urlString 请求 URL
+	 * @return 响应的 Future 对象, 发送失败时以 SendMessageException 完成, 读取失败时以 ReadMessageException 完成
+	 */
+	public CompletableFuture<Response> asyncSend(String urlString){
+		return asyncSend(urlString, false);
+	}
+
+	/**
+	 * 异步发送请求, 以流的方式读取响应的内容段
+	 * 		Future 在响应头部解析完成后完成, 内容段的读取方式参考 sendStream
+	 * @param urlString 请求 URL
+	 * @return 响应的 Future 对象
+	 */
+	public CompletableFuture<Response> asyncSendStream(String urlString){
+		return asyncSend(urlString, true);
+	}
+
+	/**
+	 * 异步发送请求
+	 * @param urlString 请求 URL
+	 * @param stream 是否流式读取响应的内容段
+	 * @return 响应的 Future 对象
+	 */
+	private CompletableFuture<Response> asyncSend(String urlString, final boolean stream){
+		final CompletableFuture<Response> responseFuture = new CompletableFuture<Response>();
 
 		if(isWebSocket){
-			throw new SendMessageException("The WebSocket is connect, you can't send http request.");
+			responseFuture.completeExceptionally(new SendMessageException("The WebSocket is connect, you can't send http request."));
+			return responseFuture;
 		}
 
-		//设置默认的报文 Body 类型
-		if(request.protocol().getMethod().equals("POST") && request.parts().size()>0){
-			setBodyType(Request.RequestType.BODY_MULTIPART);
-		}else if(request.protocol().getMethod().equals("POST") && getParameters().size()>0){
-			setBodyType(Request.RequestType.BODY_URLENCODED);
-		}else{
-			setBodyType(Request.RequestType.NORMAL);
+		if(bodyReader != null){
+			responseFuture.completeExceptionally(new SendMessageException("The response body of the previous request is not finished reading."));
+			return responseFuture;
 		}
 
-		//构造 Request 对象
-		buildRequest(TString.isNullOrEmpty(urlString)?"/":urlString);
+		synchronized (this) {
+			//设置默认的报文 Body 类型
+			if (request.protocol().getMethod().equals("POST") && request.parts().size() > 0) {
+				setBodyType(Request.RequestType.BODY_MULTIPART);
+			} else if (request.protocol().getMethod().equals("POST") && getParameters().size() > 0) {
+				setBodyType(Request.RequestType.BODY_URLENCODED);
+			} else {
+				setBodyType(Request.RequestType.NORMAL);
+			}
 
-		//发送报文
-		try {
-			request.send(socket.getSession());
-		}catch(IOException e){
-			throw new SendMessageException("HttpClient send error",e);
+			//构造 Request 对象
+			buildRequest(TString.isNullOrEmpty(urlString) ? "/" : urlString);
+
+			//取出构造好的请求, 以便其他线程在发送期间构造下一个请求
+			Request sendRequest = takeRequest();
+
+			//登记 Future 和放入发送队列在同一个锁中完成, 保证发送的顺序和响应的顺序一致
+			if(isConnect()){
+				handler.addResponseFuture(responseFuture, stream);
+				sendQueue.offer(new PendingRequest(sendRequest, responseFuture));
+			} else {
+				sendRequest.body().free();
+				responseFuture.completeExceptionally(new SendMessageException("HttpClient send error",
+						new IOException("Socket is disconnected")));
+			}
 		}
 
-		Object readObject = socket.synchronouRead();
-		Response response = null;
+		//报文在锁外发送, 慢速的服务端不会阻塞其他线程构造请求和登记 Future
+		flushSendQueue();
 
-		//如果是异常则抛出异常
-		if(readObject instanceof Exception){
-			throw new ReadMessageException((Exception) readObject);
-		}else{
-			response = (Response) readObject;
+		//发送期间连接被关闭, 断开事件可能已经在登记 Future 之前处理完成
+		if(!responseFuture.isDone() && !isConnect()){
+			handler.failAll(new ReadMessageException("Connection closed before the response is received"));
+		}
+
+		return responseFuture.thenApply(new Function<Response, Response>() {
+			@Override
+			public Response apply(Response response) {
+				finished(response);
+				if(stream) {
+					openBodyReader(response);
+				}
+				return response;
+			}
+		});
+	}
+
+	/**
+	 * 异步发送请求
+	 * @param urlString 请求 URL
+	 * @param callback  响应回调, 成功时异常参数为 null, 失败时响应参数为 null. 回调在 Socket 的读取线程中执行
+	 */
+	public void asyncSend(String urlString, BiConsumer<Response, Throwable> callback){
+		asyncSend(urlString).whenComplete(callback);
+	}
+
+	/**
+	 * 获取流式读取的响应内容段的读取通道
+	 * 		读取到的是解码后的数据, 读取完成或关闭后返回 null
+	 * @return 内容段的读取通道
+	 */
+	public HttpBodyReader getBodyReader(){
+		return bodyReader;
+	}
+
+	/**
+	 * 将流式读取的响应内容段全部写入调用方提供的通道
+	 * @param target 目标通道, 例如文件通道
+	 * @return 写入的字节数
+	 * @throws IOException IO 异常
+	 */
+	public long readBody(WritableByteChannel target) throws IOException {
+		HttpBodyReader currentReader = bodyReader;
+		if(currentReader == null){
+			return 0;
 		}
 
+		try {
+			return currentReader.transferTo(target);
+		} finally {
+			currentReader.close();
+		}
+	}
+
+	/**
+	 * 创建响应内容段的读取通道
+	 * 		内容段读取完成后恢复分割器, 继续处理连接上后续的响应, 没有读取完成就关闭时连接无法复用, 直接关闭连接
+	 * @param response 只包含头部的响应对象
+	 */
+	private void openBodyReader(Response response){
+		final IoSession session = socket.getSession();
+		HttpBodyReader currentReader = new HttpBodyReader(session, response){
+			@Override
+			protected void onEnd(boolean complete) {
+				bodyReader = null;
+				if(complete) {
+					session.enabledMessageSpliter(true);
+					if (session.getByteBufferChannel().size() > 0) {
+						EventTrigger.fireReceiveThread(session);
+					}
+				} else {
+					keepAlive = false;
+					close();
+				}
+			}
+		};
+
+		bodyReader = currentReader;
 
-		//结束操作
-		finished(request, response);
+		//没有内容段的响应直接结束
+		if(currentReader.isFinished()){
+			currentReader.close();
+		}
+	}
 
-		return response;
+	/**
+	 * 获取等待响应的请求数
+	 * @return 等待响应的请求数
+	 */
+	public int getPendingSize(){
+		return handler.getPendingSize();
 	}
 
 	/**
@@ -451,29 +715,89 @@ public class HttpClient {
 
 	/**
 	 * 请求完成
-	 * @param response 请求对象
+	 * @param response 响应对象
      */
-	 private void finished(Request request, Response response){
-		//传递 cookie 到 Request 对象
-		if(response!=null
-				&& response.cookies()!=null
-				&& !response.cookies().isEmpty()){
-			request.cookies().addAll(response.cookies());
-		}
-
-		 try {
-			 request.body().chaneToBytes(new byte[0]);
-		 } catch (IOException e) {
-			 request.body();
+	 private void finished(Response response){
+		 synchronized (this) {
+			 String connection = response.header().get("Connection");
+			 if (response.protocol().getVersion() < 1.1f) {
+				 keepAlive = connection != null && connection.equalsIgnoreCase("keep-alive");
+			 } else {
+				 keepAlive = connection == null || !connection.equalsIgnoreCase("close");
+			 }
+
+			 //传递 cookie 到 Request 对象
+			 if (response.cookies() != null
+					 && !response.cookies().isEmpty()) {
+				 request.cookies().addAll(response.cookies());
+			 }
 		 }
+	}
 
-		//清理请求对象,以便下次请求使用
-		parameters.clear();
-		request.body().clear();
-		request.parts().clear();
+	/**
+	 * 取出构造好的请求对象用于发送, 并创建下一次请求使用的请求对象
+	 * 		请求方法、请求头和 Cookie 保留到新的请求对象中, 报文主体、parts 和参数不保留
+	 * @return 构造好的请求对象
+	 */
+	private Request takeRequest(){
+		Request sendRequest = request;
+
+		request = new Request();
+		request.protocol().setMethod(sendRequest.protocol().getMethod());
+		request.header().putAll(sendRequest.header().getHeaders());
 		request.header().remove("Content-Type");
 		request.header().remove("Content-Length");
-		request.header().remove("Content-Length");
+		request.cookies().addAll(sendRequest.cookies());
+		parameters.clear();
+
+		return sendRequest;
+	}
+
+	/**
+	 * 按顺序发送队列中的请求
+	 * 		同一时刻只有一个线程发送, 其他线程放入队列后直接返回, 由正在发送的线程负责发送.
+	 * 		发送失败时部分报文可能已经写入连接, 之后的响应无法再对应到请求, 所以关闭连接并让所有等待中的请求失败
+	 */
+	private void flushSendQueue(){
+		while (!sendQueue.isEmpty() && sending.compareAndSet(false, true)) {
+			try {
+				PendingRequest pendingRequest;
+				while ((pendingRequest = sendQueue.poll()) != null) {
+					try {
+						pendingRequest.request.send(socket.getSession());
+					} catch (IOException e) {
+						pendingRequest.request.body().free();
+						handler.removeResponseFuture(pendingRequest.responseFuture);
+						pendingRequest.responseFuture.completeExceptionally(new SendMessageException("HttpClient send error", e));
+
+						keepAlive = false;
+						close();
+						SendMessageException abortException = new SendMessageException("HttpClient send error",
+								new IOException("Connection closed after a previous request failed to send", e));
+						handler.failAll(abortException);
+						while ((pendingRequest = sendQueue.poll()) != null) {
+							pendingRequest.request.body().free();
+							pendingRequest.responseFuture.completeExceptionally(abortException);
+						}
+					}
+				}
+			} finally {
+				sending.set(false);
+			}
+		}
+	}
+
+	/**
+	 * 等待发送的请求
+	 */
+	private static class PendingRequest {
+		private Request request;
+		private CompletableFuture<Response> responseFuture;
+
+		private PendingRequest(Request request, CompletableFuture<Response> responseFuture) {
+			this.request = request;
+			this.responseFuture = responseFuture;
+		}
 	}
 
 	/**
@@ -501,6 +825,9 @@ public class HttpClient {
 		request.header().put("Origin", this.urlString);
 		request.header().put("Sec-WebSocket-Version","13");
 		request.header().put("Sec-WebSocket-Key","c1Mm+c0b28erlzCWWYfrIg==");
+		if(webSocketCompress) {
+			request.header().put("Sec-WebSocket-Extensions", PerMessageDeflate.offer(webSocketNoContextTakeover));
+		}
 		Response response = send(urlString);
 
 		//处理升级后的消息
@@ -508,10 +835,26 @@ public class HttpClient {
 
 			isWebSocket = true;
 
+			//服务端接受了压缩扩展
+			PerMessageDeflate perMessageDeflate = null;
+			if(webSocketCompress) {
+				try {
+					perMessageDeflate = PerMessageDeflate.accept(response.header().get("Sec-WebSocket-Extensions"), webSocketNoContextTakeover);
+				} catch (ReadMessageException e) {
+					sendData(WebSocketFrame.newInstance(true, WebSocketFrame.Opcode.CLOSING, true, ByteBuffer.wrap(WebSocketTools.intToByteArray(1010, 2))));
+					socket.close();
+					throw e;
+				}
+			}
+			if(perMessageDeflate != null) {
+				perMessageDeflate.setMaxInflateSize(webSocketMaxMessageSize);
+				socket.getSession().setAttribute(PerMessageDeflate.SESSION_ATTRIBUTE, perMessageDeflate);
+			}
+
 			//这里需要效验Sec-WebSocket-Accept
 			socket.getSession().setAttribute("Type","WebSocket");
 
-			WebSocketHandler webSocketHandler = new WebSocketHandler(this, webSocketRouter);
+			WebSocketHandler webSocketHandler = new WebSocketHandler(this, webSocketRouter, webSocketPingInterval);
 			socket.handler(webSocketHandler);
 
 			//触发 onOpen 方法
@@ -519,8 +862,7 @@ public class HttpClient {
 			ByteBuffer buffer = webSocketRouter.onOpen();
 			if(buffer!=null) {
 				WebSocketFrame webSocketFrame = WebSocketFrame.newInstance(true, WebSocketFrame.Opcode.BINARY, true, buffer);
-				sendData(webSocketFrame);
-				webSocketFrame.getFrameData().flip();
+				webSocketHandler.sendFrame(socket.getSession(), webSocketFrame);
 			}
 
 		}else{
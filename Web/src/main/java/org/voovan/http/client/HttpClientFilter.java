@@ -3,8 +3,10 @@ package org.voovan.http.client;
 import org.voovan.http.message.HttpParser;
 import org.voovan.http.message.Request;
 import org.voovan.http.message.Response;
+import org.voovan.http.websocket.PerMessageDeflate;
 import org.voovan.http.websocket.WebSocketFrame;
 import org.voovan.network.IoFilter;
+import org.voovan.network.IoHandler;
 import org.voovan.network.IoSession;
 import org.voovan.network.exception.IoFilterException;
 import org.voovan.tools.ByteBufferChannel;
@@ -46,11 +48,18 @@ public class HttpClientFilter implements IoFilter {
 		try{
 			ByteBufferChannel byteBufferChannel = session.getByteBufferChannel();
 			if("WebSocket".equals(session.getAttribute("Type"))){
-				return WebSocketFrame.parse((ByteBuffer)object);
+				return PerMessageDeflate.decode(session, WebSocketFrame.parse((ByteBuffer)object));
 			}
 
 			if(object instanceof ByteBuffer){
 				session.enabledMessageSpliter(false);
+
+				//流式读取时只解析头部, 内容段读取完成后才恢复分割器
+				IoHandler handler = session.socketContext().handler();
+				if(handler instanceof HttpClientHandler && ((HttpClientHandler)handler).isStreamResponse()){
+					return HttpParser.parseResponse(byteBufferChannel, session.socketContext().getReadTimeout(), false);
+				}
+
 				ByteBuffer byteBuffer = TObject.cast(object);
 				Response response = HttpParser.parseResponse(byteBufferChannel, session.socketContext().getReadTimeout());
 				session.enabledMessageSpliter(true);
@@ -0,0 +1,135 @@
+package org.voovan.http.client;
+
+import org.voovan.http.message.Response;
+import org.voovan.network.IoSession;
+import org.voovan.network.exception.ReadMessageException;
+import org.voovan.network.handler.SynchronousHandler;
+
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * HttpClient 的 IoHandler
+ * 		按请求的发送顺序保存等待响应的 Future, 解码出的响应直接完成队列头部的 Future, 不经过 Session 属性轮询
+ * 		流式读取的请求只解码响应头部, 内容段由调用方通过 HttpBodyReader 读取
+ *
+ * @author helyho
+ *
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class HttpClientHandler extends SynchronousHandler {
+
+	private Queue<PendingResponse> responseFutures;
+
+	public HttpClientHandler(){
+		responseFutures = new ConcurrentLinkedQueue<PendingResponse>();
+	}
+
+	/**
+	 * 增加等待响应的 Future
+	 * 		调用方需要保证加入的顺序和请求的发送顺序一致
+	 * @param responseFuture 等待响应的 Future
+	 */
+	public void addResponseFuture(CompletableFuture<Response> responseFuture){
+		addResponseFuture(responseFuture, false);
+	}
+
+	/**
+	 * 增加等待响应的 Future
+	 * 		调用方需要保证加入的顺序和请求的发送顺序一致
+	 * @param responseFuture 等待响应的 Future
+	 * @param stream 是否流式读取响应的内容段
+	 */
+	public void addResponseFuture(CompletableFuture<Response> responseFuture, boolean stream){
+		responseFutures.add(new PendingResponse(responseFuture, stream));
+	}
+
+	/**
+	 * 移除等待响应的 Future, 请求发送失败时使用
+	 * @param responseFuture 等待响应的 Future
+	 */
+	public void removeResponseFuture(CompletableFuture<Response> responseFuture){
+		Iterator<PendingResponse> iterator = responseFutures.iterator();
+		while(iterator.hasNext()){
+			if(iterator.next().future == responseFuture){
+				iterator.remove();
+				break;
+			}
+		}
+	}
+
+	/**
+	 * 下一个到达的响应是否流式读取内容段
+	 * @return true: 只解码响应头部, false: 解码完整的响应
+	 */
+	public boolean isStreamResponse(){
+		PendingResponse pendingResponse = responseFutures.peek();
+		return pendingResponse != null && pendingResponse.stream;
+	}
+
+	/**
+	 * 获取等待响应的请求数
+	 * @return 等待响应的请求数
+	 */
+	public int getPendingSize(){
+		return responseFutures.size();
+	}
+
+	/**
+	 * 使所有等待响应的 Future 失败
+	 * @param exception 异常对象
+	 * @return 是否有等待响应的 Future
+	 */
+	public boolean failAll(Exception exception){
+		boolean hasPending = false;
+		PendingResponse pendingResponse;
+		while((pendingResponse = responseFutures.poll()) != null){
+			pendingResponse.future.completeExceptionally(exception);
+			hasPending = true;
+		}
+		return hasPending;
+	}
+
+	@Override
+	public Object onReceive(IoSession session, Object obj) {
+		if(obj instanceof Response) {
+			PendingResponse pendingResponse = responseFutures.poll();
+			if (pendingResponse != null) {
+				pendingResponse.future.complete((Response) obj);
+				return null;
+			}
+		}
+		return super.onReceive(session, obj);
+	}
+
+	@Override
+	public void onDisconnect(IoSession session) {
+		failAll(new ReadMessageException("Connection closed before the response is received"));
+		super.onDisconnect(session);
+	}
+
+	@Override
+	public void onException(IoSession session, Exception e) {
+		//异常已经传递给等待响应的 Future 时不再放入同步消息队列
+		if(!failAll(new ReadMessageException("HttpClient read response error. " + e.getMessage(), e))){
+			super.onException(session, e);
+		}
+	}
+
+	/**
+	 * 等待响应的请求
+	 */
+	private static class PendingResponse {
+		private CompletableFuture<Response> future;
+		private boolean stream;
+
+		private PendingResponse(CompletableFuture<Response> future, boolean stream){
+			this.future = future;
+			this.stream = stream;
+		}
+	}
+}
@@ -0,0 +1,491 @@
+package org.voovan.http.client;
+
+import org.voovan.tools.log.Logger;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * HttpClient 连接池
+ * 		按 scheme://host:port 划分路由, 同一路由的请求复用已建立的 TCP/TLS 连接
+ * 		使用方式:
+ * 			HttpClient httpClient = httpClientPool.acquire("http://127.0.0.1:28080");
+ * 			try {
+ * 				httpClient.send("/path");
+ * 			} finally {
+ * 				httpClientPool.release(httpClient);
+ * 			}
+ *
+ * @author helyho
+ *
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class HttpClientPool {
+
+	private int maxPerRoute;
+	private int maxTotal;
+	private long idleTimeout;
+	private long acquireTimeout;
+	private int timeOut;
+	private String charset;
+
+	private Map<String, Route> routes;
+	private Map<HttpClient, Route> leasedClients;
+	private int totalSize = 0;
+	private volatile boolean closed = false;
+	private Timer timer;
+
+	private AtomicLong leaseCount   = new AtomicLong(0);
+	private AtomicLong waitCount    = new AtomicLong(0);
+	private AtomicLong waitTime     = new AtomicLong(0);
+	private AtomicLong timeoutCount = new AtomicLong(0);
+	private AtomicLong createCount  = new AtomicLong(0);
+	private AtomicLong discardCount = new AtomicLong(0);
+
+	/**
+	 * 构造函数
+	 * @param maxPerRoute    每个路由的最大连接数
+	 * @param maxTotal       连接池的最大连接数
+	 * @param idleTimeout    空闲连接的存活时间,单位:秒
+	 * @param acquireTimeout 获取连接的最大等待时间,单位:毫秒
+	 * @param timeOut        HttpClient 的超时时间,单位:秒
+	 */
+	public HttpClientPool(int maxPerRoute, int maxTotal, int idleTimeout, long acquireTimeout, int timeOut){
+		this.maxPerRoute = maxPerRoute;
+		this.maxTotal = maxTotal;
+		this.idleTimeout = idleTimeout * 1000L;
+		this.acquireTimeout = acquireTimeout;
+		this.timeOut = timeOut;
+		this.charset = "UTF-8";
+		this.routes = new ConcurrentHashMap<String, Route>();
+		this.leasedClients = new ConcurrentHashMap<HttpClient, Route>();
+		this.timer = new Timer("VOOVAN@HTTP_CLIENT_POOL_TIMER", true);
+		removeIdleClient();
+	}
+
+	/**
+	 * 构造函数
+	 * 		每个路由 8 个连接, 总共 64 个连接, 空闲连接存活 60 秒, 获取连接最多等待 5 秒
+	 */
+	public HttpClientPool(){
+		this(8, 64, 60, 5000, 5);
+	}
+
+	public String getCharset() {
+		return charset;
+	}
+
+	/**
+	 * 设置新建的 HttpClient 使用的字符集
+	 * @param charset 字符集
+	 */
+	public void setCharset(String charset) {
+		this.charset = charset;
+	}
+
+	public int getMaxPerRoute() {
+		return maxPerRoute;
+	}
+
+	public int getMaxTotal() {
+		return maxTotal;
+	}
+
+	/**
+	 * 获取路由的标识
+	 * 		ws 和 wss 分别与 http 和 https 使用相同的路由, 未指定端口时使用协议的默认端口
+	 * @param urlString URL 地址
+	 * @return 路由标识, 形如 http://127.0.0.1:80
+	 * @throws MalformedURLException URL 格式错误
+	 */
+	public static String getRouteKey(String urlString) throws MalformedURLException {
+		String lowerUrl = urlString.toLowerCase();
+		if(lowerUrl.startsWith("ws")){
+			lowerUrl = "http" + lowerUrl.substring(2);
+		}
+
+		URL url = new URL(lowerUrl);
+		int port = url.getPort() == -1 ? url.getDefaultPort() : url.getPort();
+		return url.getProtocol() + "://" + url.getHost() + ":" + port;
+	}
+
+	/**
+	 * 获取一个连接
+	 * 		优先使用路由中的空闲连接, 没有空闲连接且未达到上限时新建连接, 否则等待其他连接归还
+	 * @param urlString URL 地址, 只使用其中的协议、主机和端口
+	 * @return HttpClient 对象, 使用完成后必须调用 release 归还
+	 * @throws IOException 连接失败或等待超时
+	 */
+	public HttpClient acquire(String urlString) throws IOException {
+		String routeKey = getRouteKey(urlString);
+		long startTime = System.currentTimeMillis();
+		boolean waited = false;
+
+		while(true) {
+			HttpClient idleClient = null;
+			HttpClient evictClient = null;
+			Route route;
+
+			synchronized (this) {
+				if(closed){
+					throw new IOException("HttpClientPool is closed");
+				}
+
+				route = routes.get(routeKey);
+				if(route == null){
+					route = new Route(routeKey);
+					routes.put(routeKey, route);
+				}
+
+				PooledClient pooledClient = route.idleClients.pollFirst();
+				if(pooledClient != null) {
+					idleClient = pooledClient.httpClient;
+					route.leasedSize++;
+				} else if(route.size() < maxPerRoute && totalSize < maxTotal) {
+					route.leasedSize++;
+					totalSize++;
+				} else if(route.size() < maxPerRoute && (evictClient = evictIdleClient()) != null) {
+					//连接池已满, 关闭其他路由中最久未使用的空闲连接为当前路由腾出位置
+					route.leasedSize++;
+					totalSize++;
+				} else {
+					long remain = acquireTimeout - (System.currentTimeMillis() - startTime);
+					if(remain <= 0){
+						timeoutCount.incrementAndGet();
+						throw new IOException("Acquire HttpClient timeout, route: " + routeKey +
+								", leased: " + leasedClients.size() + ", total: " + totalSize);
+					}
+
+					waited = true;
+					try {
+						this.wait(remain);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new IOException("Acquire HttpClient interrupted", e);
+					}
+					continue;
+				}
+			}
+
+			if(evictClient != null){
+				evictClient.close();
+			}
+
+			//校验空闲连接, 服务端可能已经关闭了保持的连接
+			if(idleClient != null) {
+				if(validate(idleClient)) {
+					return lease(idleClient, route, startTime, waited);
+				} else {
+					discard(idleClient, route);
+					continue;
+				}
+			}
+
+			HttpClient httpClient = null;
+			try {
+				httpClient = new HttpClient(urlString, charset, timeOut);
+			} finally {
+				if(httpClient == null || !httpClient.isConnect()){
+					if(httpClient != null) {
+						httpClient.close();
+					}
+					synchronized (this) {
+						route.leasedSize--;
+						totalSize--;
+						this.notifyAll();
+					}
+				}
+			}
+
+			if(!httpClient.isConnect()){
+				throw new IOException("HttpClient connect to " + routeKey + " failed");
+			}
+
+			createCount.incrementAndGet();
+			return lease(httpClient, route, startTime, waited);
+		}
+	}
+
+	/**
+	 * 记录租借的连接和统计信息
+	 * @param httpClient HttpClient 对象
+	 * @param route      路由
+	 * @param startTime  开始获取连接的时间
+	 * @param waited     是否发生过等待
+	 * @return HttpClient 对象
+	 */
+	private HttpClient lease(HttpClient httpClient, Route route, long startTime, boolean waited){
+		leasedClients.put(httpClient, route);
+		leaseCount.incrementAndGet();
+		if(waited){
+			waitCount.incrementAndGet();
+			waitTime.addAndGet(System.currentTimeMillis() - startTime);
+		}
+		return httpClient;
+	}
+
+	/**
+	 * 校验连接是否可用
+	 * @param httpClient HttpClient 对象
+	 * @return true: 可用, false: 不可用
+	 */
+	private boolean validate(HttpClient httpClient){
+		return httpClient.isKeepAlive();
+	}
+
+	/**
+	 * 归还连接
+	 * 		连接不可复用时(服务端要求关闭、连接已断开或者已经升级为 WebSocket)直接关闭
+	 * @param httpClient HttpClient 对象
+	 */
+	public void release(HttpClient httpClient){
+		Route route = leasedClients.remove(httpClient);
+		if(route == null){
+			return;
+		}
+
+		if(closed || !validate(httpClient)){
+			discard(httpClient, route);
+			return;
+		}
+
+		httpClient.reset();
+		synchronized (this) {
+			route.leasedSize--;
+			route.idleClients.addFirst(new PooledClient(httpClient));
+			this.notifyAll();
+		}
+	}
+
+	/**
+	 * 关闭并丢弃一个已占用的连接
+	 * @param httpClient HttpClient 对象
+	 * @param route      路由
+	 */
+	private void discard(HttpClient httpClient, Route route){
+		httpClient.close();
+		discardCount.incrementAndGet();
+		synchronized (this) {
+			route.leasedSize--;
+			totalSize--;
+			this.notifyAll();
+		}
+	}
+
+	/**
+	 * 取出所有路由中最久未使用的空闲连接, 需要在同步块中调用
+	 * @return HttpClient 对象, 没有空闲连接时返回 null
+	 */
+	private HttpClient evictIdleClient(){
+		Route eldestRoute = null;
+		long eldestTime = Long.MAX_VALUE;
+		for(Route route : routes.values()){
+			PooledClient pooledClient = route.idleClients.peekLast();
+			if(pooledClient != null && pooledClient.lastUsedTime < eldestTime){
+				eldestRoute = route;
+				eldestTime = pooledClient.lastUsedTime;
+			}
+		}
+
+		if(eldestRoute == null){
+			return null;
+		}
+
+		totalSize--;
+		discardCount.incrementAndGet();
+		return eldestRoute.idleClients.pollLast().httpClient;
+	}
+
+	/**
+	 * 定时清理超过存活时间的空闲连接
+	 */
+	private void removeIdleClient(){
+		TimerTask idleTask = new TimerTask() {
+			@Override
+			public void run() {
+				try {
+					closeIdleClients(idleTimeout);
+				}catch(Exception e){
+					Logger.error("HttpClientPool remove idle client error", e);
+				}
+			}
+		};
+		timer.schedule(idleTask, 1000, 1000);
+	}
+
+	/**
+	 * 关闭空闲时间超过指定时长的连接
+	 * @param idleTime 空闲时长,单位:毫秒
+	 */
+	public void closeIdleClients(long idleTime){
+		long deadline = System.currentTimeMillis() - idleTime;
+		ArrayDeque<HttpClient> expiredClients = new ArrayDeque<HttpClient>();
+
+		synchronized (this) {
+			for (Iterator<Route> routeIterator = routes.values().iterator(); routeIterator.hasNext(); ) {
+				Route route = routeIterator.next();
+				PooledClient pooledClient;
+				//空闲队列的尾部是最久未使用的连接
+				while ((pooledClient = route.idleClients.peekLast()) != null && pooledClient.lastUsedTime <= deadline) {
+					route.idleClients.pollLast();
+					expiredClients.add(pooledClient.httpClient);
+					totalSize--;
+				}
+
+				if (route.size() == 0) {
+					routeIterator.remove();
+				}
+			}
+
+			if(!expiredClients.isEmpty()) {
+				this.notifyAll();
+			}
+		}
+
+		for(HttpClient httpClient : expiredClients){
+			discardCount.incrementAndGet();
+			httpClient.close();
+		}
+	}
+
+	/**
+	 * 关闭连接池
+	 * 		关闭所有空闲连接, 已租借的连接在归还时关闭
+	 */
+	public void close(){
+		closed = true;
+		timer.cancel();
+		closeIdleClients(-1);
+	}
+
+	/**
+	 * 获取连接总数, 包括空闲和已租借的连接
+	 * @return 连接总数
+	 */
+	public synchronized int getTotalSize() {
+		return totalSize;
+	}
+
+	/**
+	 * 获取已租借的连接数
+	 * @return 已租借的连接数
+	 */
+	public int getLeasedSize() {
+		return leasedClients.size();
+	}
+
+	/**
+	 * 获取空闲的连接数
+	 * @return 空闲的连接数
+	 */
+	public synchronized int getIdleSize() {
+		int idleSize = 0;
+		for(Route route : routes.values()){
+			idleSize = idleSize + route.idleClients.size();
+		}
+		return idleSize;
+	}
+
+	/**
+	 * 获取连接的租借次数
+	 * @return 租借次数
+	 */
+	public long getLeaseCount() {
+		return leaseCount.get();
+	}
+
+	/**
+	 * 获取需要等待才获得连接的租借次数
+	 * @return 等待次数
+	 */
+	public long getWaitCount() {
+		return waitCount.get();
+	}
+
+	/**
+	 * 获取等待连接的总时长
+	 * @return 等待时长,单位:毫秒
+	 */
+	public long getWaitTime() {
+		return waitTime.get();
+	}
+
+	/**
+	 * 获取等待超时的次数
+	 * @return 超时次数
+	 */
+	public long getTimeoutCount() {
+		return timeoutCount.get();
+	}
+
+	/**
+	 * 获取新建连接的次数
+	 * @return 新建次数
+	 */
+	public long getCreateCount() {
+		return createCount.get();
+	}
+
+	/**
+	 * 获取因失效、不可复用或空闲超时而关闭的连接数
+	 * @return 关闭的连接数
+	 */
+	public long getDiscardCount() {
+		return discardCount.get();
+	}
+
+	@Override
+	public String toString() {
+		return "{total: " + getTotalSize() + ", leased: " + getLeasedSize() + ", idle: " + getIdleSize() +
+				", lease: " + getLeaseCount() + ", wait: " + getWaitCount() + ", waitTime: " + getWaitTime() +
+				", timeout: " + getTimeoutCount() + ", create: " + getCreateCount() + ", discard: " + getDiscardCount() + "}";
+	}
+
+	/**
+	 * 路由, 保存同一个 scheme://host:port 的空闲连接
+	 * 		空闲队列的头部是最近归还的连接, 优先复用以减少连接失效的几率
+	 */
+	private class Route {
+		private String key;
+		private ArrayDeque<PooledClient> idleClients;
+		private int leasedSize;
+
+		public Route(String key) {
+			this.key = key;
+			this.idleClients = new ArrayDeque<PooledClient>();
+			this.leasedSize = 0;
+		}
+
+		public int size(){
+			return idleClients.size() + leasedSize;
+		}
+
+		@Override
+		public String toString() {
+			return key;
+		}
+	}
+
+	/**
+	 * 空闲的连接
+	 */
+	private class PooledClient {
+		private HttpClient httpClient;
+		private long lastUsedTime;
+
+		public PooledClient(HttpClient httpClient) {
+			this.httpClient = httpClient;
+			this.lastUsedTime = System.currentTimeMillis();
+		}
+	}
+}
@@ -1,14 +1,17 @@
 package org.voovan.http.client;
 
+import org.voovan.http.websocket.PerMessageDeflate;
 import org.voovan.http.websocket.WebSocketFrame;
 import org.voovan.http.websocket.WebSocketRouter;
 import org.voovan.http.websocket.WebSocketTools;
 import org.voovan.network.IoHandler;
 import org.voovan.network.IoSession;
-import org.voovan.tools.TEnv;
+import org.voovan.tools.ByteBufferChannel;
 import org.voovan.tools.TObject;
 
 import java.nio.ByteBuffer;
+import java.util.Timer;
+import java.util.TimerTask;
 
 /**
  * 处理 WebSocket 相关的 IoHandler 事件
@@ -21,11 +24,31 @@ import java.nio.ByteBuffer;
  */
 public class WebSocketHandler implements IoHandler{
 
+    //所有 WebSocket 客户端共用的 ping 定时器
+    private static final Timer PING_TIMER = new Timer("VOOVAN_WEB@WEBSOCKET_PING_TIMER", true);
+
     private WebSocketRouter webSocketRouter;
     private HttpClient httpClient;
+    private int pingInterval;
+
+    //分片消息的接收状态, null 表示没有未结束的分片消息
+    private Boolean streaming;
+    private ByteBufferChannel byteBufferChannel;
+
     public WebSocketHandler(HttpClient httpClient, WebSocketRouter webSocketRouter){
+        this(httpClient, webSocketRouter, 30);
+    }
+
+    /**
+     * 构造函数
+     * @param httpClient HttpClient 对象
+     * @param webSocketRouter WebSocket 的路由
+     * @param pingInterval 收到 pong 后再次发送 ping 的间隔时间(s), 小于等于 0 不发送 ping
+     */
+    public WebSocketHandler(HttpClient httpClient, WebSocketRouter webSocketRouter, int pingInterval){
         this.webSocketRouter = webSocketRouter;
         this.httpClient = httpClient;
+        this.pingInterval = pingInterval;
     }
 
     @Override
@@ -37,6 +60,28 @@ public class WebSocketHandler implements IoHandler{
     @Override
     public void onDisconnect(IoSession session) {
         webSocketRouter.onClose();
+
+        //归还压缩扩展占用的 Deflater/Inflater
+        PerMessageDeflate perMessageDeflate = PerMessageDeflate.get(session);
+        if (perMessageDeflate != null) {
+            perMessageDeflate.release();
+        }
+
+        if (byteBufferChannel != null && !byteBufferChannel.isReleased()) {
+            byteBufferChannel.release();
+        }
+    }
+
+    /**
+     * 直接发送 WebSocket 帧并触发 onSent 事件
+     *      压缩的消息必须按压缩的顺序发送, 所以不经过异步的发送事件
+     * @param session 会话对象
+     * @param webSocketFrame WebSocket 帧对象
+     */
+    public void sendFrame(IoSession session, WebSocketFrame webSocketFrame) {
+        webSocketFrame.send(session);
+        webSocketRouter.setSession(session);
+        webSocketRouter.onSent(webSocketFrame.getFrameData());
     }
 
     @Override
@@ -62,28 +107,104 @@ public class WebSocketHandler implements IoHandler{
         else if (reqWebSocketFrame.getOpcode() == WebSocketFrame.Opcode.PING) {
             return WebSocketFrame.newInstance(true, WebSocketFrame.Opcode.PONG, false, null);
         }
-        // WS_PING 收到 pong 帧则返回 ping 帧
+        // WS_PONG 收到 pong 帧则在间隔时间后由定时器发送 ping 帧
         else if (reqWebSocketFrame.getOpcode() == WebSocketFrame.Opcode.PONG) {
-            TEnv.sleep(1000);
-            return WebSocketFrame.newInstance(true, WebSocketFrame.Opcode.PING, false, null);
+            schedulePing(session);
+            return null;
         }
-        // WS_RECIVE 文本和二进制消息出发 Recived 事件
-        else if (reqWebSocketFrame.getOpcode() == WebSocketFrame.Opcode.TEXT || reqWebSocketFrame.getOpcode() == WebSocketFrame.Opcode.BINARY) {
-
-            ByteBuffer respData = webSocketRouter.onRecived(reqWebSocketFrame.getFrameData());
+        // WS_RECIVE 文本、二进制消息和后续分片触发 Recived 事件
+        else if (reqWebSocketFrame.getOpcode() == WebSocketFrame.Opcode.TEXT ||
+                reqWebSocketFrame.getOpcode() == WebSocketFrame.Opcode.BINARY ||
+                reqWebSocketFrame.getOpcode() == WebSocketFrame.Opcode.CONTINUOUS) {
 
             //判断解包是否有错
-            if (reqWebSocketFrame.getErrorCode() == 0) {
-                respWebSocketFrame = WebSocketFrame.newInstance(true, WebSocketFrame.Opcode.BINARY, true, respData);
-            } else {
+            if (reqWebSocketFrame.getErrorCode() != 0) {
                 //解析时出现异常,返回关闭消息
-                respWebSocketFrame = WebSocketFrame.newInstance(true, WebSocketFrame.Opcode.CLOSING, false, ByteBuffer.wrap(WebSocketTools.intToByteArray(reqWebSocketFrame.getErrorCode(), 2)));
+                streaming = null;
+                return WebSocketFrame.newInstance(true, WebSocketFrame.Opcode.CLOSING, false, ByteBuffer.wrap(WebSocketTools.intToByteArray(reqWebSocketFrame.getErrorCode(), 2)));
+            }
+
+            //后续分片必须属于一个未结束的分片消息, 分片消息未结束时不能开始新的消息
+            if ((reqWebSocketFrame.getOpcode() == WebSocketFrame.Opcode.CONTINUOUS) != (streaming != null)) {
+                streaming = null;
+                return WebSocketFrame.newInstance(true, WebSocketFrame.Opcode.CLOSING, false, ByteBuffer.wrap(WebSocketTools.intToByteArray(1002, 2)));
+            }
+
+            ByteBuffer respData = onMessage(reqWebSocketFrame);
+            if (respData == null) {
+                return null;
+            }
+
+            respWebSocketFrame = WebSocketFrame.newInstance(true, WebSocketFrame.Opcode.BINARY, true, respData);
+            if (PerMessageDeflate.get(session) != null) {
+                sendFrame(session, respWebSocketFrame);
+                return null;
             }
         }
 
         return respWebSocketFrame;
     }
 
+    /**
+     * 交付消息或分片给路由
+     *      未分片的消息直接交付, 分片消息按路由的 isStreaming 逐个分片交付或合并后交付
+     * @param webSocketFrame WebSocket 帧对象
+     * @return 需要发送的缓冲数据
+     */
+    private ByteBuffer onMessage(WebSocketFrame webSocketFrame) {
+        ByteBuffer data = webSocketFrame.getFrameData();
+
+        if (streaming == null && webSocketFrame.isFin()) {
+            return webSocketRouter.onRecived(data);
+        }
+
+        if (streaming == null) {
+            streaming = webSocketRouter.isStreaming();
+        }
+        boolean isStreaming = streaming;
+        if (webSocketFrame.isFin()) {
+            streaming = null;
+        }
+
+        if (isStreaming) {
+            return webSocketRouter.onFragment(data, webSocketFrame.isFin());
+        }
+
+        if (byteBufferChannel == null) {
+            byteBufferChannel = new ByteBufferChannel();
+        }
+        byteBufferChannel.writeEnd(data);
+        if (!webSocketFrame.isFin()) {
+            return null;
+        }
+
+        try {
+            return webSocketRouter.onRecived(byteBufferChannel.getByteBuffer());
+        } finally {
+            byteBufferChannel.compact();
+            byteBufferChannel.clear();
+        }
+    }
+
+    /**
+     * 在 ping 间隔时间后发送 ping 帧
+     * @param session 会话对象
+     */
+    private void schedulePing(final IoSession session) {
+        if (pingInterval <= 0) {
+            return;
+        }
+
+        PING_TIMER.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                if (session.isConnected()) {
+                    WebSocketFrame.newInstance(true, WebSocketFrame.Opcode.PING, true, null).send(session);
+                }
+            }
+        }, pingInterval * 1000L);
+    }
+
     @Override
     public void onSent(IoSession session, Object obj) {
         webSocketRouter.setSession(session);
@@ -0,0 +1,144 @@
+package org.voovan.http.http2;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * HPACK 头部解码器
+ * 		每个连接一个解码器, 动态表的状态依赖于头部块的解码顺序
+ *
+ * @author helyho
+ *
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class HpackDecoder {
+	private HpackTable table;
+	private int maxTableSize;
+
+	/**
+	 * 构造函数
+	 * @param maxTableSize 本端 SETTINGS_HEADER_TABLE_SIZE 参数, 对端的动态表尺寸更新不能超过这个值
+	 */
+	public HpackDecoder(int maxTableSize){
+		this.maxTableSize = maxTableSize;
+		this.table = new HpackTable(maxTableSize);
+	}
+
+	/**
+	 * 解码头部块
+	 * @param block 完整的头部块
+	 * @return 按顺序排列的头部, 每个元素是名称和值组成的数组
+	 * @throws Http2Exception 压缩错误
+	 */
+	public List<String[]> decode(ByteBuffer block) throws Http2Exception {
+		List<String[]> headers = new ArrayList<String[]>();
+
+		try {
+			while (block.hasRemaining()) {
+				int first = block.get(block.position()) & 0xff;
+
+				//索引的头部
+				if ((first & 0x80) != 0) {
+					int index = readInteger(block, 7);
+					headers.add(table.get(index));
+				}
+				//带增量索引的字面量头部
+				else if ((first & 0x40) != 0) {
+					String[] header = readLiteral(block, 6);
+					table.add(header[0], header[1]);
+					headers.add(header);
+				}
+				//动态表尺寸更新, 只能出现在头部块的开头
+				else if ((first & 0x20) != 0) {
+					if (!headers.isEmpty()) {
+						throw new Http2Exception(Http2Exception.COMPRESSION_ERROR, "Table size update after header");
+					}
+					int newSize = readInteger(block, 5);
+					if (newSize > maxTableSize) {
+						throw new Http2Exception(Http2Exception.COMPRESSION_ERROR, "Table size update exceeds limit");
+					}
+					table.setMaxSize(newSize);
+				}
+				//不索引和永不索引的字面量头部
+				else {
+					headers.add(readLiteral(block, 4));
+				}
+			}
+		} catch (IndexOutOfBoundsException | BufferUnderflowException e) {
+			throw new Http2Exception(Http2Exception.COMPRESSION_ERROR, "Truncated header block");
+		}
+
+		return headers;
+	}
+
+	/**
+	 * 读取字面量头部
+	 * @param block  头部块
+	 * @param prefix 名称索引的前缀位数
+	 * @return 名称和值组成的数组
+	 * @throws Http2Exception 压缩错误
+	 */
+	private String[] readLiteral(ByteBuffer block, int prefix) throws Http2Exception {
+		int nameIndex = readInteger(block, prefix);
+		String name = nameIndex == 0 ? readString(block) : table.get(nameIndex)[0];
+		String value = readString(block);
+		return new String[]{name, value};
+	}
+
+	/**
+	 * 读取字符串
+	 * @param block 头部块
+	 * @return 按 ISO-8859-1 转换的字节串
+	 * @throws Http2Exception 压缩错误
+	 */
+	private String readString(ByteBuffer block) throws Http2Exception {
+		boolean huffman = (block.get(block.position()) & 0x80) != 0;
+		int length = readInteger(block, 7);
+		if(length > block.remaining()){
+			throw new Http2Exception(Http2Exception.COMPRESSION_ERROR, "Truncated header string");
+		}
+
+		byte[] data = new byte[length];
+		block.get(data);
+		if(huffman){
+			data = HpackHuffman.decode(data, 0, length);
+		}
+		return new String(data, StandardCharsets.ISO_8859_1);
+	}
+
+	/**
+	 * 读取前缀整数
+	 * @param block  头部块
+	 * @param prefix 前缀位数
+	 * @return 整数值
+	 * @throws Http2Exception 整数溢出
+	 */
+	public static int readInteger(ByteBuffer block, int prefix) throws Http2Exception {
+		int mask = (1 << prefix) - 1;
+		int value = block.get() & mask;
+		if(value < mask){
+			return value;
+		}
+
+		int shift = 0;
+		int b;
+		do {
+			b = block.get() & 0xff;
+			if(shift > 28 || (shift == 28 && (b & 0x7f) > 7)){
+				throw new Http2Exception(Http2Exception.COMPRESSION_ERROR, "Integer overflow");
+			}
+			value = value + ((b & 0x7f) << shift);
+			shift = shift + 7;
+		} while ((b & 0x80) != 0);
+
+		if(value < 0){
+			throw new Http2Exception(Http2Exception.COMPRESSION_ERROR, "Integer overflow");
+		}
+		return value;
+	}
+}
@@ -0,0 +1,165 @@
+package org.voovan.http.http2;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * HPACK 头部编码器
+ * 		每个连接一个编码器, 头部块必须按编码的顺序发送
+ *
+ * @author helyho
+ *
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class HpackEncoder {
+
+	//本端使用的动态表尺寸上限, 对端允许更大的动态表时也不超过这个值
+	private static final int MAX_TABLE_SIZE = 4096;
+
+	//超过这个长度的值不加入动态表, 避免挤掉常用的条目
+	private static final int MAX_INDEXED_VALUE_LENGTH = 256;
+
+	private HpackTable table;
+	private boolean sizeUpdatePending;
+
+	public HpackEncoder(){
+		this.table = new HpackTable(MAX_TABLE_SIZE);
+		this.sizeUpdatePending = false;
+	}
+
+	/**
+	 * 根据对端的 SETTINGS_HEADER_TABLE_SIZE 参数调整动态表尺寸
+	 * 		尺寸变化会在下一个头部块的开头通知对端
+	 * @param peerTableSize 对端允许的动态表尺寸
+	 */
+	public void setMaxTableSize(int peerTableSize){
+		int newSize = Math.min(peerTableSize, MAX_TABLE_SIZE);
+		if(newSize != table.getMaxSize()){
+			table.setMaxSize(newSize);
+			sizeUpdatePending = true;
+		}
+	}
+
+	/**
+	 * 编码头部块
+	 * @param headers 头部列表, 每个元素是名称和值组成的数组, 名称必须是小写的
+	 * @return 头部块数据
+	 */
+	public byte[] encode(List<String[]> headers){
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream(256);
+
+		if(sizeUpdatePending){
+			writeInteger(outputStream, 0x20, 5, table.getMaxSize());
+			sizeUpdatePending = false;
+		}
+
+		for(String[] header : headers){
+			//统一转换成字节串, 保证动态表尺寸和对端的计算一致
+			String name = toOctetString(header[0]);
+			String value = toOctetString(header[1]);
+
+			//敏感的头部使用永不索引的字面量, 中间节点也不能对其索引
+			if(isSensitive(name)){
+				int index = table.find(name, value);
+				writeLiteral(outputStream, 0x10, 4, Math.abs(index), name, value);
+				continue;
+			}
+
+			int index = table.find(name, value);
+			if(index > 0){
+				writeInteger(outputStream, 0x80, 7, index);
+			} else if(value.length() > MAX_INDEXED_VALUE_LENGTH){
+				writeLiteral(outputStream, 0x00, 4, -index, name, value);
+			} else {
+				writeLiteral(outputStream, 0x40, 6, -index, name, value);
+				table.add(name, value);
+			}
+		}
+
+		return outputStream.toByteArray();
+	}
+
+	/**
+	 * 是否是敏感的头部
+	 * @param name 头部名称
+	 * @return true: 敏感, false: 不敏感
+	 */
+	private static boolean isSensitive(String name){
+		return "set-cookie".equals(name) || "authorization".equals(name) || "proxy-authorization".equals(name);
+	}
+
+	/**
+	 * 转换成按 ISO-8859-1 表示的字节串
+	 * @param str 字符串
+	 * @return 字节串
+	 */
+	private static String toOctetString(String str){
+		for(int i = 0; i < str.length(); i++){
+			if(str.charAt(i) > 0x7f){
+				return new String(str.getBytes(StandardCharsets.UTF_8), StandardCharsets.ISO_8859_1);
+			}
+		}
+		return str;
+	}
+
+	/**
+	 * 写入字面量头部
+	 * @param outputStream 输出流
+	 * @param pattern   类型标识位
+	 * @param prefix    名称索引的前缀位数
+	 * @param nameIndex 名称索引, 0 表示使用字面量名称
+	 * @param name      名称
+	 * @param value     值
+	 */
+	private static void writeLiteral(ByteArrayOutputStream outputStream, int pattern, int prefix, int nameIndex, String name, String value){
+		writeInteger(outputStream, pattern, prefix, nameIndex);
+		if(nameIndex == 0){
+			writeString(outputStream, name);
+		}
+		writeString(outputStream, value);
+	}
+
+	/**
+	 * 写入字符串
+	 * 		哈夫曼编码更短时使用哈夫曼编码
+	 * @param outputStream 输出流
+	 * @param str 字节串
+	 */
+	private static void writeString(ByteArrayOutputStream outputStream, String str){
+		byte[] data = str.getBytes(StandardCharsets.ISO_8859_1);
+		int huffmanLength = HpackHuffman.encodedLength(data);
+		if(huffmanLength < data.length){
+			writeInteger(outputStream, 0x80, 7, huffmanLength);
+			HpackHuffman.encode(data, outputStream);
+		} else {
+			writeInteger(outputStream, 0x00, 7, data.length);
+			outputStream.write(data, 0, data.length);
+		}
+	}
+
+	/**
+	 * 写入前缀整数
+	 * @param outputStream 输出流
+	 * @param pattern 第一个字节中的类型标识位
+	 * @param prefix  前缀位数
+	 * @param value   整数值
+	 */
+	public static void writeInteger(ByteArrayOutputStream outputStream, int pattern, int prefix, int value){
+		int mask = (1 << prefix) - 1;
+		if(value < mask){
+			outputStream.write(pattern | value);
+			return;
+		}
+
+		outputStream.write(pattern | mask);
+		value = value - mask;
+		while(value >= 0x80){
+			outputStream.write((value & 0x7f) | 0x80);
+			value = value >>> 7;
+		}
+		outputStream.write(value);
+	}
+}
@@ -0,0 +1,246 @@
+package org.voovan.http.http2;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * HPACK 头部索引表
+ * 		索引 1-61 是静态表, 62 开始是动态表, 动态表中最新加入的条目索引最小
+ *
+ * @author helyho
+ *
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class HpackTable {
+
+	public static final String[][] STATIC_TABLE = new String[][]{
+			{":authority", ""},
+			{":method", "GET"},
+			{":method", "POST"},
+			{":path", "/"},
+			{":path", "/index.html"},
+			{":scheme", "http"},
+			{":scheme", "https"},
+			{":status", "200"},
+			{":status", "204"},
+			{":status", "206"},
+			{":status", "304"},
+			{":status", "400"},
+			{":status", "404"},
+			{":status", "500"},
+			{"accept-charset", ""},
+			{"accept-encoding", "gzip, deflate"},
+			{"accept-language", ""},
+			{"accept-ranges", ""},
+			{"accept", ""},
+			{"access-control-allow-origin", ""},
+			{"age", ""},
+			{"allow", ""},
+			{"authorization", ""},
+			{"cache-control", ""},
+			{"content-disposition", ""},
+			{"content-encoding", ""},
+			{"content-language", ""},
+			{"content-length", ""},
+			{"content-location", ""},
+			{"content-range", ""},
+			{"content-type", ""},
+			{"cookie", ""},
+			{"date", ""},
+			{"etag", ""},
+			{"expect", ""},
+			{"expires", ""},
+			{"from", ""},
+			{"host", ""},
+			{"if-match", ""},
+			{"if-modified-since", ""},
+			{"if-none-match", ""},
+			{"if-range", ""},
+			{"if-unmodified-since", ""},
+			{"last-modified", ""},
+			{"link", ""},
+			{"location", ""},
+			{"max-forwards", ""},
+			{"proxy-authenticate", ""},
+			{"proxy-authorization", ""},
+			{"range", ""},
+			{"referer", ""},
+			{"refresh", ""},
+			{"retry-after", ""},
+			{"server", ""},
+			{"set-cookie", ""},
+			{"strict-transport-security", ""},
+			{"transfer-encoding", ""},
+			{"user-agent", ""},
+			{"vary", ""},
+			{"via", ""},
+			{"www-authenticate", ""}
+	};
+
+	public static final int STATIC_TABLE_LENGTH = STATIC_TABLE.length;
+
+	//静态表的名称索引, 用于编码时快速查找
+	private static final Map<String, Integer> STATIC_NAME_INDEX = new HashMap<String, Integer>();
+	private static final Map<String, Integer> STATIC_FIELD_INDEX = new HashMap<String, Integer>();
+
+	static {
+		for(int i = STATIC_TABLE_LENGTH - 1; i >= 0; i--){
+			STATIC_NAME_INDEX.put(STATIC_TABLE[i][0], i + 1);
+			STATIC_FIELD_INDEX.put(STATIC_TABLE[i][0] + ":" + STATIC_TABLE[i][1], i + 1);
+		}
+	}
+
+	private String[][] entries;
+	private int head;
+	private int count;
+	private int size;
+	private int maxSize;
+
+	/**
+	 * 构造函数
+	 * @param maxSize 动态表的最大尺寸
+	 */
+	public HpackTable(int maxSize){
+		this.entries = new String[16][];
+		this.head = 0;
+		this.count = 0;
+		this.size = 0;
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * 动态表的当前尺寸
+	 * @return 按 RFC 7541 4.1 节计算的尺寸
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * 设置动态表的最大尺寸, 超出的条目会被移除
+	 * @param maxSize 动态表的最大尺寸
+	 */
+	public void setMaxSize(int maxSize) {
+		this.maxSize = maxSize;
+		evict(0);
+	}
+
+	/**
+	 * 静态表和动态表的条目总数
+	 * @return 条目总数
+	 */
+	public int length(){
+		return STATIC_TABLE_LENGTH + count;
+	}
+
+	/**
+	 * 根据索引获取头部条目
+	 * @param index 索引, 从 1 开始
+	 * @return 名称和值组成的数组
+	 * @throws Http2Exception 索引不存在
+	 */
+	public String[] get(int index) throws Http2Exception {
+		if(index <= 0 || index > length()){
+			throw new Http2Exception(Http2Exception.COMPRESSION_ERROR, "Invalid header index " + index);
+		}
+
+		if(index <= STATIC_TABLE_LENGTH){
+			return STATIC_TABLE[index - 1];
+		}
+
+		int dynamicIndex = index - STATIC_TABLE_LENGTH - 1;
+		return entries[(head - 1 - dynamicIndex + entries.length) % entries.length];
+	}
+
+	/**
+	 * 查找头部条目的索引
+	 * @param name  名称
+	 * @param value 值
+	 * @return 名称和值都匹配时返回正的索引, 只有名称匹配时返回负的索引, 都不匹配返回 0
+	 */
+	public int find(String name, String value){
+		Integer staticIndex = STATIC_FIELD_INDEX.get(name + ":" + value);
+		if(staticIndex != null){
+			return staticIndex;
+		}
+
+		int nameIndex = 0;
+		for(int i = 0; i < count; i++){
+			String[] entry = entries[(head - 1 - i + entries.length) % entries.length];
+			if(entry[0].equals(name)){
+				if(entry[1].equals(value)){
+					return STATIC_TABLE_LENGTH + i + 1;
+				}
+				if(nameIndex == 0){
+					nameIndex = STATIC_TABLE_LENGTH + i + 1;
+				}
+			}
+		}
+
+		staticIndex = STATIC_NAME_INDEX.get(name);
+		if(staticIndex != null){
+			return -staticIndex;
+		}
+		return -nameIndex;
+	}
+
+	/**
+	 * 向动态表加入条目
+	 * 		条目大于动态表的最大尺寸时清空动态表
+	 * @param name  名称
+	 * @param value 值
+	 */
+	public void add(String name, String value){
+		int entrySize = entrySize(name, value);
+		evict(entrySize);
+
+		if(entrySize > maxSize){
+			return;
+		}
+
+		if(count == entries.length){
+			String[][] newEntries = new String[entries.length * 2][];
+			for(int i = 0; i < count; i++){
+				newEntries[i] = entries[(head - count + i + entries.length) % entries.length];
+			}
+			entries = newEntries;
+			head = count;
+		}
+
+		entries[head] = new String[]{name, value};
+		head = (head + 1) % entries.length;
+		count++;
+		size = size + entrySize;
+	}
+
+	/**
+	 * 移除最旧的条目, 直到有足够的空间容纳新条目
+	 * @param requiredSize 需要的空间
+	 */
+	private void evict(int requiredSize){
+		while(count > 0 && size + requiredSize > maxSize){
+			int tail = (head - count + entries.length) % entries.length;
+			String[] entry = entries[tail];
+			entries[tail] = null;
+			size = size - entrySize(entry[0], entry[1]);
+			count--;
+		}
+	}
+
+	/**
+	 * 计算条目尺寸
+	 * 		表中的字符串都是按 ISO-8859-1 转换的字节串, 字符数就是字节数
+	 * @param name  名称
+	 * @param value 值
+	 * @return 条目尺寸
+	 */
+	public static int entrySize(String name, String value){
+		return name.length() + value.length() + 32;
+	}
+}
@@ -0,0 +1,193 @@
+package org.voovan.http.http2;
+
+import java.nio.ByteBuffer;
+
+/**
+ * HTTP/2 帧解析类
+ * 		帧头固定 9 个字节: 长度(24位), 类型(8位), 标志(8位), 保留位(1位)和流 ID(31位)
+ *
+ * @author helyho
+ *
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class Http2Frame {
+
+	public static final int HEAD_LENGTH = 9;
+
+	public static final int FLAG_END_STREAM  = 0x1;
+	public static final int FLAG_ACK         = 0x1;
+	public static final int FLAG_END_HEADERS = 0x4;
+	public static final int FLAG_PADDED      = 0x8;
+	public static final int FLAG_PRIORITY    = 0x20;
+
+	private Type		type;
+	private int			flags;
+	private int			streamId;
+	private ByteBuffer	payload;
+
+	/**
+	 * 帧类型
+	 */
+	public enum Type {
+		DATA(0x0), HEADERS(0x1), PRIORITY(0x2), RST_STREAM(0x3), SETTINGS(0x4),
+		PUSH_PROMISE(0x5), PING(0x6), GOAWAY(0x7), WINDOW_UPDATE(0x8), CONTINUATION(0x9);
+
+		private int value;
+
+		Type(int value) {
+			this.value = value;
+		}
+
+		public int getValue() {
+			return value;
+		}
+
+		/**
+		 * 根据类型值获取帧类型
+		 * @param value 类型值
+		 * @return 帧类型, 未知的类型返回 null
+		 */
+		public static Type valueOf(int value){
+			Type[] types = Type.values();
+			return value >= 0 && value < types.length ? types[value] : null;
+		}
+	}
+
+	/**
+	 * 获取帧类型
+	 * @return 帧类型, 未知的帧类型返回 null, 按协议要求忽略这类帧
+	 */
+	public Type getType() {
+		return type;
+	}
+
+	public void setType(Type type) {
+		this.type = type;
+	}
+
+	public int getFlags() {
+		return flags;
+	}
+
+	public void setFlags(int flags) {
+		this.flags = flags;
+	}
+
+	/**
+	 * 判断是否设置了某个标志
+	 * @param flag 标志
+	 * @return true: 已设置, false: 未设置
+	 */
+	public boolean hasFlag(int flag){
+		return (flags & flag) != 0;
+	}
+
+	public int getStreamId() {
+		return streamId;
+	}
+
+	public void setStreamId(int streamId) {
+		this.streamId = streamId;
+	}
+
+	public ByteBuffer getPayload() {
+		return payload;
+	}
+
+	public void setPayload(ByteBuffer payload) {
+		this.payload = payload;
+	}
+
+	/**
+	 * 负载长度
+	 * @return 负载的字节数
+	 */
+	public int getLength(){
+		return payload == null ? 0 : payload.remaining();
+	}
+
+	/**
+	 * 构建新的实例
+	 * @param type     帧类型
+	 * @param flags    标志
+	 * @param streamId 流 ID
+	 * @param payload  负载数据
+	 * @return HTTP/2 帧对象
+	 */
+	public static Http2Frame newInstance(Type type, int flags, int streamId, ByteBuffer payload){
+		Http2Frame frame = new Http2Frame();
+		frame.setType(type);
+		frame.setFlags(flags);
+		frame.setStreamId(streamId);
+		frame.setPayload(payload);
+		return frame;
+	}
+
+	/**
+	 * 获取缓冲区中第一个帧的长度
+	 * @param byteBuffer 缓冲区
+	 * @return 帧的长度(包括帧头), 缓冲区中的数据不足一个帧头时返回 -1
+	 */
+	public static int frameLength(ByteBuffer byteBuffer){
+		if(byteBuffer.remaining() < HEAD_LENGTH){
+			return -1;
+		}
+
+		int position = byteBuffer.position();
+		return HEAD_LENGTH + (((byteBuffer.get(position) & 0xff) << 16) |
+				((byteBuffer.get(position + 1) & 0xff) << 8) |
+				(byteBuffer.get(position + 2) & 0xff));
+	}
+
+	/**
+	 * 解析帧
+	 * @param byteBuffer 包含一个完整帧的缓冲区
+	 * @return HTTP/2 帧对象
+	 * @throws Http2Exception 帧长度错误
+	 */
+	public static Http2Frame parse(ByteBuffer byteBuffer) throws Http2Exception {
+		int frameLength = frameLength(byteBuffer);
+		if(frameLength < 0 || byteBuffer.remaining() < frameLength){
+			throw new Http2Exception(Http2Exception.FRAME_SIZE_ERROR, "Incomplete frame");
+		}
+
+		byteBuffer.position(byteBuffer.position() + 3);
+		Http2Frame frame = new Http2Frame();
+		frame.type = Type.valueOf(byteBuffer.get() & 0xff);
+		frame.flags = byteBuffer.get() & 0xff;
+		frame.streamId = byteBuffer.getInt() & 0x7fffffff;
+
+		//负载复制到堆内存, 原缓冲区由调用者释放
+		byte[] payload = new byte[frameLength - HEAD_LENGTH];
+		byteBuffer.get(payload);
+		frame.payload = ByteBuffer.wrap(payload);
+		return frame;
+	}
+
+	/**
+	 * 转换成 ByteBuffer
+	 * @return 帧的字节数据
+	 */
+	public ByteBuffer toByteBuffer(){
+		int length = getLength();
+		ByteBuffer byteBuffer = ByteBuffer.allocate(HEAD_LENGTH + length);
+		byteBuffer.put((byte) (length >>> 16));
+		byteBuffer.put((byte) (length >>> 8));
+		byteBuffer.put((byte) length);
+		byteBuffer.put((byte) type.getValue());
+		byteBuffer.put((byte) flags);
+		byteBuffer.putInt(streamId & 0x7fffffff);
+		if(payload != null) {
+			byteBuffer.put(payload.duplicate());
+		}
+		byteBuffer.flip();
+		return byteBuffer;
+	}
+
+	@Override
+	public String toString() {
+		return "[" + type + "] stream=" + streamId + ", flags=0x" + Integer.toHexString(flags) + ", length=" + getLength();
+	}
+}
@@ -0,0 +1,160 @@
+package org.voovan.http.http2;
+
+import java.nio.ByteBuffer;
+
+/**
+ * HTTP/2 连接参数
+ * 		对应 SETTINGS 帧中的参数, 未设置的参数使用协议规定的默认值
+ *
+ * @author helyho
+ *
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class Http2Settings {
+
+	public static final int HEADER_TABLE_SIZE      = 0x1;
+	public static final int ENABLE_PUSH            = 0x2;
+	public static final int MAX_CONCURRENT_STREAMS = 0x3;
+	public static final int INITIAL_WINDOW_SIZE    = 0x4;
+	public static final int MAX_FRAME_SIZE         = 0x5;
+	public static final int MAX_HEADER_LIST_SIZE   = 0x6;
+
+	public static final int DEFAULT_WINDOW_SIZE    = 65535;
+	public static final int DEFAULT_FRAME_SIZE     = 16384;
+	public static final int MAX_WINDOW_SIZE        = Integer.MAX_VALUE;
+
+	private int headerTableSize      = 4096;
+	private boolean enablePush       = true;
+	private int maxConcurrentStreams = Integer.MAX_VALUE;
+	private int initialWindowSize    = DEFAULT_WINDOW_SIZE;
+	private int maxFrameSize         = DEFAULT_FRAME_SIZE;
+	private int maxHeaderListSize    = Integer.MAX_VALUE;
+
+	public int getHeaderTableSize() {
+		return headerTableSize;
+	}
+
+	public void setHeaderTableSize(int headerTableSize) {
+		this.headerTableSize = headerTableSize;
+	}
+
+	public boolean isEnablePush() {
+		return enablePush;
+	}
+
+	public void setEnablePush(boolean enablePush) {
+		this.enablePush = enablePush;
+	}
+
+	public int getMaxConcurrentStreams() {
+		return maxConcurrentStreams;
+	}
+
+	public void setMaxConcurrentStreams(int maxConcurrentStreams) {
+		this.maxConcurrentStreams = maxConcurrentStreams;
+	}
+
+	public int getInitialWindowSize() {
+		return initialWindowSize;
+	}
+
+	public void setInitialWindowSize(int initialWindowSize) {
+		this.initialWindowSize = initialWindowSize;
+	}
+
+	public int getMaxFrameSize() {
+		return maxFrameSize;
+	}
+
+	public void setMaxFrameSize(int maxFrameSize) {
+		this.maxFrameSize = maxFrameSize;
+	}
+
+	public int getMaxHeaderListSize() {
+		return maxHeaderListSize;
+	}
+
+	public void setMaxHeaderListSize(int maxHeaderListSize) {
+		this.maxHeaderListSize = maxHeaderListSize;
+	}
+
+	/**
+	 * 将 SETTINGS 帧的负载合并到当前参数
+	 * @param payload SETTINGS 帧的负载
+	 * @throws Http2Exception 参数错误
+	 */
+	public void merge(ByteBuffer payload) throws Http2Exception {
+		if(payload.remaining() % 6 != 0){
+			throw new Http2Exception(Http2Exception.FRAME_SIZE_ERROR, "Invalid SETTINGS length");
+		}
+
+		while(payload.remaining() >= 6){
+			int identifier = payload.getShort() & 0xffff;
+			long value = payload.getInt() & 0xffffffffL;
+
+			switch (identifier) {
+				case HEADER_TABLE_SIZE:
+					headerTableSize = (int) Math.min(value, Integer.MAX_VALUE);
+					break;
+				case ENABLE_PUSH:
+					if(value > 1){
+						throw new Http2Exception(Http2Exception.PROTOCOL_ERROR, "Invalid SETTINGS_ENABLE_PUSH");
+					}
+					enablePush = value == 1;
+					break;
+				case MAX_CONCURRENT_STREAMS:
+					maxConcurrentStreams = (int) Math.min(value, Integer.MAX_VALUE);
+					break;
+				case INITIAL_WINDOW_SIZE:
+					if(value > MAX_WINDOW_SIZE){
+						throw new Http2Exception(Http2Exception.FLOW_CONTROL_ERROR, "Invalid SETTINGS_INITIAL_WINDOW_SIZE");
+					}
+					initialWindowSize = (int) value;
+					break;
+				case MAX_FRAME_SIZE:
+					if(value < DEFAULT_FRAME_SIZE || value > 0xffffff){
+						throw new Http2Exception(Http2Exception.PROTOCOL_ERROR, "Invalid SETTINGS_MAX_FRAME_SIZE");
+					}
+					maxFrameSize = (int) value;
+					break;
+				case MAX_HEADER_LIST_SIZE:
+					maxHeaderListSize = (int) Math.min(value, Integer.MAX_VALUE);
+					break;
+				default:
+					//未知的参数按协议要求忽略
+					break;
+			}
+		}
+	}
+
+	/**
+	 * 转换成 SETTINGS 帧的负载
+	 * 		只输出与默认值不同的参数
+	 * @return 负载数据
+	 */
+	public ByteBuffer toByteBuffer(){
+		ByteBuffer byteBuffer = ByteBuffer.allocate(6 * 6);
+		if(headerTableSize != 4096) {
+			byteBuffer.putShort((short) HEADER_TABLE_SIZE).putInt(headerTableSize);
+		}
+		if(!enablePush) {
+			byteBuffer.putShort((short) ENABLE_PUSH).putInt(0);
+		}
+		if(maxConcurrentStreams != Integer.MAX_VALUE) {
+			byteBuffer.putShort((short) MAX_CONCURRENT_STREAMS).putInt(maxConcurrentStreams);
+		}
+		if(initialWindowSize != DEFAULT_WINDOW_SIZE) {
+			byteBuffer.putShort((short) INITIAL_WINDOW_SIZE).putInt(initialWindowSize);
+		}
+		if(maxFrameSize != DEFAULT_FRAME_SIZE) {
+			byteBuffer.putShort((short) MAX_FRAME_SIZE).putInt(maxFrameSize);
+		}
+		if(maxHeaderListSize != Integer.MAX_VALUE) {
+			byteBuffer.putShort((short) MAX_HEADER_LIST_SIZE).putInt(maxHeaderListSize);
+		}
+		byteBuffer.flip();
+		return byteBuffer;
+	}
+}
@@ -0,0 +1,346 @@
+package org.voovan.http.http2;
+
+import org.voovan.http.message.HttpParser;
+import org.voovan.http.message.Request;
+import org.voovan.tools.ByteBufferChannel;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * HTTP/2 流
+ * 		一个流对应一个请求/响应, 保存请求的头部和报文主体, 以及发送方向的流量控制窗口
+ *
+ * @author helyho
+ *
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class Http2Stream {
+
+	/**
+	 * 流的状态, 服务端不会主动创建流, 所以没有 IDLE 和 RESERVED 状态
+	 */
+	public enum State {
+		OPEN, HALF_CLOSED_REMOTE, CLOSED
+	}
+
+	private int id;
+	private volatile State state;
+	private List<String[]> headers;
+	private ByteArrayOutputStream headerBlock;
+	private ByteBufferChannel body;
+	private long sendWindow;
+	private int receiveWindow;
+
+	/**
+	 * 构造函数
+	 * @param id            流 ID
+	 * @param sendWindow    发送窗口的初始值
+	 * @param receiveWindow 接收窗口的初始值
+	 */
+	public Http2Stream(int id, int sendWindow, int receiveWindow){
+		this.id = id;
+		this.state = State.OPEN;
+		this.headers = new ArrayList<String[]>();
+		this.sendWindow = sendWindow;
+		this.receiveWindow = receiveWindow;
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	public State getState() {
+		return state;
+	}
+
+	public void setState(State state) {
+		this.state = state;
+	}
+
+	public boolean isClosed(){
+		return state == State.CLOSED;
+	}
+
+	public List<String[]> getHeaders() {
+		return headers;
+	}
+
+	/**
+	 * 发送窗口, 由连接的窗口锁保护
+	 * @return 发送窗口的字节数
+	 */
+	public long getSendWindow() {
+		return sendWindow;
+	}
+
+	public void setSendWindow(long sendWindow) {
+		this.sendWindow = sendWindow;
+	}
+
+	/**
+	 * 接收窗口, 只在会话的读取线程中访问
+	 * @return 对端还可以发送的字节数
+	 */
+	public int getReceiveWindow() {
+		return receiveWindow;
+	}
+
+	public void setReceiveWindow(int receiveWindow) {
+		this.receiveWindow = receiveWindow;
+	}
+
+	/**
+	 * 已经缓存的报文主体的字节数
+	 * @return 报文主体的字节数
+	 */
+	public int getBodySize(){
+		return body == null ? 0 : body.size();
+	}
+
+	/**
+	 * 追加头部块片段
+	 * 		头部块可能被拆分到 HEADERS 和多个 CONTINUATION 帧中
+	 * @param fragment 头部块片段
+	 * @param maxSize  头部块的最大尺寸
+	 * @throws Http2Exception 头部块过大
+	 */
+	public void appendHeaderBlock(ByteBuffer fragment, int maxSize) throws Http2Exception {
+		if(headerBlock == null){
+			headerBlock = new ByteArrayOutputStream(fragment.remaining());
+		}
+
+		if(headerBlock.size() + fragment.remaining() > maxSize){
+			throw new Http2Exception(Http2Exception.ENHANCE_YOUR_CALM, "Header block too large");
+		}
+
+		byte[] data = new byte[fragment.remaining()];
+		fragment.get(data);
+		headerBlock.write(data, 0, data.length);
+	}
+
+	/**
+	 * 取出完整的头部块
+	 * @return 头部块数据
+	 */
+	public ByteBuffer takeHeaderBlock(){
+		ByteBuffer block = ByteBuffer.wrap(headerBlock == null ? new byte[0] : headerBlock.toByteArray());
+		headerBlock = null;
+		return block;
+	}
+
+	/**
+	 * 写入请求的报文主体
+	 * @param data 数据
+	 */
+	public void writeBody(ByteBuffer data){
+		if(body == null){
+			body = new ByteBufferChannel(Math.max(data.remaining(), 1024));
+		}
+		body.writeEnd(data);
+	}
+
+	/**
+	 * 根据头部和报文主体构造请求对象
+	 * 		转换成 HTTP/1.1 报文后交给 HttpParser 解析, Cookie、multipart 等处理和 HTTP/1.1 保持一致.
+	 * 		转换前按 RFC 7540 8.1.2 检查头部, 避免通过 CR、LF 等字符在 HTTP/1.1 报文中注入头部或请求
+	 * @param timeOut 解析超时时间
+	 * @return 请求对象
+	 * @throws IOException IO 异常, 头部不合法时抛出流级别的 PROTOCOL_ERROR
+	 */
+	public Request toRequest(int timeOut) throws IOException {
+		String method = null;
+		String path = null;
+		String authority = null;
+		String scheme = null;
+		String contentLength = null;
+		boolean regularHeader = false;
+		StringBuilder cookie = null;
+		StringBuilder head = new StringBuilder(256);
+
+		for(String[] header : headers){
+			String name = header[0];
+			String value = header[1];
+
+			checkValue(name, value);
+
+			if(name.startsWith(":")){
+				//伪头部必须在普通头部之前, 且不能重复
+				if(regularHeader){
+					throw malformed("Pseudo header after regular header");
+				}
+
+				if(":method".equals(name) && method == null){
+					checkToken(":method", value, false);
+					method = value;
+				} else if(":path".equals(name) && path == null){
+					checkPath(value);
+					path = value;
+				} else if(":authority".equals(name) && authority == null){
+					authority = value;
+				} else if(":scheme".equals(name) && scheme == null){
+					scheme = value;
+				} else {
+					throw malformed("Invalid pseudo header " + name);
+				}
+				continue;
+			}
+
+			regularHeader = true;
+			checkToken("header name", name, true);
+
+			//HTTP/2 中不允许出现连接相关的头部
+			if("connection".equals(name) || "keep-alive".equals(name) || "proxy-connection".equals(name) ||
+					"transfer-encoding".equals(name) || "upgrade".equals(name) ||
+					("te".equals(name) && !"trailers".equals(value))){
+				throw malformed("Connection specific header " + name);
+			}
+
+			//HTTP/2 允许 Cookie 拆分成多个头部, 需要合并
+			if("cookie".equals(name)){
+				cookie = cookie == null ? new StringBuilder(value) : cookie.append("; ").append(value);
+			} else if("content-length".equals(name)){
+				contentLength = value;
+			} else if("host".equals(name)){
+				if(authority == null) {
+					authority = value;
+				}
+			} else {
+				head.append(toHeaderName(name)).append(": ").append(value).append("\r\n");
+			}
+		}
+
+		if(method == null || path == null || scheme == null){
+			throw malformed("Missing pseudo header");
+		}
+
+		int bodySize = body == null ? 0 : body.size();
+		if(contentLength != null && !contentLength.equals(Integer.toString(bodySize))){
+			throw malformed("Content-Length mismatch");
+		}
+
+		StringBuilder requestHead = new StringBuilder(head.length() + 128);
+		requestHead.append(method).append(" ").append(path).append(" HTTP/1.1\r\n");
+		if(authority != null){
+			requestHead.append("Host: ").append(authority).append("\r\n");
+		}
+		if(cookie != null){
+			requestHead.append("Cookie: ").append(cookie).append("\r\n");
+		}
+		requestHead.append(head);
+		if(bodySize > 0) {
+			requestHead.append("Content-Length: ").append(bodySize).append("\r\n");
+		}
+		requestHead.append("\r\n");
+
+		byte[] headBytes = requestHead.toString().getBytes(StandardCharsets.ISO_8859_1);
+		ByteBufferChannel requestChannel = new ByteBufferChannel(headBytes.length + bodySize);
+		try {
+			requestChannel.writeEnd(ByteBuffer.wrap(headBytes));
+			if (bodySize > 0) {
+				requestChannel.writeEnd(body.getByteBuffer());
+				body.compact();
+			}
+			return HttpParser.parseRequest(requestChannel, timeOut);
+		} finally {
+			requestChannel.release();
+		}
+	}
+
+	/**
+	 * 检查 token, 头部名称必须是小写的 token 字符, HTTP/2 中大写的名称作为请求格式错误处理
+	 * @param kind      检查的内容, 用于错误信息
+	 * @param token     需要检查的字符串
+	 * @param lowerCase 是否只允许小写字母
+	 * @throws Http2Exception 不是合法的 token
+	 */
+	private void checkToken(String kind, String token, boolean lowerCase) throws Http2Exception {
+		if(token.isEmpty()){
+			throw malformed("Empty " + kind);
+		}
+
+		for(int i = 0; i < token.length(); i++){
+			char c = token.charAt(i);
+			boolean valid = (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') ||
+					(!lowerCase && c >= 'A' && c <= 'Z') || "!#$%&'*+-.^_`|~".indexOf(c) >= 0;
+			if(!valid){
+				throw malformed("Invalid " + kind + " " + token);
+			}
+		}
+	}
+
+	/**
+	 * 检查头部的值, 值中不能包含 CR、LF 和 NUL
+	 * @param name  头部名称
+	 * @param value 头部的值
+	 * @throws Http2Exception 值不合法
+	 */
+	private void checkValue(String name, String value) throws Http2Exception {
+		for(int i = 0; i < value.length(); i++){
+			char c = value.charAt(i);
+			if(c == '\r' || c == '\n' || c == '\0'){
+				throw malformed("Invalid value of header " + name);
+			}
+		}
+	}
+
+	/**
+	 * 检查 :path, 路径会写入请求行, 不能为空也不能包含空白和控制字符
+	 * @param path 请求路径
+	 * @throws Http2Exception 路径不合法
+	 */
+	private void checkPath(String path) throws Http2Exception {
+		if(path.isEmpty()){
+			throw malformed("Empty :path");
+		}
+
+		for(int i = 0; i < path.length(); i++){
+			char c = path.charAt(i);
+			if(c <= ' ' || c >= 0x7f){
+				throw malformed("Invalid :path");
+			}
+		}
+	}
+
+	/**
+	 * 构造请求格式错误的异常, 只重置当前流
+	 * @param message 错误信息
+	 * @return 流级别的 PROTOCOL_ERROR
+	 */
+	private Http2Exception malformed(String message){
+		return new Http2Exception(Http2Exception.PROTOCOL_ERROR, id, message);
+	}
+
+	/**
+	 * 将小写的头部名称转换成 HTTP/1.1 的习惯写法, 例如 content-type 转换成 Content-Type
+	 * @param name 小写的头部名称
+	 * @return 转换后的头部名称
+	 */
+	private static String toHeaderName(String name){
+		char[] chars = name.toCharArray();
+		boolean upper = true;
+		for(int i = 0; i < chars.length; i++){
+			if(upper){
+				chars[i] = Character.toUpperCase(chars[i]);
+			}
+			upper = chars[i] == '-';
+		}
+		return new String(chars);
+	}
+
+	/**
+	 * 关闭流并释放报文主体的缓冲区
+	 */
+	public void close(){
+		state = State.CLOSED;
+		if(body != null && !body.isReleased()){
+			body.release();
+		}
+	}
+}
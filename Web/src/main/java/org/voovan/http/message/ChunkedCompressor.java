@@ -0,0 +1,200 @@
+package org.voovan.http.message;
+
+import org.voovan.network.IoSession;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * HTTP 流式压缩编码器
+ * 		写入的数据会被立即压缩, 压缩后的数据以 HTTP chunked 的形式发送,
+ * 		不需要在发送前把整个报文主体压缩完成
+ *
+ * @author helyho
+ *
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class ChunkedCompressor {
+
+	private static final int BUFFER_SIZE = 1024 * 16;
+
+	//GZIP 头: 魔数, 压缩方法(deflate), 标志, 修改时间, 额外标志, 操作系统(未知)
+	private static final byte[] GZIP_HEADER = new byte[]{0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+	private static final byte[] CHUNKED_END = "0\r\n\r\n".getBytes();
+
+	//每个线程复用 Deflater 和缓冲区, 避免每个响应都分配本地内存
+	private static ThreadLocal<Deflater> GZIP_DEFLATER = new ThreadLocal<Deflater>();
+	private static ThreadLocal<Deflater> ZLIB_DEFLATER = new ThreadLocal<Deflater>();
+	private static ThreadLocal<byte[]> THREAD_BUFFER = new ThreadLocal<byte[]>();
+
+	private IoSession session;
+	private boolean isGzip;
+	private Deflater deflater;
+	private CRC32 crc;
+	private byte[] inputBuffer;
+	private byte[] chunkBuffer;
+	private boolean headerSent;
+
+	/**
+	 * 构造函数
+	 * @param session  会话对象
+	 * @param encoding 压缩编码, gzip 或 deflate
+	 * @param level    压缩级别, 参照 Deflater 中的定义
+	 */
+	public ChunkedCompressor(IoSession session, String encoding, int level) {
+		this.session = session;
+		this.isGzip = !"deflate".equalsIgnoreCase(encoding);
+		this.deflater = getDeflater(isGzip);
+		this.deflater.setLevel(level);
+		this.crc = isGzip ? new CRC32() : null;
+
+		byte[] threadBuffer = THREAD_BUFFER.get();
+		if(threadBuffer == null){
+			threadBuffer = new byte[BUFFER_SIZE * 2 + 32];
+			THREAD_BUFFER.set(threadBuffer);
+		}
+		this.inputBuffer = new byte[BUFFER_SIZE];
+		this.chunkBuffer = threadBuffer;
+		this.headerSent = false;
+	}
+
+	/**
+	 * 获取当前线程的 Deflater
+	 * @param isGzip 是否是 gzip 编码, gzip 使用不带 zlib 包装的 deflate 数据
+	 * @return Deflater 对象
+	 */
+	private static Deflater getDeflater(boolean isGzip){
+		ThreadLocal<Deflater> threadDeflater = isGzip ? GZIP_DEFLATER : ZLIB_DEFLATER;
+		Deflater deflater = threadDeflater.get();
+		if(deflater == null){
+			deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, isGzip);
+			threadDeflater.set(deflater);
+		}
+		deflater.reset();
+		return deflater;
+	}
+
+	/**
+	 * 写入需要压缩的数据
+	 * @param buffer 字节数组
+	 * @param offset 偏移量
+	 * @param length 长度
+	 * @throws IOException IO 异常
+	 */
+	public void write(byte[] buffer, int offset, int length) throws IOException {
+		if(length <= 0){
+			return;
+		}
+
+		if(isGzip) {
+			crc.update(buffer, offset, length);
+		}
+
+		deflater.setInput(buffer, offset, length);
+		while (!deflater.needsInput()) {
+			deflate(Deflater.NO_FLUSH);
+		}
+	}
+
+	/**
+	 * 写入需要压缩的数据
+	 * @param byteBuffer ByteBuffer 对象
+	 * @throws IOException IO 异常
+	 */
+	public void write(ByteBuffer byteBuffer) throws IOException {
+		while(byteBuffer.hasRemaining()){
+			int length = Math.min(byteBuffer.remaining(), inputBuffer.length);
+			byteBuffer.get(inputBuffer, 0, length);
+			write(inputBuffer, 0, length);
+		}
+	}
+
+	/**
+	 * 完成压缩
+	 * 		发送剩余的压缩数据, gzip 尾部和 chunked 结束符
+	 * @throws IOException IO 异常
+	 */
+	public void finish() throws IOException {
+		deflater.finish();
+		while (!deflater.finished()) {
+			deflate(Deflater.NO_FLUSH);
+		}
+
+		if(isGzip){
+			byte[] trailer = new byte[8];
+			writeIntLE(trailer, 0, (int) crc.getValue());
+			writeIntLE(trailer, 4, (int) deflater.getBytesRead());
+			sendChunk(trailer, 0, trailer.length);
+		}
+
+		session.send(ByteBuffer.wrap(CHUNKED_END));
+		deflater.reset();
+	}
+
+	/**
+	 * 执行压缩并发送压缩后的数据
+	 * @param flush 刷新模式
+	 * @throws IOException IO 异常
+	 */
+	private void deflate(int flush) throws IOException {
+		int dataOffset = 16;
+		int dataLength = 0;
+
+		//gzip 头和第一块压缩数据合并在一个 chunk 中发送
+		if(isGzip && !headerSent){
+			System.arraycopy(GZIP_HEADER, 0, chunkBuffer, dataOffset, GZIP_HEADER.length);
+			dataLength = GZIP_HEADER.length;
+			headerSent = true;
+		}
+
+		dataLength = dataLength + deflater.deflate(chunkBuffer, dataOffset + dataLength, BUFFER_SIZE, flush);
+		if(dataLength > 0){
+			sendChunk(chunkBuffer, dataOffset, dataLength);
+		}
+	}
+
+	/**
+	 * 以 chunked 的形式发送数据
+	 * 		chunkBuffer 中的数据前需要预留 chunk 头的空间
+	 * @param data   数据
+	 * @param offset 偏移量
+	 * @param length 长度
+	 */
+	private void sendChunk(byte[] data, int offset, int length){
+		byte[] chunkHead = (Integer.toHexString(length) + "\r\n").getBytes();
+
+		if(data == chunkBuffer && offset >= chunkHead.length) {
+			int chunkOffset = offset - chunkHead.length;
+			System.arraycopy(chunkHead, 0, chunkBuffer, chunkOffset, chunkHead.length);
+			chunkBuffer[offset + length] = '\r';
+			chunkBuffer[offset + length + 1] = '\n';
+			session.send(ByteBuffer.wrap(chunkBuffer, chunkOffset, chunkHead.length + length + 2));
+		} else {
+			ByteBuffer chunk = ByteBuffer.allocate(chunkHead.length + length + 2);
+			chunk.put(chunkHead);
+			chunk.put(data, offset, length);
+			chunk.put((byte)'\r');
+			chunk.put((byte)'\n');
+			chunk.flip();
+			session.send(chunk);
+		}
+	}
+
+	/**
+	 * 以小端模式写入 int
+	 * @param buffer 字节数组
+	 * @param offset 偏移量
+	 * @param value  int 值
+	 */
+	private static void writeIntLE(byte[] buffer, int offset, int value){
+		buffer[offset]     = (byte) (value & 0xff);
+		buffer[offset + 1] = (byte) ((value >> 8) & 0xff);
+		buffer[offset + 2] = (byte) ((value >> 16) & 0xff);
+		buffer[offset + 3] = (byte) ((value >> 24) & 0xff);
+	}
+}
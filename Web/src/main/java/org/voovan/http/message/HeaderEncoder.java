@@ -0,0 +1,296 @@
+package org.voovan.http.message;
+
+import org.voovan.http.message.packet.Cookie;
+import org.voovan.http.message.packet.Header;
+import org.voovan.http.message.packet.ResponseProtocol;
+import org.voovan.tools.TByteBuffer;
+import org.voovan.tools.TDateTime;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * HTTP 响应报文头编码器
+ * 		报文头以 ASCII 字节直接写入线程复用的直接内存缓冲区, 不经过中间的字符串和字节数组.
+ * 		常用的状态行、Header 名称和 Header 值预先编码成字节常量,
+ * 		Date 的值每秒只格式化一次.
+ * 		缓冲区在 get() 时重置, 所以编码结果必须在同一线程下一次 get() 之前发送完成
+ *
+ * @author helyho
+ *
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class HeaderEncoder {
+	private static final int BUFFER_SIZE = 8 * 1024;
+	private static final int BUFFER_MAX_SIZE = 64 * 1024;
+
+	//缓存的 Header 名称和值的最大数量, 防止任意的 Header 使缓存无限增长
+	private static final int CACHE_MAX_SIZE = 256;
+
+	private static final byte[] CRLF = new byte[]{'\r', '\n'};
+	private static final byte[] SET_COOKIE = ascii("Set-Cookie: ");
+
+	private static final Map<String, byte[]> NAMES = new ConcurrentHashMap<String, byte[]>();
+	private static final Map<String, byte[]> VALUES = new ConcurrentHashMap<String, byte[]>();
+
+	//HTTP/1.1 的标准状态行, 以状态码为下标, 只在类初始化时写入
+	private static final StatusLine[] STATUS_LINES = new StatusLine[600];
+
+	private static volatile DateValue dateValue = new DateValue(0, "");
+
+	private static final ThreadLocal<HeaderEncoder> ENCODERS = new ThreadLocal<HeaderEncoder>() {
+		@Override
+		protected HeaderEncoder initialValue() {
+			return new HeaderEncoder();
+		}
+	};
+
+	static {
+		for (String name : new String[]{"Content-Type", "Content-Length", "Content-Encoding", "Transfer-Encoding",
+				"Connection", "Server", "Date", "Cache-Control", "Expires", "Last-Modified", "ETag",
+				"Accept-Ranges", "Content-Range", "Location", "Upgrade", "Sec-WebSocket-Accept",
+				"Sec-WebSocket-Extensions", "Keep-Alive", "Vary"}) {
+			NAMES.put(name, ascii(name + ": "));
+		}
+
+		for (String value : new String[]{"text/html", "text/plain", "text/css", "text/javascript",
+				"application/javascript", "application/json", "application/xml", "application/octet-stream",
+				"keep-alive", "Keep-Alive", "close", "Upgrade", "chunked", "gzip", "deflate", "bytes",
+				"websocket", "h2c", "0"}) {
+			VALUES.put(value, ascii(value + "\r\n"));
+		}
+
+		int[] statuses = new int[]{100, 101, 200, 201, 202, 204, 206, 301, 302, 303, 304, 307,
+				400, 401, 403, 404, 405, 413, 416, 500, 502, 503};
+		String[] statusCodes = new String[]{"Continue", "Switching Protocols", "OK", "Created", "Accepted",
+				"No Content", "Partial Content", "Moved Permanently", "Found", "See Other", "Not Modified",
+				"Temporary Redirect", "Bad Request", "Unauthorized", "Forbidden", "Not Found",
+				"Method Not Allowed", "Request Entity Too Large", "Requested Range Not Satisfiable",
+				"Internal Server Error", "Bad Gateway", "Service Unavailable"};
+		for (int i = 0; i < statuses.length; i++) {
+			STATUS_LINES[statuses[i]] = new StatusLine(statusCodes[i],
+					ascii("HTTP/1.1 " + statuses[i] + " " + statusCodes[i] + "\r\n"));
+		}
+	}
+
+	private ByteBuffer buffer;
+
+	private HeaderEncoder() {
+		buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	}
+
+	/**
+	 * 获取当前线程的编码器, 缓冲区被重置
+	 * @return 编码器对象
+	 */
+	public static HeaderEncoder get() {
+		HeaderEncoder headerEncoder = ENCODERS.get();
+		//临时扩大的缓冲区不再保留
+		if (headerEncoder.buffer.capacity() > BUFFER_MAX_SIZE) {
+			TByteBuffer.release(headerEncoder.buffer);
+			headerEncoder.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		}
+		headerEncoder.buffer.clear();
+		return headerEncoder;
+	}
+
+	/**
+	 * 获取当前时间的 Date 头的值
+	 * 		同一秒内返回同一个字符串对象, 编码时直接使用预先编码的字节
+	 * @return GMT 格式的当前时间
+	 */
+	public static String getDate() {
+		long second = System.currentTimeMillis() / 1000;
+		DateValue currentDateValue = dateValue;
+		if (currentDateValue.second != second) {
+			currentDateValue = new DateValue(second, TDateTime.formatToGMT(new Date(second * 1000)));
+			dateValue = currentDateValue;
+		}
+		return currentDateValue.value;
+	}
+
+	/**
+	 * 缓存一个常用的 Header 值的编码结果
+	 * 		例如 Server 头的值, 每个响应都会使用
+	 * @param value Header 值
+	 */
+	public static void cacheValue(String value) {
+		if (value != null && isAscii(value)) {
+			VALUES.put(value, ascii(value + "\r\n"));
+		}
+	}
+
+	/**
+	 * 写入状态行
+	 * 		标准的状态说明使用预先编码的状态行
+	 * @param protocol 响应协议对象
+	 */
+	public void writeStatusLine(ResponseProtocol protocol) {
+		int status = protocol.getStatus();
+		if ("HTTP".equals(protocol.getProtocol()) && protocol.getVersion() == 1.1F && status >= 0 && status < STATUS_LINES.length) {
+			StatusLine statusLine = STATUS_LINES[status];
+			if (statusLine != null && statusLine.statusCode.equals(protocol.getStatusCode())) {
+				put(statusLine.line);
+			} else {
+				//非标准的状态说明只为当前响应编码, 不写回共享的缓存
+				put(protocol.toString());
+			}
+		} else {
+			put(protocol.toString());
+		}
+	}
+
+	/**
+	 * 写入 Header
+	 * 		只写入以大写字母开头的 Header
+	 * @param header Header 对象
+	 */
+	public void writeHeader(Header header) {
+		for (Map.Entry<String, String> headerItemEntry : header.getHeaders().entrySet()) {
+			String key = headerItemEntry.getKey();
+			String value = headerItemEntry.getValue();
+			if (key.isEmpty() || !Character.isUpperCase(key.charAt(0))) {
+				continue;
+			}
+
+			byte[] nameBytes = NAMES.get(key);
+			if (nameBytes == null) {
+				nameBytes = toBytes(key + ": ");
+				if (NAMES.size() < CACHE_MAX_SIZE) {
+					NAMES.put(key, nameBytes);
+				}
+			}
+			put(nameBytes);
+
+			DateValue currentDateValue = dateValue;
+			byte[] valueBytes = value == null ? null : VALUES.get(value);
+			if (valueBytes != null) {
+				put(valueBytes);
+			} else if (value != null && value.equals(currentDateValue.value)) {
+				put(currentDateValue.line);
+			} else {
+				put(String.valueOf(value));
+				put(CRLF);
+			}
+		}
+	}
+
+	/**
+	 * 写入 Set-Cookie 头
+	 * @param cookies Cookie 对象集合
+	 */
+	public void writeCookies(List<Cookie> cookies) {
+		for (Cookie cookie : cookies) {
+			put(SET_COOKIE);
+			put(cookie.toString());
+			put(CRLF);
+		}
+	}
+
+	/**
+	 * 写入报文头结束的空行
+	 */
+	public void writeEnd() {
+		put(CRLF);
+	}
+
+	/**
+	 * 确保缓冲区在报文头之后还有指定的剩余空间, 用于将报文主体和报文头合并发送
+	 * @param size 需要的剩余空间
+	 * @return 处于写模式的缓冲区
+	 */
+	public ByteBuffer reserve(int size) {
+		ensureCapacity(size);
+		return buffer;
+	}
+
+	/**
+	 * 结束编码
+	 * @return 可供读取的缓冲区, 在同一线程下一次调用 get() 前有效
+	 */
+	public ByteBuffer flip() {
+		buffer.flip();
+		return buffer;
+	}
+
+	private void put(byte[] bytes) {
+		ensureCapacity(bytes.length);
+		buffer.put(bytes);
+	}
+
+	private void put(String str) {
+		int length = str.length();
+		ensureCapacity(length);
+		for (int i = 0; i < length; i++) {
+			char c = str.charAt(i);
+			if (c >= 0x80) {
+				//包含非 ASCII 字符时回退到 UTF-8 编码
+				buffer.position(buffer.position() - i);
+				put(str.getBytes(StandardCharsets.UTF_8));
+				return;
+			}
+			buffer.put((byte) c);
+		}
+	}
+
+	private void ensureCapacity(int size) {
+		if (buffer.remaining() < size) {
+			ByteBuffer newBuffer = ByteBuffer.allocateDirect(Math.max(buffer.capacity() * 2, buffer.position() + size));
+			buffer.flip();
+			newBuffer.put(buffer);
+			TByteBuffer.release(buffer);
+			buffer = newBuffer;
+		}
+	}
+
+	private static boolean isAscii(String str) {
+		for (int i = 0; i < str.length(); i++) {
+			if (str.charAt(i) >= 0x80) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static byte[] ascii(String str) {
+		return str.getBytes(StandardCharsets.US_ASCII);
+	}
+
+	private static byte[] toBytes(String str) {
+		return str.getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * 预先编码的状态行
+	 */
+	private static class StatusLine {
+		private final String statusCode;
+		private final byte[] line;
+
+		private StatusLine(String statusCode, byte[] line) {
+			this.statusCode = statusCode;
+			this.line = line;
+		}
+	}
+
+	/**
+	 * 当前秒的 Date 头的值
+	 */
+	private static class DateValue {
+		private long second;
+		private String value;
+		private byte[] line;
+
+		private DateValue(long second, String value) {
+			this.second = second;
+			this.value = value;
+			this.line = ascii(value + "\r\n");
+		}
+	}
+}
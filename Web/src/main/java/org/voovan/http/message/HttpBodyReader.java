@@ -0,0 +1,533 @@
+package org.voovan.http.message;
+
+import org.voovan.network.IoSession;
+import org.voovan.tools.ByteBufferChannel;
+import org.voovan.tools.Exception.MemoryReleasedException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * HTTP 响应报文内容段的流式读取通道
+ * 		从连接的缓冲区中边读取边解码, 不在内存中缓存整个内容段.
+ * 		chunked 分块在读取时解开, gzip/deflate 压缩在读取时解压缩,
+ * 		读取到的是解码后的数据, 可以使用 transferTo 直接写入调用方提供的通道(例如文件).
+ *
+ * @author helyho
+ *
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class HttpBodyReader implements ReadableByteChannel {
+
+	//每次从连接缓冲区中读取的最大字节数
+	private static final int SLICE_SIZE = 64 * 1024;
+	//连接缓冲区中允许积压的数据为 Socket 读缓冲区大小的倍数
+	private static final int MAX_BACKLOG_TIMES = 64;
+	private static final byte[] CRLF = "\r\n".getBytes();
+
+	//GZIP 头部的标志位
+	private static final int GZIP_MAGIC = 0x8b1f;
+	private static final int FHCRC 		= 2;
+	private static final int FEXTRA 	= 4;
+	private static final int FNAME 		= 8;
+	private static final int FCOMMENT 	= 16;
+
+	/**
+	 * 内容段的分帧方式
+	 */
+	private enum Framing {
+		CONTENT_LENGTH, CHUNKED, UNTIL_CLOSE
+	}
+
+	private IoSession session;
+	private ByteBufferChannel byteBufferChannel;
+	private int timeOut;
+	private Framing framing;
+	//CONTENT_LENGTH: 内容段剩余的长度, CHUNKED: 当前分块剩余的长度
+	private long remaining;
+	private boolean rawEnd;
+	private boolean finished;
+	private boolean ended;
+
+	//解压缩的状态
+	private Inflater inflater;
+	private boolean isGZip;
+	private boolean isDeflate;
+	private CRC32 crc;
+	private byte[] input;
+	private int inputOffset;
+	private int inputLength;
+	private byte[] output;
+	private boolean headerDone;
+
+	/**
+	 * 构造函数
+	 * @param byteBufferChannel 连接的缓冲区, 当前位置为响应报文内容段的开头
+	 * @param response 只包含头部的响应对象
+	 * @param timeOut 等待数据的超时时间
+	 */
+	public HttpBodyReader(ByteBufferChannel byteBufferChannel, Response response, int timeOut){
+		this.byteBufferChannel = byteBufferChannel;
+		this.timeOut = timeOut;
+
+		String transferEncoding = response.header().get("Transfer-Encoding");
+		String contentLength = response.header().get("Content-Length");
+		String contentEncoding = response.header().get("Content-Encoding");
+
+		if(HttpParser.isBodilessStatus(response.protocol().getStatus())){
+			framing = Framing.CONTENT_LENGTH;
+			remaining = 0;
+		} else if(transferEncoding != null && transferEncoding.contains("chunked")){
+			framing = Framing.CHUNKED;
+			remaining = 0;
+		} else if(contentLength != null){
+			framing = Framing.CONTENT_LENGTH;
+			remaining = Long.parseLong(contentLength.trim());
+		} else {
+			framing = Framing.UNTIL_CLOSE;
+		}
+
+		if(framing == Framing.CONTENT_LENGTH && remaining == 0){
+			rawEnd = true;
+			finished = true;
+		}
+
+		if(contentEncoding != null){
+			isGZip = contentEncoding.contains("gzip");
+			isDeflate = !isGZip && contentEncoding.contains("deflate");
+		}
+	}
+
+	/**
+	 * 构造函数
+	 * 		从会话的缓冲区中读取, 缓冲区积压的数据超过上限时会话暂停接收, 读取数据后恢复接收
+	 * @param session 会话对象, 缓冲区的当前位置为响应报文内容段的开头
+	 * @param response 只包含头部的响应对象
+	 */
+	public HttpBodyReader(IoSession session, Response response){
+		this(session.getByteBufferChannel(), response, session.socketContext().getReadTimeout());
+		this.session = session;
+		if(!finished) {
+			session.setReadBacklogLimit(session.socketContext().getBufferSize() * MAX_BACKLOG_TIMES);
+		}
+	}
+
+	/**
+	 * 内容段是否已经读取完成
+	 * @return true: 读取完成, false: 还有数据没有读取
+	 */
+	public boolean isFinished(){
+		return finished;
+	}
+
+	@Override
+	public boolean isOpen() {
+		return !ended;
+	}
+
+	/**
+	 * 读取解码后的内容段数据
+	 * @param dst 目标缓冲区
+	 * @return 读取的字节数, 内容段读取完成时返回 -1
+	 * @throws IOException IO 异常
+	 */
+	@Override
+	public int read(ByteBuffer dst) throws IOException {
+		if(ended && !finished){
+			throw new ClosedChannelException();
+		}
+
+		if(finished){
+			close();
+			return -1;
+		}
+
+		if(!dst.hasRemaining()){
+			return 0;
+		}
+
+		int readSize = (isGZip || isDeflate) ? readInflated(dst) : readRaw(dst);
+		if(readSize == -1){
+			finished = true;
+			close();
+		} else {
+			resumeRead();
+		}
+		return readSize;
+	}
+
+	/**
+	 * 将内容段剩余的数据全部写入目标通道
+	 * @param target 目标通道
+	 * @return 写入的字节数
+	 * @throws IOException IO 异常
+	 */
+	public long transferTo(WritableByteChannel target) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(SLICE_SIZE);
+		long totalSize = 0;
+		while(read(buffer) != -1){
+			buffer.flip();
+			totalSize = totalSize + buffer.remaining();
+			while(buffer.hasRemaining()){
+				target.write(buffer);
+			}
+			buffer.clear();
+		}
+		return totalSize;
+	}
+
+	/**
+	 * 关闭读取通道
+	 * 		内容段没有读取完成时关闭, 连接中会残留属于当前响应的数据
+	 */
+	@Override
+	public void close() {
+		if(!ended){
+			ended = true;
+			if(inflater != null){
+				inflater.end();
+				inflater = null;
+			}
+			//取消积压的上限, 暂停的接收随之恢复
+			if(session != null){
+				session.setReadBacklogLimit(0);
+			}
+			onEnd(finished);
+		}
+	}
+
+	/**
+	 * 读取结束时的回调, 只会调用一次
+	 * @param complete true: 内容段已经读取完成, false: 没有读取完成就被关闭
+	 */
+	protected void onEnd(boolean complete){
+	}
+
+	/**
+	 * 按分帧方式读取原始(未解压缩)的内容段数据
+	 * @param dst 目标缓冲区
+	 * @return 读取的字节数, 原始数据读取完成时返回 -1
+	 * @throws IOException IO 异常
+	 */
+	private int readRaw(ByteBuffer dst) throws IOException {
+		while(!rawEnd) {
+			if(framing == Framing.CHUNKED && remaining == 0){
+				readChunkedLength();
+				continue;
+			}
+
+			if(framing == Framing.CONTENT_LENGTH && remaining == 0){
+				rawEnd = true;
+				continue;
+			}
+
+			if(!waitData(1)){
+				//没有标识长度的内容段以连接关闭或等待数据超时作为结束
+				if(framing == Framing.UNTIL_CLOSE){
+					rawEnd = true;
+					continue;
+				}
+				throw new IOException("Http body read data timeout");
+			}
+
+			long readSize = Math.min(dst.remaining(), byteBufferChannel.size());
+			if(framing != Framing.UNTIL_CLOSE){
+				readSize = Math.min(readSize, remaining);
+			}
+
+			//readHead 会 flip 目标缓冲区, 所以读入共享内容的切片中
+			ByteBuffer slice = dst.slice();
+			slice.limit((int)readSize);
+			readSize = byteBufferChannel.readHead(slice);
+			dst.position(dst.position() + (int)readSize);
+
+			if(framing != Framing.UNTIL_CLOSE){
+				remaining = remaining - readSize;
+			}
+
+			//跳过分块结尾的换行符号, 分块数据之后不是 CRLF 说明分块长度与数据不符
+			if(framing == Framing.CHUNKED && remaining == 0){
+				if(!waitData(CRLF.length)){
+					throw new IOException("Http body read chunked data timeout");
+				}
+				if(byteBufferChannel.get(0) != CRLF[0] || byteBufferChannel.get(1) != CRLF[1]){
+					throw new IOException("Http body chunked data is not terminated by CRLF");
+				}
+				byteBufferChannel.shrink(-CRLF.length);
+			}
+
+			return (int)readSize;
+		}
+		return -1;
+	}
+
+	/**
+	 * 读取 chunked 分块的长度行, 长度为 0 的分块表示结束, 同时跳过 trailer
+	 * @throws IOException IO 异常
+	 */
+	private void readChunkedLength() throws IOException {
+		if(!waitLine()){
+			throw new IOException("Http body read chunked length timeout");
+		}
+
+		String chunkedLengthLine = byteBufferChannel.readLine().trim();
+		if(chunkedLengthLine.isEmpty()){
+			return;
+		}
+
+		//去掉 chunk-extension
+		int extensionIndex = chunkedLengthLine.indexOf(';');
+		if(extensionIndex >= 0){
+			chunkedLengthLine = chunkedLengthLine.substring(0, extensionIndex).trim();
+		}
+
+		try {
+			remaining = Long.parseLong(chunkedLengthLine, 16);
+		} catch (NumberFormatException e){
+			throw new IOException("Http body chunked length error: " + chunkedLengthLine, e);
+		}
+
+		if(remaining == 0){
+			//跳过 trailer 和结束的空行
+			while(waitLine()){
+				String trailerLine = byteBufferChannel.readLine();
+				if(trailerLine == null || trailerLine.trim().isEmpty()){
+					break;
+				}
+			}
+			rawEnd = true;
+		}
+	}
+
+	/**
+	 * 读取解压缩后的内容段数据
+	 * @param dst 目标缓冲区
+	 * @return 读取的字节数, 读取完成时返回 -1
+	 * @throws IOException IO 异常
+	 */
+	private int readInflated(ByteBuffer dst) throws IOException {
+		if(!headerDone){
+			input = new byte[SLICE_SIZE];
+			//压缩的内容段为空
+			if(!fillInput()){
+				return -1;
+			}
+
+			if(isGZip){
+				readGZipHeader();
+				inflater = new Inflater(true);
+				crc = new CRC32();
+			} else {
+				inflater = new Inflater(!isZlibHeader());
+			}
+			headerDone = true;
+		}
+
+		try {
+			while(true) {
+				if (inflater.finished()) {
+					//未使用的输入属于压缩数据之后的内容
+					inputOffset = inputOffset - inflater.getRemaining();
+					inputLength = inflater.getRemaining();
+					if (isGZip) {
+						readGZipTrailer();
+					}
+					skipRemaining();
+					return -1;
+				}
+
+				if (inflater.needsInput()) {
+					if (inputLength == 0 && !fillInput()) {
+						throw new IOException("Http body compressed data is incomplete");
+					}
+					inflater.setInput(input, inputOffset, inputLength);
+					inputOffset = inputOffset + inputLength;
+					inputLength = 0;
+				}
+
+				int inflateSize;
+				if (dst.hasArray()) {
+					int offset = dst.arrayOffset() + dst.position();
+					inflateSize = inflater.inflate(dst.array(), offset, dst.remaining());
+					if (crc != null) {
+						crc.update(dst.array(), offset, inflateSize);
+					}
+					dst.position(dst.position() + inflateSize);
+				} else {
+					if (output == null) {
+						output = new byte[SLICE_SIZE];
+					}
+					inflateSize = inflater.inflate(output, 0, Math.min(output.length, dst.remaining()));
+					if (crc != null) {
+						crc.update(output, 0, inflateSize);
+					}
+					dst.put(output, 0, inflateSize);
+				}
+
+				if (inflateSize > 0) {
+					return inflateSize;
+				}
+
+				if (inflater.needsDictionary()) {
+					throw new IOException("Http body deflate data needs a preset dictionary");
+				}
+			}
+		} catch (DataFormatException e){
+			throw new IOException("Http body decompress error. " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * 解析 GZIP 头部
+	 * @throws IOException IO 异常
+	 */
+	private void readGZipHeader() throws IOException {
+		if(readUnsignedShort() != GZIP_MAGIC){
+			throw new IOException("Http body is not in gzip format");
+		}
+
+		if(readUnsignedByte() != 8){
+			throw new IOException("Http body gzip compression method is unsupported");
+		}
+
+		int flags = readUnsignedByte();
+		//跳过 MTIME, XFL, OS
+		skipInput(6);
+
+		if((flags & FEXTRA) == FEXTRA){
+			skipInput(readUnsignedShort());
+		}
+
+		if((flags & FNAME) == FNAME){
+			while(readUnsignedByte() != 0);
+		}
+
+		if((flags & FCOMMENT) == FCOMMENT){
+			while(readUnsignedByte() != 0);
+		}
+
+		if((flags & FHCRC) == FHCRC){
+			skipInput(2);
+		}
+	}
+
+	/**
+	 * 读取并校验 GZIP 尾部的 CRC32 和原始数据长度
+	 * @throws IOException IO 异常
+	 */
+	private void readGZipTrailer() throws IOException {
+		long crcValue = readUnsignedInt();
+		long originalSize = readUnsignedInt();
+		if(crcValue != crc.getValue()){
+			throw new IOException("Http body gzip crc32 check failed");
+		}
+		if(originalSize != (inflater.getBytesWritten() & 0xffffffffL)){
+			throw new IOException("Http body gzip size check failed");
+		}
+	}
+
+	/**
+	 * 判断 deflate 数据是否带有 zlib 头部, 部分服务端会发送不带头部的 deflate 数据
+	 * @return true: 带有 zlib 头部, false: 不带 zlib 头部
+	 */
+	private boolean isZlibHeader() {
+		int cmf = input[inputOffset] & 0xff;
+		if((cmf & 0x0f) != 8){
+			return false;
+		}
+		if(inputLength > 1){
+			int flg = input[inputOffset + 1] & 0xff;
+			return ((cmf << 8) | flg) % 31 == 0;
+		}
+		return true;
+	}
+
+	/**
+	 * 跳过压缩数据之后剩余的内容段, 保证连接中的下一个响应可以被正确解析
+	 * @throws IOException IO 异常
+	 */
+	private void skipRemaining() throws IOException {
+		inputLength = 0;
+		while(fillInput()){
+			inputLength = 0;
+		}
+	}
+
+	/**
+	 * 在输入缓冲区为空时从内容段中读取数据
+	 * @return true: 读取到数据, false: 原始数据读取完成
+	 * @throws IOException IO 异常
+	 */
+	private boolean fillInput() throws IOException {
+		inputOffset = 0;
+		int readSize = readRaw(ByteBuffer.wrap(input));
+		if(readSize == -1){
+			inputLength = 0;
+			return false;
+		}
+		inputLength = readSize;
+		return true;
+	}
+
+	private int readUnsignedByte() throws IOException {
+		if(inputLength == 0 && !fillInput()){
+			throw new IOException("Http body compressed data is incomplete");
+		}
+		inputLength--;
+		return input[inputOffset++] & 0xff;
+	}
+
+	private int readUnsignedShort() throws IOException {
+		return readUnsignedByte() | (readUnsignedByte() << 8);
+	}
+
+	private long readUnsignedInt() throws IOException {
+		return ((long)readUnsignedShort()) | ((long)readUnsignedShort() << 16);
+	}
+
+	private void skipInput(int length) throws IOException {
+		for(int i = 0; i < length; i++){
+			readUnsignedByte();
+		}
+	}
+
+	/**
+	 * 缓冲区的数据被取走后恢复会话的接收
+	 */
+	private void resumeRead(){
+		if(session != null){
+			session.resumeRead();
+		}
+	}
+
+	/**
+	 * 等待连接缓冲区中的数据, 连接关闭后缓冲区被释放时返回 false
+	 * @param length 期望的数据长度
+	 * @return true: 具备期望长度的数据, false: 等待数据超时或连接已关闭
+	 */
+	private boolean waitData(int length){
+		resumeRead();
+		try {
+			return !byteBufferChannel.isReleased() && byteBufferChannel.waitData(length, timeOut);
+		} catch (MemoryReleasedException e){
+			return false;
+		}
+	}
+
+	private boolean waitLine(){
+		resumeRead();
+		try {
+			return !byteBufferChannel.isReleased() && byteBufferChannel.waitData(CRLF, timeOut);
+		} catch (MemoryReleasedException e){
+			return false;
+		}
+	}
+}
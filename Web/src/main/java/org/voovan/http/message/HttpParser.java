@@ -39,6 +39,7 @@ public class HttpParser {
 	private static final String HEAD_TRANSFER_ENCODING 	= "Transfer-Encoding";
 	private static final String HEAD_CONTENT_LENGTH 	= "Content-Length";
 	private static final String HEAD_COOKIE 			= "Cookie";
+	private static final String HEAD_COOKIE_LINE 		= "FL_CookieLine";
 
 
 	private static final String BODY_PARTS = "Body_Parts";
@@ -161,6 +162,14 @@ public class HttpParser {
 	 */
 	@SuppressWarnings("unchecked")
 	private static void parseCookie(Map<String, Object> packetMap,String cookieLine){
+		//请求 request 的 cookie 形式 多个cookie 一行, 只保存原始的值, 在第一次访问时解析
+		if(!cookieLine.contains("Set-Cookie") && cookieLine.startsWith(HEAD_COOKIE + ":")){
+			String cookieValue = cookieLine.substring(HEAD_COOKIE.length() + 1).trim();
+			Object previousValue = packetMap.get(HEAD_COOKIE_LINE);
+			packetMap.put(HEAD_COOKIE_LINE, previousValue == null ? cookieValue : previousValue + "; " + cookieValue);
+			return;
+		}
+
 		if(!packetMap.containsKey(HEAD_COOKIE)){
 			packetMap.put(HEAD_COOKIE, new ArrayList<Map<String, String>>());
 		}
@@ -231,6 +240,32 @@ public class HttpParser {
 	 * @throws IOException IO 异常
 	 */
 	public static Map<String, Object> parser(ByteBufferChannel byteBufferChannel, int timeOut) throws IOException{
+		return parser(byteBufferChannel, timeOut, false);
+	}
+
+	/**
+	 * 解析 HTTP 报文
+	 * 		只读取属于当前报文的数据, 缓冲区中剩余的数据属于下一个(管线化的)报文
+	 * @param byteBufferChannel 输入流
+	 * @param timeOut 读取超时时间参数
+	 * @param isRequest 是否是请求报文
+	 * @return 解析后的 Map
+	 * @throws IOException IO 异常
+	 */
+	public static Map<String, Object> parser(ByteBufferChannel byteBufferChannel, int timeOut, boolean isRequest) throws IOException{
+		return parser(byteBufferChannel, timeOut, isRequest, true);
+	}
+
+	/**
+	 * 解析 HTTP 报文
+	 * @param byteBufferChannel 输入流
+	 * @param timeOut 读取超时时间参数
+	 * @param isRequest 是否是请求报文
+	 * @param parseBody 是否解析内容段, false: 解析到头部结束的空行为止, 内容段保留在输入流中
+	 * @return 解析后的 Map
+	 * @throws IOException IO 异常
+	 */
+	private static Map<String, Object> parser(ByteBufferChannel byteBufferChannel, int timeOut, boolean isRequest, boolean parseBody) throws IOException{
 		Map<String, Object> packetMap = new HashMap<String, Object>();
 
 		int headerLength = 0;
@@ -262,6 +297,11 @@ public class HttpParser {
 			}
 
 
+			//只解析头部时内容段留给调用方读取
+			if(isBodyConent && !parseBody){
+				break;
+			}
+
 			//解析 HTTP 请求 body
 			if(isBodyConent){
 				String contentType =packetMap.get(HEAD_CONTENT_TYPE)==null ? "" : packetMap.get(HEAD_CONTENT_TYPE).toString();
@@ -389,6 +429,13 @@ public class HttpParser {
 						chunkedLengthLine = chunkedLengthLine1.trim();
 
 						if("0".equals(chunkedLengthLine)){
+							//跳过 trailer 和结束的空行
+							while(byteBufferChannel.waitData("\r\n".getBytes(), timeOut)){
+								String trailerLine = byteBufferChannel.readLine();
+								if(trailerLine == null || trailerLine.trim().isEmpty()){
+									break;
+								}
+							}
 							break;
 						}
 
@@ -451,12 +498,14 @@ public class HttpParser {
 					byte[] value = dealBodyContent(packetMap, contentBytes);
 					packetMap.put(BODY_VALUE, value);
 				}
-				//4. 容错,没有标识长度则默认读取全部内容段
-				else if(packetMap.get(BODY_VALUE)==null || packetMap.get(BODY_VALUE).toString().isEmpty()){
+				//4. 容错,没有标识长度则默认读取全部内容段, 请求报文和 1xx/204/304 响应没有标识长度时没有内容段
+				else if(!isRequest && !isBodilessStatus(packetMap.get(FL_STATUS)) &&
+						(packetMap.get(BODY_VALUE)==null || packetMap.get(BODY_VALUE).toString().isEmpty())){
 					byte[] contentBytes = byteBufferChannel.array();
 					if(contentBytes!=null && contentBytes.length>0){
 						contentBytes = Arrays.copyOf(contentBytes, contentBytes.length);
 					}
+					byteBufferChannel.clear();
 					byte[] value = dealBodyContent(packetMap, contentBytes);
 					packetMap.put(BODY_VALUE, value);
 				}
@@ -467,11 +516,22 @@ public class HttpParser {
 			}
 		}
 
-		byteBufferChannel.clear();
-
 		return packetMap;
 	}
 
+	/**
+	 * 判断响应状态码是否不包含报文内容段
+	 * @param status 响应状态码
+	 * @return true: 没有内容段, false: 可能有内容段
+	 */
+	static boolean isBodilessStatus(Object status){
+		if(status == null){
+			return false;
+		}
+		String statusString = status.toString();
+		return statusString.startsWith("1") || "204".equals(statusString) || "304".equals(statusString);
+	}
+
 	/**
 	 * 解析报文成 HttpRequest 对象
 	 * @param byteBufferChannel  输入字节流
@@ -481,7 +541,7 @@ public class HttpParser {
 	 */
 	@SuppressWarnings("unchecked")
 	public static Request parseRequest(ByteBufferChannel byteBufferChannel, int timeOut) throws IOException{
-		Map<String, Object> parsedPacket = parser(byteBufferChannel, timeOut);
+		Map<String, Object> parsedPacket = parser(byteBufferChannel, timeOut, true);
 
 		//如果解析的Map为空,则直接返回空
 		if(parsedPacket==null || parsedPacket.isEmpty()){
@@ -518,6 +578,9 @@ public class HttpParser {
 					}
 					cookieMap.clear();
 					break;
+				case HEAD_COOKIE_LINE:
+					request.setCookieLine(parsedPacketEntry.getValue().toString());
+					break;
 				case BODY_VALUE:
 					byte[] value = (byte[])(parsedPacketEntry.getValue());
 					request.body().write(value);
@@ -569,11 +632,23 @@ public class HttpParser {
 	 * @return   返回响应报文
 	 * @throws IOException IO 异常
 	 */
-	@SuppressWarnings("unchecked")
 	public static Response parseResponse(ByteBufferChannel byteBufferChannel, int timeOut) throws IOException{
+		return parseResponse(byteBufferChannel, timeOut, true);
+	}
+
+	/**
+	 * 解析报文成 HttpResponse 对象
+	 * @param byteBufferChannel  输入字节流
+	 * @param timeOut 读取超时时间参数
+	 * @param parseBody 是否解析内容段, false: 只解析头部, 内容段保留在输入字节流中, 可以使用 HttpBodyReader 流式读取
+	 * @return   返回响应报文
+	 * @throws IOException IO 异常
+	 */
+	@SuppressWarnings("unchecked")
+	public static Response parseResponse(ByteBufferChannel byteBufferChannel, int timeOut, boolean parseBody) throws IOException{
 		Response response = new Response();
 
-		Map<String, Object> parsedPacket = parser(byteBufferChannel, timeOut);
+		Map<String, Object> parsedPacket = parser(byteBufferChannel, timeOut, false, parseBody);
 
 		//填充报文到响应对象
 		Set<Entry<String, Object>> parsedItems= parsedPacket.entrySet();
@@ -33,9 +33,12 @@ public class Request {
 	private RequestProtocol	protocol;
 	private Header			header;
 	private List<Cookie>	cookies;
+	//尚未解析的请求 Cookie 头, 在第一次访问 Cookie 时解析
+	private String			cookieLine;
 	private Body			body;
 	private List<Part>		parts;
-	private String boundary = THash.encryptBASE64(TString.generateShortUUID());
+	//multipart 的分隔符, 在第一次使用时生成
+	private String boundary;
 	private static final String CONTENT_TYPE = "Content-Type";
 
 	/**
@@ -59,6 +62,10 @@ public class Request {
 		this.body = request.body;
 		this.cookies = request.cookies;
 		this.parts = request.parts;
+
+		//Cookie 集合是共享的, 由新的请求对象负责解析
+		this.cookieLine = request.cookieLine;
+		request.cookieLine = null;
 	}
 
 	/**
@@ -96,9 +103,30 @@ public class Request {
 	 * @return Cookie 对象
 	 */
 	public List<Cookie> cookies() {
+		if (cookieLine != null) {
+			String line = cookieLine;
+			cookieLine = null;
+			Cookie.parseRequestCookies(line, cookies);
+		}
 		return cookies;
 	}
 
+	/**
+	 * 获取尚未解析的 Cookie 头
+	 * @return Cookie 头的值, 已经解析或没有 Cookie 头时返回 null
+	 */
+	protected String getCookieLine() {
+		return cookieLine;
+	}
+
+	/**
+	 * 设置尚未解析的 Cookie 头
+	 * @param cookieLine Cookie 头的值
+	 */
+	void setCookieLine(String cookieLine) {
+		this.cookieLine = cookieLine;
+	}
+
 	/**
 	 * 获取 Body 对象
 	 *
@@ -171,6 +199,13 @@ public class Request {
 		return queryString.isEmpty()? null : queryString;
 	}
 	
+	private String getBoundary() {
+		if (boundary == null) {
+			boundary = THash.encryptBASE64(TString.generateShortUUID());
+		}
+		return boundary;
+	}
+
 	/**
 	 * 根据内容构造一些必要的 Header 属性
 	 * 		这里不按照请求方法组装必要的头信息,而是根据 Body 和 parts 对象的内容组装必要的头信息
@@ -195,7 +230,7 @@ public class Request {
 		}
 
 		if("multipart/form-data;".equals(header.get(CONTENT_TYPE))){
-			header.put(CONTENT_TYPE ,header.get(CONTENT_TYPE)+" boundary=" + boundary);
+			header.put(CONTENT_TYPE ,header.get(CONTENT_TYPE)+" boundary=" + getBoundary());
 		}
 
 		if (body.size() > 0) {
@@ -210,7 +245,7 @@ public class Request {
 	 */
 	private String genCookie() {
 		StringBuilder cookieString = new StringBuilder();
-		for (Cookie cookie : cookies) {
+		for (Cookie cookie : cookies()) {
 			cookieString.append(cookie.getName());
 			cookieString.append("=");
 			cookieString.append(cookie.getValue());
@@ -284,11 +319,11 @@ public class Request {
                 // 获取 multiPart 标识
                 for (Part part : this.parts) {
                     //发送 part 报文
-                    part.send(session, boundary);
+                    part.send(session, getBoundary());
                 }
 
                 //发送结尾标识
-                byteBuffer.put(("--" + boundary + "--").getBytes());
+                byteBuffer.put(("--" + getBoundary() + "--").getBytes());
                 byteBuffer.flip();
                 session.send(byteBuffer);
                 byteBuffer.clear();
@@ -307,7 +342,8 @@ public class Request {
 	 */
 	public void clear(){
 		this.header().clear();
-		this.cookies().clear();
+		this.cookies.clear();
+		this.cookieLine = null;
 		this.protocol().clear();
 		this.body().clear();
 		this.parts().clear();
@@ -7,13 +7,12 @@ import org.voovan.http.message.packet.ResponseProtocol;
 import org.voovan.network.IoSession;
 import org.voovan.tools.TByteBuffer;
 import org.voovan.tools.TString;
-import org.voovan.tools.log.Logger;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.zip.Deflater;
 
 /**
  * HTTP 响应对象
@@ -25,11 +24,16 @@ import java.util.List;
  * Licence: Apache v2 License
  */
 public class Response {
+	//与报文头合并发送的报文主体的最大尺寸
+	private static final int MERGE_BODY_MAX_SIZE = 16 * 1024;
+
 	private ResponseProtocol	protocol;
 	private Header				header;
 	private List<Cookie>		cookies;
 	private Body				body;
 	private boolean				isCompress;
+	private String				compressEncoding;
+	private int					compressLevel;
 
 	/**
 	 * 构造函数
@@ -42,6 +46,8 @@ public class Response {
 		this.body = response.body;
 		this.cookies = response.cookies;
 		this.isCompress = response.isCompress;
+		this.compressEncoding = response.compressEncoding;
+		this.compressLevel = response.compressLevel;
 	}
 
 	/**
@@ -53,10 +59,13 @@ public class Response {
 		cookies = new ArrayList<Cookie>();
 		body = new Body();
 		isCompress = false;
+		compressEncoding = "gzip";
+		compressLevel = Deflater.DEFAULT_COMPRESSION;
 	}
 
 	/**
-	 * 是否压缩 默认为 true
+	 * 是否压缩 默认为 false
+	 * 		服务端在启用 gzip 且请求接受压缩编码时开启
 	 * 
 	 * @return 是否启用个压缩
 	 */
@@ -73,6 +82,42 @@ public class Response {
 		this.isCompress = isCompress;
 	}
 
+	/**
+	 * 获取压缩编码
+	 *
+	 * @return 压缩编码, gzip 或 deflate
+	 */
+	public String getCompressEncoding() {
+		return compressEncoding;
+	}
+
+	/**
+	 * 设置压缩编码
+	 *
+	 * @param compressEncoding 压缩编码, gzip 或 deflate
+	 */
+	public void setCompressEncoding(String compressEncoding) {
+		this.compressEncoding = compressEncoding;
+	}
+
+	/**
+	 * 获取压缩级别
+	 *
+	 * @return 压缩级别, 参照 Deflater 中的定义
+	 */
+	public int getCompressLevel() {
+		return compressLevel;
+	}
+
+	/**
+	 * 设置压缩级别
+	 *
+	 * @param compressLevel 压缩级别, 参照 Deflater 中的定义
+	 */
+	public void setCompressLevel(int compressLevel) {
+		this.compressLevel = compressLevel;
+	}
+
 	/**
 	 * 获取协议对象
 	 * 
@@ -115,10 +160,19 @@ public class Response {
 	private void initHeader() {
 		// 根据压缩属性确定 Header 的一些属性内容
 		if (body.size()!=0 && isCompress) {
+			header.remove("Content-Length");
 			header.put("Transfer-Encoding", "chunked");
-			header.put("Content-Encoding", "gzip");
+			header.put("Content-Encoding", compressEncoding);
+
+			//压缩与否取决于请求的 Accept-Encoding, 缓存需要按它区分响应
+			String vary = header.get("Vary");
+			if (TString.isNullOrEmpty(vary)) {
+				header.put("Vary", "Accept-Encoding");
+			} else if (!vary.trim().equals("*") && !vary.toLowerCase().contains("accept-encoding")) {
+				header.put("Vary", vary + ", Accept-Encoding");
+			}
 		} else {
-			header.put("Content-Length", Integer.toString(body.getBodyBytes().length));
+			header.put("Content-Length", Long.toString(body.size()));
 		}
 		
 		if (TString.isNullOrEmpty(header.get("Content-Type"))) {
@@ -126,59 +180,39 @@ public class Response {
 		}
 	}
 
-	/**
-	 * 根据 Cookie 对象,生成 HTTP 响应中的 Cookie 字符串 用于报文拼装
-	 * 
-	 * @return Cookie 字符串
-	 */
-	private String genCookie() {
-		StringBuilder cookieString = new StringBuilder();
-		for (Cookie cookie : cookies) {
-			cookieString.append("Set-Cookie: ");
-			cookieString.append(cookie.toString());
-			cookieString.append("\r\n");
-		}
-		return cookieString.toString();
-	}
-
-
-	
 	/**
 	 * 根据对象的内容,构造 Http 响应报头
-	 * 
-	 * @return ByteBuffer 响应报文的报头
+	 * 		报头编码在当前线程复用的缓冲区中, 在同一线程下一次编码前有效
+	 *
+	 * @return 响应报文头的编码器
 	 */
-	private ByteBuffer readHead() {
+	private HeaderEncoder writeHead() {
+		initHeader();
 
-		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		HeaderEncoder headerEncoder = HeaderEncoder.get();
 
-		initHeader();
-		
-		try {
-			// 处理协议行
-			outputStream.write(protocol.toString().getBytes("UTF-8"));
+		// 处理协议行
+		headerEncoder.writeStatusLine(protocol);
 
-			// 处理 Header
-			outputStream.write(header.toString().getBytes("UTF-8"));
+		// 处理 Header
+		headerEncoder.writeHeader(header);
 
-			// 处理 Cookie
-			outputStream.write(genCookie().getBytes("UTF-8"));
+		// 处理 Cookie
+		headerEncoder.writeCookies(cookies);
 
-			//头结束插入空行
-			outputStream.write("\r\n".getBytes("UTF-8"));
+		//头结束插入空行
+		headerEncoder.writeEnd();
 
-		} catch (IOException e) {
-			Logger.error("OutputString io error",e);
-		}
-		return ByteBuffer.wrap(outputStream.toByteArray());
+		return headerEncoder;
 	}
 
-	private ByteBuffer readEnd(){
-		if (isCompress) {
-			return ByteBuffer.wrap("0\r\n\r\n".getBytes());
-		}else{
-			return ByteBuffer.allocate(0);
-		}
+	/**
+	 * 根据对象的内容,构造 Http 响应报头
+	 * 
+	 * @return ByteBuffer 响应报文的报头
+	 */
+	private ByteBuffer readHead() {
+		return writeHead().flip();
 	}
 
 	/**
@@ -188,12 +222,31 @@ public class Response {
 	 */
 	public void send(IoSession session) throws IOException {
 
+		//空的报文主体不需要压缩, 压缩后反而会产生 20 字节的 gzip 数据
+		if(isCompress && body.size() <= 0){
+			isCompress = false;
+		}
+
+		HeaderEncoder headerEncoder = writeHead();
+
+		//内存中的小报文主体与报文头合并为一次写入, 避免报文头单独发送后因 Nagle 算法等待对端的延迟确认
+		long bodySize = body.size();
+		if(!isCompress && !body.isFile() && bodySize > 0 && bodySize <= MERGE_BODY_MAX_SIZE){
+			ByteBuffer byteBuffer = headerEncoder.reserve((int) bodySize);
+			body.read(byteBuffer);
+			session.send(byteBuffer);
+			body.free();
+			return;
+		}
+
 		//发送报文头
-		session.send(readHead());
+		session.send(headerEncoder.flip());
 
-		//是否需要压缩
-		if(isCompress){
-			body.compress();
+		//文件类型的报文主体且不需要压缩时直接发送文件,不经过 Java 堆
+		if(!isCompress && body.isFile()){
+			body.send(session);
+			body.free();
+			return;
 		}
 
 		//发送报文主体
@@ -201,40 +254,26 @@ public class Response {
 
 			//准备缓冲区
 			ByteBuffer byteBuffer = ByteBuffer.allocateDirect(1024 * 50);
-			int readSize = 0;
-			while (true) {
-
-				readSize = body.read(byteBuffer);
-
-				if (readSize == -1) {
-					break;
-				}
-
-				//判断是否需要发送 chunked 段长度
-				if (isCompress() && readSize!=0) {
-					String chunkedLengthLine = Integer.toHexString(readSize) + "\r\n";
-					session.send(ByteBuffer.wrap(chunkedLengthLine.getBytes()));
-				}
-
-				session.send(byteBuffer);
-				byteBuffer.clear();
-
-				//判断是否需要发送 chunked 结束符号
-				if (isCompress() && readSize!=0) {
-					session.send(ByteBuffer.wrap("\r\n".getBytes()));
+			try {
+				//流式压缩, 读取一块压缩一块, 压缩后的数据以 chunked 的形式立即发送
+				if (isCompress) {
+					ChunkedCompressor compressor = new ChunkedCompressor(session, compressEncoding, compressLevel);
+					while (body.read(byteBuffer) != -1) {
+						compressor.write(byteBuffer);
+						byteBuffer.clear();
+					}
+					compressor.finish();
+				} else {
+					while (body.read(byteBuffer) != -1) {
+						session.send(byteBuffer);
+						byteBuffer.clear();
+					}
 				}
+			} finally {
+				TByteBuffer.release(byteBuffer);
+				body.free();
 			}
-
-			byteBuffer.clear();
-
-			//发送报文结束符
-			session.send(readEnd());
-			TByteBuffer.release(byteBuffer);
-			body.free();
 		}
-
-
-
 	}
 
 	/**
@@ -1,16 +1,27 @@
 package org.voovan.http.message.packet;
 
+import org.voovan.network.IoSession;
 import org.voovan.tools.ByteBufferChannel;
 import org.voovan.tools.TFile;
 import org.voovan.tools.TString;
 import org.voovan.tools.TZip;
 import org.voovan.tools.log.Logger;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * HTTP的内容对象
@@ -21,10 +32,21 @@ import java.nio.ByteBuffer;
  * Licence: Apache v2 License
  */
 public class Body {
+	//字符编码时线程内复用的分块缓冲区
+	private static final ThreadLocal<ByteBuffer> ENCODE_BUFFER = new ThreadLocal<ByteBuffer>() {
+		@Override
+		protected ByteBuffer initialValue() {
+			return ByteBuffer.allocate(8 * 1024);
+		}
+	};
+
 	private ByteBufferChannel byteBufferChannel;
 	private BodyType type;
 	private File bodyFile;
-	private long position;
+	private FileChannel fileChannel;
+	private List<FileSegment> fileSegments;
+	private int segmentIndex;
+	private long segmentOffset;
 
 	/**
 	 * Body 类型枚举
@@ -98,21 +120,65 @@ public class Body {
 	 * @throws FileNotFoundException 文件未找到异常
 	 */
 	public void changeToFile(File bodyFile) throws FileNotFoundException{
+		changeToFile(bodyFile, null, 0, -1);
+	}
+
+	/**
+	 * 转换成文件形式
+	 * 		只使用文件中的一个范围作为 Body 的内容
+	 * @param bodyFile  文件对象
+	 * @param beginPosition 起始位置
+	 * @param endPosition   结束位置(不包含), 小于0则到文件结尾
+	 * @throws FileNotFoundException 文件未找到异常
+	 */
+	public void changeToFile(File bodyFile, long beginPosition, long endPosition) throws FileNotFoundException{
+		changeToFile(bodyFile, null, beginPosition, endPosition);
+	}
+
+	/**
+	 * 转换成文件形式
+	 * 		使用 头部字节 + 文件中的一个范围 作为 Body 的内容, 可以通过 appendFileSegment 方法继续追加片段
+	 * @param bodyFile  文件对象
+	 * @param head      片段的头部字节, 可以为 null
+	 * @param beginPosition 起始位置
+	 * @param endPosition   结束位置(不包含), 小于0则到文件结尾
+	 * @throws FileNotFoundException 文件未找到异常
+	 */
+	public void changeToFile(File bodyFile, byte[] head, long beginPosition, long endPosition) throws FileNotFoundException{
 
         if(!bodyFile.exists()){
             throw new FileNotFoundException("Upload file " + bodyFile.getPath() + " not exists");
         }
 
+		closeFileChannel();
+
         this.bodyFile = bodyFile;
 
 		if(byteBufferChannel != null){
 			byteBufferChannel = null;
 		}
 
-		position = 0;
+		fileSegments = new ArrayList<FileSegment>();
+		fileSegments.add(new FileSegment(head, beginPosition, endPosition));
+		segmentIndex = 0;
+		segmentOffset = 0;
 		this.type = BodyType.FILE;
 	}
 
+	/**
+	 * 追加文件片段
+	 * 		用于拼装由多个文件范围组成的内容, 例如 multipart/byteranges 响应
+	 * @param head      片段的头部字节, 可以为 null
+	 * @param beginPosition 起始位置
+	 * @param endPosition   结束位置(不包含), 小于0则到文件结尾
+	 */
+	public void appendFileSegment(byte[] head, long beginPosition, long endPosition){
+		if(type != BodyType.FILE){
+			throw new IllegalStateException("Body is not a file body");
+		}
+		fileSegments.add(new FileSegment(head, beginPosition, endPosition));
+	}
+
 	/**
 	 * 转换成文件形式
 	 * @param file  文件路径
@@ -133,6 +199,7 @@ public class Body {
 		}
 
 		if(bodyFile != null){
+			closeFileChannel();
 			bodyFile = null;
 		}
 
@@ -140,18 +207,92 @@ public class Body {
 		type = BodyType.BYTES;
 	}
 
+	/**
+	 * 文件片段
+	 * 		由头部字节和文件中的一个范围组成
+	 */
+	private class FileSegment {
+		private byte[] head;
+		private long beginPosition;
+		private long endPosition;
+
+		private FileSegment(byte[] head, long beginPosition, long endPosition){
+			this.head = head == null ? new byte[0] : head;
+			this.beginPosition = beginPosition;
+			this.endPosition = endPosition;
+		}
+
+		/**
+		 * 获取文件范围的结束位置
+		 * @return 文件范围的结束位置(不包含)
+		 */
+		private long getEndPosition(){
+			long fileSize = bodyFile.length();
+			if(endPosition < 0 || endPosition > fileSize){
+				return fileSize;
+			}else{
+				return endPosition;
+			}
+		}
+
+		/**
+		 * 获取文件范围的长度
+		 * @return 文件范围的长度
+		 */
+		private long fileLength(){
+			return Math.max(getEndPosition() - beginPosition, 0);
+		}
+
+		/**
+		 * 获取片段总长度
+		 * @return 头部字节 + 文件范围的长度
+		 */
+		private long length(){
+			return head.length + fileLength();
+		}
+	}
+
+	/**
+	 * 获取文件通道
+	 * 		文件通道在 Body 中复用, 在 clear() 时关闭
+	 * @return 文件通道
+	 * @throws IOException IO 异常
+	 */
+	private FileChannel getFileChannel() throws IOException {
+		if(fileChannel == null || !fileChannel.isOpen()){
+			fileChannel = new RandomAccessFile(bodyFile, "r").getChannel();
+		}
+		return fileChannel;
+	}
+
+	/**
+	 * 关闭文件通道
+	 */
+	private void closeFileChannel(){
+		if(fileChannel != null){
+			try {
+				fileChannel.close();
+			} catch (IOException e) {
+				Logger.error("Close body file channel error", e);
+			}
+			fileChannel = null;
+		}
+	}
+
 	/**
 	 * 获取长度
 	 * @return 长度 小于0,则读取失败.
      */
 	public long size(){
 		if(type == BodyType.FILE){
-			try {
-				return TFile.getFileSize(bodyFile);
-			}catch(IOException e){
-				Logger.error(e);
+			if(!bodyFile.exists()){
 				return -1;
 			}
+			long size = 0;
+			for(FileSegment fileSegment : fileSegments){
+				size = size + fileSegment.length();
+			}
+			return size;
 		}else {
 			return byteBufferChannel.size();
 		}
@@ -163,7 +304,20 @@ public class Body {
 	 */
 	public byte[] getBodyBytes(){
 		if(type == BodyType.FILE){
-			return TFile.loadFile(bodyFile);
+			if(fileSegments.size() == 1 && fileSegments.get(0).head.length == 0){
+				FileSegment fileSegment = fileSegments.get(0);
+				return TFile.loadFile(bodyFile, fileSegment.beginPosition, fileSegment.getEndPosition());
+			}
+
+			ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+			for(FileSegment fileSegment : fileSegments){
+				outputStream.write(fileSegment.head, 0, fileSegment.head.length);
+				if(fileSegment.fileLength() > 0) {
+					byte[] fileBytes = TFile.loadFile(bodyFile, fileSegment.beginPosition, fileSegment.getEndPosition());
+					outputStream.write(fileBytes, 0, fileBytes.length);
+				}
+			}
+			return outputStream.toByteArray();
 		}else {
 			return byteBufferChannel.array();
 		}
@@ -210,20 +364,98 @@ public class Body {
 			 readSize = byteBufferChannel.readHead(byteBuffer);
 			 readSize = readSize==0? -1: readSize;
 		}else {
-			byte[] fileContent = TFile.loadFile(bodyFile, position, position + byteBuffer.remaining());
-			if (fileContent != null){
-				readSize = fileContent.length;
-                position = position + readSize;
-				byteBuffer.put(fileContent);
+			//跳过已经读完的片段
+			while(segmentIndex < fileSegments.size() &&
+					segmentOffset >= fileSegments.get(segmentIndex).length()){
+				segmentIndex++;
+				segmentOffset = 0;
+			}
+
+			if(segmentIndex >= fileSegments.size()){
+				return -1;
+			}
+
+			FileSegment fileSegment = fileSegments.get(segmentIndex);
+
+			//读取片段头部字节
+			if(segmentOffset < fileSegment.head.length){
+				readSize = Math.min(byteBuffer.remaining(), fileSegment.head.length - (int)segmentOffset);
+				byteBuffer.put(fileSegment.head, (int)segmentOffset, readSize);
+			}
+			//读取文件范围
+			else {
+				long filePosition = fileSegment.beginPosition + segmentOffset - fileSegment.head.length;
+				long remaining = fileSegment.getEndPosition() - filePosition;
+
+				if (remaining < byteBuffer.remaining()) {
+					byteBuffer.limit(byteBuffer.position() + (int) remaining);
+				}
+
+				try {
+					readSize = getFileChannel().read(byteBuffer, filePosition);
+				} catch (IOException e) {
+					Logger.error("Read body file error", e);
+					readSize = -1;
+				}
+			}
+
+			if (readSize > 0){
+				segmentOffset = segmentOffset + readSize;
 				byteBuffer.flip();
-                return readSize;
-            }else{
+			}else{
 				readSize = -1;
 			}
 		}
 		return readSize;
 	}
 
+	/**
+	 * 将 Body 中的内容发送到会话
+	 * 		文件类型的 Body 通过 IoSession.sendFile 发送, 文件内容不经过 Java 堆
+	 * @param session 会话对象
+	 * @return 发送的字节数
+	 * @throws IOException IO 异常
+	 */
+	public long send(IoSession session) throws IOException {
+		if(type == BodyType.FILE) {
+			long totalSendSize = 0;
+			for(; segmentIndex < fileSegments.size(); segmentIndex++, segmentOffset = 0) {
+				FileSegment fileSegment = fileSegments.get(segmentIndex);
+
+				//发送片段头部字节
+				if(segmentOffset < fileSegment.head.length) {
+					ByteBuffer headBuffer = ByteBuffer.wrap(fileSegment.head, (int)segmentOffset, fileSegment.head.length - (int)segmentOffset);
+					int sendSize = session.send(headBuffer);
+					if(sendSize < 0){
+						break;
+					}
+					segmentOffset = fileSegment.head.length;
+					totalSendSize = totalSendSize + sendSize;
+				}
+
+				//发送文件范围
+				long filePosition = fileSegment.beginPosition + segmentOffset - fileSegment.head.length;
+				long length = fileSegment.getEndPosition() - filePosition;
+				if (length > 0) {
+					long sendSize = session.sendFile(getFileChannel(), filePosition, length);
+					segmentOffset = segmentOffset + sendSize;
+					totalSendSize = totalSendSize + sendSize;
+					if(sendSize < length){
+						break;
+					}
+				}
+			}
+			return totalSendSize;
+		} else {
+			ByteBuffer byteBuffer = byteBufferChannel.getByteBuffer();
+			try {
+				return session.send(byteBuffer);
+			} finally {
+				byteBufferChannel.compact();
+			}
+		}
+	}
+
 	/**
 	 * 读取 Body 中的内容
 	 * @param buffer byte 数组对象
@@ -277,6 +509,61 @@ public class Body {
 		}
 	}
 
+	/**
+	 * 使用特定的字符集写入字符序列
+	 * 		分块编码后直接写入, 不产生中间的字符串和字节数组, 适合写入 StringBuilder 中的大段内容
+	 * @param content 字符序列
+	 * @param charset 字符集
+	 */
+	public void write(CharSequence content, String charset){
+		CharsetEncoder encoder = Charset.forName(charset).newEncoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		CharBuffer charBuffer = CharBuffer.wrap(content);
+		ByteBuffer chunkBuffer = ENCODE_BUFFER.get();
+
+		try {
+			boolean endOfInput = false;
+			while (true) {
+				//先编码全部字符, 之后再输出编码器中剩余的字节
+				chunkBuffer.clear();
+				CoderResult result = endOfInput ? encoder.flush(chunkBuffer) : encoder.encode(charBuffer, chunkBuffer, true);
+				if (result.isError()) {
+					result.throwException();
+				}
+
+				chunkBuffer.flip();
+				writeChunk(chunkBuffer);
+
+				if (result.isUnderflow()) {
+					if (endOfInput) {
+						break;
+					}
+					endOfInput = true;
+				}
+			}
+		} catch (IOException e) {
+			Logger.error("Wirte string faild by OutputStream",e);
+		}
+	}
+
+	/**
+	 * 写入一个编码后的分块
+	 * @param chunkBuffer 分块缓冲区
+	 * @throws IOException IO 异常
+	 */
+	private void writeChunk(ByteBuffer chunkBuffer) throws IOException {
+		if(!chunkBuffer.hasRemaining()){
+			return;
+		}
+
+		if(type == BodyType.BYTES) {
+			byteBufferChannel.writeEnd(chunkBuffer);
+		}else{
+			TFile.writeFile(bodyFile, true, chunkBuffer.array(), chunkBuffer.position(), chunkBuffer.remaining());
+		}
+	}
+
 	/**
 	 * 写入 body 字符串,默认 UTF-8
 	 * @param content body 字符串
@@ -292,6 +579,7 @@ public class Body {
 		if(type == BodyType.BYTES) {
 			byteBufferChannel.clear();
 		} else if(type == BodyType.FILE){
+			closeFileChannel();
 			if(bodyFile.getPath().startsWith(TFile.getTemporaryPath())) {
 				bodyFile.delete();
 			}
@@ -327,9 +615,11 @@ public class Body {
 
 	/**
 	 * 压缩
+	 * 		响应的压缩已经由 Response 在发送时按 HTTP chunk 流式完成, 这个方法只为兼容保留
 	 * @return true: 压缩成功, false: 压缩失败
 	 * @throws IOException IO异常
 	 */
+	@Deprecated
 	public boolean compress() throws IOException {
 
 		if(size()!=0) {
@@ -348,7 +638,7 @@ public class Body {
 
 				TZip.encodeGZip(bodyFile, gzipedFile);
 
-				bodyFile = gzipedFile;
+				changeToFile(gzipedFile);
 
 				return true;
 			} else {
@@ -6,6 +6,7 @@ import org.voovan.tools.log.Logger;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
@@ -152,6 +153,78 @@ public class Cookie {
 	}
 
 
+	/**
+	 * 解析请求的 Cookie 头
+	 * 		请求中的多个 Cookie 在同一行中, 每个 Cookie 只有名称和值
+	 * @param cookieLine Cookie 头的值
+	 * @param cookies 用于保存解析结果的 Cookie 集合
+	 */
+	public static void parseRequestCookies(String cookieLine, List<Cookie> cookies){
+		int length = cookieLine.length();
+		int index = 0;
+		while(index < length){
+			int end = nextSeparator(cookieLine, index);
+			int equalCharIndex = cookieLine.indexOf('=', index);
+			if(equalCharIndex > index && equalCharIndex < end - 1){
+				Cookie cookie = new Cookie();
+				cookie.setName(cookieLine.substring(index, equalCharIndex));
+				cookie.setValue(unquote(cookieLine.substring(equalCharIndex + 1, end)));
+				cookies.add(cookie);
+			}
+			index = end + 1;
+		}
+	}
+
+	/**
+	 * 从请求的 Cookie 头中查找指定名称的 Cookie
+	 * 		只构造找到的 Cookie, 不解析其他的 Cookie
+	 * @param cookieLine Cookie 头的值
+	 * @param name Cookie 名称
+	 * @return Cookie 对象, 没有找到时返回 null
+	 */
+	public static Cookie findRequestCookie(String cookieLine, String name){
+		int length = cookieLine.length();
+		int nameLength = name.length();
+		int index = 0;
+		while(index < length){
+			int end = nextSeparator(cookieLine, index);
+			int equalCharIndex = index + nameLength;
+			if(equalCharIndex < end - 1 && cookieLine.charAt(equalCharIndex) == '=' &&
+					cookieLine.regionMatches(index, name, 0, nameLength)){
+				Cookie cookie = new Cookie();
+				cookie.setName(name);
+				cookie.setValue(unquote(cookieLine.substring(equalCharIndex + 1, end)));
+				return cookie;
+			}
+			index = end + 1;
+		}
+		return null;
+	}
+
+	/**
+	 * 查找 Cookie 之间的分隔符, 空格、";" 和 "," 都作为分隔符
+	 * @param cookieLine Cookie 头的值
+	 * @param index 起始位置
+	 * @return 分隔符的位置, 没有分隔符时返回字符串长度
+	 */
+	private static int nextSeparator(String cookieLine, int index){
+		int length = cookieLine.length();
+		for(int i = index; i < length; i++){
+			char c = cookieLine.charAt(i);
+			if(c == ' ' || c == ';' || c == ','){
+				return i;
+			}
+		}
+		return length;
+	}
+
+	private static String unquote(String value){
+		if(value.length() > 1 && value.startsWith("\"") && value.endsWith("\"")){
+			return value.substring(1, value.length() - 1);
+		}
+		return value;
+	}
+
 	/**
 	 * 创建一个 Cookie
 	 * @param domain	cookie的受控域
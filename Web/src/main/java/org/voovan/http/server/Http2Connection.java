@@ -0,0 +1,785 @@
+package org.voovan.http.server;
+
+import org.voovan.Global;
+import org.voovan.http.http2.*;
+import org.voovan.http.message.Request;
+import org.voovan.http.message.Response;
+import org.voovan.http.message.packet.Body;
+import org.voovan.http.message.packet.Cookie;
+import org.voovan.http.server.context.WebContext;
+import org.voovan.http.server.context.WebServerConfig;
+import org.voovan.network.IoSession;
+import org.voovan.tools.log.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * HTTP/2 连接
+ * 		处理一个连接上的所有帧, 每个流的请求在线程池中并发处理, 响应帧由连接统一写出
+ *
+ * @author helyho
+ *
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class Http2Connection {
+
+	public static final byte[] PREFACE = "PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes();
+
+	private static final int MAX_CONCURRENT_STREAMS = 128;
+	private static final int MAX_HEADER_LIST_SIZE   = 1024 * 64;
+	private static final int RECEIVE_WINDOW_SIZE    = 1024 * 1024;
+	//每个流缓存的请求报文主体的上限
+	private static final int MAX_STREAM_BODY_SIZE   = 1024 * 1024 * 8;
+
+	private IoSession session;
+	private WebServerConfig webConfig;
+	private HttpDispatcher httpDispatcher;
+
+	private Http2Settings localSettings;
+	private Http2Settings remoteSettings;
+	private HpackDecoder hpackDecoder;
+	private HpackEncoder hpackEncoder;
+
+	private Map<Integer, Http2Stream> streams;
+	private int lastStreamId;
+	private int continuationStreamId;
+
+	//连接级别的发送窗口, 和所有流的发送窗口一起由 windowLock 保护
+	private long sendWindow;
+	//连接级别的接收窗口, 只在会话的读取线程中访问
+	private int receiveWindow;
+	private final Object windowLock = new Object();
+	private final Object writeLock = new Object();
+
+	private boolean started;
+	private volatile boolean closed;
+
+	/**
+	 * 构造函数
+	 * @param session        会话对象
+	 * @param webConfig      WEB 配置对象
+	 * @param httpDispatcher 请求派发器
+	 */
+	public Http2Connection(IoSession session, WebServerConfig webConfig, HttpDispatcher httpDispatcher){
+		this.session = session;
+		this.webConfig = webConfig;
+		this.httpDispatcher = httpDispatcher;
+
+		this.localSettings = new Http2Settings();
+		this.localSettings.setMaxConcurrentStreams(MAX_CONCURRENT_STREAMS);
+		this.localSettings.setInitialWindowSize(RECEIVE_WINDOW_SIZE);
+		this.localSettings.setMaxHeaderListSize(MAX_HEADER_LIST_SIZE);
+		this.remoteSettings = new Http2Settings();
+
+		this.hpackDecoder = new HpackDecoder(localSettings.getHeaderTableSize());
+		this.hpackEncoder = new HpackEncoder();
+
+		this.streams = new ConcurrentHashMap<Integer, Http2Stream>();
+		this.lastStreamId = 0;
+		this.continuationStreamId = 0;
+		this.sendWindow = Http2Settings.DEFAULT_WINDOW_SIZE;
+		this.receiveWindow = RECEIVE_WINDOW_SIZE;
+		this.started = false;
+		this.closed = false;
+	}
+
+	/**
+	 * 发送服务端的连接序言
+	 * 		服务端的第一个帧必须是 SETTINGS 帧, 同时扩大连接级别的接收窗口
+	 * @throws IOException IO 异常
+	 */
+	public void start() throws IOException {
+		synchronized (writeLock) {
+			if (started) {
+				return;
+			}
+			started = true;
+
+			writeFrame(Http2Frame.newInstance(Http2Frame.Type.SETTINGS, 0, 0, localSettings.toByteBuffer()));
+			sendWindowUpdate(0, RECEIVE_WINDOW_SIZE - Http2Settings.DEFAULT_WINDOW_SIZE);
+		}
+	}
+
+	/**
+	 * 准备从 HTTP/1.1 升级到 HTTP/2
+	 * 		在发送 101 响应前调用, 应用 HTTP2-Settings 头中的参数并创建流 1
+	 * @param http2Settings 请求中 HTTP2-Settings 头的值
+	 * @throws Http2Exception 参数错误
+	 */
+	public void prepareUpgrade(String http2Settings) throws Http2Exception {
+		try {
+			remoteSettings.merge(ByteBuffer.wrap(Base64.getUrlDecoder().decode(http2Settings.trim())));
+		} catch (IllegalArgumentException e) {
+			throw new Http2Exception(Http2Exception.PROTOCOL_ERROR, "Invalid HTTP2-Settings");
+		}
+		hpackEncoder.setMaxTableSize(remoteSettings.getHeaderTableSize());
+
+		Http2Stream stream = new Http2Stream(1, remoteSettings.getInitialWindowSize(), RECEIVE_WINDOW_SIZE);
+		stream.setState(Http2Stream.State.HALF_CLOSED_REMOTE);
+		streams.put(1, stream);
+		lastStreamId = 1;
+	}
+
+	/**
+	 * 从 HTTP/1.1 升级到 HTTP/2
+	 * 		在 101 响应发送完成后调用, 升级请求作为流 1 处理, 响应通过 HTTP/2 发送
+	 * @param httpRequest 升级请求
+	 * @throws IOException IO 异常
+	 */
+	public void upgrade(HttpRequest httpRequest) throws IOException {
+		start();
+
+		Http2Stream stream = streams.get(1);
+		if(stream != null) {
+			httpRequest.header().remove("Upgrade");
+			httpRequest.header().remove("HTTP2-Settings");
+			dispatch(stream, httpRequest);
+		}
+	}
+
+	/**
+	 * 处理收到的帧
+	 * 		在会话的读取线程中按顺序调用
+	 * @param frame HTTP/2 帧
+	 */
+	public void onFrame(Http2Frame frame){
+		try {
+			start();
+
+			if(frame.getLength() > localSettings.getMaxFrameSize()){
+				throw new Http2Exception(Http2Exception.FRAME_SIZE_ERROR, "Frame too large");
+			}
+
+			//头部块没有结束时只能收到同一个流的 CONTINUATION 帧
+			if(continuationStreamId != 0 &&
+					(frame.getType() != Http2Frame.Type.CONTINUATION || frame.getStreamId() != continuationStreamId)){
+				throw new Http2Exception(Http2Exception.PROTOCOL_ERROR, "Expected CONTINUATION frame");
+			}
+
+			//未知类型的帧按协议要求忽略
+			if(frame.getType() == null){
+				return;
+			}
+
+			switch (frame.getType()) {
+				case SETTINGS:
+					onSettings(frame);
+					break;
+				case PING:
+					onPing(frame);
+					break;
+				case WINDOW_UPDATE:
+					onWindowUpdate(frame);
+					break;
+				case HEADERS:
+					onHeaders(frame);
+					break;
+				case CONTINUATION:
+					onContinuation(frame);
+					break;
+				case DATA:
+					onData(frame);
+					break;
+				case RST_STREAM:
+					onRstStream(frame);
+					break;
+				case PRIORITY:
+					if(frame.getStreamId() == 0 || frame.getLength() != 5){
+						throw new Http2Exception(Http2Exception.PROTOCOL_ERROR, "Invalid PRIORITY frame");
+					}
+					break;
+				case GOAWAY:
+					close();
+					session.close();
+					break;
+				case PUSH_PROMISE:
+				default:
+					throw new Http2Exception(Http2Exception.PROTOCOL_ERROR, "Unexpected " + frame.getType() + " frame");
+			}
+		} catch (Http2Exception e) {
+			if(e.isConnectionError()) {
+				goAway(e.getErrorCode());
+			} else {
+				resetStream(e.getStreamId(), e.getErrorCode());
+			}
+		} catch (IOException e) {
+			Logger.error("HTTP/2 frame process error", e);
+			goAway(Http2Exception.INTERNAL_ERROR);
+		}
+	}
+
+	/**
+	 * 处理 SETTINGS 帧
+	 * @param frame HTTP/2 帧
+	 * @throws IOException IO 异常
+	 */
+	private void onSettings(Http2Frame frame) throws IOException {
+		if(frame.getStreamId() != 0){
+			throw new Http2Exception(Http2Exception.PROTOCOL_ERROR, "SETTINGS on stream");
+		}
+
+		if(frame.hasFlag(Http2Frame.FLAG_ACK)){
+			if(frame.getLength() != 0){
+				throw new Http2Exception(Http2Exception.FRAME_SIZE_ERROR, "SETTINGS ACK with payload");
+			}
+			return;
+		}
+
+		int oldWindowSize = remoteSettings.getInitialWindowSize();
+		remoteSettings.merge(frame.getPayload());
+
+		//初始窗口的变化作用于所有已经打开的流
+		int delta = remoteSettings.getInitialWindowSize() - oldWindowSize;
+		if(delta != 0){
+			synchronized (windowLock) {
+				for(Http2Stream stream : streams.values()){
+					long newWindow = stream.getSendWindow() + delta;
+					if(newWindow > Http2Settings.MAX_WINDOW_SIZE){
+						throw new Http2Exception(Http2Exception.FLOW_CONTROL_ERROR, "Window overflow");
+					}
+					stream.setSendWindow(newWindow);
+				}
+				windowLock.notifyAll();
+			}
+		}
+
+		synchronized (writeLock) {
+			hpackEncoder.setMaxTableSize(remoteSettings.getHeaderTableSize());
+			writeFrame(Http2Frame.newInstance(Http2Frame.Type.SETTINGS, Http2Frame.FLAG_ACK, 0, null));
+		}
+	}
+
+	/**
+	 * 处理 PING 帧
+	 * @param frame HTTP/2 帧
+	 * @throws IOException IO 异常
+	 */
+	private void onPing(Http2Frame frame) throws IOException {
+		if(frame.getStreamId() != 0){
+			throw new Http2Exception(Http2Exception.PROTOCOL_ERROR, "PING on stream");
+		}
+		if(frame.getLength() != 8){
+			throw new Http2Exception(Http2Exception.FRAME_SIZE_ERROR, "Invalid PING length");
+		}
+		if(!frame.hasFlag(Http2Frame.FLAG_ACK)){
+			writeFrame(Http2Frame.newInstance(Http2Frame.Type.PING, Http2Frame.FLAG_ACK, 0, frame.getPayload()));
+		}
+	}
+
+	/**
+	 * 处理 WINDOW_UPDATE 帧
+	 * @param frame HTTP/2 帧
+	 * @throws Http2Exception 协议异常
+	 */
+	private void onWindowUpdate(Http2Frame frame) throws Http2Exception {
+		if(frame.getLength() != 4){
+			throw new Http2Exception(Http2Exception.FRAME_SIZE_ERROR, "Invalid WINDOW_UPDATE length");
+		}
+
+		int increment = frame.getPayload().getInt() & 0x7fffffff;
+		int streamId = frame.getStreamId();
+		if(increment == 0){
+			throw new Http2Exception(Http2Exception.PROTOCOL_ERROR, streamId, "Zero window increment");
+		}
+
+		synchronized (windowLock) {
+			if(streamId == 0){
+				sendWindow = sendWindow + increment;
+				if(sendWindow > Http2Settings.MAX_WINDOW_SIZE){
+					throw new Http2Exception(Http2Exception.FLOW_CONTROL_ERROR, "Window overflow");
+				}
+			} else {
+				Http2Stream stream = streams.get(streamId);
+				if(stream != null) {
+					stream.setSendWindow(stream.getSendWindow() + increment);
+					if(stream.getSendWindow() > Http2Settings.MAX_WINDOW_SIZE){
+						throw new Http2Exception(Http2Exception.FLOW_CONTROL_ERROR, streamId, "Window overflow");
+					}
+				}
+			}
+			windowLock.notifyAll();
+		}
+	}
+
+	/**
+	 * 处理 HEADERS 帧
+	 * @param frame HTTP/2 帧
+	 * @throws IOException IO 异常
+	 */
+	private void onHeaders(Http2Frame frame) throws IOException {
+		int streamId = frame.getStreamId();
+		ByteBuffer payload = removePadding(frame);
+
+		//跳过优先级信息
+		if(frame.hasFlag(Http2Frame.FLAG_PRIORITY)){
+			if(payload.remaining() < 5){
+				throw new Http2Exception(Http2Exception.FRAME_SIZE_ERROR, "Invalid HEADERS length");
+			}
+			payload.position(payload.position() + 5);
+		}
+
+		Http2Stream stream = streams.get(streamId);
+		if(stream == null) {
+			//客户端创建的流 ID 必须是奇数且递增
+			if(streamId % 2 == 0 || streamId <= lastStreamId){
+				throw new Http2Exception(Http2Exception.PROTOCOL_ERROR, "Invalid stream id " + streamId);
+			}
+			lastStreamId = streamId;
+
+			stream = new Http2Stream(streamId, remoteSettings.getInitialWindowSize(), RECEIVE_WINDOW_SIZE);
+			streams.put(streamId, stream);
+		} else if(stream.getState() != Http2Stream.State.OPEN){
+			//头部块无法解码会破坏动态表, 只能作为连接错误处理
+			throw new Http2Exception(Http2Exception.STREAM_CLOSED, "HEADERS on closed stream " + streamId);
+		}
+
+		//END_STREAM 标志在 HEADERS 上, 头部块可能还在后续的 CONTINUATION 帧中
+		if(frame.hasFlag(Http2Frame.FLAG_END_STREAM)){
+			stream.setState(Http2Stream.State.HALF_CLOSED_REMOTE);
+		}
+
+		stream.appendHeaderBlock(payload, MAX_HEADER_LIST_SIZE);
+		if(frame.hasFlag(Http2Frame.FLAG_END_HEADERS)){
+			onHeaderBlock(stream);
+		} else {
+			continuationStreamId = streamId;
+		}
+	}
+
+	/**
+	 * 处理 CONTINUATION 帧
+	 * @param frame HTTP/2 帧
+	 * @throws IOException IO 异常
+	 */
+	private void onContinuation(Http2Frame frame) throws IOException {
+		Http2Stream stream = streams.get(frame.getStreamId());
+		if(continuationStreamId == 0 || stream == null){
+			throw new Http2Exception(Http2Exception.PROTOCOL_ERROR, "Unexpected CONTINUATION frame");
+		}
+
+		stream.appendHeaderBlock(frame.getPayload(), MAX_HEADER_LIST_SIZE);
+		if(frame.hasFlag(Http2Frame.FLAG_END_HEADERS)){
+			continuationStreamId = 0;
+			onHeaderBlock(stream);
+		}
+	}
+
+	/**
+	 * 头部块接收完成
+	 * 		解码失败会破坏动态表, 只能作为连接错误处理
+	 * @param stream HTTP/2 流
+	 * @throws IOException IO 异常
+	 */
+	private void onHeaderBlock(Http2Stream stream) throws IOException {
+		List<String[]> headers;
+		try {
+			headers = hpackDecoder.decode(stream.takeHeaderBlock());
+		} catch (Http2Exception e) {
+			throw new Http2Exception(Http2Exception.COMPRESSION_ERROR, e.getMessage());
+		}
+
+		//头部块解码后才能拒绝流, 保证动态表和对端一致
+		if(streams.size() > MAX_CONCURRENT_STREAMS){
+			throw new Http2Exception(Http2Exception.REFUSED_STREAM, stream.getId(), "Too many streams");
+		}
+
+		//trailer 合并到头部中
+		stream.getHeaders().addAll(headers);
+
+		if(stream.getState() == Http2Stream.State.HALF_CLOSED_REMOTE){
+			dispatch(stream, null);
+		}
+	}
+
+	/**
+	 * 处理 DATA 帧
+	 * 		请求的报文主体在 END_STREAM 后才派发, 缓存在流中, 所以流的缓存就是 DATA 的消费者:
+	 * 		连接窗口在数据被流接收或丢弃后归还, 流窗口只按缓存剩余的空间归还,
+	 * 		对端最多只能发送 MAX_STREAM_BODY_SIZE 字节, 超出窗口或上限时以 FLOW_CONTROL_ERROR 重置流
+	 * @param frame HTTP/2 帧
+	 * @throws IOException IO 异常
+	 */
+	private void onData(Http2Frame frame) throws IOException {
+		int streamId = frame.getStreamId();
+		if(streamId == 0){
+			throw new Http2Exception(Http2Exception.PROTOCOL_ERROR, "DATA on connection");
+		}
+
+		//填充的字节同样计入流量控制
+		int flowLength = frame.getLength();
+		receiveWindow = receiveWindow - flowLength;
+		if(receiveWindow < 0){
+			throw new Http2Exception(Http2Exception.FLOW_CONTROL_ERROR, "Connection window exceeded");
+		}
+
+		ByteBuffer payload = removePadding(frame);
+
+		Http2Stream stream = streams.get(streamId);
+		if(stream == null || stream.getState() != Http2Stream.State.OPEN){
+			//丢弃的数据直接归还连接窗口
+			creditConnection(flowLength);
+			if(streamId > lastStreamId){
+				throw new Http2Exception(Http2Exception.PROTOCOL_ERROR, "DATA on idle stream");
+			}
+			throw new Http2Exception(Http2Exception.STREAM_CLOSED, streamId, "Stream closed");
+		}
+
+		stream.setReceiveWindow(stream.getReceiveWindow() - flowLength);
+		if(stream.getReceiveWindow() < 0 || stream.getBodySize() + payload.remaining() > MAX_STREAM_BODY_SIZE){
+			creditConnection(flowLength);
+			throw new Http2Exception(Http2Exception.FLOW_CONTROL_ERROR, streamId, "Stream window exceeded");
+		}
+
+		stream.writeBody(payload);
+		creditConnection(flowLength);
+
+		if(frame.hasFlag(Http2Frame.FLAG_END_STREAM)){
+			stream.setState(Http2Stream.State.HALF_CLOSED_REMOTE);
+			dispatch(stream, null);
+		} else {
+			//流窗口不超过缓存剩余的空间
+			int window = Math.min(RECEIVE_WINDOW_SIZE, MAX_STREAM_BODY_SIZE - stream.getBodySize());
+			int increment = window - stream.getReceiveWindow();
+			if(increment > 0) {
+				stream.setReceiveWindow(window);
+				sendWindowUpdate(streamId, increment);
+			}
+		}
+	}
+
+	/**
+	 * 归还连接级别的接收窗口
+	 * @param length 归还的字节数
+	 * @throws IOException IO 异常
+	 */
+	private void creditConnection(int length) throws IOException {
+		if(length > 0) {
+			receiveWindow = receiveWindow + length;
+			sendWindowUpdate(0, length);
+		}
+	}
+
+	/**
+	 * 处理 RST_STREAM 帧
+	 * @param frame HTTP/2 帧
+	 * @throws Http2Exception 协议异常
+	 */
+	private void onRstStream(Http2Frame frame) throws Http2Exception {
+		if(frame.getStreamId() == 0){
+			throw new Http2Exception(Http2Exception.PROTOCOL_ERROR, "RST_STREAM on connection");
+		}
+		if(frame.getLength() != 4){
+			throw new Http2Exception(Http2Exception.FRAME_SIZE_ERROR, "Invalid RST_STREAM length");
+		}
+
+		Http2Stream stream = streams.remove(frame.getStreamId());
+		if(stream != null){
+			stream.close();
+			synchronized (windowLock) {
+				windowLock.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * 去掉帧中的填充数据
+	 * @param frame HTTP/2 帧
+	 * @return 去掉填充后的负载
+	 * @throws Http2Exception 填充长度错误
+	 */
+	private static ByteBuffer removePadding(Http2Frame frame) throws Http2Exception {
+		ByteBuffer payload = frame.getPayload();
+		if(frame.hasFlag(Http2Frame.FLAG_PADDED)){
+			if(!payload.hasRemaining()){
+				throw new Http2Exception(Http2Exception.FRAME_SIZE_ERROR, "Invalid padded frame");
+			}
+			int padLength = payload.get() & 0xff;
+			if(padLength > payload.remaining()){
+				throw new Http2Exception(Http2Exception.PROTOCOL_ERROR, "Invalid pad length");
+			}
+			payload.limit(payload.limit() - padLength);
+		}
+		return payload;
+	}
+
+	/**
+	 * 派发请求到线程池处理
+	 * @param stream      HTTP/2 流
+	 * @param httpRequest 请求对象, 为 null 时根据流中的头部和报文主体构造
+	 * @throws IOException IO 异常
+	 */
+	private void dispatch(final Http2Stream stream, HttpRequest httpRequest) throws IOException {
+		if(httpRequest == null) {
+			Request request = stream.toRequest(session.socketContext().getReadTimeout());
+			if (request == null) {
+				throw new Http2Exception(Http2Exception.PROTOCOL_ERROR, stream.getId(), "Malformed request");
+			}
+			httpRequest = new HttpRequest(request, webConfig.getCharacterSet());
+		}
+
+		final HttpRequest finalHttpRequest = httpRequest;
+		try {
+			Global.getThreadPool().execute(new Runnable() {
+				@Override
+				public void run() {
+					process(stream, finalHttpRequest);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			throw new Http2Exception(Http2Exception.REFUSED_STREAM, stream.getId(), "Server busy");
+		}
+	}
+
+	/**
+	 * 处理请求并发送响应
+	 * @param stream      HTTP/2 流
+	 * @param httpRequest 请求对象
+	 */
+	private void process(Http2Stream stream, HttpRequest httpRequest) {
+		HttpResponse httpResponse = new HttpResponse(new Response(), webConfig.getCharacterSet());
+		try {
+			httpRequest.setRemoteAddres(session.remoteAddress());
+			httpRequest.setRemotePort(session.remotePort());
+
+			httpDispatcher.process(httpRequest, httpResponse);
+			httpResponse.header().put("Server", WebContext.getVERSION());
+
+			sendResponse(stream, httpRequest, httpResponse);
+		} catch (Exception e) {
+			if(!stream.isClosed() && !closed) {
+				Logger.error("HTTP/2 stream " + stream.getId() + " process error", e);
+				resetStream(stream.getId(), Http2Exception.INTERNAL_ERROR);
+			}
+		} finally {
+			httpResponse.body().free();
+			streams.remove(stream.getId());
+			stream.close();
+		}
+	}
+
+	/**
+	 * 发送响应
+	 * @param stream       HTTP/2 流
+	 * @param httpRequest  请求对象
+	 * @param httpResponse 响应对象
+	 * @throws IOException IO 异常
+	 */
+	private void sendResponse(Http2Stream stream, HttpRequest httpRequest, HttpResponse httpResponse) throws IOException {
+		//客户端已经取消了这个流
+		if(stream.isClosed()){
+			return;
+		}
+
+		Body body = httpResponse.body();
+		long bodySize = body.size();
+		boolean hasBody = bodySize > 0 && !"HEAD".equals(httpRequest.protocol().getMethod());
+
+		List<String[]> headers = new ArrayList<String[]>();
+		headers.add(new String[]{":status", Integer.toString(httpResponse.protocol().getStatus())});
+		for(Map.Entry<String, String> header : httpResponse.header().getHeaders().entrySet()){
+			String name = header.getKey().toLowerCase();
+			if(!isConnectionHeader(name) && !"content-length".equals(name)) {
+				headers.add(new String[]{name, header.getValue()});
+			}
+		}
+		headers.add(new String[]{"content-length", Long.toString(bodySize)});
+		if(!httpResponse.header().contain("Content-Type")){
+			headers.add(new String[]{"content-type", "text/html"});
+		}
+		for(Cookie cookie : httpResponse.cookies()){
+			headers.add(new String[]{"set-cookie", cookie.toString()});
+		}
+
+		writeHeaders(stream.getId(), headers, !hasBody);
+		if(!hasBody){
+			return;
+		}
+
+		ByteBuffer buffer = ByteBuffer.allocate(remoteSettings.getMaxFrameSize());
+		long sentSize = 0;
+		while(sentSize < bodySize) {
+			buffer.clear();
+			buffer.limit((int) Math.min(buffer.capacity(), bodySize - sentSize));
+			if(body.read(buffer) == -1){
+				throw new IOException("Read response body error");
+			}
+
+			//按流量控制窗口拆分数据帧
+			while(buffer.hasRemaining()) {
+				int length = acquireWindow(stream, buffer.remaining());
+				ByteBuffer data = buffer.slice();
+				data.limit(length);
+				buffer.position(buffer.position() + length);
+				sentSize = sentSize + length;
+
+				int flags = sentSize == bodySize ? Http2Frame.FLAG_END_STREAM : 0;
+				writeFrame(Http2Frame.newInstance(Http2Frame.Type.DATA, flags, stream.getId(), data));
+			}
+		}
+	}
+
+	/**
+	 * 是否是 HTTP/2 中禁止使用的连接相关头部
+	 * @param name 小写的头部名称
+	 * @return true: 连接相关的头部, false: 普通头部
+	 */
+	private static boolean isConnectionHeader(String name){
+		return "connection".equals(name) || "keep-alive".equals(name) || "transfer-encoding".equals(name) ||
+				"upgrade".equals(name) || "proxy-connection".equals(name);
+	}
+
+	/**
+	 * 获取发送窗口
+	 * 		窗口不足时等待对端的 WINDOW_UPDATE
+	 * @param stream HTTP/2 流
+	 * @param length 需要发送的字节数
+	 * @return 本次可以发送的字节数
+	 * @throws IOException 流或连接已经关闭
+	 */
+	private int acquireWindow(Http2Stream stream, int length) throws IOException {
+		synchronized (windowLock) {
+			while (true) {
+				if (closed || stream.isClosed() || !session.isConnected()) {
+					throw new IOException("HTTP/2 stream " + stream.getId() + " closed");
+				}
+
+				long available = Math.min(sendWindow, stream.getSendWindow());
+				if (available > 0) {
+					int acquired = (int) Math.min(available, length);
+					sendWindow = sendWindow - acquired;
+					stream.setSendWindow(stream.getSendWindow() - acquired);
+					return acquired;
+				}
+
+				try {
+					windowLock.wait(1000);
+				} catch (InterruptedException e) {
+					throw new IOException("Wait HTTP/2 window interrupted", e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * 编码并发送头部块
+	 * 		编码和发送在同一个锁中完成, 保证对端按编码的顺序解码
+	 * @param streamId  流 ID
+	 * @param headers   头部列表
+	 * @param endStream 是否结束流
+	 * @throws IOException IO 异常
+	 */
+	private void writeHeaders(int streamId, List<String[]> headers, boolean endStream) throws IOException {
+		synchronized (writeLock) {
+			byte[] block = hpackEncoder.encode(headers);
+			int maxFrameSize = remoteSettings.getMaxFrameSize();
+
+			int offset = 0;
+			do {
+				int length = Math.min(maxFrameSize, block.length - offset);
+				boolean endHeaders = offset + length == block.length;
+
+				int flags = endHeaders ? Http2Frame.FLAG_END_HEADERS : 0;
+				Http2Frame.Type type = Http2Frame.Type.CONTINUATION;
+				if(offset == 0){
+					type = Http2Frame.Type.HEADERS;
+					flags = flags | (endStream ? Http2Frame.FLAG_END_STREAM : 0);
+				}
+
+				writeFrame(Http2Frame.newInstance(type, flags, streamId, ByteBuffer.wrap(block, offset, length)));
+				offset = offset + length;
+			} while (offset < block.length);
+		}
+	}
+
+	/**
+	 * 发送 WINDOW_UPDATE 帧
+	 * @param streamId  流 ID, 0 表示连接
+	 * @param increment 窗口增量
+	 * @throws IOException IO 异常
+	 */
+	private void sendWindowUpdate(int streamId, int increment) throws IOException {
+		ByteBuffer payload = ByteBuffer.allocate(4);
+		payload.putInt(increment);
+		payload.flip();
+		writeFrame(Http2Frame.newInstance(Http2Frame.Type.WINDOW_UPDATE, 0, streamId, payload));
+	}
+
+	/**
+	 * 重置流
+	 * @param streamId  流 ID
+	 * @param errorCode 错误码
+	 */
+	private void resetStream(int streamId, int errorCode){
+		Http2Stream stream = streams.remove(streamId);
+		if(stream != null){
+			stream.close();
+		}
+
+		ByteBuffer payload = ByteBuffer.allocate(4);
+		payload.putInt(errorCode);
+		payload.flip();
+		try {
+			writeFrame(Http2Frame.newInstance(Http2Frame.Type.RST_STREAM, 0, streamId, payload));
+		} catch (IOException e) {
+			Logger.error("Send RST_STREAM error", e);
+		}
+	}
+
+	/**
+	 * 发送 GOAWAY 帧并关闭连接
+	 * @param errorCode 错误码
+	 */
+	private void goAway(int errorCode){
+		ByteBuffer payload = ByteBuffer.allocate(8);
+		payload.putInt(lastStreamId);
+		payload.putInt(errorCode);
+		payload.flip();
+		try {
+			writeFrame(Http2Frame.newInstance(Http2Frame.Type.GOAWAY, 0, 0, payload));
+		} catch (IOException e) {
+			Logger.error("Send GOAWAY error", e);
+		}
+
+		close();
+		session.close();
+	}
+
+	/**
+	 * 发送帧
+	 * @param frame HTTP/2 帧
+	 * @throws IOException IO 异常
+	 */
+	private void writeFrame(Http2Frame frame) throws IOException {
+		synchronized (writeLock) {
+			if(!session.isConnected()){
+				throw new IOException("Session is closed");
+			}
+			session.send(frame.toByteBuffer());
+		}
+	}
+
+	/**
+	 * 关闭连接中的所有流
+	 * 		等待发送窗口的线程会被唤醒并结束
+	 */
+	public void close(){
+		closed = true;
+		for(Http2Stream stream : streams.values()){
+			stream.close();
+		}
+		streams.clear();
+
+		synchronized (windowLock) {
+			windowLock.notifyAll();
+		}
+	}
+}
@@ -137,6 +137,9 @@ public class HttpDispatcher {
 		//反向过滤器处理
 		filterResult = disposeInvertedFilter(filterConfigs,request,response);
 
+		//修改过的 Session 写回存储
+		sessionManager.saveSession(request.getSession(false));
+
 		//输出访问日志
 		WebContext.writeAccessLog(webConfig, request, response);
 	}
@@ -166,7 +169,9 @@ public class HttpDispatcher {
 				try {
 					//获取路径变量
 					Map<String, String> pathVariables = fetchPathVariables(requestPath,routePath);
-					request.getParameters().putAll(pathVariables);
+					if(!pathVariables.isEmpty()) {
+						request.getParameters().putAll(pathVariables);
+					}
 
 					//处理路由请求
                     router.process(request, response);
@@ -278,6 +283,7 @@ public class HttpDispatcher {
 	
 	/**
 	 * 处理 Session
+	 * 		只查找 Cookie 中已有的 Session, 新的 Session 在第一次调用 HttpRequest.getSession() 时创建
 	 * @param request   HTTP 请求
 	 * @param response  HTTP 响应
 	 */
@@ -286,20 +292,12 @@ public class HttpDispatcher {
 		//获取请求的 Cookie中的session标识
 		Cookie sessionCookie = request.getCookie(WebContext.getSessionName());
 
-        //如果 session 不存在,创建新的 session
-        if (sessionCookie==null || !sessionManager.containsSession(sessionCookie)) {
-            // 构建 session
-            HttpSession httpSession = sessionManager.newHttpSession(request, response);
-
-            // 请求增加 Session
-            request.setSession(httpSession);
-        } else {
-            // 通过 Cookie 中的 session 标识获取 Session
-            HttpSession httpSession = sessionManager.getSession(sessionCookie.getValue());
+		// 通过 Cookie 中的 session 标识获取 Session, 不存在或已失效时为 null
+		if (sessionCookie != null) {
+			request.setSession(sessionManager.getSession(sessionCookie.getValue()));
+		}
 
-            // 请求增加 Session
-            request.setSession(httpSession);
-        }
+		request.setSessionManager(sessionManager, response);
 	}
 
 	/**
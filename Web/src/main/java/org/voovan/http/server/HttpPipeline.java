@@ -0,0 +1,146 @@
+package org.voovan.http.server;
+
+import org.voovan.Global;
+import org.voovan.network.EventProcess;
+import org.voovan.network.IoSession;
+import org.voovan.network.exception.IoFilterException;
+
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * HTTP 管线化响应队列
+ * 		一个连接上的多个请求可以并发处理, 但响应严格按照请求的顺序发送
+ *
+ * @author helyho
+ *
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class HttpPipeline {
+	private IoSession session;
+	private boolean concurrent;
+	private LinkedList<HttpRequest> requestQueue;
+	private LinkedList<FutureTask<HttpResponse>> responseQueue;
+	//不保持连接的请求之后的请求不再接受
+	private boolean accepting;
+	//队列被取消后, 还没有开始的请求处理任务不再执行
+	private volatile boolean closed;
+
+	/**
+	 * 构造函数
+	 * @param session    会话对象
+	 * @param concurrent 是否并发处理请求
+	 */
+	public HttpPipeline(IoSession session, boolean concurrent) {
+		this.session = session;
+		this.concurrent = concurrent;
+		this.requestQueue = new LinkedList<HttpRequest>();
+		this.responseQueue = new LinkedList<FutureTask<HttpResponse>>();
+		this.accepting = true;
+		this.closed = false;
+	}
+
+	/**
+	 * 增加一个请求的处理任务
+	 * 		并发模式下任务提交到线程池执行, 否则在 flush 时按顺序在当前线程中执行.
+	 * 		协议升级等会修改会话状态的请求 serial 为 true, 在之前的响应发送之后才执行.
+	 * 		不保持连接的请求之后的请求直接丢弃, 不会执行它们的处理任务
+	 * @param httpRequest 请求对象
+	 * @param task        请求的处理任务
+	 * @param serial      是否必须按顺序执行
+	 */
+	public void offer(HttpRequest httpRequest, final Callable<HttpResponse> task, boolean serial) {
+		if (!accepting) {
+			return;
+		}
+
+		if (!WebServerHandler.isKeepAlive(httpRequest)) {
+			accepting = false;
+		}
+
+		FutureTask<HttpResponse> futureTask = new FutureTask<HttpResponse>(new Callable<HttpResponse>() {
+			@Override
+			public HttpResponse call() throws Exception {
+				//队列已经取消时不再调用处理任务, 避免产生副作用
+				if (closed) {
+					return null;
+				}
+				return task.call();
+			}
+		});
+		requestQueue.addLast(httpRequest);
+		responseQueue.addLast(futureTask);
+
+		if(concurrent && !serial) {
+			try {
+				Global.getThreadPool().execute(futureTask);
+			} catch (RejectedExecutionException e) {
+				//线程池繁忙时, 任务会在 flush 时由当前线程执行
+			}
+		}
+	}
+
+	/**
+	 * 按顺序发送队列中的响应
+	 * 		最后一个响应不在这里发送, 而是作为返回值交给 IoHandler 的调用者发送, 以便触发 onSent 事件.
+	 * 		响应不保持连接时同样作为返回值发送, 之后的请求不再处理, 由 onSent 关闭连接
+	 * @return 需要调用者发送的响应对象, 它对应的请求和响应会保存到会话中
+	 * @throws IoFilterException 过滤器异常
+	 * @throws ExecutionException 请求处理异常
+	 * @throws InterruptedException 中断异常
+	 */
+	public HttpResponse flush() throws IoFilterException, ExecutionException, InterruptedException {
+		try {
+			while (!responseQueue.isEmpty()) {
+				HttpRequest httpRequest = requestQueue.removeFirst();
+				FutureTask<HttpResponse> futureTask = responseQueue.removeFirst();
+
+				//如果任务还在线程池的队列中没有开始执行, 则在当前线程执行, 避免线程池繁忙时相互等待
+				futureTask.run();
+				HttpResponse httpResponse = futureTask.get();
+				if (httpResponse == null) {
+					continue;
+				}
+
+				if (responseQueue.isEmpty() || !WebServerHandler.isKeepAlive(httpResponse)) {
+					session.setAttribute("HttpRequest", httpRequest);
+					session.setAttribute("HttpResponse", httpResponse);
+					return httpResponse;
+				}
+
+				//过滤器的 encode 方法会直接将响应发送到会话
+				EventProcess.filterEncoder(session, httpResponse);
+			}
+			return null;
+		} finally {
+			cancel();
+		}
+	}
+
+	/**
+	 * 取消队列中还没有发送响应的请求
+	 * 		还没有开始的任务不再执行, 正在线程池中执行的任务被中断
+	 */
+	private void cancel(){
+		closed = true;
+		accepting = false;
+		for(FutureTask<HttpResponse> futureTask : responseQueue){
+			futureTask.cancel(true);
+		}
+		requestQueue.clear();
+		responseQueue.clear();
+	}
+
+	/**
+	 * 队列中等待发送的响应数量
+	 * @return 响应数量
+	 */
+	public int size(){
+		return responseQueue.size();
+	}
+}
@@ -28,9 +28,13 @@ import java.util.Map;
 public class HttpRequest extends Request {
 
 	private HttpSession session;
+	//用于按需创建 Session
+	private SessionManager sessionManager;
+	private HttpResponse response;
 	private String remoteAddres;
 	private int remotePort;
 	private String characterSet;
+	//请求参数和请求属性在第一次访问时构造
 	private Map<String, String> parameters;
 
 	private Map<String, Object> attributes;
@@ -38,18 +42,21 @@ public class HttpRequest extends Request {
 	protected HttpRequest(Request request,String characterSet){
 		super(request);
 		this.characterSet=characterSet;
-		parameters = new HashMap<String, String>();
-		attributes = new HashMap<String, Object>();
-		parseQueryString();
 	}
 
 	/**
 	 * 根据 Cookie 名称取 Cookie
+	 * 		Cookie 尚未解析时只查找指定名称的 Cookie, 不解析整个 Cookie 头
 	 *
 	 * @param name  Cookie 名称
 	 * @return Cookie
 	 */
 	public Cookie getCookie(String name){
+		String cookieLine = getCookieLine();
+		if(cookieLine != null){
+			return name == null ? null : Cookie.findRequestCookie(cookieLine, name);
+		}
+
 		for(Cookie cookie : this.cookies()){
 			if(cookie !=null && name !=null && name.equals(cookie.getName())){
 				return cookie;
@@ -60,10 +67,25 @@ public class HttpRequest extends Request {
 
 	/**
 	 * 获取 Session
+	 * 		请求中没有有效的 Session 时创建一个新的 Session, 并在响应中增加对应的 Cookie,
+	 * 		所以需要在响应发送之前调用
 	 *
 	 * @return HTTP-Session 对象
 	 */
 	public HttpSession getSession() {
+		return getSession(true);
+	}
+
+	/**
+	 * 获取 Session
+	 *
+	 * @param create 请求中没有有效的 Session 时是否创建新的 Session
+	 * @return HTTP-Session 对象, create 为 false 且 Session 不存在时返回 null
+	 */
+	public HttpSession getSession(boolean create) {
+		if (session == null && create && sessionManager != null) {
+			session = sessionManager.newHttpSession(this, response);
+		}
 		return session;
 	}
 
@@ -76,7 +98,16 @@ public class HttpRequest extends Request {
 		this.session = session;
 	}
 
-
+	/**
+	 * 设置用于按需创建 Session 的 Session 管理器和响应对象
+	 *
+	 * @param sessionManager Session 管理器
+	 * @param response HTTP 响应对象
+	 */
+	protected void setSessionManager(SessionManager sessionManager, HttpResponse response) {
+		this.sessionManager = sessionManager;
+		this.response = response;
+	}
 
 	/**
 	 * 获取对端连接的 IP
@@ -151,10 +182,15 @@ public class HttpRequest extends Request {
 	
 	/**
 	 * 获取请求参数集合
+	 * 		第一次调用时解析请求字符串和表单内容
 	 *
 	 * @return 请求参数集合
 	 */
 	public Map<String, String> getParameters() {
+		if(parameters == null){
+			parameters = new HashMap<String, String>();
+			parseQueryString();
+		}
 		return parameters;
 	}
 	
@@ -165,7 +201,7 @@ public class HttpRequest extends Request {
 	 * @return 请求参数值
 	 */
 	public String getParameter(String paramName){
-		return parameters.get(paramName);
+		return getParameters().get(paramName);
 	}
 
 	/**
@@ -175,7 +211,7 @@ public class HttpRequest extends Request {
      */
 	public int getParameterAsInt(String paramName){
 		try {
-			return (int) TString.toObject(parameters.get(paramName), int.class);
+			return (int) TString.toObject(getParameters().get(paramName), int.class);
 		}catch(Exception e){
 			throw new RuntimeException("Get parameter ["+paramName+"] as int error.",e);
 		}
@@ -188,7 +224,7 @@ public class HttpRequest extends Request {
 	 */
 	public float getParameterAsFloat(String paramName){
 		try {
-			return (float) TString.toObject(parameters.get(paramName), float.class);
+			return (float) TString.toObject(getParameters().get(paramName), float.class);
 		}catch(Exception e){
 			throw new RuntimeException("Get parameter ["+paramName+"] as float error.",e);
 		}
@@ -201,7 +237,7 @@ public class HttpRequest extends Request {
 	 */
 	public long getParameterAsLong(String paramName){
 		try {
-			return (long) TString.toObject(parameters.get(paramName), long.class);
+			return (long) TString.toObject(getParameters().get(paramName), long.class);
 		}catch(Exception e){
 			throw new RuntimeException("Get parameter ["+paramName+"] as long error.",e);
 		}
@@ -214,7 +250,7 @@ public class HttpRequest extends Request {
 	 */
 	public short getParameterAsShort(String paramName){
 		try {
-			return (short) TString.toObject(parameters.get(paramName), short.class);
+			return (short) TString.toObject(getParameters().get(paramName), short.class);
 		}catch(Exception e){
 			throw new RuntimeException("Get parameter ["+paramName+"] as short error.",e);
 		}
@@ -227,7 +263,7 @@ public class HttpRequest extends Request {
 	 */
 	public double getParameterAsDouble(String paramName){
 		try {
-			return (double) TString.toObject(parameters.get(paramName), double.class);
+			return (double) TString.toObject(getParameters().get(paramName), double.class);
 		}catch(Exception e){
 			throw new RuntimeException("Get parameter ["+paramName+"] as double error.",e);
 		}
@@ -240,7 +276,7 @@ public class HttpRequest extends Request {
 	 */
 	public boolean getParameterAsBoolean(String paramName){
 		try {
-			return (boolean) TString.toObject(parameters.get(paramName), boolean.class);
+			return (boolean) TString.toObject(getParameters().get(paramName), boolean.class);
 		}catch(Exception e){
 			throw new RuntimeException("Get parameter ["+paramName+"] as boolean error.",e);
 		}
@@ -253,7 +289,7 @@ public class HttpRequest extends Request {
 	 */
 	public byte getParameterAsByte(String paramName){
 		try {
-			return (byte) TString.toObject(parameters.get(paramName), byte.class);
+			return (byte) TString.toObject(getParameters().get(paramName), byte.class);
 		}catch(Exception e){
 			throw new RuntimeException("Get parameter ["+paramName+"] as byte error.",e);
 		}
@@ -266,7 +302,7 @@ public class HttpRequest extends Request {
 	 */
 	public char getParameterAsChar(String paramName){
 		try {
-			return (char) TString.toObject(parameters.get(paramName), char.class);
+			return (char) TString.toObject(getParameters().get(paramName), char.class);
 		}catch(Exception e){
 			throw new RuntimeException("Get parameter ["+paramName+"] as char error.",e);
 		}
@@ -281,7 +317,7 @@ public class HttpRequest extends Request {
 	 */
 	public <T>T getParameterAsObject(String paramName, Class<T> clazz){
 		try {
-			return TString.toObject(parameters.get(paramName), clazz);
+			return TString.toObject(getParameters().get(paramName), clazz);
 		} catch (Exception e) {
 			throw new RuntimeException("Conver parameters to "+clazz.getCanonicalName()+" error.",e);
 		}
@@ -308,7 +344,7 @@ public class HttpRequest extends Request {
 	 * @return 请求参数集合
 	 */
 	public List<String> getParameterNames(){
-		return Arrays.asList(parameters.keySet().toArray(new String[]{}));
+		return Arrays.asList(getParameters().keySet().toArray(new String[]{}));
 	}
 
 	/**
@@ -316,6 +352,9 @@ public class HttpRequest extends Request {
 	 * @return 返回请求属性
      */
 	public Map<String, Object> getAttributes() {
+		if(attributes == null){
+			attributes = new HashMap<String, Object>();
+		}
 		return attributes;
 	}
 
@@ -325,7 +364,7 @@ public class HttpRequest extends Request {
 	 * @return 请求属性值
      */
 	public Object getAttributes(String attrName){
-		return attributes.get(attrName);
+		return attributes == null ? null : attributes.get(attrName);
 	}
 
 	/**
@@ -334,7 +373,7 @@ public class HttpRequest extends Request {
 	 * @param attrValue 请求属性值
      */
 	public void setAttributes(String attrName,Object attrValue){
-		attributes.put(attrName,attrValue);
+		getAttributes().put(attrName,attrValue);
 	}
 
 
@@ -342,13 +381,19 @@ public class HttpRequest extends Request {
 	 * 解析请求参数
 	 */
 	private void parseQueryString() {
-		if(getQueryString()!=null){
-			String[] parameterEquals = getQueryString().split("&");
+		String queryString = getQueryString();
+		if(queryString!=null){
+			String[] parameterEquals = queryString.split("&");
 			for(String parameterEqual :parameterEquals){
 				int equalFlagPos = parameterEqual.indexOf("=");
 				if(equalFlagPos>0){
 					String name = parameterEqual.substring(0, equalFlagPos);
 					String value = parameterEqual.substring(equalFlagPos+1, parameterEqual.length());
+					//没有编码字符的值不需要解码
+					if(value.indexOf('%') < 0 && value.indexOf('+') < 0){
+						parameters.put(name, value);
+						continue;
+					}
 					try {
 						parameters.put(name, URLDecoder.decode(value,characterSet));
 					} catch (UnsupportedEncodingException e) {
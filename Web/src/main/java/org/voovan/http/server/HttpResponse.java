@@ -1,9 +1,8 @@
 package org.voovan.http.server;
 
+import org.voovan.http.message.HeaderEncoder;
 import org.voovan.http.message.Response;
-import org.voovan.tools.TDateTime;
-
-import java.util.Date;
+import org.voovan.tools.json.JSON;
 
 /**
  * WebServer 响应对象
@@ -15,6 +14,16 @@ import java.util.Date;
  * Licence: Apache v2 License
  */
 public class HttpResponse extends Response {
+	private static final int JSON_BUILDER_MAX_SIZE = 64 * 1024;
+
+	//线程内复用的 JSON 输出缓冲区
+	private static final ThreadLocal<StringBuilder> JSON_BUILDER = new ThreadLocal<StringBuilder>() {
+		@Override
+		protected StringBuilder initialValue() {
+			return new StringBuilder(1024);
+		}
+	};
+
 	private String	characterSet;
 
 	/**
@@ -25,8 +34,8 @@ public class HttpResponse extends Response {
 	protected HttpResponse(Response response,String characterSet) {
 		super(response);
 		this.characterSet=characterSet;
-		//设置当前响应的时间
-		this.header().put("Date",TDateTime.formatToGMT(new Date()));
+		//设置当前响应的时间, 同一秒内的响应共用一个预先编码的值
+		this.header().put("Date", HeaderEncoder.getDate());
 	}
 
 	/**
@@ -78,6 +87,30 @@ public class HttpResponse extends Response {
 		}
 	}
 	
+	/**
+	 * 将对象转换成 JSON 后写入
+	 * 		JSON 追加到线程内复用的缓冲区后直接编码写入 Body, 不产生中间的字符串
+	 * 		未设置 Content-Type 时使用 application/json
+	 *
+	 * @param object 待转换的对象
+	 */
+	public void writeJSON(Object object) {
+		StringBuilder stringBuilder = JSON_BUILDER.get();
+		try {
+			if (JSON.toJSON(object, stringBuilder)) {
+				if (!header().contain("Content-Type")) {
+					header().put("Content-Type", "application/json");
+				}
+				body().write(stringBuilder, characterSet);
+			}
+		} finally {
+			stringBuilder.setLength(0);
+			if (stringBuilder.capacity() > JSON_BUILDER_MAX_SIZE) {
+				JSON_BUILDER.remove();
+			}
+		}
+	}
+
 	/**
 	 * 清理报文
 	 */
@@ -2,7 +2,6 @@ package org.voovan.http.server;
 
 import org.voovan.http.server.context.WebServerConfig;
 import org.voovan.tools.TString;
-import org.voovan.tools.UniqueId;
 
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -22,6 +21,8 @@ public class HttpSession {
 	private int maxInactiveInterval;
 	private long lastTimeillis;
 	private SessionManager sessionManager;
+	//属性被修改后需要写回 SessionStore
+	private volatile boolean modified;
 
 	
 	/**
@@ -33,7 +34,7 @@ public class HttpSession {
 	public HttpSession(WebServerConfig config, SessionManager sessionManager){
 		attributes = new ConcurrentHashMap<String, Object>();
 		//生成一个随机的 ID 用作唯一标识
-		this.id = TString.generateShortUUID();
+		this.id = TString.generateRandomId();
 		lastTimeillis = System.currentTimeMillis();
 		int sessionTimeout = config.getSessionTimeout();
 		this.maxInactiveInterval = sessionTimeout*60*1000;
@@ -41,6 +42,22 @@ public class HttpSession {
 		
 	}
 
+	/**
+	 * 构造函数
+	 * 		用于 SessionStore 从存储的数据中还原 Session
+	 *
+	 * @param id Session ID
+	 * @param lastTimeillis 最后访问时间
+	 * @param maxInactiveInterval 最大活动时间(ms)
+	 * @param attributes Session 属性
+	 */
+	public HttpSession(String id, long lastTimeillis, int maxInactiveInterval, Map<String, Object> attributes){
+		this.attributes = new ConcurrentHashMap<String, Object>(attributes);
+		this.id = id;
+		this.lastTimeillis = lastTimeillis;
+		this.maxInactiveInterval = maxInactiveInterval;
+	}
+
 	/**
 	 * 刷新 Session 的超时时间
 	 *
@@ -76,6 +93,7 @@ public class HttpSession {
 	 */
 	public void setAttribute(String name,Object value) {
 		attributes.put(name, value);
+		modified = true;
 	}
 	
 	/**
@@ -84,6 +102,31 @@ public class HttpSession {
 	 */
 	public void removeAttribute(String name) {
 		attributes.remove(name);
+		modified = true;
+	}
+
+	/**
+	 * 获取所有的 Session 属性
+	 * @return Session 属性
+	 */
+	public Map<String, Object> getAttributes() {
+		return attributes;
+	}
+
+	/**
+	 * 属性是否被修改过
+	 * @return true: 修改过, false: 未修改
+	 */
+	public boolean isModified() {
+		return modified;
+	}
+
+	/**
+	 * 设置属性是否被修改过
+	 * @param modified true: 修改过, false: 未修改
+	 */
+	protected void setModified(boolean modified) {
+		this.modified = modified;
 	}
 
 	/**
@@ -115,6 +158,24 @@ public class HttpSession {
 		return id;
 	}
 
+	/**
+	 * 获取最后访问时间
+	 *
+	 * @return 最后访问时间
+	 */
+	public long getLastTimeillis() {
+		return lastTimeillis;
+	}
+
+	/**
+	 * 获取失效时间
+	 *
+	 * @return 失效时间
+	 */
+	public long getExpireTime() {
+		return lastTimeillis + maxInactiveInterval;
+	}
+
 	/**
 	 * 获取最大活动时间
 	 *
@@ -131,6 +192,7 @@ public class HttpSession {
 	 */
 	public void setMaxInactiveInterval(int maxInactiveInterval) {
 		this.maxInactiveInterval = maxInactiveInterval;
+		modified = true;
 	}
 	
 	/**
@@ -3,16 +3,27 @@ package org.voovan.http.server;
 import org.voovan.http.message.packet.Cookie;
 import org.voovan.http.server.context.WebContext;
 import org.voovan.http.server.context.WebServerConfig;
+import org.voovan.http.server.session.MapSessionStore;
+import org.voovan.http.server.session.SessionStore;
 import org.voovan.tools.log.Logger;
 import org.voovan.tools.reflect.TReflect;
 
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
 
 /**
  * WebServer session 管理器
+ * 		Session 保存在 SessionStore 中, 配置项 SessionContainer 可以是 Map 的实现类, 也可以是 SessionStore 的实现类.
+ * 		过期的 Session 按照失效时间的顺序清理, 不需要遍历所有的 Session
  * 
  * @author helyho
  *
@@ -21,19 +32,36 @@ import java.util.concurrent.ConcurrentHashMap;
  * Licence: Apache v2 License
  */
 public class SessionManager{
-	private  Map<String, HttpSession>	httpSessions;
+	private SessionStore sessionStore;
 	private WebServerConfig webConfig;
 	private Timer checkSessionTimer;
+	//按失效时间排序的队列, Session 刷新时不更新队列, 到期时再确认实际的失效时间
+	private DelayQueue<SessionExpire> expireQueue;
+
 	/**
 	 * 构造函数
 	 * @param webConfig Web 服务配置对象
 	 */
 	public SessionManager(WebServerConfig webConfig){
+		this(webConfig, null);
+	}
+
+	/**
+	 * 构造函数
+	 * @param webConfig Web 服务配置对象
+	 * @param sessionStore Session 存储对象, 为 null 时根据配置文件创建
+	 */
+	public SessionManager(WebServerConfig webConfig, SessionStore sessionStore){
 		this.webConfig = webConfig;
-		httpSessions = getSessionContainer();
-		if(httpSessions == null){
-			httpSessions = new ConcurrentHashMap<String, HttpSession>();
-			Logger.warn("Create session container from config file failed,now use defaul session container.");
+		this.sessionStore = sessionStore == null ? createSessionStore() : sessionStore;
+		this.expireQueue = new DelayQueue<SessionExpire>();
+
+		//存储中已经存在的 Session, 例如重启前保存在文件中的 Session
+		for(String sessionId : this.sessionStore.ids()){
+			long expireTime = this.sessionStore.getExpireTime(sessionId);
+			if(expireTime >= 0){
+				expireQueue.add(new SessionExpire(sessionId, expireTime));
+			}
 		}
 
 		checkSessionTimer = new Timer("VOOVAN_WEB@CHECK_SESSION_TASK");
@@ -48,39 +76,70 @@ public class SessionManager{
 		TimerTask checkSessionTask = new TimerTask() {
 			@Override
 			public void run() {
+				//只处理已经到期的 Session
+				SessionExpire sessionExpire;
+				while((sessionExpire = expireQueue.poll()) != null){
+					long expireTime = sessionStore.getExpireTime(sessionExpire.sessionId);
+					if(expireTime < 0){
+						continue;
+					}
 
-				//遍历所有的 session
-				for(String sessionId : httpSessions.keySet().toArray(new String[]{})){
-
-					HttpSession session = httpSessions.get(sessionId);
-
-					if(session.isInvalid()){
-						session.removeFromSessionManager();
+					if(expireTime <= System.currentTimeMillis()){
+						sessionStore.remove(sessionExpire.sessionId);
+					} else {
+						//Session 刷新过, 按新的失效时间重新排队
+						expireQueue.add(new SessionExpire(sessionExpire.sessionId, expireTime));
 					}
 				}
 			}
 		};
-		checkSessionTimer.schedule(checkSessionTask, 1 , 60*1000);
+		checkSessionTimer.schedule(checkSessionTask, 1 , 1000);
+	}
+
+	/**
+	 * 根据配置文件创建 Session 存储
+	 *
+	 * @return Session 存储对象
+	 */
+	@SuppressWarnings("unchecked")
+	private SessionStore createSessionStore(){
+		String sessionContainerClassName = webConfig.getSessionContainer();
+		try {
+			//根据 Class 构造一个 Session 容器
+			Object sessionContainer = TReflect.newInstance(sessionContainerClassName);
+			if(sessionContainer instanceof SessionStore){
+				return (SessionStore)sessionContainer;
+			} else if(sessionContainer instanceof Map){
+				return new MapSessionStore((Map<String, HttpSession>)sessionContainer);
+			}
+		} catch (ReflectiveOperationException e) {
+			Logger.error("Reflective operation error",e);
+		}
+
+		Logger.warn("Create session container from config file failed,now use defaul session container.");
+		return new MapSessionStore();
+	}
+
+	/**
+	 * 获取 Session 存储
+	 *
+	 * @return Session 存储对象
+	 */
+	public SessionStore getSessionStore(){
+		return sessionStore;
 	}
 
 	/**
 	 * 获取 Session 容器
+	 * 		仅为兼容保留, 返回的是 Session 存储的 Map 视图, 读写直接作用于 Session 存储.
+	 * 		put 时以 Session 的 ID 作为键, 并加入过期清理的队列
 	 *
 	 * @return Session 容器 Map
+	 * @deprecated 使用 {@link #getSessionStore()}
 	 */
+	@Deprecated
 	public Map<String, HttpSession> getSessionContainer(){
-		if(httpSessions!=null){
-			return httpSessions;
-		}else{
-			try {
-				String sessionContainerClassName = webConfig.getSessionContainer();
-				//根据 Class 构造一个 Session 容器
-				return TReflect.newInstance(sessionContainerClassName);
-			} catch (ReflectiveOperationException e) {
-				Logger.error("Reflective operation error",e);
-				return null;
-			}
-		}
+		return new SessionContainer();
 	}
 	
 	/**
@@ -89,9 +148,9 @@ public class SessionManager{
 	 * @param session HTTP-Session对象
 	 */
 	public void addSession(HttpSession session) {
-        if (!httpSessions.containsKey(session.getId())) {
-            httpSessions.put(session.getId(), session);
-        }
+		//Session ID 是随机生成的, 不需要先判断是否存在
+		sessionStore.put(session);
+		expireQueue.add(new SessionExpire(session.getId(), session.getExpireTime()));
 	}
 
 	/**
@@ -101,15 +160,25 @@ public class SessionManager{
 	 * @return HTTP-Session对象
 	 */
 	public HttpSession getSession(String id) {
-        if (id!=null && httpSessions.containsKey(id)) {
-			HttpSession httpSession = httpSessions.get(id).refresh();
-			if(httpSession.isInvalid()){
-				httpSession.removeFromSessionManager();
-				return null;
-			}
-			return httpSession;
-        }
-        return null;
+		if (id == null) {
+			return null;
+		}
+
+		HttpSession httpSession = sessionStore.get(id);
+		if (httpSession == null) {
+			return null;
+		}
+
+		//先判断是否失效再刷新超时时间
+		if (httpSession.isInvalid()) {
+			sessionStore.remove(id);
+			return null;
+		}
+
+		httpSession.setSessionManager(this);
+		httpSession.refresh();
+		sessionStore.touch(id, httpSession.getLastTimeillis());
+		return httpSession;
 	}
 	
 	/**
@@ -119,15 +188,20 @@ public class SessionManager{
 	 * @return HTTP-Session对象
 	 */
 	public HttpSession getSession(Cookie cookie) {
-        if (cookie!=null && httpSessions.containsKey(cookie.getValue())) {
-			HttpSession httpSession = httpSessions.get(cookie.getValue()).refresh();
-			if(httpSession.isInvalid()){
-				httpSession.removeFromSessionManager();
-				return null;
-			}
-            return httpSession;
-        }
-        return null;
+		return cookie == null ? null : getSession(cookie.getValue());
+	}
+
+	/**
+	 * 将修改过属性的 Session 写回存储
+	 * 		请求处理完成后调用
+	 *
+	 * @param session HTTP-Session对象
+	 */
+	public void saveSession(HttpSession session) {
+		if (session != null && session.isModified()) {
+			session.setModified(false);
+			sessionStore.put(session);
+		}
 	}
 
 	/**
@@ -144,7 +218,7 @@ public class SessionManager{
 	}
 
 	public void removeSession(HttpSession seesion){
-		httpSessions.remove(seesion.getId());
+		sessionStore.remove(seesion.getId());
 	}
 	
 	/**
@@ -168,6 +242,14 @@ public class SessionManager{
 		return session;
 	}
 
+	/**
+	 * 停止过期清理并关闭 Session 存储
+	 */
+	public void close(){
+		checkSessionTimer.cancel();
+		sessionStore.close();
+	}
+
 	/**
 	 * 构造一个 SessionManager
 	 * @param config WEB 配置对象
@@ -176,4 +258,124 @@ public class SessionManager{
 	public static SessionManager newInstance(WebServerConfig config){
 		return new SessionManager(config);
 	}
+
+	/**
+	 * Session 存储的 Map 视图
+	 */
+	private class SessionContainer extends AbstractMap<String, HttpSession> {
+
+		@Override
+		public HttpSession get(Object key) {
+			return key instanceof String ? sessionStore.get((String) key) : null;
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return get(key) != null;
+		}
+
+		@Override
+		public HttpSession put(String key, HttpSession session) {
+			HttpSession previous = sessionStore.get(session.getId());
+			addSession(session);
+			return previous;
+		}
+
+		@Override
+		public HttpSession remove(Object key) {
+			HttpSession previous = get(key);
+			if (previous != null) {
+				sessionStore.remove((String) key);
+			}
+			return previous;
+		}
+
+		@Override
+		public int size() {
+			return sessionStore.size();
+		}
+
+		@Override
+		public Set<Entry<String, HttpSession>> entrySet() {
+			return new AbstractSet<Entry<String, HttpSession>>() {
+				@Override
+				public Iterator<Entry<String, HttpSession>> iterator() {
+					return new SessionIterator(sessionStore.ids().iterator());
+				}
+
+				@Override
+				public int size() {
+					return sessionStore.size();
+				}
+			};
+		}
+	}
+
+	/**
+	 * 遍历 Session 存储, 跳过遍历过程中被移除的 Session
+	 */
+	private class SessionIterator implements Iterator<Map.Entry<String, HttpSession>> {
+		private Iterator<String> idIterator;
+		private Map.Entry<String, HttpSession> next;
+		private String current;
+
+		private SessionIterator(Iterator<String> idIterator) {
+			this.idIterator = idIterator;
+		}
+
+		@Override
+		public boolean hasNext() {
+			while (next == null && idIterator.hasNext()) {
+				String id = idIterator.next();
+				HttpSession session = sessionStore.get(id);
+				if (session != null) {
+					next = new AbstractMap.SimpleImmutableEntry<String, HttpSession>(id, session);
+				}
+			}
+			return next != null;
+		}
+
+		@Override
+		public Map.Entry<String, HttpSession> next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			Map.Entry<String, HttpSession> entry = next;
+			next = null;
+			current = entry.getKey();
+			return entry;
+		}
+
+		@Override
+		public void remove() {
+			if (current == null) {
+				throw new IllegalStateException();
+			}
+			sessionStore.remove(current);
+			current = null;
+		}
+	}
+
+	/**
+	 * Session 的失效时间
+	 */
+	private static class SessionExpire implements Delayed {
+		private String sessionId;
+		private long expireTime;
+
+		private SessionExpire(String sessionId, long expireTime) {
+			this.sessionId = sessionId;
+			this.expireTime = expireTime;
+		}
+
+		@Override
+		public long getDelay(TimeUnit unit) {
+			return unit.convert(expireTime - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+		}
+
+		@Override
+		public int compareTo(Delayed other) {
+			return Long.compare(expireTime, ((SessionExpire) other).expireTime);
+		}
+	}
 }
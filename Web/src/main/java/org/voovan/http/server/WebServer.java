@@ -57,12 +57,16 @@ public class WebServer {
 			SSLManager sslManager = new SSLManager("TLS", false);
 			sslManager.loadCertificate(System.getProperty("user.dir") + config.getHttps().getCertificateFile(),
 					config.getHttps().getCertificatePassword(), config.getHttps().getKeyPassword());
+			//通过 ALPN 协商 HTTP/2
+			if(config.isHttp2()) {
+				sslManager.setApplicationProtocols("h2", "http/1.1");
+			}
 			aioServerSocket.setSSLManager(sslManager);
 		}
 
 		aioServerSocket.handler(new WebServerHandler(config, httpDispatcher,webSocketDispatcher));
-		aioServerSocket.filterChain().add(new WebServerFilter());
-		aioServerSocket.messageSplitter(new HttpMessageSplitter());
+		aioServerSocket.filterChain().add(new WebServerFilter(config));
+		aioServerSocket.messageSplitter(new HttpMessageSplitter(config.getWebSocketMaxMessageSize()));
 	}
 
 	/**
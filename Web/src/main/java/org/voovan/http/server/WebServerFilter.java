@@ -1,11 +1,17 @@
 package org.voovan.http.server;
 
+import org.voovan.http.http2.Http2Exception;
+import org.voovan.http.http2.Http2Frame;
 import org.voovan.http.message.HttpParser;
 import org.voovan.http.message.Request;
 import org.voovan.http.message.Response;
+import org.voovan.http.server.context.WebServerConfig;
+import org.voovan.http.websocket.PerMessageDeflate;
 import org.voovan.http.websocket.WebSocketFrame;
+import org.voovan.http.websocket.WebSocketTools;
 import org.voovan.network.IoFilter;
 import org.voovan.network.IoSession;
+import org.voovan.network.messagesplitter.HttpMessageSplitter;
 import org.voovan.tools.ByteBufferChannel;
 import org.voovan.tools.TObject;
 import org.voovan.tools.TString;
@@ -13,6 +19,8 @@ import org.voovan.tools.log.Logger;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * WebServer 过滤器对象
@@ -24,7 +32,27 @@ import java.nio.ByteBuffer;
  * Licence: Apache v2 License
  */
 public class WebServerFilter implements IoFilter {
+	private static final byte[] HEAD_END = "\r\n\r\n".getBytes();
 
+	private int pipelineMaxRequests;
+	private boolean http2;
+	private int webSocketMaxMessageSize;
+
+	public WebServerFilter() {
+		this.pipelineMaxRequests = 16;
+		this.http2 = false;
+		this.webSocketMaxMessageSize = 0;
+	}
+
+	/**
+	 * 构造函数
+	 * @param webConfig WEB 配置对象
+	 */
+	public WebServerFilter(WebServerConfig webConfig) {
+		this.pipelineMaxRequests = webConfig.getPipelineMaxRequests();
+		this.http2 = webConfig.isHttp2();
+		this.webSocketMaxMessageSize = webConfig.getWebSocketMaxMessageSize();
+	}
 
 	/**
 	 * 将HttpResponse转换成ByteBuffer
@@ -55,13 +83,37 @@ public class WebServerFilter implements IoFilter {
 	public Object decode(IoSession session, Object object) {
 		ByteBuffer byteBuffer = TObject.cast(object);
 		ByteBufferChannel byteBufferChannel = session.getByteBufferChannel();
-		if (isHttpRequest(byteBufferChannel)) {
+
+		//HTTP/2 连接序言, 明文直连或 ALPN 协商后客户端首先发送连接序言
+		if (object instanceof ByteBuffer && HttpMessageSplitter.isExpectHttp2Preface(session) &&
+				HttpMessageSplitter.isHttp2Preface(byteBuffer) > 0) {
+			if (http2) {
+				session.setAttribute("Type", "HTTP2");
+				session.setAttribute("Http2Preface", true);
+			} else {
+				session.close();
+			}
+			return null;
+		}
+		//HTTP/2 帧
+		else if ("HTTP2".equals(session.getAttribute("Type"))) {
+			if (object instanceof ByteBuffer && byteBuffer.limit() != 0) {
+				try {
+					return Http2Frame.parse(byteBuffer);
+				} catch (Http2Exception e) {
+					Logger.error("Parse HTTP/2 frame failed", e);
+					session.close();
+				}
+			}
+			return null;
+		}
+		else if (isHttpRequest(byteBufferChannel)) {
 			try {
 				if (object instanceof ByteBuffer) {
 					session.enabledMessageSpliter(false);
 					Request request = HttpParser.parseRequest(byteBufferChannel, session.socketContext().getReadTimeout());
 					if(request!=null){
-						return request;
+						return parsePipelinedRequest(session, byteBufferChannel, request);
 					}else{
 						session.close();
 					}
@@ -76,11 +128,18 @@ public class WebServerFilter implements IoFilter {
 		//如果包含Type为 WebSocket 说明是 WebSocket 通信,转换成 WebSocketFrame 对象
 		else if("WebSocket".equals(session.getAttribute("Type"))){
 			if (object instanceof ByteBuffer && byteBuffer.limit()!=0) {
-				WebSocketFrame webSocketFrame = WebSocketFrame.parse(byteBuffer);
+				//消息分割器对超过上限的帧不等待接收完整, 这里直接拒绝
+				if(webSocketMaxMessageSize > 0 &&
+						HttpMessageSplitter.getWebSocketPayloadLength(byteBuffer) > webSocketMaxMessageSize){
+					closeWebSocket(session, 1009);
+					return null;
+				}
+
+				WebSocketFrame webSocketFrame = PerMessageDeflate.decode(session, WebSocketFrame.parse(byteBuffer));
 				if(webSocketFrame.getErrorCode()==0){
 					return webSocketFrame;
 				}else{
-					session.close();
+					closeWebSocket(session, webSocketFrame.getErrorCode());
 				}
 			} else {
 				return null;
@@ -92,6 +151,89 @@ public class WebServerFilter implements IoFilter {
 		return null;
 	}
 
+	/**
+	 * 发送带有错误码的关闭帧并关闭连接
+	 * @param session 会话对象
+	 * @param errorCode 关闭的错误码
+	 */
+	private static void closeWebSocket(IoSession session, int errorCode) {
+		WebSocketFrame.newInstance(true, WebSocketFrame.Opcode.CLOSING, false,
+				ByteBuffer.wrap(WebSocketTools.intToByteArray(errorCode, 2))).send(session);
+		session.close();
+	}
+
+	/**
+	 * 解析缓冲区中已经完整到达的管线化请求
+	 * 		只有一个请求时直接返回请求对象, 否则返回按到达顺序排列的请求列表.
+	 * 		没有完整到达的请求留在缓冲区中, 由下一次读取事件处理, 避免在这里等待报文主体
+	 * @param session 会话对象
+	 * @param byteBufferChannel 请求字节换缓冲对象
+	 * @param request 已经解析的第一个请求
+	 * @return 请求对象或请求列表
+	 * @throws IOException IO 异常
+	 */
+	private Object parsePipelinedRequest(IoSession session, ByteBufferChannel byteBufferChannel, Request request) throws IOException {
+		List<Request> requests = null;
+
+		//协议升级后的数据不再是 HTTP 请求
+		while (!request.header().contain("Upgrade") &&
+				(requests == null ? 1 : requests.size()) < pipelineMaxRequests &&
+				isHttpRequest(byteBufferChannel) &&
+				isRequestComplete(byteBufferChannel)) {
+
+			Request nextRequest = HttpParser.parseRequest(byteBufferChannel, session.socketContext().getReadTimeout());
+			if(nextRequest == null){
+				break;
+			}
+
+			if(requests == null){
+				requests = new ArrayList<Request>();
+				requests.add(request);
+			}
+			requests.add(nextRequest);
+			request = nextRequest;
+		}
+
+		return requests == null ? request : requests;
+	}
+
+	/**
+	 * 判断缓冲区中的请求是否已经完整到达
+	 * 		chunked 编码的请求无法在不解析的情况下判断, 按没有完整到达处理
+	 * @param byteBufferChannel 请求字节换缓冲对象
+	 * @return true: 请求的头部和报文主体都已经在缓冲区中
+	 */
+	private static boolean isRequestComplete(ByteBufferChannel byteBufferChannel) {
+		int headEndIndex = byteBufferChannel.indexOf(HEAD_END);
+		if(headEndIndex <= 0){
+			return false;
+		}
+
+		byte[] headBytes = new byte[headEndIndex];
+		byteBufferChannel.get(headBytes);
+		long contentLength = 0;
+		for(String line : new String(headBytes).split("\r\n")){
+			int colonIndex = line.indexOf(':');
+			if(colonIndex <= 0){
+				continue;
+			}
+
+			String name = line.substring(0, colonIndex).trim();
+			String value = line.substring(colonIndex + 1).trim();
+			if("Transfer-Encoding".equalsIgnoreCase(name)){
+				return false;
+			} else if("Content-Length".equalsIgnoreCase(name)){
+				try {
+					contentLength = Long.parseLong(value);
+				} catch (NumberFormatException e){
+					return false;
+				}
+			}
+		}
+
+		return byteBufferChannel.size() >= headEndIndex + HEAD_END.length + contentLength;
+	}
+
 	/**
 	 * 判断是否是 HTTP 请求
 	 * @param byteBufferChannel 请求字节换缓冲对象
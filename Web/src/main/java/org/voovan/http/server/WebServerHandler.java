@@ -1,10 +1,14 @@
 package org.voovan.http.server;
 
+import org.voovan.http.http2.Http2Exception;
+import org.voovan.http.http2.Http2Frame;
+import org.voovan.http.message.HeaderEncoder;
 import org.voovan.http.message.Request;
 import org.voovan.http.message.Response;
 import org.voovan.http.server.WebSocketDispatcher.WebSocketEvent;
 import org.voovan.http.server.context.WebContext;
 import org.voovan.http.server.context.WebServerConfig;
+import org.voovan.http.websocket.PerMessageDeflate;
 import org.voovan.http.websocket.WebSocketFrame;
 import org.voovan.http.websocket.WebSocketFrame.Opcode;
 import org.voovan.http.websocket.WebSocketTools;
@@ -12,16 +16,18 @@ import org.voovan.network.IoHandler;
 import org.voovan.network.IoSession;
 import org.voovan.network.messagesplitter.HttpMessageSplitter;
 import org.voovan.tools.ByteBufferChannel;
-import org.voovan.tools.TEnv;
 import org.voovan.tools.TObject;
 import org.voovan.tools.log.Logger;
 
+import java.io.IOException;
+import java.net.StandardSocketOptions;
 import java.nio.ByteBuffer;
 import java.nio.channels.InterruptedByTimeoutException;
 import java.util.List;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.Vector;
+import java.util.concurrent.Callable;
 
 /**
  * WebServer Socket 事件处理类
@@ -47,6 +53,9 @@ public class WebServerHandler implements IoHandler {
 
 		keepAliveTimer = new Timer("VOOVAN_WEB@KEEPALIVE_TIMER");
 		initKeepAliveTimer();
+
+		//每个响应都携带的 Server 头使用预先编码的值
+		HeaderEncoder.cacheValue(WebContext.getVERSION());
 	}
 
 	
@@ -90,6 +99,12 @@ public class WebServerHandler implements IoHandler {
 
 	@Override
 	public Object onConnect(IoSession session) {
+		//响应可能分多次写入, 关闭 Nagle 算法避免等待对端的延迟确认
+		try {
+			session.socketContext().setOption(StandardSocketOptions.TCP_NODELAY, true);
+		} catch (IOException e) {
+			Logger.warn("Set TCP_NODELAY failed: " + e.getMessage());
+		}
 		return null;
 	}
 
@@ -101,11 +116,28 @@ public class WebServerHandler implements IoHandler {
 			// 触发一个 WebSocket Close 事件
 			webSocketDispatcher.fireCloseEvent(session);
 
+			//取消等待中的 ping 任务
+			cancelPing(session);
+
 			//WebSocket 要考虑释放缓冲区
 			ByteBufferChannel byteBufferChannel = TObject.cast(session.getAttribute("WebSocketByteBufferChannel"));
 			if (byteBufferChannel != null && !byteBufferChannel.isReleased()) {
 				byteBufferChannel.release();
 			}
+
+			//归还压缩扩展占用的 Deflater/Inflater
+			PerMessageDeflate perMessageDeflate = PerMessageDeflate.get(session);
+			if (perMessageDeflate != null) {
+				perMessageDeflate.release();
+			}
+		}
+
+		//关闭 HTTP/2 连接中的流
+		if ("HTTP2".equals(session.getAttribute("Type"))) {
+			Http2Connection http2Connection = TObject.cast(session.getAttribute("Http2Connection"));
+			if (http2Connection != null) {
+				http2Connection.close();
+			}
 		}
 
 		//清理 IoSession
@@ -121,45 +153,198 @@ public class WebServerHandler implements IoHandler {
 		if (obj instanceof Request) {
 			// 构造请求对象
 			Request request = TObject.cast(obj);
-			
-			// 构造响应对象
-			Response response = new Response();
-
-			if(webConfig.isGzip() && request.header().contain("Accept-Encoding") &&
-					request.header().get("Accept-Encoding").contains("gzip")) {
-				response.setCompress(true);
-			}
 
 			// 构造 Http 请求/响应 对象
 			HttpRequest httpRequest = new HttpRequest(request, defaultCharacterSet);
-			HttpResponse httpResponse = new HttpResponse(response, defaultCharacterSet);
+			HttpResponse httpResponse = new HttpResponse(createResponse(request), defaultCharacterSet);
 
+			session.setAttribute("Type", "HTTP");
 			session.setAttribute("HttpRequest",httpRequest);
 			session.setAttribute("HttpResponse",httpResponse);
 
-			// 填充远程连接的IP 地址和端口
-			httpRequest.setRemoteAddres(session.remoteAddress());
-			httpRequest.setRemotePort(session.remotePort());
-
-			// WebSocket协议升级处理
-			if (WebSocketTools.isWebSocketUpgrade(request)) {
-				return disposeUpgrade(session, httpRequest, httpResponse);
-			}
-			// Http 1.1处理
-			else {
-				return disposeHttp(session, httpRequest, httpResponse);
-			}
-		} 
+			return disposeRequest(session, httpRequest, httpResponse);
+		}
+		// 管线化的 Http 请求
+		else if (obj instanceof List) {
+			List<Request> requests = TObject.cast(obj);
+			return disposePipeline(session, requests);
+		}
 		//处理 WEBSocket 报文
 		else if (obj instanceof WebSocketFrame) {
 			return disposeWebSocket(session, (WebSocketFrame)obj);
 		}
+		//处理 HTTP/2 帧
+		else if (obj instanceof Http2Frame) {
+			return disposeHttp2(session, (Http2Frame)obj);
+		}
 		
 		// 如果协议判断失败关闭连接
 		session.close();
 		return null;
 	}
 
+	/**
+	 * 构造响应对象
+	 * 		根据 Accept-Encoding 选择压缩编码, 是否真正压缩在请求处理完成后决定
+	 * @param request 请求对象
+	 * @return 响应对象
+	 */
+	private Response createResponse(Request request){
+		Response response = new Response();
+
+		if(webConfig.isGzip() && request.header().contain("Accept-Encoding")) {
+			String compressEncoding = selectCompressEncoding(request.header().get("Accept-Encoding"));
+			if(compressEncoding != null) {
+				response.setCompress(true);
+				response.setCompressEncoding(compressEncoding);
+			}
+			response.setCompressLevel(webConfig.getGzipLevel());
+		}
+
+		return response;
+	}
+
+	/**
+	 * 根据 Accept-Encoding 选择压缩编码
+	 * 		按 q 值在 gzip 和 deflate 中选择, q=0 表示不接受, q 值相同时优先使用 gzip,
+	 * 		没有列出的编码使用 "*" 的 q 值
+	 * @param acceptEncoding Accept-Encoding 头的值
+	 * @return 压缩编码, 都不接受时返回 null
+	 */
+	private static String selectCompressEncoding(String acceptEncoding){
+		float gzipQuality = -1;
+		float deflateQuality = -1;
+		float anyQuality = -1;
+
+		for(String coding : acceptEncoding.split(",")){
+			String[] codingParts = coding.split(";");
+			String name = codingParts[0].trim().toLowerCase();
+			float quality = 1;
+			for(int i = 1; i < codingParts.length; i++){
+				String param = codingParts[i].trim();
+				if(param.length() > 2 && (param.charAt(0) == 'q' || param.charAt(0) == 'Q') && param.charAt(1) == '='){
+					try {
+						quality = Float.parseFloat(param.substring(2).trim());
+					} catch (NumberFormatException e){
+						quality = 0;
+					}
+				}
+			}
+
+			if("gzip".equals(name) || "x-gzip".equals(name)){
+				gzipQuality = Math.max(gzipQuality, quality);
+			} else if("deflate".equals(name)){
+				deflateQuality = Math.max(deflateQuality, quality);
+			} else if("*".equals(name)){
+				anyQuality = quality;
+			}
+		}
+
+		gzipQuality = gzipQuality < 0 ? anyQuality : gzipQuality;
+		deflateQuality = deflateQuality < 0 ? anyQuality : deflateQuality;
+
+		if(gzipQuality > 0 && gzipQuality >= deflateQuality){
+			return "gzip";
+		} else if(deflateQuality > 0){
+			return "deflate";
+		} else {
+			return null;
+		}
+	}
+
+	/**
+	 * 请求处理
+	 *
+	 * @param session    HTTP-Session 对象
+	 * @param httpRequest  HTTP 请求对象
+	 * @param httpResponse HTTP 响应对象
+	 * @return HTTP 响应对象
+	 */
+	private HttpResponse disposeRequest(IoSession session, HttpRequest httpRequest, HttpResponse httpResponse) {
+		// 填充远程连接的IP 地址和端口
+		httpRequest.setRemoteAddres(session.remoteAddress());
+		httpRequest.setRemotePort(session.remotePort());
+
+		// WebSocket协议升级处理
+		if (WebSocketTools.isWebSocketUpgrade(httpRequest)) {
+			return disposeUpgrade(session, httpRequest, httpResponse);
+		}
+		// HTTP/2 协议升级处理
+		else if (webConfig.isHttp2() && isH2cUpgrade(httpRequest)) {
+			return disposeUpgrade(session, httpRequest, httpResponse);
+		}
+		// Http 1.1处理
+		else {
+			return disposeHttp(session, httpRequest, httpResponse);
+		}
+	}
+
+	/**
+	 * 管线化请求处理
+	 * 		请求按配置并发或顺序处理, 响应按请求的顺序发送, 最后一个响应作为返回值由调用者发送.
+	 * 		会话的状态只在当前线程中修改, 请求处理任务中不读写会话的属性
+	 *
+	 * @param session  HTTP-Session 对象
+	 * @param requests 同一个连接上按顺序到达的请求
+	 * @return 需要调用者发送的 HTTP 响应对象
+	 */
+	public HttpResponse disposePipeline(final IoSession session, List<Request> requests) {
+		String defaultCharacterSet = webConfig.getCharacterSet();
+		HttpPipeline httpPipeline = new HttpPipeline(session, webConfig.isPipelineConcurrent());
+
+		session.setAttribute("Type", "HTTP");
+		for(Request request : requests) {
+			final HttpRequest httpRequest = new HttpRequest(request, defaultCharacterSet);
+			final HttpResponse httpResponse = new HttpResponse(createResponse(request), defaultCharacterSet);
+
+			//协议升级会修改会话的状态, 必须在之前的响应发送之后处理
+			httpPipeline.offer(httpRequest, new Callable<HttpResponse>() {
+				@Override
+				public HttpResponse call() throws Exception {
+					return disposeRequest(session, httpRequest, httpResponse);
+				}
+			}, request.header().contain("Upgrade"));
+		}
+
+		try {
+			return httpPipeline.flush();
+		} catch (Exception e) {
+			Logger.error("Dispose pipelined request failed", e);
+			session.close();
+			return null;
+		}
+	}
+
+	/**
+	 * 请求是否要求保持连接
+	 * 		HTTP/1.1 默认保持连接, 除非请求包含 Connection: close;
+	 * 		HTTP/1.0 只在请求包含 Connection: keep-alive 时保持连接
+	 * @param httpRequest HTTP 请求对象
+	 * @return true: 保持连接, false: 响应后关闭连接
+	 */
+	static boolean isKeepAlive(HttpRequest httpRequest) {
+		String connection = httpRequest.header().get("Connection");
+		if (connection != null) {
+			connection = connection.toLowerCase();
+			if (connection.contains("close")) {
+				return false;
+			} else if (connection.contains("keep-alive")) {
+				return true;
+			}
+		}
+		return httpRequest.protocol().getVersion() >= 1.1F;
+	}
+
+	/**
+	 * 响应是否保持连接
+	 * @param httpResponse HTTP 响应对象
+	 * @return true: 保持连接, false: 发送后关闭连接
+	 */
+	static boolean isKeepAlive(HttpResponse httpResponse) {
+		String connection = httpResponse.header().get("Connection");
+		return connection != null && connection.toLowerCase().contains("keep-alive");
+	}
+
 	/**
 	 * Http 请求响应处理
 	 * 
@@ -169,20 +354,27 @@ public class WebServerHandler implements IoHandler {
 	 * @return HTTP 响应对象
 	 */
 	public HttpResponse disposeHttp(IoSession session, HttpRequest httpRequest, HttpResponse httpResponse) {
-		session.setAttribute("Type", "HTTP");
-
 		// 处理响应请求
 		httpDispatcher.process(httpRequest, httpResponse);
 
-		//如果是长连接则填充响应报文
-		if (httpRequest.header().contain("Connection")
-				&& httpRequest.header().get("Connection").toLowerCase().contains("keep-alive")) {
-			session.setAttribute("IsKeepAlive", true);
-			httpResponse.header().put("Connection", httpRequest.header().get("Connection"));
+		//保持连接的状态由响应的 Connection 头决定, 处理请求时已经设置的 Connection 头不覆盖
+		if (!httpResponse.header().contain("Connection")) {
+			boolean keepAlive = webConfig.getKeepAliveTimeout() > 0 && isKeepAlive(httpRequest);
+			httpResponse.header().put("Connection", keepAlive ? "keep-alive" : "close");
 		}
 
 		httpResponse.header().put("Server", WebContext.getVERSION());
 
+		//小于最小压缩尺寸、不在压缩 MIME 类型中或已经编码过的响应不进行压缩
+		if(httpResponse.isCompress()){
+			long bodySize = httpResponse.body().size();
+			if(bodySize < webConfig.getGzipMinSize() ||
+					httpResponse.header().contain("Content-Encoding") ||
+					!webConfig.isGzipMimeType(httpResponse.header().get("Content-Type"))){
+				httpResponse.setCompress(false);
+			}
+		}
+
 		return httpResponse;
 	}
 
@@ -209,15 +401,80 @@ public class WebServerHandler implements IoHandler {
 			httpResponse.header().put("Upgrade", "websocket");
 			String webSocketKey = WebSocketTools.generateSecKey(httpRequest.header().get("Sec-WebSocket-Key"));
 			httpResponse.header().put("Sec-WebSocket-Accept", webSocketKey);
+
+			//协商 permessage-deflate 压缩扩展
+			if(webConfig.isWebSocketCompress()) {
+				PerMessageDeflate perMessageDeflate = PerMessageDeflate.negotiate(httpRequest.header().get("Sec-WebSocket-Extensions"),
+						webConfig.isWebSocketNoContextTakeover());
+				if (perMessageDeflate != null) {
+					httpResponse.header().put("Sec-WebSocket-Extensions", perMessageDeflate.getResponseHeader());
+					perMessageDeflate.setMaxInflateSize(webConfig.getWebSocketMaxMessageSize());
+					session.setAttribute(PerMessageDeflate.SESSION_ATTRIBUTE, perMessageDeflate);
+				}
+			}
 		}
 		
 		else if(httpRequest.header()!=null && "h2c".equalsIgnoreCase(httpRequest.header().get("Upgrade"))){
+			Http2Connection http2Connection = new Http2Connection(session, webConfig, httpDispatcher);
+			try {
+				http2Connection.prepareUpgrade(httpRequest.header().get("HTTP2-Settings"));
+			} catch (Http2Exception e) {
+				//参数错误时不升级, 按 HTTP/1.1 处理
+				httpResponse.protocol().setStatus(200);
+				httpResponse.protocol().setStatusCode("OK");
+				httpResponse.header().remove("Connection");
+				session.setAttribute("Type", "HTTP");
+				return disposeHttp(session, httpRequest, httpResponse);
+			}
+
 			httpResponse.header().put("Upgrade", "h2c");
-			//这里写 HTTP2的实现,暂时留空
+
+			//101 响应之后的数据都是 HTTP/2 帧, 升级请求在 onSent 中作为流 1 处理
+			session.setAttribute("Type", "HTTP2");
+			session.setAttribute("Http2Upgrade", true);
+			session.setAttribute("Http2Connection", http2Connection);
 		}
 		return httpResponse;
 	}
 
+	/**
+	 * 是否是 h2c 升级请求
+	 * @param request 请求对象
+	 * @return true: 是 h2c 升级请求, false: 不是 h2c 升级请求
+	 */
+	private static boolean isH2cUpgrade(Request request){
+		return "h2c".equalsIgnoreCase(request.header().get("Upgrade")) && request.header().contain("HTTP2-Settings");
+	}
+
+	/**
+	 * HTTP/2 帧处理
+	 * 		帧由 Http2Connection 处理, 响应帧也由它直接发送, 所以不需要返回值
+	 *
+	 * @param session HTTP-Session 对象
+	 * @param http2Frame HTTP/2 帧对象
+	 * @return null
+	 */
+	public Object disposeHttp2(IoSession session, Http2Frame http2Frame) {
+		Http2Connection http2Connection = TObject.cast(session.getAttribute("Http2Connection"));
+
+		//明文直连和 ALPN 协商的连接在收到第一个帧时创建
+		if (http2Connection == null) {
+			http2Connection = new Http2Connection(session, webConfig, httpDispatcher);
+			session.setAttribute("Http2Connection", http2Connection);
+		}
+
+		//HTTP/2 连接同样使用 KeepAlive 超时时间作为空闲超时
+		if (webConfig.getKeepAliveTimeout() > 0) {
+			if (!keepAliveSessionList.contains(session)) {
+				keepAliveSessionList.add(session);
+			}
+			session.setAttribute("TimeOutValue", getTimeoutValue());
+		}
+
+		http2Connection.onFrame(http2Frame);
+		return null;
+	}
+
 	/**
 	 * WebSocket 帧处理
 	 * 
@@ -227,46 +484,81 @@ public class WebServerHandler implements IoHandler {
 	 */
 	public WebSocketFrame disposeWebSocket(IoSession session, WebSocketFrame webSocketFrame) {
 		session.setAttribute("Type"		     , "WebSocket");
-		ByteBufferChannel byteBufferChannel = null;
-		if(!session.containAttribute("WebSocketByteBufferChannel")){
-			byteBufferChannel = new ByteBufferChannel(session.socketContext().getBufferSize());
-			session.setAttribute("WebSocketByteBufferChannel",byteBufferChannel);
-		}else{
-			byteBufferChannel = TObject.cast(session.getAttribute("WebSocketByteBufferChannel"));
-		}
 
 		HttpRequest reqWebSocket = TObject.cast(session.getAttribute("HttpRequest"));
+		Opcode opcode = webSocketFrame.getOpcode();
 		
 		// WS_CLOSE 如果收到关闭帧则关闭连接
-		if(webSocketFrame.getOpcode() == Opcode.CLOSING) {
+		if(opcode == Opcode.CLOSING) {
 			session.close();
 			return WebSocketFrame.newInstance(true, Opcode.CLOSING, false, webSocketFrame.getFrameData());
 		}
 		// WS_PING 收到 ping 帧则返回 pong 帧
-		else if(webSocketFrame.getOpcode() == Opcode.PING) {
+		else if(opcode == Opcode.PING) {
 			return WebSocketFrame.newInstance(true, Opcode.PONG, false, webSocketFrame.getFrameData());
 		}
-		// WS_PING 收到 pong 帧则返回 ping 帧
-		else if(webSocketFrame.getOpcode() == Opcode.PONG) {
-			TEnv.sleep(1000);
-			return WebSocketFrame.newInstance(true, Opcode.PING, false, null);
-		}else if(webSocketFrame.getOpcode() == Opcode.CONTINUOUS){
-			byteBufferChannel.writeEnd(webSocketFrame.getFrameData());
+		// WS_PONG 收到 pong 帧则在间隔时间后由定时器发送 ping 帧
+		else if(opcode == Opcode.PONG) {
+			schedulePing(session);
+			return null;
 		}
-		// WS_RECIVE 文本和二进制消息出发 Recived 事件
-		else if (webSocketFrame.getOpcode() == Opcode.TEXT || webSocketFrame.getOpcode() == Opcode.BINARY) {
+		// WS_RECIVE 文本、二进制消息和后续分片触发 Recived 事件
+		else if (opcode == Opcode.TEXT || opcode == Opcode.BINARY || opcode == Opcode.CONTINUOUS) {
 
-			byteBufferChannel.writeEnd(webSocketFrame.getFrameData());
-			WebSocketFrame respWebSocketFrame = null;
-			
 			//判断解包是否有错
-			if(webSocketFrame.getErrorCode()==0){
-				respWebSocketFrame = webSocketDispatcher.process(WebSocketEvent.RECIVED, session, reqWebSocket, byteBufferChannel.getByteBuffer());
-				byteBufferChannel.compact();
-				byteBufferChannel.clear();
-			}else{
-				//解析时出现异常,返回关闭消息
-				respWebSocketFrame = WebSocketFrame.newInstance(true, Opcode.CLOSING, false, ByteBuffer.wrap(WebSocketTools.intToByteArray(webSocketFrame.getErrorCode(), 2)));
+			if(webSocketFrame.getErrorCode()!=0){
+				//解析时出现异常,发送关闭消息
+				return closeWebSocket(session, webSocketFrame.getErrorCode());
+			}
+
+			//后续分片必须属于一个未结束的分片消息, 分片消息未结束时不能开始新的消息
+			boolean fragmented = session.containAttribute("WebSocketStreaming");
+			if((opcode == Opcode.CONTINUOUS) != fragmented){
+				return closeWebSocket(session, 1002);
+			}
+
+			WebSocketFrame respWebSocketFrame = null;
+			ByteBuffer data = webSocketFrame.getFrameData();
+
+			if(!fragmented && webSocketFrame.isFin()) {
+				//未分片的消息直接交付, 帧的大小已经由消息分割器限制
+				respWebSocketFrame = webSocketDispatcher.process(WebSocketEvent.RECIVED, session, reqWebSocket, data);
+			} else {
+				if(!fragmented){
+					session.setAttribute("WebSocketStreaming", webSocketDispatcher.isStreaming(reqWebSocket));
+				}
+				boolean streaming = (Boolean) session.getAttribute("WebSocketStreaming");
+				if(webSocketFrame.isFin()){
+					session.removeAttribute("WebSocketStreaming");
+				}
+
+				if(streaming){
+					//流式接收, 分片到达后立即交付
+					respWebSocketFrame = webSocketDispatcher.process(WebSocketEvent.FRAGMENT, session, reqWebSocket, data, webSocketFrame.isFin());
+				} else {
+					//合并接收, 分片在缓冲区中合并成完整的消息
+					ByteBufferChannel byteBufferChannel = getWebSocketByteBufferChannel(session);
+					int maxMessageSize = webConfig.getWebSocketMaxMessageSize();
+					if(maxMessageSize > 0 && (long) byteBufferChannel.size() + data.remaining() > maxMessageSize){
+						Logger.warn("WebSocket message is bigger than " + maxMessageSize + " bytes, close the session.");
+						return closeWebSocket(session, 1009);
+					}
+
+					byteBufferChannel.writeEnd(data);
+					if(!webSocketFrame.isFin()){
+						return null;
+					}
+
+					respWebSocketFrame = webSocketDispatcher.process(WebSocketEvent.RECIVED, session, reqWebSocket, byteBufferChannel.getByteBuffer());
+					byteBufferChannel.compact();
+					byteBufferChannel.clear();
+				}
+			}
+
+			//压缩的消息必须按压缩的顺序发送, 所以不经过异步的发送事件
+			if(respWebSocketFrame != null && PerMessageDeflate.get(session) != null){
+				sendWebSocketFrame(session, reqWebSocket, respWebSocketFrame);
+				return null;
 			}
 			return respWebSocketFrame;
 		}
@@ -274,11 +566,107 @@ public class WebServerHandler implements IoHandler {
 		return null;
 	}
 
+	/**
+	 * 获取会话中用于合并分片消息的缓冲区, 在第一次收到分片消息时创建
+	 * @param session HTTP-Session 对象
+	 * @return 缓冲区对象
+	 */
+	private ByteBufferChannel getWebSocketByteBufferChannel(IoSession session) {
+		ByteBufferChannel byteBufferChannel = TObject.cast(session.getAttribute("WebSocketByteBufferChannel"));
+		if(byteBufferChannel == null){
+			byteBufferChannel = new ByteBufferChannel(session.socketContext().getBufferSize());
+			session.setAttribute("WebSocketByteBufferChannel",byteBufferChannel);
+		}
+		return byteBufferChannel;
+	}
+
+	/**
+	 * 发送带有错误码的关闭帧并关闭连接, 同时丢弃未完成的分片消息
+	 * @param session HTTP-Session 对象
+	 * @param errorCode 关闭的错误码
+	 * @return null
+	 */
+	private WebSocketFrame closeWebSocket(IoSession session, int errorCode) {
+		session.removeAttribute("WebSocketStreaming");
+		WebSocketFrame.newInstance(true, Opcode.CLOSING, false, ByteBuffer.wrap(WebSocketTools.intToByteArray(errorCode, 2))).send(session);
+		session.close();
+		return null;
+	}
+
+	/**
+	 * 在 ping 间隔时间后发送 ping 帧
+	 * 		使用连接保持的公用定时器, 不占用处理请求的线程.
+	 * 		每个会话最多只有一个等待中的 ping 任务, 保存在会话的属性中, 连续收到的 pong 不会产生新的任务
+	 * @param session HTTP-Session 对象
+	 */
+	private void schedulePing(final IoSession session) {
+		int pingInterval = webConfig.getWebSocketPingInterval();
+		if(pingInterval <= 0 || !session.isConnected()){
+			return;
+		}
+
+		TimerTask pingTask = new TimerTask() {
+			@Override
+			public void run() {
+				session.removeAttribute("WebSocketPingTask");
+				if(session.isConnected()) {
+					WebSocketFrame.newInstance(true, Opcode.PING, false, null).send(session);
+				}
+			}
+		};
+
+		synchronized (session) {
+			if(session.containAttribute("WebSocketPingTask")){
+				return;
+			}
+			session.setAttribute("WebSocketPingTask", pingTask);
+		}
+		keepAliveTimer.schedule(pingTask, pingInterval * 1000L);
+	}
+
+	/**
+	 * 取消会话中等待中的 ping 任务
+	 * @param session HTTP-Session 对象
+	 */
+	private void cancelPing(IoSession session) {
+		TimerTask pingTask = TObject.cast(session.getAttribute("WebSocketPingTask"));
+		if(pingTask != null){
+			pingTask.cancel();
+			session.removeAttribute("WebSocketPingTask");
+		}
+	}
+
+	/**
+	 * 直接发送 WebSocket 帧并触发 Sent 事件
+	 * @param session HTTP-Session 对象
+	 * @param request HTTP 请求对象
+	 * @param webSocketFrame WebSocket 帧对象
+	 */
+	private void sendWebSocketFrame(IoSession session, HttpRequest request, WebSocketFrame webSocketFrame) {
+		webSocketFrame.send(session);
+		webSocketDispatcher.process(WebSocketEvent.SENT, session, request, webSocketFrame.getFrameData());
+	}
+
 	@Override
 	public void onSent(IoSession session, Object obj) {
 		HttpRequest request = TObject.cast(session.getAttribute("HttpRequest"));
 		HttpResponse response = TObject.cast(session.getAttribute("HttpResponse"));
 
+		//HTTP/2 升级响应发送完成, 升级请求作为流 1 处理
+		if("HTTP2".equals(session.getAttribute("Type"))){
+			if(session.containAttribute("Http2Upgrade")) {
+				session.removeAttribute("Http2Upgrade");
+				Http2Connection http2Connection = TObject.cast(session.getAttribute("Http2Connection"));
+				try {
+					http2Connection.upgrade(request);
+				} catch (IOException e) {
+					Logger.error("Upgrade to HTTP/2 failed", e);
+					session.close();
+				}
+			}
+			return;
+		}
+
 		//WebSocket 协议处理
 		if(HttpMessageSplitter.isWebSocketFrame((ByteBuffer) obj) != -1){
 			WebSocketFrame webSocketFrame = WebSocketFrame.parse((ByteBuffer)obj);
@@ -298,28 +686,19 @@ public class WebServerHandler implements IoHandler {
 			WebSocketFrame webSocketFrame = webSocketDispatcher.process(WebSocketEvent.OPEN, session, request, null);
 
 			if(webSocketFrame!=null) {
-
-				//发送 onOpen 方法的数据
-				ByteBuffer byteBuffer = webSocketFrame.toByteBuffer();
-
-				//这里不用syncSend 方法是因为出发 onSent 是异步的,会导致消息顺序错乱
-				session.send(byteBuffer);
-				byteBuffer.rewind();
-
-				//出发 onSent 事件
-				onSent(session, byteBuffer);
+				//发送 onOpen 方法的数据, 这里不用syncSend 方法是因为出发 onSent 是异步的,会导致消息顺序错乱
+				sendWebSocketFrame(session, request, webSocketFrame);
 			}
 
 			//发送 ping 消息
 			WebSocketFrame ping = WebSocketFrame.newInstance(true, Opcode.PING, false, null);
-			session.send(ping.toByteBuffer());
+			ping.send(session);
 		}
 
 		//WebSocket 不做 KeepAlive 的控制
 		if( !"WebSocket".equals(session.getAttribute("Type")) ) {
 			//处理连接保持
-			if (((Boolean) true).equals(session.getAttribute("IsKeepAlive")) &&
-					webConfig.getKeepAliveTimeout() > 0) {
+			if (response != null && isKeepAlive(response) && webConfig.getKeepAliveTimeout() > 0) {
 
 				if (!keepAliveSessionList.contains(session)) {
 					keepAliveSessionList.add(session);
@@ -4,6 +4,7 @@ import org.voovan.http.server.context.WebServerConfig;
 import org.voovan.http.server.exception.RouterNotFound;
 import org.voovan.http.websocket.WebSocketFrame;
 import org.voovan.http.websocket.WebSocketFrame.Opcode;
+import org.voovan.http.websocket.WebSocketHub;
 import org.voovan.http.websocket.WebSocketRouter;
 import org.voovan.network.IoSession;
 
@@ -31,7 +32,7 @@ public class WebSocketDispatcher {
 	private Map<String, WebSocketRouter> routes;
 
 	public enum WebSocketEvent {
-		OPEN, RECIVED, SENT, CLOSE
+		OPEN, RECIVED, FRAGMENT, SENT, CLOSE
 	}
 
 	/**
@@ -66,6 +67,34 @@ public class WebSocketDispatcher {
 		routes.put(routeRegexPath, handler);
 	}
 
+	/**
+	 * 查找请求路径匹配的路由处理对象
+	 * @param request HTTP 请求对象
+	 * @return WebSocketRouter 对象, 没有匹配时返回 null
+	 */
+	private WebSocketRouter findRouter(HttpRequest request) {
+		String requestPath = request.protocol().getPath();
+
+		for (Map.Entry<String,WebSocketRouter> routeEntry : routes.entrySet()) {
+			String routePath = routeEntry.getKey();
+			// 路由匹配
+			if (HttpDispatcher.matchPath(requestPath, routePath, webConfig.isMatchRouteIgnoreCase())) {
+				return routeEntry.getValue();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * 请求匹配的路由是否以流的方式接收分片消息
+	 * @param request HTTP 请求对象
+	 * @return true: 流式接收, false: 合并接收
+	 */
+	public boolean isStreaming(HttpRequest request) {
+		WebSocketRouter webSocketRouter = findRouter(request);
+		return webSocketRouter != null && webSocketRouter.isStreaming();
+	}
+
 	/**
 	 * 路由处理函数
 	 * 
@@ -76,44 +105,51 @@ public class WebSocketDispatcher {
 	 * @return WebSocket 帧对象
 	 */
 	public WebSocketFrame process(WebSocketEvent event, IoSession session, HttpRequest request, ByteBuffer bytebuffer) {
+		return process(event, session, request, bytebuffer, true);
+	}
 
-		String requestPath = request.protocol().getPath();
-
-		boolean isMatched = false;
-		for (Map.Entry<String,WebSocketRouter> routeEntry : routes.entrySet()) {
-			String routePath = routeEntry.getKey();
-			// 路由匹配
-			isMatched = HttpDispatcher.matchPath(requestPath, routePath, webConfig.isMatchRouteIgnoreCase());
-			if (isMatched) {
-				// 获取路由处理对象
-				WebSocketRouter webSocketRouter = routeEntry.getValue();
-				webSocketRouter.setSession(session);
-
-				// 获取路径变量
-				ByteBuffer responseMessage = null;
-
-				//WebSocket 事件处理
-				if (event == WebSocketEvent.OPEN) {
-					responseMessage = webSocketRouter.onOpen();
-				} else if (event == WebSocketEvent.RECIVED) {
-					responseMessage = webSocketRouter.onRecived(bytebuffer);
-				} else if (event == WebSocketEvent.SENT) {
-					webSocketRouter.onSent(bytebuffer);
-				} else if (event == WebSocketEvent.CLOSE) {
-					webSocketRouter.onClose();
-				}
-				
-				//将返回消息包装称WebSocketFrame
-				if (responseMessage != null) {
-					return WebSocketFrame.newInstance(true, Opcode.TEXT, false, responseMessage);
-				}
-				break;
-			}
-		}
+	/**
+	 * 路由处理函数
+	 *
+	 * @param event     WebSocket 事件
+	 * @param session   socket连接会话
+	 * @param request   HTTP 请求对象
+	 * @param bytebuffer bytebuffer 对象, 保存 WebSocket 数据
+	 * @param isLast    FRAGMENT 事件中是否是消息的最后一个分片
+	 * @return WebSocket 帧对象
+	 */
+	public WebSocketFrame process(WebSocketEvent event, IoSession session, HttpRequest request, ByteBuffer bytebuffer, boolean isLast) {
+		// 获取路由处理对象
+		WebSocketRouter webSocketRouter = findRouter(request);
 
 		// 没有找寻到匹配的路由处理器
-		if (!isMatched) {
+		if (webSocketRouter == null) {
 			new RouterNotFound("Not avaliable router!").printStackTrace();
+			return null;
+		}
+
+		webSocketRouter.setSession(session);
+
+		ByteBuffer responseMessage = null;
+
+		//WebSocket 事件处理
+		if (event == WebSocketEvent.OPEN) {
+			responseMessage = webSocketRouter.onOpen();
+		} else if (event == WebSocketEvent.RECIVED) {
+			responseMessage = webSocketRouter.onRecived(bytebuffer);
+		} else if (event == WebSocketEvent.FRAGMENT) {
+			responseMessage = webSocketRouter.onFragment(bytebuffer, isLast);
+		} else if (event == WebSocketEvent.SENT) {
+			webSocketRouter.onSent(bytebuffer);
+		} else if (event == WebSocketEvent.CLOSE) {
+			webSocketRouter.onClose();
+			//连接关闭后从默认广播中心移除
+			WebSocketHub.getDefault().unsubscribeAll(session);
+		}
+
+		//将返回消息包装称WebSocketFrame
+		if (responseMessage != null) {
+			return WebSocketFrame.newInstance(true, Opcode.TEXT, false, responseMessage);
 		}
 		return null;
 	}
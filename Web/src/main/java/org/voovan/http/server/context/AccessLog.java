@@ -0,0 +1,428 @@
+package org.voovan.http.server.context;
+
+import org.voovan.http.server.HttpRequest;
+import org.voovan.http.server.HttpResponse;
+import org.voovan.tools.TByteBuffer;
+import org.voovan.tools.TDateTime;
+import org.voovan.tools.TFile;
+import org.voovan.tools.log.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 访问日志
+ * 		请求线程把日志直接编码成字节写入自己的环形缓冲区, 不加锁也不创建中间的字符串.
+ * 		写入线程按照刷新间隔收集所有线程的缓冲区, 经由 FileChannel 批量写入文件,
+ * 		缓冲区使用超过一半时提前唤醒写入线程. 缓冲区写满时丢弃日志并计数.
+ * 		日志文件每天轮转一次, 前一天的日志重命名为 access.log.yyyy-MM-dd.
+ * 		不同线程的日志按收集的顺序写入, 相邻的几行之间时间可能不是严格递增的
+ *
+ * @author helyho
+ *
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class AccessLog implements Runnable {
+	private static final int RING_SIZE = 64 * 1024;
+	private static final int WRITE_BUFFER_SIZE = 256 * 1024;
+	//单行日志的最大字节数, 超过的部分被截断
+	private static final int LINE_MAX_SIZE = 8 * 1024;
+	private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+
+	private String fileName;
+	private long flushInterval;
+	private List<RingBuffer> ringBuffers;
+	private ThreadLocal<RingBuffer> threadRingBuffer;
+	private AtomicLong droppedCount;
+	private Thread writerThread;
+	private volatile boolean running;
+
+	private FileChannel fileChannel;
+	private ByteBuffer writeBuffer;
+	private long currentDay;
+
+	private static volatile DateValue dateValue = new DateValue(0);
+
+	/**
+	 * 构造函数
+	 * @param fileName 日志文件名
+	 * @param flushInterval 刷新间隔(ms)
+	 */
+	public AccessLog(String fileName, long flushInterval) {
+		this.fileName = fileName;
+		this.flushInterval = flushInterval > 0 ? flushInterval : 1000;
+		this.ringBuffers = new CopyOnWriteArrayList<RingBuffer>();
+		this.droppedCount = new AtomicLong(0);
+		this.threadRingBuffer = new ThreadLocal<RingBuffer>() {
+			@Override
+			protected RingBuffer initialValue() {
+				RingBuffer ringBuffer = new RingBuffer(Thread.currentThread());
+				ringBuffers.add(ringBuffer);
+				return ringBuffer;
+			}
+		};
+		this.writeBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+		this.running = true;
+
+		writerThread = new Thread(this, "VOOVAN_WEB@ACCESS_LOG");
+		writerThread.setDaemon(true);
+		writerThread.start();
+
+		//进程退出前写出缓冲区中剩余的日志
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			@Override
+			public void run() {
+				close();
+			}
+		});
+	}
+
+	/**
+	 * 获取因缓冲区已满而丢弃的日志行数
+	 * @return 丢弃的日志行数
+	 */
+	public long getDroppedCount() {
+		return droppedCount.get();
+	}
+
+	/**
+	 * 写入一条访问日志
+	 * 		格式: [时间] 地址 端口 协议/版本 方法 状态码 响应大小	 路径	 User-Agent	 Referer
+	 * @param request HTTP 请求对象
+	 * @param response HTTP 响应对象
+	 */
+	public void write(HttpRequest request, HttpResponse response) {
+		RingBuffer ringBuffer = threadRingBuffer.get();
+		LineEncoder line = ringBuffer.line;
+		line.reset();
+
+		line.put(getDateValue().bytes);
+		line.put(' ');
+		line.putPadded(request.getRemoteAddres(), 15);
+		line.put(' ');
+		line.putPadded(Integer.toString(request.getRemotePort()), 5);
+		line.put(' ');
+		line.put(request.protocol().getProtocol());
+		line.put('/');
+		line.put(Float.toString(request.protocol().getVersion()));
+		line.put(' ');
+		line.putPadded(request.protocol().getMethod(), 6);
+		line.put(' ');
+		line.putNumber(response.protocol().getStatus());
+		line.put(' ');
+		line.putNumber(response.body().size());
+		line.put('\t');
+		line.put(' ');
+		line.put(request.protocol().getPath());
+		line.put('\t');
+		line.put(' ');
+		line.put(request.header().get("User-Agent"));
+		line.put('\t');
+		line.put(' ');
+		line.put(request.header().get("Referer"));
+		line.end();
+
+		if (!ringBuffer.offer(line.bytes, line.length)) {
+			droppedCount.incrementAndGet();
+		}
+
+		//缓冲区使用超过一半时唤醒写入线程
+		if (ringBuffer.size() > RING_SIZE / 2) {
+			LockSupport.unpark(writerThread);
+		}
+	}
+
+	private static DateValue getDateValue() {
+		long second = System.currentTimeMillis() / 1000;
+		DateValue currentDateValue = dateValue;
+		if (currentDateValue.second != second) {
+			currentDateValue = new DateValue(second);
+			dateValue = currentDateValue;
+		}
+		return currentDateValue;
+	}
+
+	@Override
+	public void run() {
+		while (running) {
+			LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(flushInterval));
+			drain();
+		}
+	}
+
+	/**
+	 * 收集所有线程缓冲区中的日志并写入文件
+	 */
+	private synchronized void drain() {
+		//已经关闭
+		if (writeBuffer == null) {
+			return;
+		}
+
+		try {
+			rotate();
+
+			for (RingBuffer ringBuffer : ringBuffers) {
+				ringBuffer.drainTo(this);
+
+				//线程结束后移除它的缓冲区
+				if (!ringBuffer.thread.isAlive() && ringBuffer.size() == 0) {
+					ringBuffers.remove(ringBuffer);
+				}
+			}
+
+			flush();
+		} catch (IOException e) {
+			Logger.error("Write access log failed", e);
+		}
+	}
+
+	/**
+	 * 写入写缓冲区, 写满时写入文件
+	 * @param bytes 字节数组
+	 * @param offset 起始位置
+	 * @param length 长度
+	 * @throws IOException IO 异常
+	 */
+	private void append(byte[] bytes, int offset, int length) throws IOException {
+		while (length > 0) {
+			if (!writeBuffer.hasRemaining()) {
+				flush();
+			}
+			int size = Math.min(length, writeBuffer.remaining());
+			writeBuffer.put(bytes, offset, size);
+			offset += size;
+			length -= size;
+		}
+	}
+
+	private void flush() throws IOException {
+		writeBuffer.flip();
+		while (writeBuffer.hasRemaining()) {
+			fileChannel.write(writeBuffer);
+		}
+		writeBuffer.clear();
+	}
+
+	/**
+	 * 打开日志文件, 日期变化时把当前的日志文件重命名为前一天的日志文件
+	 * @throws IOException IO 异常
+	 */
+	private void rotate() throws IOException {
+		long now = System.currentTimeMillis();
+		long day = (now + TimeZone.getDefault().getOffset(now)) / DAY_MILLIS;
+		if (fileChannel != null && day == currentDay) {
+			return;
+		}
+
+		File file = new File(fileName);
+		if (fileChannel != null) {
+			flush();
+			fileChannel.close();
+			String suffix = TDateTime.format(new Date(now - DAY_MILLIS), "yyyy-MM-dd");
+			if (!file.renameTo(new File(fileName + "." + suffix))) {
+				Logger.warn("Rename access log " + fileName + " failed.");
+			}
+		} else if (file.exists()) {
+			//启动时已存在的日志文件不是今天的, 先轮转
+			long lastModified = file.lastModified();
+			long fileDay = (lastModified + TimeZone.getDefault().getOffset(lastModified)) / DAY_MILLIS;
+			if (fileDay != day) {
+				String suffix = TDateTime.format(new Date(lastModified), "yyyy-MM-dd");
+				file.renameTo(new File(fileName + "." + suffix));
+			}
+		}
+
+		TFile.mkdir(fileName);
+		fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+		currentDay = day;
+	}
+
+	/**
+	 * 写出剩余的日志并关闭文件
+	 */
+	public synchronized void close() {
+		if (!running) {
+			return;
+		}
+		running = false;
+		LockSupport.unpark(writerThread);
+		drain();
+
+		try {
+			if (fileChannel != null) {
+				fileChannel.close();
+			}
+		} catch (IOException e) {
+			Logger.error("Close access log failed", e);
+		}
+		TByteBuffer.release(writeBuffer);
+		writeBuffer = null;
+	}
+
+	/**
+	 * 单个线程的环形缓冲区
+	 * 		只有所属的请求线程写入, 只有写入线程读取, 读写位置通过 volatile 发布
+	 */
+	private static class RingBuffer {
+		private Thread thread;
+		private byte[] ring;
+		private LineEncoder line;
+		//已经读取的位置, 只由写入线程修改
+		private volatile long head;
+		//已经写入的位置, 只由请求线程修改
+		private volatile long tail;
+
+		private RingBuffer(Thread thread) {
+			this.thread = thread;
+			this.ring = new byte[RING_SIZE];
+			this.line = new LineEncoder();
+		}
+
+		private int size() {
+			return (int) (tail - head);
+		}
+
+		/**
+		 * 写入一行日志
+		 * @param bytes 日志的字节
+		 * @param length 长度
+		 * @return true: 成功, false: 缓冲区已满
+		 */
+		private boolean offer(byte[] bytes, int length) {
+			long currentTail = tail;
+			if (RING_SIZE - (currentTail - head) < length) {
+				return false;
+			}
+
+			int offset = (int) (currentTail % RING_SIZE);
+			int firstLength = Math.min(length, RING_SIZE - offset);
+			System.arraycopy(bytes, 0, ring, offset, firstLength);
+			System.arraycopy(bytes, firstLength, ring, 0, length - firstLength);
+			tail = currentTail + length;
+			return true;
+		}
+
+		/**
+		 * 把缓冲区中的日志交给访问日志写出
+		 * @param accessLog 访问日志
+		 * @throws IOException IO 异常
+		 */
+		private void drainTo(AccessLog accessLog) throws IOException {
+			long currentHead = head;
+			int length = (int) (tail - currentHead);
+			if (length == 0) {
+				return;
+			}
+
+			int offset = (int) (currentHead % RING_SIZE);
+			int firstLength = Math.min(length, RING_SIZE - offset);
+			accessLog.append(ring, offset, firstLength);
+			accessLog.append(ring, 0, length - firstLength);
+			head = currentHead + length;
+		}
+	}
+
+	/**
+	 * 单行日志的编码器, 每个线程复用
+	 */
+	private static class LineEncoder {
+		private byte[] bytes = new byte[LINE_MAX_SIZE];
+		private int length;
+
+		private void reset() {
+			length = 0;
+		}
+
+		private void put(char c) {
+			//保留行尾换行符的位置
+			if (length < LINE_MAX_SIZE - 2) {
+				bytes[length++] = (byte) c;
+			}
+		}
+
+		private void end() {
+			bytes[length++] = '\r';
+			bytes[length++] = '\n';
+		}
+
+		private void put(byte[] value) {
+			for (byte b : value) {
+				put((char) b);
+			}
+		}
+
+		private void put(String value) {
+			if (value == null) {
+				return;
+			}
+
+			for (int i = 0; i < value.length(); i++) {
+				char c = value.charAt(i);
+				if (c < 0x80) {
+					//控制字符会破坏日志的格式
+					put(c < 0x20 ? ' ' : c);
+				} else {
+					//包含非 ASCII 字符时剩余部分按 UTF-8 编码
+					put(value.substring(i).getBytes(StandardCharsets.UTF_8));
+					return;
+				}
+			}
+		}
+
+		private void putPadded(String value, int size) {
+			int start = length;
+			put(value);
+			for (int i = length - start; i < size; i++) {
+				put(' ');
+			}
+		}
+
+		private void putNumber(long value) {
+			if (value < 0) {
+				put('-');
+				value = -value;
+			}
+
+			int start = length;
+			do {
+				put((char) ('0' + value % 10));
+				value = value / 10;
+			} while (value > 0);
+
+			//反转数字的顺序
+			for (int i = start, j = length - 1; i < j; i++, j--) {
+				byte temp = bytes[i];
+				bytes[i] = bytes[j];
+				bytes[j] = temp;
+			}
+		}
+	}
+
+	/**
+	 * 当前秒的时间
+	 */
+	private static class DateValue {
+		private long second;
+		private byte[] bytes;
+
+		private DateValue(long second) {
+			this.second = second;
+			this.bytes = ("[" + TDateTime.format(new Date(second * 1000), TDateTime.STANDER_DATETIME_TEMPLATE) + "]")
+					.getBytes(StandardCharsets.US_ASCII);
+		}
+	}
+}
@@ -3,13 +3,11 @@ package org.voovan.http.server.context;
 import org.voovan.Global;
 import org.voovan.http.server.HttpRequest;
 import org.voovan.http.server.HttpResponse;
-import org.voovan.tools.TDateTime;
 import org.voovan.tools.TFile;
 import org.voovan.tools.TObject;
 import org.voovan.tools.TString;
 import org.voovan.tools.json.JSONDecode;
 import org.voovan.tools.log.Logger;
-import org.voovan.tools.log.SingleLogger;
 import org.voovan.tools.reflect.TReflect;
 
 import java.io.File;
@@ -56,6 +54,8 @@ public class WebContext {
 
 	private static WebServerConfig webServerConfig = initWebServerConfig();
 
+	private static volatile AccessLog accessLog;
+
 	private WebContext(){
 		
 	}
@@ -153,7 +153,14 @@ public class WebContext {
 		Logger.simple(TString.rightPad("  KeepAliveTimeout:",35,' ')+config.getKeepAliveTimeout());
 		Logger.simple(TString.rightPad("  MatchRouteIgnoreCase:",35,' ')+config.isMatchRouteIgnoreCase());
 		Logger.simple(TString.rightPad("  Gzip:",35,' ')+ config.isGzip());
+		Logger.simple(TString.rightPad("  GzipMinSize:",35,' ')+ config.getGzipMinSize());
+		Logger.simple(TString.rightPad("  GzipLevel:",35,' ')+ config.getGzipLevel());
+		Logger.simple(TString.rightPad("  Http2:",35,' ')+ config.isHttp2());
+		Logger.simple(TString.rightPad("  WebSocketCompress:",35,' ')+ config.isWebSocketCompress());
+		Logger.simple(TString.rightPad("  WebSocketMaxMessageSize:",35,' ')+ config.getWebSocketMaxMessageSize());
+		Logger.simple(TString.rightPad("  WebSocketPingInterval:",35,' ')+ config.getWebSocketPingInterval());
 		Logger.simple(TString.rightPad("  AccessLog:",35,' ')+ config.isAccessLog());
+		Logger.simple(TString.rightPad("  AccessLogFlushInterval:",35,' ')+ config.getAccessLogFlushInterval());
 		if(config.isHttps()) {
 			Logger.simple(TString.rightPad("  CertificateFile:",35,' ')+config.getHttps().getCertificateFile());
 			Logger.simple(TString.rightPad("  CertificatePassword:",35,' ')+config.getHttps().getCertificatePassword());
@@ -169,24 +176,20 @@ public class WebContext {
 	}
 
 	/**
-	 * 生成 accessLog 日志
-	 * @param request   HTTP 请求对象
-	 * @param response	HTTP 响应对象
-	 * @return 日志信息
+	 * 获取访问日志对象
+	 * 		第一次写入访问日志时创建
+	 * @param webServerConfig WebServer 配置对象
+	 * @return 访问日志对象
 	 */
-	private static String genAccessLog(HttpRequest request, HttpResponse response){
-		StringBuilder content = new StringBuilder();
-		content.append("["+TDateTime.now()+"]");
-		content.append(" "+TString.rightPad(request.getRemoteAddres(),15,' '));
-		content.append(" "+TString.rightPad(request.getRemotePort()+"",5,' '));
-		content.append(" "+request.protocol().getProtocol()+"/"+request.protocol().getVersion()+" "+TString.rightPad(request.protocol().getMethod(),6,' '));
-		content.append(" "+response.protocol().getStatus());
-		content.append(" "+response.body().getBodyBytes().length);
-		content.append("\t "+request.protocol().getPath());
-		content.append("\t "+TObject.nullDefault(request.header().get("User-Agent"),""));
-		content.append("\t "+TObject.nullDefault(request.header().get("Referer"),""));
-		content.append("\r\n");
-		return content.toString();
+	private static AccessLog getAccessLog(WebServerConfig webServerConfig){
+		if(accessLog == null){
+			synchronized (WebContext.class) {
+				if(accessLog == null) {
+					accessLog = new AccessLog(ACCESS_LOG_FILE_NAME, webServerConfig.getAccessLogFlushInterval());
+				}
+			}
+		}
+		return accessLog;
 	}
 	
 	/**
@@ -199,7 +202,7 @@ public class WebContext {
 		//配置文件控制是否写入 access.log
 		//监控程序的不写出 access.log
 		if(webServerConfig.isAccessLog() && !request.protocol().getPath().contains("/VoovanMonitor/")) {
-			SingleLogger.writeLog(ACCESS_LOG_FILE_NAME, genAccessLog(request, response));
+			getAccessLog(webServerConfig).write(request, response);
 		}
 	}
 	
@@ -5,9 +5,11 @@ import org.voovan.tools.log.Logger;
 import org.voovan.tools.reflect.TReflect;
 
 import java.lang.reflect.Field;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.Vector;
 
 /**
@@ -30,7 +32,20 @@ public class WebServerConfig {
     private int sessionTimeout      = 30;
     private int keepAliveTimeout    = 60;
     private boolean accessLog       = false;
+    private int accessLogFlushInterval = 1000;
     private boolean gzip            = true;
+    private int gzipMinSize         = 1024;
+    private int gzipLevel           = 6;
+    private String gzipMimeType     = "text/html,text/plain,text/css,text/xml,text/javascript,application/javascript,application/json,application/xml";
+    //由 gzipMimeType 解析出的小写 MIME 类型, 通配符保存成 "text/" 形式的前缀, 第一次使用时构造
+    private volatile Set<String> gzipMimeTypeSet;
+    private int pipelineMaxRequests = 16;
+    private boolean http2 = false;
+    private boolean pipelineConcurrent = false;
+    private boolean webSocketCompress = false;
+    private boolean webSocketNoContextTakeover = false;
+    private int webSocketMaxMessageSize = 16 * 1024 * 1024;
+    private int webSocketPingInterval = 30;
     private HttpsConfig https;
     private String indexFiles = "index.htm,index.html,default.htm,default.htm";
 
@@ -118,6 +133,138 @@ public class WebServerConfig {
         this.gzip = gzip;
     }
 
+    public int getGzipMinSize() {
+        return gzipMinSize;
+    }
+
+    public void setGzipMinSize(int gzipMinSize) {
+        this.gzipMinSize = gzipMinSize;
+    }
+
+    public int getGzipLevel() {
+        return gzipLevel;
+    }
+
+    public void setGzipLevel(int gzipLevel) {
+        this.gzipLevel = gzipLevel;
+    }
+
+    public String[] getGzipMimeType() {
+        return gzipMimeType.split(",");
+    }
+
+    public void setGzipMimeType(String gzipMimeType) {
+        this.gzipMimeType = gzipMimeType;
+        this.gzipMimeTypeSet = null;
+    }
+
+    /**
+     * 获取允许压缩的 MIME 类型集合
+     * @return MIME 类型集合
+     */
+    private Set<String> getGzipMimeTypeSet() {
+        Set<String> mimeTypeSet = gzipMimeTypeSet;
+        if(mimeTypeSet == null){
+            mimeTypeSet = new HashSet<String>();
+            for(String gzipMime : getGzipMimeType()){
+                gzipMime = gzipMime.trim().toLowerCase();
+                if(gzipMime.endsWith("/*")){
+                    gzipMime = gzipMime.substring(0, gzipMime.length()-1);
+                }
+                if(!gzipMime.isEmpty()) {
+                    mimeTypeSet.add(gzipMime);
+                }
+            }
+            gzipMimeTypeSet = mimeTypeSet;
+        }
+        return mimeTypeSet;
+    }
+
+    public int getPipelineMaxRequests() {
+        return pipelineMaxRequests;
+    }
+
+    public void setPipelineMaxRequests(int pipelineMaxRequests) {
+        this.pipelineMaxRequests = pipelineMaxRequests;
+    }
+
+    public boolean isPipelineConcurrent() {
+        return pipelineConcurrent;
+    }
+
+    public void setPipelineConcurrent(boolean pipelineConcurrent) {
+        this.pipelineConcurrent = pipelineConcurrent;
+    }
+
+    public boolean isWebSocketCompress() {
+        return webSocketCompress;
+    }
+
+    public void setWebSocketCompress(boolean webSocketCompress) {
+        this.webSocketCompress = webSocketCompress;
+    }
+
+    public boolean isWebSocketNoContextTakeover() {
+        return webSocketNoContextTakeover;
+    }
+
+    public void setWebSocketNoContextTakeover(boolean webSocketNoContextTakeover) {
+        this.webSocketNoContextTakeover = webSocketNoContextTakeover;
+    }
+
+    public int getWebSocketMaxMessageSize() {
+        return webSocketMaxMessageSize;
+    }
+
+    public void setWebSocketMaxMessageSize(int webSocketMaxMessageSize) {
+        this.webSocketMaxMessageSize = webSocketMaxMessageSize;
+    }
+
+    public int getWebSocketPingInterval() {
+        return webSocketPingInterval;
+    }
+
+    public void setWebSocketPingInterval(int webSocketPingInterval) {
+        this.webSocketPingInterval = webSocketPingInterval;
+    }
+
+    public boolean isHttp2() {
+        return http2;
+    }
+
+    /**
+     * 设置是否启用 HTTP/2, 默认不启用
+     *      启用后支持 h2c 升级、明文直连的连接序言和 HTTPS 的 ALPN 协商,
+     *      也可以在 web.json 中配置 "Http2": true 启用
+     * @param http2 true: 启用, false: 不启用
+     */
+    public void setHttp2(boolean http2) {
+        this.http2 = http2;
+    }
+
+    /**
+     * 判断 MIME 类型是否允许压缩
+     * @param contentType Content-Type 头的值
+     * @return true: 允许压缩, false: 不允许压缩
+     */
+    public boolean isGzipMimeType(String contentType) {
+        if(contentType == null){
+            contentType = "text/html";
+        }
+
+        int paramIndex = contentType.indexOf(';');
+        String mimeType = (paramIndex > 0 ? contentType.substring(0, paramIndex) : contentType).trim().toLowerCase();
+
+        Set<String> mimeTypeSet = getGzipMimeTypeSet();
+        if(mimeTypeSet.contains(mimeType)){
+            return true;
+        }
+
+        //通配符形式的类型, 例如 text/*
+        int slashIndex = mimeType.indexOf('/');
+        return slashIndex > 0 && mimeTypeSet.contains(mimeType.substring(0, slashIndex + 1));
+    }
+
     public boolean isAccessLog() {
         return accessLog;
     }
@@ -126,6 +273,14 @@ public class WebServerConfig {
         this.accessLog = accessLog;
     }
 
+    public int getAccessLogFlushInterval() {
+        return accessLogFlushInterval;
+    }
+
+    public void setAccessLogFlushInterval(int accessLogFlushInterval) {
+        this.accessLogFlushInterval = accessLogFlushInterval;
+    }
+
     public HttpsConfig getHttps() {
         return https;
     }
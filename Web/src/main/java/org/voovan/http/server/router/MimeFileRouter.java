@@ -8,11 +8,16 @@ import org.voovan.http.server.exception.ResourceNotFound;
 import org.voovan.tools.TDateTime;
 import org.voovan.tools.TFile;
 import org.voovan.tools.THash;
+import org.voovan.tools.TString;
 
 import java.io.File;
 import java.io.IOException;
 import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.List;
 
 
 /**
@@ -26,6 +31,9 @@ import java.util.Date;
  */
 public class MimeFileRouter implements HttpRouter {
 
+	//单个请求中允许的最大范围数量
+	private static final int MAX_RANGE_COUNT = 32;
+
 	private String	rootPath;
 
 	/**
@@ -114,49 +122,206 @@ public class MimeFileRouter implements HttpRouter {
 	
 	/**
 	 * 填充 mime 文件到 response
+	 * 		支持单个范围和多个范围(multipart/byteranges)的请求, 以及 If-Range 校验,
+	 * 		范围内容直接由文件提供, 发送时不经过 Java 堆
 	 * @param responseFile   响应文件
 	 * @param request   HTTP 请求对象
 	 * @param response  HTTP 响应对象
 	 * @throws IOException IO操作异常
 	 */
 	public void fillMimeFile(File responseFile,HttpRequest request,HttpResponse response) throws IOException {
-		byte[] fileByte = null;
 		long fileSize = TFile.getFileSize(responseFile);
-		
-		// 如果包含取一个范围内的文件内容进行处理,形似:Range: 0-800
-		if (request.header().get("Range") != null && request.header().get("Range").contains("-")) {
-			
-			long beginPos=-1;
-			long endPos=-1;
-			
-			String rangeStr = request.header().get("Range");
-			rangeStr = rangeStr.replace("bytes=", "").trim();
-			String[] ranges = rangeStr.split("-");
-			
-			//形似:Range: -800
-			if(rangeStr.startsWith("-") && ranges.length==1){
-				beginPos = fileSize - Long.parseLong(ranges[0]);
-				endPos = fileSize;
+		File file = new File(responseFile.getCanonicalPath());
+
+		response.header().put("Accept-Ranges", "bytes");
+
+		String rangeStr = request.header().get("Range");
+
+		// 如果包含取一个范围内的文件内容进行处理,形似:Range: bytes=0-800
+		if (rangeStr != null && rangeStr.contains("-") && isIfRangeMatch(request, response)) {
+			List<long[]> ranges = parseRanges(rangeStr, fileSize);
+
+			//范围无法解析时忽略 Range 头, 返回完整的文件
+			if(ranges == null){
+				response.body().changeToFile(file);
+				return;
 			}
-			//形似:Range: 800-
-			else if(rangeStr.endsWith("-") && ranges.length==1){
-				beginPos = Integer.parseInt(ranges[0]);
-				endPos = fileSize;
+
+			//范围无法满足
+			if(ranges.isEmpty()){
+				response.protocol().setStatus(416);
+				response.protocol().setStatusCode("Requested Range Not Satisfiable");
+				response.header().put("Content-Range", "bytes */" + fileSize);
+				return;
 			}
-			//形似:Range: 0-800
-			else if(ranges.length==2){
-				beginPos = Long.parseLong(ranges[0]);
-				endPos   = Long.parseLong(ranges[1]);
+
+			response.protocol().setStatus(206);
+			response.protocol().setStatusCode("Partial Content");
+			//范围响应不进行压缩
+			response.setCompress(false);
+
+			if(ranges.size() == 1) {
+				long[] range = ranges.get(0);
+				response.header().put("Content-Range", "bytes " + range[0] + "-" + range[1] + "/" + fileSize);
+				response.body().changeToFile(file, range[0], range[1] + 1);
+			} else {
+				String contentType = response.header().get("Content-Type");
+				String boundary = TString.generateShortUUID();
+				response.header().put("Content-Type", "multipart/byteranges; boundary=" + boundary);
+
+				for(int i=0; i<ranges.size(); i++){
+					long[] range = ranges.get(i);
+					String partHead = "\r\n--" + boundary + "\r\n" +
+							"Content-Type: " + contentType + "\r\n" +
+							"Content-Range: bytes " + range[0] + "-" + range[1] + "/" + fileSize + "\r\n\r\n";
+					if(i == 0){
+						response.body().changeToFile(file, partHead.getBytes(), range[0], range[1] + 1);
+					}else{
+						response.body().appendFileSegment(partHead.getBytes(), range[0], range[1] + 1);
+					}
+				}
+				response.body().appendFileSegment(("\r\n--" + boundary + "--\r\n").getBytes(), 0, 0);
 			}
-			fileByte = TFile.loadFileFromSysPath(responseFile.getPath(), beginPos, endPos);
-			response.header().put("Content-Range", "bytes " + rangeStr + "/" + fileSize);
-			response.body().write(fileByte);
+		} else {
+			response.body().changeToFile(file);
+		}
+	}
+
+	/**
+	 * 判断 If-Range 是否匹配
+	 * 		If-Range 可以是 ETag 或者 最后修改时间, 不匹配时需要忽略 Range 返回完整的文件.
+	 * 		ETag 按 RFC 7233 3.2 使用强比较
+	 * @param request   HTTP 请求对象
+	 * @param response  HTTP 响应对象
+	 * @return true: 没有 If-Range 或者 If-Range 匹配, false: If-Range 不匹配
+	 */
+	public boolean isIfRangeMatch(HttpRequest request, HttpResponse response){
+		String ifRange = request.header().get("If-Range");
+		if(ifRange == null){
+			return true;
+		}
 
+		ifRange = ifRange.trim();
+		//If-Range 只使用强比较, 弱 ETag 总是不匹配
+		if(ifRange.startsWith("W/")){
+			return false;
+		} else if(ifRange.startsWith("\"")){
+			String eTag = response.header().get("ETag");
+			return eTag != null && !eTag.startsWith("W/") && ifRange.equals(eTag);
 		} else {
-			response.body().changeToFile(responseFile.getCanonicalPath());
+			return ifRange.equals(response.header().get("Last-Modified"));
 		}
 	}
-	
+
+	/**
+	 * 解析 Range 头
+	 * 		形似: bytes=0-800, bytes=800-, bytes=-800, bytes=0-100,200-300
+	 * @param rangeStr Range 头的值
+	 * @param fileSize 文件大小
+	 * @return 合并后的范围的集合, 每个元素为 [起始位置, 结束位置(包含)]. null: 格式错误, 空集合: 范围无法满足
+	 */
+	public static List<long[]> parseRanges(String rangeStr, long fileSize){
+		rangeStr = rangeStr.trim();
+		if(!rangeStr.startsWith("bytes=")){
+			return null;
+		}
+
+		String[] rangeParts = rangeStr.substring(6).split(",");
+		//防止过多的范围导致的资源消耗
+		if(rangeParts.length > MAX_RANGE_COUNT){
+			return null;
+		}
+
+		List<long[]> ranges = new ArrayList<long[]>();
+		try {
+			for (String rangePart : rangeParts) {
+				rangePart = rangePart.trim();
+				int splitIndex = rangePart.indexOf('-');
+				if (splitIndex < 0) {
+					return null;
+				}
+
+				String beginStr = rangePart.substring(0, splitIndex).trim();
+				String endStr = rangePart.substring(splitIndex + 1).trim();
+
+				long beginPos;
+				long endPos;
+
+				//形似:Range: -800
+				if (beginStr.isEmpty()) {
+					if(endStr.isEmpty()){
+						return null;
+					}
+					long suffixLength = Long.parseLong(endStr);
+					if(suffixLength == 0){
+						continue;
+					}
+					beginPos = Math.max(fileSize - suffixLength, 0);
+					endPos = fileSize - 1;
+				}
+				//形似:Range: 800-
+				else if (endStr.isEmpty()) {
+					beginPos = Long.parseLong(beginStr);
+					endPos = fileSize - 1;
+				}
+				//形似:Range: 0-800
+				else {
+					beginPos = Long.parseLong(beginStr);
+					long lastPos = Long.parseLong(endStr);
+					//结束位置小于起始位置的范围是非法的
+					if (lastPos < beginPos) {
+						return null;
+					}
+					endPos = Math.min(lastPos, fileSize - 1);
+				}
+
+				//起始位置超过文件大小的范围无法满足, 忽略
+				if (beginPos >= fileSize || endPos < beginPos) {
+					continue;
+				}
+
+				ranges.add(new long[]{beginPos, endPos});
+			}
+		}catch(NumberFormatException e){
+			return null;
+		}
+
+		return mergeRanges(ranges);
+	}
+
+	/**
+	 * 合并重叠和相邻的范围
+	 * 		避免重复的范围在 multipart/byteranges 响应中重复发送同样的内容
+	 * @param ranges 范围的集合, 每个元素为 [起始位置, 结束位置(包含)]
+	 * @return 按起始位置排序并合并后的范围的集合
+	 */
+	private static List<long[]> mergeRanges(List<long[]> ranges){
+		if(ranges.size() < 2){
+			return ranges;
+		}
+
+		Collections.sort(ranges, new Comparator<long[]>() {
+			@Override
+			public int compare(long[] range1, long[] range2) {
+				return Long.compare(range1[0], range2[0]);
+			}
+		});
+
+		List<long[]> mergedRanges = new ArrayList<long[]>();
+		long[] current = ranges.get(0);
+		for(int i=1; i<ranges.size(); i++){
+			long[] range = ranges.get(i);
+			if(range[0] <= current[1] + 1){
+				current[1] = Math.max(current[1], range[1]);
+			} else {
+				mergedRanges.add(current);
+				current = range;
+			}
+		}
+		mergedRanges.add(current);
+		return mergedRanges;
+	}
+
 	/**
 	 * 将响应报文设置称304
 	 * @param response HTTP 响应对象
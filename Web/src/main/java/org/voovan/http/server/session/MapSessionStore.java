@@ -0,0 +1,77 @@
+package org.voovan.http.server.session;
+
+import org.voovan.http.server.HttpSession;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 在堆上保存 Session 对象的存储
+ * 		默认的 Session 存储, 不需要序列化, 同一个 Session 的所有请求共享同一个对象
+ *
+ * @author helyho
+ *
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class MapSessionStore implements SessionStore {
+	private Map<String, HttpSession> httpSessions;
+
+	/**
+	 * 构造函数
+	 */
+	public MapSessionStore() {
+		this(new ConcurrentHashMap<String, HttpSession>());
+	}
+
+	/**
+	 * 构造函数
+	 * @param httpSessions 保存 Session 的 Map 对象, 需要是线程安全的
+	 */
+	public MapSessionStore(Map<String, HttpSession> httpSessions) {
+		this.httpSessions = httpSessions;
+	}
+
+	@Override
+	public HttpSession get(String id) {
+		return httpSessions.get(id);
+	}
+
+	@Override
+	public void put(HttpSession session) {
+		httpSessions.put(session.getId(), session);
+	}
+
+	@Override
+	public void touch(String id, long lastTimeillis) {
+		//Session 对象本身已经刷新过
+	}
+
+	@Override
+	public long getExpireTime(String id) {
+		HttpSession session = httpSessions.get(id);
+		return session == null ? -1 : session.getExpireTime();
+	}
+
+	@Override
+	public void remove(String id) {
+		httpSessions.remove(id);
+	}
+
+	@Override
+	public Collection<String> ids() {
+		return new ArrayList<String>(httpSessions.keySet());
+	}
+
+	@Override
+	public int size() {
+		return httpSessions.size();
+	}
+
+	@Override
+	public void close() {
+	}
+}
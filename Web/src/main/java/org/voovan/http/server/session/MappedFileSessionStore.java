@@ -0,0 +1,280 @@
+package org.voovan.http.server.session;
+
+import org.voovan.http.server.HttpSession;
+import org.voovan.tools.TByteBuffer;
+import org.voovan.tools.log.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 内存映射文件的 Session 存储
+ * 		Session 保存在固定大小的槽位中, 文件映射到内存, 数据由操作系统写回磁盘, 服务重启后 Session 仍然有效.
+ * 		堆上只保留 Session ID 到槽位的索引, 槽位用完时淘汰最久没有访问的 Session.
+ * 		序列化后超过槽位大小的 Session 不会被保存
+ *
+ * 		文件格式: [标识 4字节][槽位大小 4字节][槽位数量 4字节][槽位]...
+ * 		槽位格式: [数据长度 4字节, 0 表示空闲][最后访问时间 8字节][最大活动时间 4字节][ID 长度 2字节][ID][序列化的属性]
+ *
+ * @author helyho
+ *
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class MappedFileSessionStore implements SessionStore {
+	private static final int MAGIC = 0x564F5353;
+	private static final int FILE_HEAD_SIZE = 12;
+	//数据长度之后的固定部分: 最后访问时间, 最大活动时间, ID 长度
+	private static final int SLOT_HEAD_SIZE = 14;
+	private static final int DEFAULT_SLOT_SIZE = 4096;
+	private static final int DEFAULT_SLOT_COUNT = 65536;
+
+	private RandomAccessFile randomAccessFile;
+	private MappedByteBuffer mappedByteBuffer;
+	private int slotSize;
+	private int slotCount;
+
+	//按访问顺序排列的 Session ID 到槽位的索引, 最久没有访问的在最前面
+	private LinkedHashMap<String, Integer> slots;
+	private ArrayDeque<Integer> freeSlots;
+
+	/**
+	 * 构造函数
+	 * 		使用当前目录下的 session.dat 文件, 65536 个 4K 的槽位
+	 * @throws IOException IO 异常
+	 */
+	public MappedFileSessionStore() throws IOException {
+		this(System.getProperty("user.dir") + File.separator + "session.dat", DEFAULT_SLOT_SIZE, DEFAULT_SLOT_COUNT);
+	}
+
+	/**
+	 * 构造函数
+	 * 		文件已存在且格式相同时载入其中尚未失效的 Session, 格式不同时重新初始化文件
+	 * @param filePath 文件路径
+	 * @param slotSize 槽位大小, 即单个 Session 序列化后的最大字节数
+	 * @param slotCount 槽位数量, 即最多保存的 Session 数量
+	 * @throws IOException IO 异常
+	 */
+	public MappedFileSessionStore(String filePath, int slotSize, int slotCount) throws IOException {
+		if (slotSize <= 4 + SLOT_HEAD_SIZE || slotCount <= 0) {
+			throw new IllegalArgumentException("slotSize or slotCount is too small");
+		}
+
+		long fileSize = FILE_HEAD_SIZE + (long) slotSize * slotCount;
+		if (fileSize > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("slotSize * slotCount must be less than 2G");
+		}
+
+		this.slotSize = slotSize;
+		this.slotCount = slotCount;
+		this.slots = new LinkedHashMap<String, Integer>(1024, 0.75f, true);
+		this.freeSlots = new ArrayDeque<Integer>();
+
+		randomAccessFile = new RandomAccessFile(filePath, "rw");
+		boolean formatted = false;
+		if (randomAccessFile.length() == fileSize) {
+			formatted = randomAccessFile.readInt() == MAGIC && randomAccessFile.readInt() == slotSize
+					&& randomAccessFile.readInt() == slotCount;
+		}
+
+		if (!formatted) {
+			if (randomAccessFile.length() > 0) {
+				Logger.warn("Session store file " + filePath + " has a different format, it will be reinitialized.");
+			}
+			//清空文件, 映射时扩展出的部分全部为 0, 即所有的槽位都是空闲的
+			randomAccessFile.setLength(0);
+		}
+
+		mappedByteBuffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+
+		if (formatted) {
+			load();
+		} else {
+			for (int i = 0; i < slotCount; i++) {
+				freeSlots.add(i);
+			}
+			mappedByteBuffer.putInt(0, MAGIC);
+			mappedByteBuffer.putInt(4, slotSize);
+			mappedByteBuffer.putInt(8, slotCount);
+		}
+	}
+
+	/**
+	 * 从文件中载入尚未失效的 Session 的索引
+	 */
+	private void load() {
+		long now = System.currentTimeMillis();
+		for (int i = 0; i < slotCount; i++) {
+			int offset = slotOffset(i);
+			int length = mappedByteBuffer.getInt(offset);
+			long expireTime = mappedByteBuffer.getLong(offset + 4) + mappedByteBuffer.getInt(offset + 12);
+			int idLength = length > 0 ? mappedByteBuffer.getShort(offset + 16) : 0;
+			if (length <= 0 || length > slotSize - 4 || idLength <= 0 || idLength > length - SLOT_HEAD_SIZE
+					|| expireTime < now) {
+				if (length != 0) {
+					mappedByteBuffer.putInt(offset, 0);
+				}
+				freeSlots.add(i);
+				continue;
+			}
+
+			byte[] idBytes = new byte[idLength];
+			ByteBuffer slotBuffer = mappedByteBuffer.duplicate();
+			slotBuffer.position(offset + 4 + SLOT_HEAD_SIZE);
+			slotBuffer.get(idBytes);
+			slots.put(new String(idBytes, StandardCharsets.US_ASCII), i);
+		}
+	}
+
+	private int slotOffset(int slot) {
+		return FILE_HEAD_SIZE + slot * slotSize;
+	}
+
+	@Override
+	public HttpSession get(String id) {
+		long lastTimeillis;
+		int maxInactiveInterval;
+		byte[] attributeBytes;
+
+		synchronized (this) {
+			Integer slot = slots.get(id);
+			if (slot == null || mappedByteBuffer == null) {
+				return null;
+			}
+			int offset = slotOffset(slot);
+			int length = mappedByteBuffer.getInt(offset);
+			lastTimeillis = mappedByteBuffer.getLong(offset + 4);
+			maxInactiveInterval = mappedByteBuffer.getInt(offset + 12);
+			int idLength = mappedByteBuffer.getShort(offset + 16);
+			attributeBytes = new byte[length - SLOT_HEAD_SIZE - idLength];
+			ByteBuffer slotBuffer = mappedByteBuffer.duplicate();
+			slotBuffer.position(offset + 4 + SLOT_HEAD_SIZE + idLength);
+			slotBuffer.get(attributeBytes);
+		}
+
+		//在锁外反序列化
+		return new HttpSession(id, lastTimeillis, maxInactiveInterval,
+				SessionSerializer.deserialize(attributeBytes, 0, attributeBytes.length));
+	}
+
+	@Override
+	public void put(HttpSession session) {
+		byte[] idBytes = session.getId().getBytes(StandardCharsets.US_ASCII);
+		byte[] attributeBytes = SessionSerializer.serialize(session.getAttributes());
+		//无法序列化时移除旧的数据, 避免之后读取到过期的属性
+		if (attributeBytes == null) {
+			Logger.warn("Session " + session.getId() + " can't be serialized, it will not be stored.");
+			remove(session.getId());
+			return;
+		}
+
+		int length = SLOT_HEAD_SIZE + idBytes.length + attributeBytes.length;
+		if (length > slotSize - 4) {
+			Logger.warn("Session " + session.getId() + " is larger than the slot size " + slotSize + ", it will not be stored.");
+			remove(session.getId());
+			return;
+		}
+
+		synchronized (this) {
+			//存储关闭后仍在处理的请求不再保存 Session
+			if (mappedByteBuffer == null) {
+				Logger.warn("Session store is closed, session " + session.getId() + " will not be stored.");
+				return;
+			}
+
+			Integer slot = slots.get(session.getId());
+			if (slot == null) {
+				slot = freeSlots.poll();
+				//槽位用完时淘汰最久没有访问的 Session
+				if (slot == null) {
+					Iterator<Map.Entry<String, Integer>> iterator = slots.entrySet().iterator();
+					slot = iterator.next().getValue();
+					iterator.remove();
+				}
+				slots.put(session.getId(), slot);
+			}
+
+			int offset = slotOffset(slot);
+			//先标记为空闲, 写完数据后再写入长度, 避免异常退出时留下不完整的数据
+			mappedByteBuffer.putInt(offset, 0);
+			ByteBuffer slotBuffer = mappedByteBuffer.duplicate();
+			slotBuffer.position(offset + 4);
+			slotBuffer.putLong(session.getLastTimeillis());
+			slotBuffer.putInt(session.getMaxInactiveInterval());
+			slotBuffer.putShort((short) idBytes.length);
+			slotBuffer.put(idBytes);
+			slotBuffer.put(attributeBytes);
+			mappedByteBuffer.putInt(offset, length);
+		}
+	}
+
+	@Override
+	public synchronized void touch(String id, long lastTimeillis) {
+		Integer slot = slots.get(id);
+		if (slot != null && mappedByteBuffer != null) {
+			mappedByteBuffer.putLong(slotOffset(slot) + 4, lastTimeillis);
+		}
+	}
+
+	@Override
+	public synchronized long getExpireTime(String id) {
+		Integer slot = slots.get(id);
+		if (slot == null || mappedByteBuffer == null) {
+			return -1;
+		}
+		int offset = slotOffset(slot);
+		return mappedByteBuffer.getLong(offset + 4) + mappedByteBuffer.getInt(offset + 12);
+	}
+
+	@Override
+	public synchronized void remove(String id) {
+		Integer slot = slots.remove(id);
+		if (slot != null && mappedByteBuffer != null) {
+			mappedByteBuffer.putInt(slotOffset(slot), 0);
+			freeSlots.add(slot);
+		}
+	}
+
+	@Override
+	public synchronized Collection<String> ids() {
+		return new ArrayList<String>(slots.keySet());
+	}
+
+	@Override
+	public synchronized int size() {
+		return slots.size();
+	}
+
+	/**
+	 * 将数据写回磁盘并释放文件映射
+	 */
+	@Override
+	public synchronized void close() {
+		if (mappedByteBuffer == null) {
+			return;
+		}
+
+		mappedByteBuffer.force();
+		TByteBuffer.release(mappedByteBuffer);
+		mappedByteBuffer = null;
+		slots.clear();
+		freeSlots.clear();
+		try {
+			randomAccessFile.close();
+		} catch (IOException e) {
+			Logger.error("Close session store file failed", e);
+		}
+	}
+}
@@ -0,0 +1,162 @@
+package org.voovan.http.server.session;
+
+import org.voovan.http.server.HttpSession;
+import org.voovan.tools.TByteBuffer;
+import org.voovan.tools.log.Logger;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 堆外内存的 Session 存储
+ * 		Session 的属性序列化后保存在直接内存中, 堆上只保留 Session ID 和缓冲区的引用.
+ * 		占用的直接内存超过上限时淘汰最久没有访问的 Session.
+ * 		每次 get 都会还原出新的 Session 对象, 同一个 Session 的并发请求以最后写回的属性为准
+ *
+ * 		缓冲区格式: [最后访问时间 8字节][最大活动时间 4字节][序列化的属性]
+ *
+ * @author helyho
+ *
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class OffHeapSessionStore implements SessionStore {
+	private static final int HEAD_SIZE = 12;
+	private static final long DEFAULT_MAX_SIZE = 256 * 1024 * 1024L;
+
+	//按访问顺序排列, 最久没有访问的在最前面
+	private LinkedHashMap<String, ByteBuffer> sessions;
+	private long maxSize;
+	private long usedSize;
+
+	/**
+	 * 构造函数
+	 * 		最多占用 256M 直接内存
+	 */
+	public OffHeapSessionStore() {
+		this(DEFAULT_MAX_SIZE);
+	}
+
+	/**
+	 * 构造函数
+	 * @param maxSize 最多占用的直接内存字节数
+	 */
+	public OffHeapSessionStore(long maxSize) {
+		this.sessions = new LinkedHashMap<String, ByteBuffer>(1024, 0.75f, true);
+		this.maxSize = maxSize;
+		this.usedSize = 0;
+	}
+
+	/**
+	 * 获取已经占用的直接内存字节数
+	 * @return 直接内存字节数
+	 */
+	public synchronized long getUsedSize() {
+		return usedSize;
+	}
+
+	@Override
+	public HttpSession get(String id) {
+		long lastTimeillis;
+		int maxInactiveInterval;
+		byte[] attributeBytes;
+
+		synchronized (this) {
+			ByteBuffer byteBuffer = sessions.get(id);
+			if (byteBuffer == null) {
+				return null;
+			}
+			lastTimeillis = byteBuffer.getLong(0);
+			maxInactiveInterval = byteBuffer.getInt(8);
+			attributeBytes = new byte[byteBuffer.capacity() - HEAD_SIZE];
+			ByteBuffer attributeBuffer = byteBuffer.duplicate();
+			attributeBuffer.position(HEAD_SIZE);
+			attributeBuffer.get(attributeBytes);
+		}
+
+		//在锁外反序列化
+		return new HttpSession(id, lastTimeillis, maxInactiveInterval,
+				SessionSerializer.deserialize(attributeBytes, 0, attributeBytes.length));
+	}
+
+	@Override
+	public void put(HttpSession session) {
+		byte[] attributeBytes = SessionSerializer.serialize(session.getAttributes());
+		//无法序列化时移除旧的数据, 避免之后读取到过期的属性
+		if (attributeBytes == null) {
+			Logger.warn("Session " + session.getId() + " can't be serialized, it will not be stored.");
+			remove(session.getId());
+			return;
+		}
+
+		ByteBuffer byteBuffer = ByteBuffer.allocateDirect(HEAD_SIZE + attributeBytes.length);
+		byteBuffer.putLong(session.getLastTimeillis());
+		byteBuffer.putInt(session.getMaxInactiveInterval());
+		byteBuffer.put(attributeBytes);
+
+		synchronized (this) {
+			ByteBuffer oldByteBuffer = sessions.put(session.getId(), byteBuffer);
+			if (oldByteBuffer != null) {
+				usedSize -= oldByteBuffer.capacity();
+				TByteBuffer.release(oldByteBuffer);
+			}
+			usedSize += byteBuffer.capacity();
+
+			//淘汰最久没有访问的 Session, 保留刚写入的 Session
+			Iterator<Map.Entry<String, ByteBuffer>> iterator = sessions.entrySet().iterator();
+			while (usedSize > maxSize && sessions.size() > 1) {
+				ByteBuffer eldestByteBuffer = iterator.next().getValue();
+				iterator.remove();
+				usedSize -= eldestByteBuffer.capacity();
+				TByteBuffer.release(eldestByteBuffer);
+			}
+		}
+	}
+
+	@Override
+	public synchronized void touch(String id, long lastTimeillis) {
+		ByteBuffer byteBuffer = sessions.get(id);
+		if (byteBuffer != null) {
+			byteBuffer.putLong(0, lastTimeillis);
+		}
+	}
+
+	@Override
+	public synchronized long getExpireTime(String id) {
+		ByteBuffer byteBuffer = sessions.get(id);
+		return byteBuffer == null ? -1 : byteBuffer.getLong(0) + byteBuffer.getInt(8);
+	}
+
+	@Override
+	public synchronized void remove(String id) {
+		ByteBuffer byteBuffer = sessions.remove(id);
+		if (byteBuffer != null) {
+			usedSize -= byteBuffer.capacity();
+			TByteBuffer.release(byteBuffer);
+		}
+	}
+
+	@Override
+	public synchronized Collection<String> ids() {
+		return new ArrayList<String>(sessions.keySet());
+	}
+
+	@Override
+	public synchronized int size() {
+		return sessions.size();
+	}
+
+	@Override
+	public synchronized void close() {
+		for (ByteBuffer byteBuffer : sessions.values()) {
+			TByteBuffer.release(byteBuffer);
+		}
+		sessions.clear();
+		usedSize = 0;
+	}
+}
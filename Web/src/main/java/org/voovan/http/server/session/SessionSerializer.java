@@ -0,0 +1,70 @@
+package org.voovan.http.server.session;
+
+import org.voovan.tools.log.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Session 属性的序列化工具
+ * 		使用 Java 序列化, 属性值需要实现 Serializable 接口. 没有属性时序列化结果为空数组
+ *
+ * @author helyho
+ *
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class SessionSerializer {
+
+	private static final byte[] EMPTY = new byte[0];
+
+	/**
+	 * 序列化 Session 属性
+	 * @param attributes Session 属性
+	 * @return 序列化后的字节, 属性值无法序列化时返回 null
+	 */
+	public static byte[] serialize(Map<String, Object> attributes) {
+		if (attributes.isEmpty()) {
+			return EMPTY;
+		}
+
+		try {
+			ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+			ObjectOutputStream objectOutputStream = new ObjectOutputStream(byteArrayOutputStream);
+			objectOutputStream.writeObject(new HashMap<String, Object>(attributes));
+			objectOutputStream.close();
+			return byteArrayOutputStream.toByteArray();
+		} catch (IOException e) {
+			Logger.error("Serialize session attributes failed", e);
+			return null;
+		}
+	}
+
+	/**
+	 * 反序列化 Session 属性
+	 * @param bytes 字节数组
+	 * @param offset 起始位置
+	 * @param length 长度
+	 * @return Session 属性, 反序列化失败时返回空的属性
+	 */
+	@SuppressWarnings("unchecked")
+	public static Map<String, Object> deserialize(byte[] bytes, int offset, int length) {
+		if (length == 0) {
+			return new HashMap<String, Object>();
+		}
+
+		try {
+			ObjectInputStream objectInputStream = new ObjectInputStream(new ByteArrayInputStream(bytes, offset, length));
+			return (Map<String, Object>) objectInputStream.readObject();
+		} catch (IOException | ClassNotFoundException e) {
+			Logger.error("Deserialize session attributes failed", e);
+			return new HashMap<String, Object>();
+		}
+	}
+}
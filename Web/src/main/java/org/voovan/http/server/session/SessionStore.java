@@ -0,0 +1,70 @@
+package org.voovan.http.server.session;
+
+import org.voovan.http.server.HttpSession;
+
+import java.util.Collection;
+
+/**
+ * Session 存储接口
+ * 		SessionManager 通过这个接口保存 Session, 实现类需要是线程安全的.
+ * 		除了在堆上保存 Session 对象的实现外, get 返回的都是还原出来的副本,
+ * 		修改过属性的 Session 由 SessionManager 在请求处理完成后调用 put 写回
+ *
+ * @author helyho
+ *
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public interface SessionStore {
+
+	/**
+	 * 获取 Session
+	 * @param id Session ID
+	 * @return HTTP-Session 对象, 不存在时返回 null
+	 */
+	public HttpSession get(String id);
+
+	/**
+	 * 保存 Session, 已存在时替换
+	 * @param session HTTP-Session 对象
+	 */
+	public void put(HttpSession session);
+
+	/**
+	 * 更新 Session 的最后访问时间
+	 * @param id Session ID
+	 * @param lastTimeillis 最后访问时间
+	 */
+	public void touch(String id, long lastTimeillis);
+
+	/**
+	 * 获取 Session 的失效时间, 用于过期清理时不必还原整个 Session
+	 * @param id Session ID
+	 * @return 失效时间, 不存在时返回 -1
+	 */
+	public long getExpireTime(String id);
+
+	/**
+	 * 移除 Session
+	 * @param id Session ID
+	 */
+	public void remove(String id);
+
+	/**
+	 * 获取所有的 Session ID
+	 * @return Session ID 集合
+	 */
+	public Collection<String> ids();
+
+	/**
+	 * 获取 Session 的数量
+	 * @return Session 的数量
+	 */
+	public int size();
+
+	/**
+	 * 关闭存储, 释放占用的资源
+	 */
+	public void close();
+}
@@ -0,0 +1,522 @@
+package org.voovan.http.websocket;
+
+import org.voovan.http.websocket.WebSocketFrame.Opcode;
+import org.voovan.network.IoSession;
+import org.voovan.network.exception.ReadMessageException;
+import org.voovan.tools.TObject;
+import org.voovan.tools.log.Logger;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * WebSocket permessage-deflate 压缩扩展 (RFC 7692)
+ * 		每个连接协商一次, 协商结果保存在会话属性中.
+ * 		保持压缩上下文时连接独占一个 Deflater/Inflater, 不保持上下文的方向每条消息从池中借用, 用完立即归还.
+ * 		压缩上下文要求消息按压缩的顺序发送, 所以压缩只在 WebSocketFrame.send 的会话锁内进行.
+ * 		java.util.zip 只支持 15 位的滑动窗口, 对端要求服务端窗口小于 15 位时拒绝该协商参数.
+ *
+ * @author helyho
+ *
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class PerMessageDeflate {
+	public static final String EXTENSION_NAME = "permessage-deflate";
+	public static final String SESSION_ATTRIBUTE = "PerMessageDeflate";
+
+	private static final String SERVER_NO_CONTEXT_TAKEOVER = "server_no_context_takeover";
+	private static final String CLIENT_NO_CONTEXT_TAKEOVER = "client_no_context_takeover";
+	private static final String SERVER_MAX_WINDOW_BITS = "server_max_window_bits";
+	private static final String CLIENT_MAX_WINDOW_BITS = "client_max_window_bits";
+
+	private static final int MAX_WINDOW_BITS = 15;
+	private static final byte[] TAIL = new byte[]{0x00, 0x00, (byte) 0xff, (byte) 0xff};
+
+	//连接复用的缓冲区的初始大小, 超过上限的缓冲区使用后不再复用
+	private static final int BUFFER_INIT_SIZE = 1024;
+	private static final int BUFFER_MAX_SIZE = 64 * 1024;
+
+	//池中保留的 Deflater/Inflater 的上限, 超过的部分直接释放
+	private static final int POOL_MAX_SIZE = 256;
+	private static final Queue<Deflater> DEFLATER_POOL = new ConcurrentLinkedQueue<Deflater>();
+	private static final Queue<Inflater> INFLATER_POOL = new ConcurrentLinkedQueue<Inflater>();
+	private static final AtomicInteger DEFLATER_POOL_SIZE = new AtomicInteger(0);
+	private static final AtomicInteger INFLATER_POOL_SIZE = new AtomicInteger(0);
+
+	private boolean server;
+	private boolean serverNoContextTakeover;
+	private boolean clientNoContextTakeover;
+
+	private Deflater deflater;
+	private Inflater inflater;
+	private byte[] deflateInput;
+	private byte[] deflateOutput;
+	private byte[] inflateInput;
+	private byte[] inflateOutput;
+
+	//发送和接收的消息是否正在压缩中, 分片消息只有第一帧设置 RSV1
+	private boolean deflating;
+	private boolean inflating;
+	private volatile boolean released;
+
+	//解压后单个帧负载的最大字节数, 小于等于 0 不限制
+	private long maxInflateSize;
+
+	private PerMessageDeflate(boolean server, boolean serverNoContextTakeover, boolean clientNoContextTakeover) {
+		this.server = server;
+		this.serverNoContextTakeover = serverNoContextTakeover;
+		this.clientNoContextTakeover = clientNoContextTakeover;
+		this.deflateOutput = new byte[BUFFER_INIT_SIZE];
+		this.inflateInput = new byte[BUFFER_INIT_SIZE];
+		this.inflateOutput = new byte[BUFFER_INIT_SIZE];
+	}
+
+	public boolean isServer() {
+		return server;
+	}
+
+	public boolean isServerNoContextTakeover() {
+		return serverNoContextTakeover;
+	}
+
+	public boolean isClientNoContextTakeover() {
+		return clientNoContextTakeover;
+	}
+
+	public long getMaxInflateSize() {
+		return maxInflateSize;
+	}
+
+	/**
+	 * 设置解压后单个帧负载的最大字节数
+	 * 		超过时帧的错误码为 1009, 防止很小的压缩数据解压出巨大的消息
+	 * @param maxInflateSize 最大字节数, 小于等于 0 不限制
+	 */
+	public void setMaxInflateSize(long maxInflateSize) {
+		this.maxInflateSize = maxInflateSize;
+	}
+
+	/**
+	 * 服务端协商扩展
+	 * 		从客户端的 Sec-WebSocket-Extensions 中选择第一个可以接受的 permessage-deflate 参数组
+	 * @param extensions 客户端请求的 Sec-WebSocket-Extensions 头
+	 * @param noContextTakeover 服务端是否强制不保持压缩上下文, 用于减少每个连接占用的内存
+	 * @return 协商成功返回扩展对象, 客户端未请求或参数都无法接受时返回 null
+	 */
+	public static PerMessageDeflate negotiate(String extensions, boolean noContextTakeover) {
+		if (extensions == null) {
+			return null;
+		}
+
+		for (String offer : extensions.split(",")) {
+			String[] params = offer.split(";");
+			if (!EXTENSION_NAME.equalsIgnoreCase(params[0].trim())) {
+				continue;
+			}
+
+			boolean serverNoContextTakeover = noContextTakeover;
+			boolean clientNoContextTakeover = false;
+			boolean accept = true;
+
+			for (int i = 1; i < params.length && accept; i++) {
+				String param = params[i].trim();
+				String name = param;
+				String value = null;
+				int equalIndex = param.indexOf('=');
+				if (equalIndex > 0) {
+					name = param.substring(0, equalIndex).trim();
+					value = param.substring(equalIndex + 1).trim().replace("\"", "");
+				}
+
+				if (SERVER_NO_CONTEXT_TAKEOVER.equalsIgnoreCase(name) && value == null) {
+					serverNoContextTakeover = true;
+				} else if (CLIENT_NO_CONTEXT_TAKEOVER.equalsIgnoreCase(name) && value == null) {
+					clientNoContextTakeover = true;
+				} else if (SERVER_MAX_WINDOW_BITS.equalsIgnoreCase(name)) {
+					//Deflater 无法限制窗口大小
+					accept = parseWindowBits(value) == MAX_WINDOW_BITS;
+				} else if (CLIENT_MAX_WINDOW_BITS.equalsIgnoreCase(name)) {
+					//Inflater 可以解压任意窗口大小的数据, 不需要限制客户端
+					accept = value == null || parseWindowBits(value) > 0;
+				} else {
+					accept = false;
+				}
+			}
+
+			if (accept) {
+				return new PerMessageDeflate(true, serverNoContextTakeover, clientNoContextTakeover);
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * 客户端请求扩展时使用的 Sec-WebSocket-Extensions 头
+	 * @param noContextTakeover 客户端是否不保持压缩上下文
+	 * @return Sec-WebSocket-Extensions 头的值
+	 */
+	public static String offer(boolean noContextTakeover) {
+		return noContextTakeover ? EXTENSION_NAME + "; " + CLIENT_NO_CONTEXT_TAKEOVER : EXTENSION_NAME;
+	}
+
+	/**
+	 * 客户端根据服务端的响应确认扩展
+	 * @param extensions 服务端响应的 Sec-WebSocket-Extensions 头
+	 * @param noContextTakeover 客户端请求时是否要求不保持压缩上下文
+	 * @return 服务端接受时返回扩展对象, 否则返回 null
+	 * @throws ReadMessageException 服务端返回的参数客户端无法接受
+	 */
+	public static PerMessageDeflate accept(String extensions, boolean noContextTakeover) throws ReadMessageException {
+		if (extensions == null) {
+			return null;
+		}
+
+		for (String extension : extensions.split(",")) {
+			String[] params = extension.split(";");
+			if (!EXTENSION_NAME.equalsIgnoreCase(params[0].trim())) {
+				continue;
+			}
+
+			boolean serverNoContextTakeover = false;
+			boolean clientNoContextTakeover = noContextTakeover;
+			for (int i = 1; i < params.length; i++) {
+				String param = params[i].trim();
+				String name = param;
+				String value = null;
+				int equalIndex = param.indexOf('=');
+				if (equalIndex > 0) {
+					name = param.substring(0, equalIndex).trim();
+					value = param.substring(equalIndex + 1).trim().replace("\"", "");
+				}
+
+				if (SERVER_NO_CONTEXT_TAKEOVER.equalsIgnoreCase(name)) {
+					serverNoContextTakeover = true;
+				} else if (CLIENT_NO_CONTEXT_TAKEOVER.equalsIgnoreCase(name)) {
+					clientNoContextTakeover = true;
+				} else if (SERVER_MAX_WINDOW_BITS.equalsIgnoreCase(name) && parseWindowBits(value) > 0) {
+					continue;
+				} else if (CLIENT_MAX_WINDOW_BITS.equalsIgnoreCase(name) && parseWindowBits(value) == MAX_WINDOW_BITS) {
+					continue;
+				} else {
+					throw new ReadMessageException("Unsupported permessage-deflate parameter: " + param);
+				}
+			}
+
+			return new PerMessageDeflate(false, serverNoContextTakeover, clientNoContextTakeover);
+		}
+
+		return null;
+	}
+
+	/**
+	 * 解析窗口大小参数
+	 * @param value 参数值
+	 * @return 窗口大小, 参数无效时返回 -1
+	 */
+	private static int parseWindowBits(String value) {
+		if (value == null || !value.matches("\\d{1,2}")) {
+			return -1;
+		}
+		int windowBits = Integer.parseInt(value);
+		return windowBits >= 8 && windowBits <= MAX_WINDOW_BITS ? windowBits : -1;
+	}
+
+	/**
+	 * 服务端响应的 Sec-WebSocket-Extensions 头
+	 * @return Sec-WebSocket-Extensions 头的值
+	 */
+	public String getResponseHeader() {
+		StringBuilder header = new StringBuilder(EXTENSION_NAME);
+		if (serverNoContextTakeover) {
+			header.append("; ").append(SERVER_NO_CONTEXT_TAKEOVER);
+		}
+		if (clientNoContextTakeover) {
+			header.append("; ").append(CLIENT_NO_CONTEXT_TAKEOVER);
+		}
+		return header.toString();
+	}
+
+	/**
+	 * 获取会话协商的扩展对象
+	 * @param session 会话对象
+	 * @return 扩展对象, 未协商时返回 null
+	 */
+	public static PerMessageDeflate get(IoSession session) {
+		return TObject.cast(session.getAttribute(SESSION_ATTRIBUTE));
+	}
+
+	/**
+	 * 对收到的帧进行解压
+	 * 		未协商扩展时 RSV1 必须为 0
+	 * @param session 会话对象
+	 * @param webSocketFrame 收到的帧
+	 * @return 解压后的帧, 出错时帧的 errorCode 不为 0
+	 */
+	public static WebSocketFrame decode(IoSession session, WebSocketFrame webSocketFrame) {
+		if (webSocketFrame.getErrorCode() != 0) {
+			return webSocketFrame;
+		}
+
+		PerMessageDeflate perMessageDeflate = get(session);
+		if (perMessageDeflate != null) {
+			return perMessageDeflate.decompress(webSocketFrame);
+		} else if (webSocketFrame.isRsv1()) {
+			Logger.error("RSV1 is set but permessage-deflate is not negotiated!");
+			webSocketFrame.setErrorCode(1002);
+		}
+		return webSocketFrame;
+	}
+
+	private boolean isOwnNoContextTakeover() {
+		return server ? serverNoContextTakeover : clientNoContextTakeover;
+	}
+
+	private boolean isPeerNoContextTakeover() {
+		return server ? clientNoContextTakeover : serverNoContextTakeover;
+	}
+
+	/**
+	 * 压缩发送的数据帧
+	 * 		控制帧和空的消息不压缩, 调用方需要保证压缩的顺序和发送的顺序一致
+	 * @param webSocketFrame 待发送的帧
+	 * @return 压缩后的帧, 输出数据在下一次压缩前有效
+	 */
+	public synchronized WebSocketFrame compress(WebSocketFrame webSocketFrame) {
+		Opcode opcode = webSocketFrame.getOpcode();
+		boolean isDataFrame = opcode == Opcode.TEXT || opcode == Opcode.BINARY || opcode == Opcode.CONTINUOUS;
+		ByteBuffer data = webSocketFrame.getFrameData();
+		int length = data == null ? 0 : data.remaining();
+
+		if (released || !isDataFrame || (opcode == Opcode.CONTINUOUS && !deflating) ||
+				(opcode != Opcode.CONTINUOUS && length == 0 && webSocketFrame.isFin())) {
+			return webSocketFrame;
+		}
+
+		if (deflater == null) {
+			deflater = borrowDeflater();
+		}
+
+		//堆内缓冲区直接使用其数组, 否则复制到连接复用的数组中
+		if (length > 0 && data.hasArray()) {
+			deflater.setInput(data.array(), data.arrayOffset() + data.position(), length);
+		} else {
+			if (deflateInput == null || deflateInput.length < length) {
+				deflateInput = new byte[Math.max(length, BUFFER_INIT_SIZE)];
+			}
+			if (length > 0) {
+				data.duplicate().get(deflateInput, 0, length);
+			}
+			deflater.setInput(deflateInput, 0, length);
+		}
+
+		byte[] outputBuffer = deflateOutput;
+		int outputLength = 0;
+		while (true) {
+			if (outputLength == outputBuffer.length) {
+				outputBuffer = grow(outputBuffer, outputLength + 1);
+			}
+			int size = deflater.deflate(outputBuffer, outputLength, outputBuffer.length - outputLength, Deflater.SYNC_FLUSH);
+			outputLength += size;
+			if (outputLength < outputBuffer.length) {
+				break;
+			}
+		}
+		deflateOutput = outputBuffer.length > BUFFER_MAX_SIZE ? new byte[BUFFER_INIT_SIZE] : outputBuffer;
+		if (deflateInput != null && deflateInput.length > BUFFER_MAX_SIZE) {
+			deflateInput = null;
+		}
+
+		if (webSocketFrame.isFin()) {
+			//消息结尾去掉 SYNC_FLUSH 产生的 00 00 ff ff
+			if (outputLength >= 4 && endsWithTail(outputBuffer, outputLength)) {
+				outputLength -= 4;
+			}
+			deflating = false;
+
+			if (isOwnNoContextTakeover()) {
+				returnDeflater(deflater);
+				deflater = null;
+			}
+		} else {
+			deflating = true;
+		}
+
+		WebSocketFrame compressedFrame = WebSocketFrame.newInstance(webSocketFrame.isFin(), opcode,
+				webSocketFrame.isTransfereMask(), ByteBuffer.wrap(outputBuffer, 0, outputLength));
+		compressedFrame.setRsv1(opcode != Opcode.CONTINUOUS);
+		return compressedFrame;
+	}
+
+	/**
+	 * 解压收到的数据帧
+	 * 		控制帧和未压缩的消息原样返回
+	 * @param webSocketFrame 收到的帧
+	 * @return 解压后的帧, 负载数据在下一次解压前有效
+	 */
+	public synchronized WebSocketFrame decompress(WebSocketFrame webSocketFrame) {
+		Opcode opcode = webSocketFrame.getOpcode();
+
+		if (webSocketFrame.isRsv1()) {
+			//控制帧和后续分片不能设置 RSV1, 前一个消息未结束时不能开始新的压缩消息
+			if (opcode != Opcode.TEXT && opcode != Opcode.BINARY || inflating) {
+				Logger.error("RSV1 is set on an invalid frame!");
+				webSocketFrame.setErrorCode(1002);
+				return webSocketFrame;
+			}
+			inflating = true;
+		} else if (opcode == Opcode.TEXT || opcode == Opcode.BINARY) {
+			inflating = false;
+		}
+
+		if (!inflating || opcode != Opcode.TEXT && opcode != Opcode.BINARY && opcode != Opcode.CONTINUOUS) {
+			return webSocketFrame;
+		}
+
+		if (released) {
+			webSocketFrame.setErrorCode(1011);
+			return webSocketFrame;
+		}
+
+		if (inflater == null) {
+			inflater = borrowInflater();
+		}
+
+		ByteBuffer data = webSocketFrame.getFrameData();
+		int length = data == null ? 0 : data.remaining();
+		boolean fin = webSocketFrame.isFin();
+		int inputLength = fin ? length + 4 : length;
+
+		byte[] inputBuffer = inflateInput.length < inputLength ? new byte[inputLength] : inflateInput;
+		if (length > 0) {
+			data.duplicate().get(inputBuffer, 0, length);
+		}
+		if (fin) {
+			System.arraycopy(TAIL, 0, inputBuffer, length, 4);
+		}
+		inflater.setInput(inputBuffer, 0, inputLength);
+
+		byte[] outputBuffer = inflateOutput;
+		int outputLength = 0;
+		try {
+			while (true) {
+				if (outputLength == outputBuffer.length) {
+					outputBuffer = grow(outputBuffer, outputLength + 1);
+				}
+				int size = inflater.inflate(outputBuffer, outputLength, outputBuffer.length - outputLength);
+				outputLength += size;
+
+				if (maxInflateSize > 0 && outputLength > maxInflateSize) {
+					Logger.error("Inflated WebSocket frame is too big!");
+					webSocketFrame.setErrorCode(1009);
+					return webSocketFrame;
+				}
+
+				//对端使用了 BFINAL 结束了压缩流, 后续消息是新的压缩流
+				if (inflater.finished()) {
+					inflater.reset();
+					break;
+				}
+
+				if (size == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+			}
+		} catch (DataFormatException e) {
+			Logger.error("Inflate WebSocket message error!", e);
+			webSocketFrame.setErrorCode(1007);
+			return webSocketFrame;
+		}
+
+		if (fin) {
+			inflating = false;
+			if (isPeerNoContextTakeover()) {
+				returnInflater(inflater);
+				inflater = null;
+			}
+		}
+
+		inflateOutput = outputBuffer.length > BUFFER_MAX_SIZE ? new byte[BUFFER_INIT_SIZE] : outputBuffer;
+		if (inputBuffer.length <= BUFFER_MAX_SIZE) {
+			inflateInput = inputBuffer;
+		}
+
+		return WebSocketFrame.newInstance(fin, opcode, webSocketFrame.isTransfereMask(),
+				ByteBuffer.wrap(outputBuffer, 0, outputLength));
+	}
+
+	/**
+	 * 释放连接占用的 Deflater/Inflater
+	 */
+	public synchronized void release() {
+		released = true;
+		if (deflater != null) {
+			returnDeflater(deflater);
+			deflater = null;
+		}
+		if (inflater != null) {
+			returnInflater(inflater);
+			inflater = null;
+		}
+	}
+
+	private static byte[] grow(byte[] buffer, int minLength) {
+		byte[] newBuffer = new byte[Math.max(minLength, buffer.length * 2)];
+		System.arraycopy(buffer, 0, newBuffer, 0, buffer.length);
+		return newBuffer;
+	}
+
+	private static boolean endsWithTail(byte[] buffer, int length) {
+		for (int i = 0; i < 4; i++) {
+			if (buffer[length - 4 + i] != TAIL[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static Deflater borrowDeflater() {
+		Deflater deflater = DEFLATER_POOL.poll();
+		if (deflater == null) {
+			return new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+		}
+		DEFLATER_POOL_SIZE.decrementAndGet();
+		return deflater;
+	}
+
+	private static void returnDeflater(Deflater deflater) {
+		deflater.reset();
+		if (DEFLATER_POOL_SIZE.incrementAndGet() <= POOL_MAX_SIZE) {
+			DEFLATER_POOL.offer(deflater);
+		} else {
+			DEFLATER_POOL_SIZE.decrementAndGet();
+			deflater.end();
+		}
+	}
+
+	private static Inflater borrowInflater() {
+		Inflater inflater = INFLATER_POOL.poll();
+		if (inflater == null) {
+			return new Inflater(true);
+		}
+		INFLATER_POOL_SIZE.decrementAndGet();
+		return inflater;
+	}
+
+	private static void returnInflater(Inflater inflater) {
+		inflater.reset();
+		if (INFLATER_POOL_SIZE.incrementAndGet() <= POOL_MAX_SIZE) {
+			INFLATER_POOL.offer(inflater);
+		} else {
+			INFLATER_POOL_SIZE.decrementAndGet();
+			inflater.end();
+		}
+	}
+}
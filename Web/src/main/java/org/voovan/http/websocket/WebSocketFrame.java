@@ -1,11 +1,12 @@
 package org.voovan.http.websocket;
 
+import org.voovan.network.IoSession;
 import org.voovan.tools.TByteBuffer;
 import org.voovan.tools.log.Logger;
 
-import java.math.BigInteger;
 import java.nio.ByteBuffer;
-import java.util.Random;
+import java.nio.ByteOrder;
+import java.util.SplittableRandom;
 
 /**
  * WebSocket帧解析类
@@ -17,7 +18,27 @@ import java.util.Random;
  * Licence: Apache v2 License
  */
 public class WebSocketFrame {
+	//线程内复用的编码缓冲区的初始大小和上限
+	private static final int OUTPUT_BUFFER_INIT_SIZE = 4 * 1024;
+	private static final int OUTPUT_BUFFER_MAX_SIZE = 64 * 1024;
+
+	//SplittableRandom 不是线程安全的, 每个线程使用独立的实例生成掩码
+	private static final ThreadLocal<SplittableRandom> MASK_RANDOM = new ThreadLocal<SplittableRandom>() {
+		@Override
+		protected SplittableRandom initialValue() {
+			return new SplittableRandom();
+		}
+	};
+
+	private static final ThreadLocal<ByteBuffer> OUTPUT_BUFFER = new ThreadLocal<ByteBuffer>() {
+		@Override
+		protected ByteBuffer initialValue() {
+			return ByteBuffer.allocateDirect(OUTPUT_BUFFER_INIT_SIZE);
+		}
+	};
+
 	private boolean		fin;
+	private boolean		rsv1;
 	private Opcode		opcode;
 	private boolean		transfereMask;
 	private ByteBuffer	frameData;
@@ -31,6 +52,18 @@ public class WebSocketFrame {
 		this.fin = fin;
 	}
 
+	/**
+	 * RSV1 标志, permessage-deflate 扩展用来标识压缩的消息
+	 * @return true: 消息被压缩, false: 消息未压缩
+	 */
+	public boolean isRsv1() {
+		return rsv1;
+	}
+
+	public void setRsv1(boolean rsv1) {
+		this.rsv1 = rsv1;
+	}
+
 	public Opcode getOpcode() {
 		return opcode;
 	}
@@ -101,82 +134,149 @@ public class WebSocketFrame {
 
 	/**
 	 * 解析WebSocket报文
-	 * 
-	 * @param byteBuffer  字节缓冲对象
+	 * 		帧头部使用移位运算解析, 掩码按 8 字节一组在输入缓冲区中原地异或,
+	 * 		负载数据是输入缓冲区的切片, 不复制数据, 只在当前事件的处理过程中有效,
+	 * 		需要在事件之后使用的数据必须复制出来.
+	 *
+	 * @param byteBuffer  字节缓冲对象, 解析后 position 位于帧的结尾
 	 * @return  WebSocket 帧对象
 	 */
 	public static WebSocketFrame parse(ByteBuffer byteBuffer) {
 		int errorCode = 0;
+		int position = byteBuffer.position();
 		// 接受数据的大小
-		int maxpacketsize = byteBuffer.remaining();
-		// 期望数据包的实际大小
-		int expectPackagesize = 2;
-		if (maxpacketsize < expectPackagesize) {
+		int remaining = byteBuffer.remaining();
+
+		if (remaining < 2) {
 			Logger.error("Expect package size error!");
-			errorCode = 1002;
+			byteBuffer.position(byteBuffer.limit());
+			return WebSocketFrame.newInstance(false, null, false, ByteBuffer.allocate(0), 1002);
 		}
-		byte finByte = byteBuffer.get();
-		boolean fin = finByte >> 8 != 0;
-		byte rsv = (byte) ((finByte & ~(byte) 128) >> 4);
-		if (rsv != 0) {
+
+		int finByte = byteBuffer.get(position) & 0xff;
+		int maskByte = byteBuffer.get(position + 1) & 0xff;
+
+		boolean fin = (finByte & 0x80) != 0;
+		//RSV1 是否合法由 PerMessageDeflate 根据协商结果判断
+		boolean rsv1 = (finByte & 0x40) != 0;
+		if ((finByte & 0x30) != 0) {
 			Logger.error("RSV data error!");
 			errorCode = 1002;
 		}
-		byte maskByte = byteBuffer.get();
-		boolean mask = (maskByte & -128) != 0;
-		int payloadlength = (byte) (maskByte & ~(byte) 128);
-		Opcode opcode = toOpcode((byte) (finByte & 15));
-		
+
+		Opcode opcode = toOpcode((byte) (finByte & 0x0f));
 		if(opcode == null){
 			Logger.error("Opcode data error!");
 			errorCode = 1002;
 		}
+
+		boolean mask = (maskByte & 0x80) != 0;
+
 		//“负载数据”的长度,以字节为单位:如果 0-125,这是负载长度。
 		//如果 126, 之后的两字节解释为一个 16 位的无符号整数是负载长度。
-		//如果 127,之后的 8￼字节解释为一个 64 位的无符号整数(最高有效位必须是 0)是负载长度。
-		if (payloadlength == 126) {
-			expectPackagesize += 2;
-			byte[] sizebytes = new byte[3];
-			sizebytes[1] = byteBuffer.get();
-			sizebytes[2] = byteBuffer.get();
-			payloadlength = new BigInteger(sizebytes).intValue();
-		} else if(payloadlength==127) {
-			expectPackagesize += 8;
-			byte[] bytes = new byte[8];
-			for (int i = 0; i < 8; i++) {
-				bytes[i] = byteBuffer.get();
-			}
-			long length = new BigInteger(bytes).longValue();
-			if (length <= Integer.MAX_VALUE) {
-				payloadlength = (int) length;
-			}
+		//如果 127,之后的 8 字节解释为一个 64 位的无符号整数(最高有效位必须是 0)是负载长度。
+		long payloadLength = maskByte & 0x7f;
+		int headerLength = 2;
+		if (payloadLength == 126) {
+			headerLength += 2;
+		} else if (payloadLength == 127) {
+			headerLength += 8;
 		}
+		headerLength += (mask ? 4 : 0);
 
+		if (remaining < headerLength) {
+			Logger.error("Parse package size error!");
+			byteBuffer.position(byteBuffer.limit());
+			return WebSocketFrame.newInstance(fin, opcode, mask, ByteBuffer.allocate(0), 1002);
+		}
 
-		expectPackagesize += (mask ? 4 : 0);
-		expectPackagesize += payloadlength;
+		if (payloadLength == 126) {
+			payloadLength = readLength(byteBuffer, position + 2, 2);
+		} else if (payloadLength == 127) {
+			payloadLength = readLength(byteBuffer, position + 2, 8);
+		}
 
 		// 如果实际接受的数据小于数据包的大小则报错
-		if (maxpacketsize < expectPackagesize) {
+		if (payloadLength < 0 || payloadLength > remaining - headerLength) {
 			Logger.error("Parse package size error!");
+			errorCode = (payloadLength < 0 || payloadLength > Integer.MAX_VALUE) ? 1009 : 1002;
+			payloadLength = 0;
 		}
 
-		// 读取实际接受数据
-		ByteBuffer payload = ByteBuffer.allocateDirect(payloadlength);
-		if (mask) {
-			byte[] maskskey = new byte[4];
-			byteBuffer.get(maskskey);
-			for (int i = 0; i < payloadlength; i++) {
-				payload.put((byte) ((byte) byteBuffer.get() ^ (byte) maskskey[i % 4]));
-			}
-		} else {
-			payload.put(byteBuffer);
+		int payloadStart = position + headerLength;
+		if (mask && payloadLength > 0) {
+			int maskKey = (int) readLength(byteBuffer, payloadStart - 4, 4);
+			mask(byteBuffer, payloadStart, byteBuffer, payloadStart, (int) payloadLength, maskKey);
 		}
-		payload.flip();
+
+		// 负载数据使用输入缓冲区的切片
+		int limit = byteBuffer.limit();
+		byteBuffer.position(payloadStart);
+		byteBuffer.limit(payloadStart + (int) payloadLength);
+		ByteBuffer payload = byteBuffer.slice();
+		byteBuffer.limit(limit);
+		byteBuffer.position(payloadStart + (int) payloadLength);
+
 		WebSocketFrame webSocketFrame = WebSocketFrame.newInstance(fin, opcode, mask, payload, errorCode);
+		webSocketFrame.setRsv1(rsv1);
 		return webSocketFrame;
 	}
 
+	/**
+	 * 按网络字节序读取长度字段
+	 * @param byteBuffer 字节缓冲对象
+	 * @param index 起始位置
+	 * @param byteCount 字节数
+	 * @return 长度值
+	 */
+	private static long readLength(ByteBuffer byteBuffer, int index, int byteCount) {
+		long value = 0;
+		for (int i = 0; i < byteCount; i++) {
+			value = (value << 8) | (byteBuffer.get(index + i) & 0xff);
+		}
+		return value;
+	}
+
+	/**
+	 * 按网络字节序写入长度字段
+	 * @param byteBuffer 字节缓冲对象
+	 * @param value 长度值
+	 * @param byteCount 字节数
+	 */
+	private static void writeLength(ByteBuffer byteBuffer, long value, int byteCount) {
+		for (int i = byteCount - 1; i >= 0; i--) {
+			byteBuffer.put((byte) (value >>> (i << 3)));
+		}
+	}
+
+	/**
+	 * 对数据进行掩码异或, 源和目标可以是同一个缓冲区的同一位置
+	 * 		按 8 字节一组使用 long 异或, 剩余不足 8 字节的部分逐字节异或
+	 * @param src 源缓冲区
+	 * @param srcIndex 源起始位置
+	 * @param dst 目标缓冲区
+	 * @param dstIndex 目标起始位置
+	 * @param length 数据长度
+	 * @param maskKey 掩码
+	 */
+	private static void mask(ByteBuffer src, int srcIndex, ByteBuffer dst, int dstIndex, int length, int maskKey) {
+		long longMask = ((long) maskKey << 32) | (maskKey & 0xffffffffL);
+		boolean srcBigEndian = src.order() == ByteOrder.BIG_ENDIAN;
+		boolean dstBigEndian = dst.order() == ByteOrder.BIG_ENDIAN;
+
+		int offset = 0;
+		int longLength = length & ~7;
+		for (; offset < longLength; offset += 8) {
+			long value = src.getLong(srcIndex + offset);
+			value = (srcBigEndian ? value : Long.reverseBytes(value)) ^ longMask;
+			dst.putLong(dstIndex + offset, dstBigEndian ? value : Long.reverseBytes(value));
+		}
+
+		for (; offset < length; offset++) {
+			dst.put(dstIndex + offset, (byte) (src.get(srcIndex + offset) ^ (maskKey >>> (24 - ((offset & 3) << 3)))));
+		}
+	}
+
 	/**
 	 * 类型枚举
 	 * 
@@ -242,19 +342,52 @@ public class WebSocketFrame {
 	}
 
 	/**
-	 * 转换 long 为 byte
-	 * 
-	 * @param value     long 值
-	 * @param bytecount 字节位数
-	 * @return 转换 long 后的 byte
+	 * 获取编码后帧的长度
+	 * @return 帧的字节数
 	 */
-	private static byte[] toByteArray(long value, int bytecount) {
-		byte[] buffer = new byte[bytecount];
-		int highest = 8 * bytecount - 8;
-		for (int i = 0; i < bytecount; i++) {
-			buffer[i] = (byte) (value >>> (highest - 8 * i));
+	public int getFrameLength() {
+		int payloadLength = frameData == null ? 0 : frameData.remaining();
+		int lengthBytes = payloadLength <= 125 ? 0 : payloadLength <= 65535 ? 2 : 8;
+		return 2 + lengthBytes + (transfereMask ? 4 : 0) + payloadLength;
+	}
+
+	/**
+	 * 将帧编码到目标缓冲区
+	 * 		不改变负载数据的 position, 同一个帧可以编码多次
+	 * @param buffer 目标缓冲区, 剩余空间不能小于 getFrameLength()
+	 */
+	public void writeTo(ByteBuffer buffer) {
+		ByteBuffer data = this.getFrameData();
+		int payloadLength = data == null ? 0 : data.remaining();
+
+		buffer.put((byte) ((fin ? 0x80 : 0) | (rsv1 ? 0x40 : 0) | fromOpcode(opcode)));
+
+		int maskBit = transfereMask ? 0x80 : 0;
+		if (payloadLength <= 125) {
+			buffer.put((byte) (maskBit | payloadLength));
+		} else if (payloadLength <= 65535) {
+			buffer.put((byte) (maskBit | 126));
+			writeLength(buffer, payloadLength, 2);
+		} else {
+			buffer.put((byte) (maskBit | 127));
+			writeLength(buffer, payloadLength, 8);
+		}
+
+		if (payloadLength == 0) {
+			if (transfereMask) {
+				writeLength(buffer, MASK_RANDOM.get().nextInt(), 4);
+			}
+			return;
+		}
+
+		if (transfereMask) {
+			int maskKey = MASK_RANDOM.get().nextInt();
+			writeLength(buffer, maskKey, 4);
+			mask(data, data.position(), buffer, buffer.position(), payloadLength, maskKey);
+			buffer.position(buffer.position() + payloadLength);
+		} else {
+			buffer.put(data.duplicate());
 		}
-		return buffer;
 	}
 
 	/**
@@ -264,48 +397,58 @@ public class WebSocketFrame {
 	 * @return WebSocketFrame 转换后的 Bytebuffer
 	 */
 	public ByteBuffer toByteBuffer() {
-		ByteBuffer data = this.getFrameData();
-		if(data == null){
-			data = ByteBuffer.allocate(0);
-		}
-		boolean mask = this.isTransfereMask(); 
-		int sizebytes = data.remaining() <= 125 ? 1 : data.remaining() <= 65535 ? 2 : 8;
-		ByteBuffer buf = ByteBuffer.allocateDirect(1 + (sizebytes > 1 ? sizebytes + 1 : sizebytes) + (mask ? 4 : 0) + data.remaining());
-		byte optcode = fromOpcode(this.getOpcode());
-		byte one = (byte) (this.isFin() ? -128 : 0);
-		one |= optcode;
-		buf.put(one);
-		byte[] payloadlengthbytes = toByteArray(data.remaining(), sizebytes);
-
-		if (sizebytes == 1) {
-			buf.put((byte) ((byte) payloadlengthbytes[0] | (mask ? (byte) -128 : 0)));
-		} else if (sizebytes == 2) {
-			buf.put((byte) ((byte) 126 | (mask ? (byte) -128 : 0)));
-			buf.put(payloadlengthbytes);
-		} else if (sizebytes == 8) {
-			buf.put((byte) ((byte) 127 | (mask ? (byte) -128 : 0)));
-			buf.put(payloadlengthbytes);
-		} else {
-			Logger.error("Size representation not supported/specified");
+		ByteBuffer buffer = ByteBuffer.allocateDirect(getFrameLength());
+		writeTo(buffer);
+		buffer.flip();
+		return buffer;
+	}
+
+	/**
+	 * 编码后直接通过会话发送
+	 * 		使用线程内复用的缓冲区编码, 会话的发送是同步的, 发送完成后缓冲区即可复用.
+	 * 		编码和发送在会话上同步, 保证帧不会交错写入, 协商了 permessage-deflate 时数据帧在同一个锁内压缩,
+	 * 		压缩的顺序和发送的顺序一致.
+	 * 		注意直接调用不会触发 onSent 事件
+	 * @param session 会话对象
+	 * @return 发送的字节数
+	 */
+	public int send(IoSession session) {
+		synchronized (session) {
+			PerMessageDeflate perMessageDeflate = PerMessageDeflate.get(session);
+			WebSocketFrame webSocketFrame = perMessageDeflate == null ? this : perMessageDeflate.compress(this);
+			return webSocketFrame.write(session);
 		}
+	}
 
-		if (mask) {
-			ByteBuffer maskkey = ByteBuffer.allocateDirect(4);
-			Random reuseableRandom = new Random();
-			maskkey.putInt(reuseableRandom.nextInt());
-			maskkey.flip();
-			buf.put(maskkey);
-			for (int i = 0; data.hasRemaining(); i++) {
-				buf.put((byte) (data.get() ^ maskkey.get(i % 4)));
+	/**
+	 * 编码并写入会话
+	 * @param session 会话对象
+	 * @return 发送的字节数
+	 */
+	private int write(IoSession session) {
+		int frameLength = getFrameLength();
+
+		//超过复用缓冲区上限的帧单独分配
+		if (frameLength > OUTPUT_BUFFER_MAX_SIZE) {
+			ByteBuffer buffer = toByteBuffer();
+			try {
+				return session.send(buffer);
+			} finally {
+				TByteBuffer.release(buffer);
 			}
-			TByteBuffer.release(maskkey);
-		} else{
-			buf.put(data);
 		}
-		
-		buf.flip();
 
-		return buf;
+		ByteBuffer buffer = OUTPUT_BUFFER.get();
+		if (buffer.capacity() < frameLength) {
+			TByteBuffer.release(buffer);
+			buffer = ByteBuffer.allocateDirect(Math.min(Math.max(frameLength, buffer.capacity() * 2), OUTPUT_BUFFER_MAX_SIZE));
+			OUTPUT_BUFFER.set(buffer);
+		}
+
+		buffer.clear();
+		writeTo(buffer);
+		buffer.flip();
+		return session.send(buffer);
 	}
 	
 	@Override
@@ -0,0 +1,468 @@
+package org.voovan.http.websocket;
+
+import org.voovan.Global;
+import org.voovan.network.IoSession;
+import org.voovan.tools.TByteBuffer;
+import org.voovan.tools.log.Logger;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * WebSocket 广播中心
+ * 		会话按主题订阅, 发布消息时帧只编码一次, 编码后的字节以只读方式在所有订阅会话间共享.
+ * 		每个会话拥有独立的发送队列, 由公用线程池逐个会话顺序发送, 发布方不会被慢速的客户端阻塞.
+ * 		发送队列达到上限时按照 SlowConsumerPolicy 处理慢速的客户端, 断开连接在线程池中执行, 不阻塞发布方.
+ * 		订阅的会话没有设置发送超时时间时使用广播中心的发送超时时间, 对端停止接收时写操作超时后关闭连接.
+ * 		协商了 permessage-deflate 的会话压缩上下文各不相同, 这类会话在发送时单独压缩编码.
+ * 		注意: 通过广播中心发送的消息不会触发 onSent 事件
+ *
+ * @author helyho
+ *
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class WebSocketHub {
+
+	/**
+	 * 慢速客户端的处理策略
+	 */
+	public enum SlowConsumerPolicy {
+		//丢弃新发布的消息
+		DROP_NEWEST,
+		//合并同一主题中尚未发送的消息, 只保留最新的一条
+		COALESCE,
+		//断开慢速客户端的连接
+		DISCONNECT
+	}
+
+	private static final int DEFAULT_MAX_QUEUE_SIZE = 1024;
+	private static final int DEFAULT_SEND_TIMEOUT = 30000;
+
+	private static WebSocketHub defaultHub = new WebSocketHub();
+
+	private Map<String, Set<Subscriber>> topics;
+	private Map<IoSession, Subscriber> subscribers;
+	private int maxQueueSize;
+	private SlowConsumerPolicy policy;
+	private Executor executor;
+	private int sendTimeout;
+	private AtomicLong droppedCount;
+
+	/**
+	 * 构造函数
+	 * 		每个会话最多缓存 1024 条消息, 超过时丢弃新发布的消息
+	 */
+	public WebSocketHub() {
+		this(DEFAULT_MAX_QUEUE_SIZE, SlowConsumerPolicy.DROP_NEWEST);
+	}
+
+	/**
+	 * 构造函数
+	 * @param maxQueueSize 每个会话发送队列的最大消息数
+	 * @param policy 发送队列达到上限时的处理策略
+	 */
+	public WebSocketHub(int maxQueueSize, SlowConsumerPolicy policy) {
+		this(maxQueueSize, policy, Global.getThreadPool());
+	}
+
+	/**
+	 * 构造函数
+	 * @param maxQueueSize 每个会话发送队列的最大消息数
+	 * @param policy 发送队列达到上限时的处理策略
+	 * @param executor 执行发送的线程池
+	 */
+	public WebSocketHub(int maxQueueSize, SlowConsumerPolicy policy, Executor executor) {
+		this(maxQueueSize, policy, executor, DEFAULT_SEND_TIMEOUT);
+	}
+
+	/**
+	 * 构造函数
+	 * @param maxQueueSize 每个会话发送队列的最大消息数
+	 * @param policy 发送队列达到上限时的处理策略
+	 * @param executor 执行发送的线程池
+	 * @param sendTimeout 订阅会话的发送超时时间, 单位: 毫秒, 0 表示不限制
+	 */
+	public WebSocketHub(int maxQueueSize, SlowConsumerPolicy policy, Executor executor, int sendTimeout) {
+		if (maxQueueSize <= 0) {
+			throw new IllegalArgumentException("maxQueueSize must be greater than 0");
+		}
+
+		this.topics = new ConcurrentHashMap<String, Set<Subscriber>>();
+		this.subscribers = new ConcurrentHashMap<IoSession, Subscriber>();
+		this.maxQueueSize = maxQueueSize;
+		this.policy = policy;
+		this.executor = executor;
+		this.sendTimeout = sendTimeout;
+		this.droppedCount = new AtomicLong(0);
+	}
+
+	/**
+	 * 获取默认的广播中心
+	 * 		WebSocketRouter 的订阅方法使用这个实例
+	 * @return 默认的广播中心
+	 */
+	public static WebSocketHub getDefault() {
+		return defaultHub;
+	}
+
+	public int getMaxQueueSize() {
+		return maxQueueSize;
+	}
+
+	public SlowConsumerPolicy getPolicy() {
+		return policy;
+	}
+
+	public int getSendTimeout() {
+		return sendTimeout;
+	}
+
+	/**
+	 * 获取因发送队列已满或连接断开而丢弃的消息数
+	 * @return 丢弃的消息数
+	 */
+	public long getDroppedCount() {
+		return droppedCount.get();
+	}
+
+	/**
+	 * 获取所有存在订阅者的主题
+	 * @return 主题集合
+	 */
+	public Set<String> getTopics() {
+		return Collections.unmodifiableSet(topics.keySet());
+	}
+
+	/**
+	 * 获取主题的订阅者数量
+	 * @param topic 主题
+	 * @return 订阅者数量
+	 */
+	public int getSubscriberCount(String topic) {
+		Set<Subscriber> topicSubscribers = topics.get(topic);
+		return topicSubscribers == null ? 0 : topicSubscribers.size();
+	}
+
+	/**
+	 * 会话订阅主题
+	 * @param topic 主题
+	 * @param session 会话对象
+	 */
+	public void subscribe(String topic, IoSession session) {
+		Subscriber subscriber = subscribers.get(session);
+		if (subscriber == null) {
+			Subscriber newSubscriber = new Subscriber(session);
+			subscriber = subscribers.putIfAbsent(session, newSubscriber);
+			if (subscriber == null) {
+				subscriber = newSubscriber;
+
+				//限制写操作的时间, 慢速的客户端不会一直占用发送线程和会话的锁
+				if (sendTimeout > 0 && session.socketContext().getSendTimeout() <= 0) {
+					session.socketContext().setSendTimeout(sendTimeout);
+				}
+			}
+		}
+
+		Set<Subscriber> topicSubscribers = topics.get(topic);
+		if (topicSubscribers == null) {
+			Set<Subscriber> newTopicSubscribers = Collections.newSetFromMap(new ConcurrentHashMap<Subscriber, Boolean>());
+			topicSubscribers = topics.putIfAbsent(topic, newTopicSubscribers);
+			if (topicSubscribers == null) {
+				topicSubscribers = newTopicSubscribers;
+			}
+		}
+
+		subscriber.topics.add(topic);
+		topicSubscribers.add(subscriber);
+	}
+
+	/**
+	 * 会话取消订阅主题
+	 * @param topic 主题
+	 * @param session 会话对象
+	 */
+	public void unsubscribe(String topic, IoSession session) {
+		Subscriber subscriber = subscribers.get(session);
+		if (subscriber != null) {
+			subscriber.topics.remove(topic);
+			removeFromTopic(topic, subscriber);
+		}
+	}
+
+	/**
+	 * 会话取消订阅所有的主题, 并丢弃尚未发送的消息
+	 * 		连接关闭时调用
+	 * @param session 会话对象
+	 */
+	public void unsubscribeAll(IoSession session) {
+		Subscriber subscriber = subscribers.remove(session);
+		if (subscriber != null) {
+			for (String topic : subscriber.topics) {
+				removeFromTopic(topic, subscriber);
+			}
+			subscriber.topics.clear();
+			subscriber.clear();
+		}
+	}
+
+	private void removeFromTopic(String topic, Subscriber subscriber) {
+		Set<Subscriber> topicSubscribers = topics.get(topic);
+		if (topicSubscribers != null) {
+			topicSubscribers.remove(subscriber);
+			if (topicSubscribers.isEmpty()) {
+				topics.remove(topic, topicSubscribers);
+			}
+		}
+	}
+
+	/**
+	 * 向主题发布文本消息
+	 * @param topic 主题
+	 * @param byteBuffer 消息内容
+	 * @return 放入发送队列的会话数
+	 */
+	public int publish(String topic, ByteBuffer byteBuffer) {
+		return publish(topic, WebSocketFrame.newInstance(true, WebSocketFrame.Opcode.TEXT, false, byteBuffer));
+	}
+
+	/**
+	 * 向主题发布 WebSocket 帧
+	 * 		帧只编码一次, 各个会话发送的是同一块数据的只读副本,
+	 * 		协商了压缩的会话在发送时才使用帧的负载数据, 所以发送完成前不能修改负载数据
+	 * @param topic 主题
+	 * @param webSocketFrame WebSocket 帧
+	 * @return 放入发送队列的会话数
+	 */
+	public int publish(String topic, WebSocketFrame webSocketFrame) {
+		Set<Subscriber> topicSubscribers = topics.get(topic);
+		if (topicSubscribers == null || topicSubscribers.isEmpty()) {
+			return 0;
+		}
+
+		Message message = new Message(topic, webSocketFrame, webSocketFrame.toByteBuffer());
+
+		int count = 0;
+		try {
+			for (Subscriber subscriber : topicSubscribers) {
+				if (!subscriber.session.isConnected()) {
+					unsubscribeAll(subscriber.session);
+					continue;
+				}
+
+				if (subscriber.offer(message)) {
+					count++;
+				}
+			}
+		} finally {
+			//释放发布方持有的引用, 所有会话发送或丢弃消息后释放编码的数据
+			message.release();
+		}
+		return count;
+	}
+
+	/**
+	 * 订阅者, 持有会话的发送队列
+	 */
+	private class Subscriber implements Runnable {
+		private IoSession session;
+		private Set<String> topics;
+		private Queue<Message> queue;
+		private AtomicInteger queueSize;
+		private AtomicBoolean draining;
+
+		private Subscriber(IoSession session) {
+			this.session = session;
+			this.topics = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+			this.queue = new ConcurrentLinkedQueue<Message>();
+			this.queueSize = new AtomicInteger(0);
+			this.draining = new AtomicBoolean(false);
+		}
+
+		/**
+		 * 将消息放入发送队列, 并在没有发送任务时提交一个
+		 * @param message 消息
+		 * @return true: 已放入发送队列, false: 消息被丢弃
+		 */
+		private boolean offer(Message message) {
+			if (!reserve()) {
+				if (policy == SlowConsumerPolicy.DISCONNECT) {
+					Logger.warn("WebSocket session " + session + " is too slow, disconnect it.");
+					unsubscribeAll(session);
+					disconnect();
+					droppedCount.incrementAndGet();
+					return false;
+				} else if (policy == SlowConsumerPolicy.COALESCE) {
+					coalesce(message.topic);
+				}
+
+				if (policy != SlowConsumerPolicy.COALESCE || !reserve()) {
+					droppedCount.incrementAndGet();
+					return false;
+				}
+			}
+
+			message.retain();
+			queue.add(message);
+
+			if (draining.compareAndSet(false, true)) {
+				try {
+					executor.execute(this);
+				} catch (RejectedExecutionException e) {
+					//线程池繁忙, 消息留在队列中, 由下一次发布重新提交发送任务
+					draining.set(false);
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * 在发送队列中预留一个位置
+		 * 		先增加计数再检查, 超过上限时回退, 并发的发布不会使队列超过上限
+		 * @return true: 预留成功, false: 队列已满
+		 */
+		private boolean reserve() {
+			if (queueSize.incrementAndGet() > maxQueueSize) {
+				queueSize.decrementAndGet();
+				return false;
+			}
+			return true;
+		}
+
+		/**
+		 * 在线程池中关闭会话
+		 * 		发送线程持有会话的锁直到写操作结束或超时, 发布方不等待
+		 */
+		private void disconnect() {
+			Runnable closeTask = new Runnable() {
+				@Override
+				public void run() {
+					session.close();
+				}
+			};
+
+			try {
+				executor.execute(closeTask);
+			} catch (RejectedExecutionException e) {
+				closeTask.run();
+			}
+		}
+
+		/**
+		 * 移除队列中同一主题尚未发送的消息
+		 * @param topic 主题
+		 */
+		private void coalesce(String topic) {
+			for (Message queuedMessage : queue) {
+				if (queuedMessage.topic.equals(topic) && queue.remove(queuedMessage)) {
+					queueSize.decrementAndGet();
+					droppedCount.incrementAndGet();
+					queuedMessage.release();
+				}
+			}
+		}
+
+		private void clear() {
+			Message message;
+			while ((message = queue.poll()) != null) {
+				queueSize.decrementAndGet();
+				droppedCount.incrementAndGet();
+				message.release();
+			}
+		}
+
+		/**
+		 * 顺序发送队列中的消息, 同一时间每个会话只有一个发送任务
+		 * 		发送出现异常的会话取消所有订阅并关闭, 无论如何发送标志都会被释放
+		 */
+		@Override
+		public void run() {
+			while (true) {
+				try {
+					Message message;
+					while ((message = queue.poll()) != null) {
+						queueSize.decrementAndGet();
+
+						try {
+							if (!session.isConnected()) {
+								droppedCount.incrementAndGet();
+								unsubscribeAll(session);
+								continue;
+							}
+
+							send(message);
+						} catch (RuntimeException e) {
+							Logger.error("WebSocket session " + session + " send failed, unsubscribe it.", e);
+							droppedCount.incrementAndGet();
+							unsubscribeAll(session);
+							session.close();
+						} finally {
+							message.release();
+						}
+					}
+				} finally {
+					draining.set(false);
+				}
+
+				//释放发送标志后有新消息进入队列, 且没有其他线程接手发送
+				if (queue.isEmpty() || !draining.compareAndSet(false, true)) {
+					break;
+				}
+			}
+		}
+
+		/**
+		 * 发送一条消息
+		 * @param message 消息
+		 */
+		private void send(Message message) {
+			if (PerMessageDeflate.get(session) != null) {
+				message.webSocketFrame.send(session);
+			} else {
+				//每个会话使用独立的位置发送共享的数据
+				synchronized (session) {
+					session.send(message.frameBuffer.asReadOnlyBuffer());
+				}
+			}
+		}
+	}
+
+	/**
+	 * 已编码的消息
+	 * 		发布方和每个持有消息的发送队列各占一个引用, 引用全部释放后释放编码的数据
+	 */
+	private static class Message {
+		private String topic;
+		private WebSocketFrame webSocketFrame;
+		private ByteBuffer frameBuffer;
+		private AtomicInteger refCount;
+
+		private Message(String topic, WebSocketFrame webSocketFrame, ByteBuffer frameBuffer) {
+			this.topic = topic;
+			this.webSocketFrame = webSocketFrame;
+			this.frameBuffer = frameBuffer;
+			this.refCount = new AtomicInteger(1);
+		}
+
+		private void retain() {
+			refCount.incrementAndGet();
+		}
+
+		private void release() {
+			if (refCount.decrementAndGet() == 0) {
+				TByteBuffer.release(frameBuffer);
+			}
+		}
+	}
+}
@@ -46,13 +46,57 @@ public abstract class WebSocketRouter implements Cloneable{
 		WebSocketFrame webSocketFrame = WebSocketFrame.newInstance(true, WebSocketFrame.Opcode.TEXT, false, byteBuffer);
 
 		//这里不用syncSend 方法是因为出发 onSent 是异步的,会导致消息顺序错乱
-		session.send(webSocketFrame.toByteBuffer());
-		byteBuffer.remaining();
+		webSocketFrame.send(session);
 
 		//出发发送事件
 		onSent(byteBuffer);
 	}
 
+	/**
+	 * 当前会话订阅默认广播中心的主题
+	 * @param topic 主题
+	 */
+	public void subscribe(String topic) {
+		subscribe(WebSocketHub.getDefault(), topic);
+	}
+
+	/**
+	 * 当前会话订阅广播中心的主题
+	 * @param webSocketHub 广播中心
+	 * @param topic 主题
+	 */
+	public void subscribe(WebSocketHub webSocketHub, String topic) {
+		webSocketHub.subscribe(topic, session);
+	}
+
+	/**
+	 * 当前会话取消订阅默认广播中心的主题
+	 * @param topic 主题
+	 */
+	public void unsubscribe(String topic) {
+		unsubscribe(WebSocketHub.getDefault(), topic);
+	}
+
+	/**
+	 * 当前会话取消订阅广播中心的主题
+	 * @param webSocketHub 广播中心
+	 * @param topic 主题
+	 */
+	public void unsubscribe(WebSocketHub webSocketHub, String topic) {
+		webSocketHub.unsubscribe(topic, session);
+	}
+
+	/**
+	 * 向默认广播中心的主题发布消息
+	 * 		消息只编码一次, 发送给所有订阅了该主题的会话
+	 * @param topic 主题
+	 * @param byteBuffer ByteBuffer 对象
+	 * @return 放入发送队列的会话数
+	 */
+	public int publish(String topic, ByteBuffer byteBuffer) {
+		return WebSocketHub.getDefault().publish(topic, byteBuffer);
+	}
+
 	/**
 	 * 判断连接状态
 	 * @return true: 连接状态, false: 断开状态
@@ -87,6 +131,28 @@ public abstract class WebSocketRouter implements Cloneable{
 	 */
 	public abstract ByteBuffer onRecived(ByteBuffer message);
 
+	/**
+	 * 是否以流的方式接收分片消息
+	 * 		返回 true 时分片消息的每个分片到达后立即通过 onFragment 交付, 不在内存中合并,
+	 * 		返回 false 时分片消息合并成完整的消息后通过 onRecived 交付, 消息大小受最大消息尺寸限制.
+	 * 		未分片的消息总是通过 onRecived 交付
+	 * @return true: 流式接收, false: 合并接收
+	 */
+	public boolean isStreaming() {
+		return false;
+	}
+
+	/**
+	 * websocket 收到分片消息中的一个分片
+	 * 		只有 isStreaming 返回 true 时才会被调用, 分片数据只在本次调用中有效
+	 * @param fragment 分片的缓冲数据
+	 * @param isLast 是否是消息的最后一个分片
+	 * @return 需要发送的缓冲数据
+	 */
+	public ByteBuffer onFragment(ByteBuffer fragment, boolean isLast) {
+		return null;
+	}
+
 	/**
 	 * websocket 消息发送完成
 	 * @param message 发送的消息
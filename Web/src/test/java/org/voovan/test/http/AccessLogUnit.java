@@ -0,0 +1,168 @@
+package org.voovan.test.http;
+
+import junit.framework.TestCase;
+import org.voovan.http.message.Request;
+import org.voovan.http.message.Response;
+import org.voovan.http.server.HttpRequest;
+import org.voovan.http.server.HttpResponse;
+import org.voovan.http.server.context.AccessLog;
+import org.voovan.tools.TDateTime;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 访问日志测试
+ * 		刷新间隔设置得很长, 日志只在缓冲区超过一半或关闭时写出
+ *
+ * @author helyho
+ *
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class AccessLogUnit extends TestCase {
+	//与 AccessLog 中每个线程的环形缓冲区和单行日志的大小一致
+	private static final int RING_SIZE = 64 * 1024;
+	private static final int LINE_MAX_SIZE = 8 * 1024;
+
+	private File logDir;
+	private String logFile;
+
+	@Override
+	public void setUp() {
+		logDir = new File(System.getProperty("java.io.tmpdir"), "voovan-access-log-" + System.nanoTime());
+		logFile = new File(logDir, "access.log").getPath();
+	}
+
+	@Override
+	public void tearDown() {
+		File[] files = logDir.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		logDir.delete();
+	}
+
+	public void testWriteOnClose() throws IOException {
+		AccessLog accessLog = new AccessLog(logFile, 60000);
+		accessLog.write(newRequest("/index.html", "Agent\r\nInjected"), newResponse(200));
+		accessLog.write(newRequest("/中文", null), newResponse(404));
+
+		//刷新间隔到达之前不写出
+		assertEquals(0, new File(logFile).length());
+		accessLog.close();
+
+		List<String> lines = readLines(logFile);
+		assertEquals(2, lines.size());
+		assertTrue(lines.get(0), lines.get(0).contains(" GET    200 5\t /index.html\t Agent  Injected"));
+		assertTrue(lines.get(1), lines.get(1).contains(" 404 5\t /中文"));
+		assertEquals(0, accessLog.getDroppedCount());
+	}
+
+	public void testMultipleThreads() throws Exception {
+		final AccessLog accessLog = new AccessLog(logFile, 60000);
+		Thread[] threads = new Thread[4];
+		for (int i = 0; i < threads.length; i++) {
+			final int index = i;
+			threads[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for (int j = 0; j < 500; j++) {
+						accessLog.write(newRequest("/thread/" + index + "/" + j, null), newResponse(200));
+					}
+				}
+			});
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		accessLog.close();
+
+		//每个线程的日志都按顺序写出
+		List<String> lines = readLines(logFile);
+		assertEquals(2000, lines.size());
+		assertEquals(0, accessLog.getDroppedCount());
+		int[] next = new int[threads.length];
+		for (String line : lines) {
+			String path = line.substring(line.indexOf("/thread/") + 8).trim();
+			int index = Integer.parseInt(path.substring(0, path.indexOf('/')));
+			assertEquals(next[index]++, Integer.parseInt(path.substring(path.indexOf('/') + 1)));
+		}
+	}
+
+	public void testDropWhenRingFull() throws IOException {
+		AccessLog accessLog = new AccessLog(logFile, 60000);
+		StringBuilder longPath = new StringBuilder("/");
+		while (longPath.length() < LINE_MAX_SIZE) {
+			longPath.append('a');
+		}
+
+		//持有访问日志的锁使写入线程无法收集缓冲区, 被截断的每行日志正好是 LINE_MAX_SIZE 字节
+		int lineCount = RING_SIZE / LINE_MAX_SIZE;
+		synchronized (accessLog) {
+			for (int i = 0; i < lineCount + 5; i++) {
+				accessLog.write(newRequest(longPath.toString(), null), newResponse(200));
+			}
+			assertEquals(5, accessLog.getDroppedCount());
+		}
+		accessLog.close();
+
+		List<String> lines = readLines(logFile);
+		assertEquals(lineCount, lines.size());
+		assertEquals(LINE_MAX_SIZE - 2, lines.get(0).length());
+	}
+
+	public void testRotateOldFile() throws IOException {
+		//启动时已存在的前几天的日志先轮转
+		logDir.mkdirs();
+		File oldFile = new File(logFile);
+		Files.write(oldFile.toPath(), "old\r\n".getBytes(StandardCharsets.UTF_8));
+		long oldTime = System.currentTimeMillis() - 2 * 24 * 60 * 60 * 1000L;
+		assertTrue(oldFile.setLastModified(oldTime));
+
+		AccessLog accessLog = new AccessLog(logFile, 60000);
+		accessLog.write(newRequest("/new", null), newResponse(200));
+		accessLog.close();
+
+		File rotatedFile = new File(logFile + "." + TDateTime.format(new Date(oldTime), "yyyy-MM-dd"));
+		assertEquals("old", readLines(rotatedFile.getPath()).get(0));
+		List<String> lines = readLines(logFile);
+		assertEquals(1, lines.size());
+		assertTrue(lines.get(0).contains("/new"));
+	}
+
+	private static HttpRequest newRequest(String path, String userAgent) {
+		Request request = new Request();
+		request.protocol().setMethod("GET");
+		request.protocol().setPath(path);
+		if (userAgent != null) {
+			request.header().put("User-Agent", userAgent);
+		}
+		return new HttpRequest(request, "UTF-8") {
+			{
+				setRemoteAddres("127.0.0.1");
+				setRemotePort(50000);
+			}
+		};
+	}
+
+	private static HttpResponse newResponse(int status) {
+		Response response = new Response();
+		response.protocol().setStatus(status);
+		response.body().write("hello");
+		return new HttpResponse(response, "UTF-8") {
+		};
+	}
+
+	private static List<String> readLines(String fileName) throws IOException {
+		return Files.readAllLines(new File(fileName).toPath(), StandardCharsets.UTF_8);
+	}
+}
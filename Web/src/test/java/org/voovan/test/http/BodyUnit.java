@@ -0,0 +1,91 @@
+package org.voovan.test.http;
+
+import junit.framework.TestCase;
+import org.voovan.http.message.Response;
+import org.voovan.http.message.packet.Body;
+import org.voovan.http.server.HttpResponse;
+import org.voovan.tools.TFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 报文 Body 写入测试
+ *
+ * @author helyho
+ *
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class BodyUnit extends TestCase {
+
+	/**
+	 * 构造超过一个编码分块 (8K) 的非 ASCII 内容, 多字节字符和代理对会跨越分块的边界
+	 * @return 字符序列
+	 */
+	private static StringBuilder multiChunkContent(){
+		StringBuilder content = new StringBuilder();
+		for(int i = 0; i < 3000; i++){
+			content.append("中文é").append(i).append("😀");
+		}
+		return content;
+	}
+
+	public void testWriteCharSequence() throws IOException {
+		StringBuilder content = multiChunkContent();
+		for(String charset : new String[]{"UTF-8", "GBK"}) {
+			byte[] expect = content.toString().getBytes(charset);
+			assertTrue(expect.length > 8 * 1024 * 2);
+
+			Body body = new Body();
+			body.write(content, charset);
+			assertEquals(expect.length, body.size());
+			assertTrue(charset, Arrays.equals(expect, body.getBodyBytes()));
+		}
+	}
+
+	public void testWriteCharSequenceToFile() throws IOException {
+		StringBuilder content = multiChunkContent();
+		byte[] expect = content.toString().getBytes("UTF-8");
+
+		File file = File.createTempFile("body", ".txt");
+		file.deleteOnExit();
+		try {
+			Body body = new Body();
+			body.changeToFile(file);
+			assertEquals(Body.BodyType.FILE, body.getType());
+
+			body.write("head|", "UTF-8");
+			body.write(content, "UTF-8");
+
+			byte[] fileBytes = TFile.loadFile(file);
+			assertEquals(5 + expect.length, fileBytes.length);
+			assertEquals("head|", new String(fileBytes, 0, 5, "UTF-8"));
+			assertTrue(Arrays.equals(expect, Arrays.copyOfRange(fileBytes, 5, fileBytes.length)));
+			assertEquals(content.toString(), body.getBodyString("UTF-8").substring(5));
+		} finally {
+			file.delete();
+		}
+	}
+
+	public void testWriteJSON() {
+		Map<String, Object> map = new LinkedHashMap<String, Object>();
+		map.put("name", "中文");
+		map.put("list", new int[]{1, 2});
+
+		HttpResponse response = new HttpResponse(new Response(), "UTF-8") {};
+		response.writeJSON(map);
+		assertEquals("application/json", response.header().get("Content-Type"));
+		assertEquals("{\"name\":\"中文\",\"list\":[1,2]}", response.body().getBodyString("UTF-8"));
+
+		//已经设置的 Content-Type 不被覆盖
+		response = new HttpResponse(new Response(), "UTF-8") {};
+		response.header().put("Content-Type", "text/plain");
+		response.writeJSON(map);
+		assertEquals("text/plain", response.header().get("Content-Type"));
+	}
+}
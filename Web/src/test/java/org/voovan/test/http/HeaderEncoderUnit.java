@@ -0,0 +1,79 @@
+package org.voovan.test.http;
+
+import junit.framework.TestCase;
+import org.voovan.http.message.HeaderEncoder;
+import org.voovan.http.message.Response;
+import org.voovan.http.message.packet.Cookie;
+import org.voovan.tools.TByteBuffer;
+
+/**
+ * 响应报文头编码测试
+ *
+ * @author helyho
+ *
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class HeaderEncoderUnit extends TestCase {
+
+	public void testEncode() {
+		Response response = new Response();
+		response.protocol().setStatus(404);
+		response.protocol().setStatusCode("Not Found");
+		response.header().put("Connection", "keep-alive");
+		response.header().put("X-Name", "测试");
+		response.header().put("lower", "skipped");
+		response.cookies().add(Cookie.newInstance("127.0.0.1", "name", "value", 60));
+
+		String head = response.toString();
+		assertTrue(head.startsWith("HTTP/1.1 404 Not Found\r\n"));
+		assertTrue(head.contains("\r\nConnection: keep-alive\r\n"));
+		assertTrue(head.contains("\r\nX-Name: 测试\r\n"));
+		assertTrue(head.contains("\r\nContent-Length: 0\r\n"));
+		assertTrue(head.contains("\r\nContent-Type: text/html\r\n"));
+		assertTrue(head.contains("\r\nSet-Cookie: name=value"));
+		assertFalse(head.contains("lower"));
+		assertTrue(head.endsWith("\r\n\r\n"));
+
+		//非缓存的状态说明按原样输出
+		response.protocol().setStatusCode("Nothing Here");
+		assertTrue(response.toString().startsWith("HTTP/1.1 404 Nothing Here\r\n"));
+		response.protocol().setVersion(1.0F);
+		assertTrue(response.toString().startsWith("HTTP/1.0 404 Nothing Here\r\n"));
+
+		//非标准的状态说明不影响其他响应使用的标准状态行
+		Response standardResponse = new Response();
+		standardResponse.protocol().setStatus(404);
+		standardResponse.protocol().setStatusCode("Not Found");
+		assertTrue(standardResponse.toString().startsWith("HTTP/1.1 404 Not Found\r\n"));
+		Response customResponse = new Response();
+		customResponse.protocol().setStatus(418);
+		customResponse.protocol().setStatusCode("I'm a teapot");
+		assertTrue(customResponse.toString().startsWith("HTTP/1.1 418 I'm a teapot\r\n"));
+	}
+
+	public void testLargeHead() {
+		StringBuilder value = new StringBuilder();
+		for (int i = 0; i < 20000; i++) {
+			value.append((char) ('a' + i % 26));
+		}
+
+		Response response = new Response();
+		response.header().put("X-Large", value.toString());
+		assertTrue(response.toString().contains("\r\nX-Large: " + value + "\r\n"));
+
+		//扩大的缓冲区在下一次使用时恢复
+		assertTrue(TByteBuffer.toString(HeaderEncoder.get().flip()).isEmpty());
+	}
+
+	public void testDate() {
+		String date = HeaderEncoder.getDate();
+		assertTrue(date.endsWith(" GMT"));
+		assertTrue(date == HeaderEncoder.getDate() || !date.equals(HeaderEncoder.getDate()));
+
+		Response response = new Response();
+		response.header().put("Date", date);
+		assertTrue(response.toString().contains("\r\nDate: " + date + "\r\n"));
+	}
+}
@@ -0,0 +1,79 @@
+package org.voovan.test.http;
+
+import junit.framework.TestCase;
+import org.voovan.http.http2.HpackDecoder;
+import org.voovan.http.http2.HpackEncoder;
+import org.voovan.http.http2.Http2Exception;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * HPACK 编解码测试
+ *
+ * @author helyho
+ *
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class Http2HpackUnit extends TestCase {
+
+	private static byte[] hex(String hexString){
+		hexString = hexString.replace(" ", "");
+		byte[] data = new byte[hexString.length() / 2];
+		for(int i = 0; i < data.length; i++){
+			data[i] = (byte) Integer.parseInt(hexString.substring(i * 2, i * 2 + 2), 16);
+		}
+		return data;
+	}
+
+	//RFC 7541 C.4 使用哈夫曼编码的请求
+	public void testDecodeHuffmanRequests() throws Http2Exception {
+		HpackDecoder decoder = new HpackDecoder(4096);
+
+		List<String[]> headers = decoder.decode(ByteBuffer.wrap(hex("8286 8441 8cf1 e3c2 e5f2 3a6b a0ab 90f4 ff")));
+		assertEquals(4, headers.size());
+		assertEquals("GET", headers.get(0)[1]);
+		assertEquals("/", headers.get(2)[1]);
+		assertEquals("www.example.com", headers.get(3)[1]);
+
+		headers = decoder.decode(ByteBuffer.wrap(hex("8286 84be 5886 a8eb 1064 9cbf")));
+		assertEquals(5, headers.size());
+		assertEquals("www.example.com", headers.get(3)[1]);
+		assertEquals("cache-control", headers.get(4)[0]);
+		assertEquals("no-cache", headers.get(4)[1]);
+	}
+
+	public void testEncodeDecode() throws Http2Exception {
+		HpackEncoder encoder = new HpackEncoder();
+		HpackDecoder decoder = new HpackDecoder(4096);
+
+		List<String[]> headers = new ArrayList<String[]>();
+		headers.add(new String[]{":status", "200"});
+		headers.add(new String[]{"content-type", "text/html; charset=UTF-8"});
+		headers.add(new String[]{"set-cookie", "VOOVAN_SESSIONID=123; path=/"});
+		headers.add(new String[]{"x-custom", "value"});
+
+		//第二次编码使用动态表中的索引
+		for(int i = 0; i < 2; i++) {
+			List<String[]> decoded = decoder.decode(ByteBuffer.wrap(encoder.encode(headers)));
+			assertEquals(headers.size(), decoded.size());
+			for (int j = 0; j < headers.size(); j++) {
+				assertEquals(headers.get(j)[0], decoded.get(j)[0]);
+				assertEquals(headers.get(j)[1], decoded.get(j)[1]);
+			}
+		}
+	}
+
+	public void testInvalidIndex() {
+		HpackDecoder decoder = new HpackDecoder(4096);
+		try {
+			decoder.decode(ByteBuffer.wrap(hex("be")));
+			fail("Expected Http2Exception");
+		} catch (Http2Exception e) {
+			assertEquals(Http2Exception.COMPRESSION_ERROR, e.getErrorCode());
+		}
+	}
+}
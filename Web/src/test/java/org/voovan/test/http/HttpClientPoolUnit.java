@@ -0,0 +1,184 @@
+package org.voovan.test.http;
+
+import junit.framework.TestCase;
+import org.voovan.http.client.HttpClient;
+import org.voovan.http.client.HttpClientPool;
+import org.voovan.tools.TEnv;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * HttpClient 连接池测试
+ * 		使用只接受连接的本地 ServerSocket, 不需要运行中的 WebServer
+ *
+ * @author helyho
+ *
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class HttpClientPoolUnit extends TestCase {
+	private ServerSocket serverA;
+	private ServerSocket serverB;
+	private List<Socket> accepted;
+
+	@Override
+	public void setUp() throws IOException {
+		accepted = new CopyOnWriteArrayList<Socket>();
+		serverA = listen();
+		serverB = listen();
+	}
+
+	@Override
+	public void tearDown() throws IOException {
+		serverA.close();
+		serverB.close();
+		for (Socket socket : accepted) {
+			socket.close();
+		}
+	}
+
+	public void testRouteLimit() throws IOException {
+		HttpClientPool httpClientPool = new HttpClientPool(1, 4, 60, 200, 5);
+		try {
+			HttpClient httpClient = httpClientPool.acquire(url(serverA));
+
+			//同一路由达到上限, 等待超时
+			try {
+				httpClientPool.acquire(url(serverA));
+				fail("Acquire should time out");
+			} catch (IOException e) {
+				assertEquals(1, httpClientPool.getTimeoutCount());
+			}
+
+			//其他路由不受影响
+			HttpClient otherClient = httpClientPool.acquire(url(serverB));
+			assertEquals(2, httpClientPool.getTotalSize());
+			httpClientPool.release(otherClient);
+
+			//归还后复用同一个连接
+			httpClientPool.release(httpClient);
+			assertSame(httpClient, httpClientPool.acquire(url(serverA) + "/path"));
+			assertEquals(2, httpClientPool.getCreateCount());
+			assertEquals(1, httpClientPool.getLeasedSize());
+		} finally {
+			httpClientPool.close();
+		}
+	}
+
+	public void testTotalLimit() throws IOException {
+		HttpClientPool httpClientPool = new HttpClientPool(2, 2, 60, 200, 5);
+		try {
+			HttpClient client1 = httpClientPool.acquire(url(serverA));
+			HttpClient client2 = httpClientPool.acquire(url(serverA));
+
+			//连接池已满且没有空闲连接, 等待超时
+			try {
+				httpClientPool.acquire(url(serverB));
+				fail("Acquire should time out");
+			} catch (IOException e) {
+				assertEquals(1, httpClientPool.getTimeoutCount());
+			}
+
+			httpClientPool.release(client1);
+			TEnv.sleep(10);
+			httpClientPool.release(client2);
+
+			//关闭其他路由中最久未使用的空闲连接, 为新的路由腾出位置
+			HttpClient clientB = httpClientPool.acquire(url(serverB));
+			assertEquals(2, httpClientPool.getTotalSize());
+			assertEquals(1, httpClientPool.getIdleSize());
+			assertEquals(1, httpClientPool.getDiscardCount());
+			assertFalse(client1.isConnect());
+			assertTrue(client2.isConnect());
+			httpClientPool.release(clientB);
+		} finally {
+			httpClientPool.close();
+		}
+	}
+
+	public void testWaitForRelease() throws IOException {
+		final HttpClientPool httpClientPool = new HttpClientPool(1, 1, 60, 5000, 5);
+		try {
+			final HttpClient httpClient = httpClientPool.acquire(url(serverA));
+			new Thread(new Runnable() {
+				@Override
+				public void run() {
+					TEnv.sleep(100);
+					httpClientPool.release(httpClient);
+				}
+			}).start();
+
+			//等待其他线程归还连接
+			assertSame(httpClient, httpClientPool.acquire(url(serverA)));
+			assertEquals(1, httpClientPool.getWaitCount());
+			assertTrue(httpClientPool.getWaitTime() > 0);
+			assertEquals(0, httpClientPool.getTimeoutCount());
+		} finally {
+			httpClientPool.close();
+		}
+	}
+
+	public void testDiscardAndIdleTimeout() throws IOException {
+		HttpClientPool httpClientPool = new HttpClientPool(2, 4, 60, 200, 5);
+		try {
+			//已断开的连接归还时直接关闭
+			HttpClient closedClient = httpClientPool.acquire(url(serverA));
+			closedClient.close();
+			httpClientPool.release(closedClient);
+			assertEquals(0, httpClientPool.getTotalSize());
+			assertEquals(1, httpClientPool.getDiscardCount());
+
+			HttpClient httpClient = httpClientPool.acquire(url(serverA));
+			httpClientPool.release(httpClient);
+			assertEquals(1, httpClientPool.getIdleSize());
+
+			//空闲时间未超过存活时间的连接保留
+			httpClientPool.closeIdleClients(60000);
+			assertEquals(1, httpClientPool.getIdleSize());
+
+			httpClientPool.closeIdleClients(0);
+			assertEquals(0, httpClientPool.getIdleSize());
+			assertEquals(0, httpClientPool.getTotalSize());
+			assertFalse(httpClient.isConnect());
+		} finally {
+			httpClientPool.close();
+		}
+
+		//关闭后不再提供连接
+		try {
+			httpClientPool.acquire(url(serverA));
+			fail("Pool is closed");
+		} catch (IOException e) {
+			assertTrue(e.getMessage().contains("closed"));
+		}
+	}
+
+	private ServerSocket listen() throws IOException {
+		final ServerSocket serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+		Thread acceptThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				while (!serverSocket.isClosed()) {
+					try {
+						accepted.add(serverSocket.accept());
+					} catch (IOException e) {
+						return;
+					}
+				}
+			}
+		});
+		acceptThread.setDaemon(true);
+		acceptThread.start();
+		return serverSocket;
+	}
+
+	private static String url(ServerSocket serverSocket) {
+		return "http://127.0.0.1:" + serverSocket.getLocalPort();
+	}
+}
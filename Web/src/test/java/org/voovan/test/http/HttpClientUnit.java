@@ -3,15 +3,22 @@ package org.voovan.test.http;
 
 import junit.framework.TestCase;
 import org.voovan.http.client.HttpClient;
+import org.voovan.http.client.HttpClientPool;
 import org.voovan.http.message.Response;
 import org.voovan.http.message.packet.Part;
 import org.voovan.http.websocket.WebSocketRouter;
 import org.voovan.tools.TByteBuffer;
 import org.voovan.tools.log.Logger;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 测试用例中的方法需要单独执行
@@ -102,6 +109,60 @@ public class HttpClientUnit extends TestCase {
 		httpClient.close();
 	}
 
+	public void testAsyncSend() throws Exception {
+		HttpClient httpClient = new HttpClient("http://127.0.0.1:28080/","GBK2312",10000);
+		List<CompletableFuture<Response>> responseFutures = new ArrayList<CompletableFuture<Response>>();
+		for(int i=0; i<10; i++) {
+			responseFutures.add(httpClient.asyncSend("/"));
+		}
+
+		for(CompletableFuture<Response> responseFuture : responseFutures) {
+			assertTrue(responseFuture.get(10, TimeUnit.SECONDS).protocol().getStatus() != 500);
+		}
+		assertEquals(0, httpClient.getPendingSize());
+		httpClient.close();
+	}
+
+	public void testSendStream() throws Exception {
+		HttpClient httpClient = new HttpClient("http://127.0.0.1:28080/","GBK2312",10000);
+		Response response = httpClient.sendStream("/");
+		assertTrue(response.protocol().getStatus() != 500);
+		assertEquals(0, response.body().getBodyBytes().length);
+
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		long bodySize = httpClient.readBody(Channels.newChannel(outputStream));
+		assertEquals(outputStream.size(), bodySize);
+		Logger.simple(new String(outputStream.toByteArray(), "GBK"));
+		assertNull(httpClient.getBodyReader());
+
+		//内容段读取完成后连接可以继续使用
+		assertTrue(httpClient.send("/").protocol().getStatus() != 500);
+		httpClient.close();
+	}
+
+	public void testPool() throws Exception {
+		HttpClientPool httpClientPool = new HttpClientPool(1, 2, 60, 5000, 5);
+		for(int i=0; i<3; i++) {
+			HttpClient httpClient = httpClientPool.acquire("http://127.0.0.1:28080/");
+			try {
+				Response response = httpClient.putHeader("X-Request-Index", String.valueOf(i)).send("/");
+				assertTrue(response.protocol().getStatus() != 500);
+			} finally {
+				httpClientPool.release(httpClient);
+			}
+			assertNull(httpClient.getHeader().get("X-Request-Index"));
+		}
+
+		//同一个路由复用同一个连接
+		assertEquals(1, httpClientPool.getCreateCount());
+		assertEquals(3, httpClientPool.getLeaseCount());
+		assertEquals(1, httpClientPool.getIdleSize());
+
+		httpClientPool.closeIdleClients(0);
+		assertEquals(0, httpClientPool.getTotalSize());
+		httpClientPool.close();
+	}
+
 	public void testWebSocket() throws Exception {
 		HttpClient httpClient = new HttpClient("ws://127.0.0.1:28080/","GBK2312",500);
 		httpClient.webSocket("/websocket", new WebSocketRouter() {
@@ -0,0 +1,156 @@
+package org.voovan.test.http;
+
+import junit.framework.TestCase;
+import org.voovan.network.IoSession;
+import org.voovan.network.MessageSplitter;
+import org.voovan.network.SocketContext;
+import org.voovan.network.messagesplitter.HttpMessageSplitter;
+
+import java.io.IOException;
+import java.net.SocketOption;
+import java.nio.ByteBuffer;
+
+/**
+ * HTTP 消息分割测试
+ * 		HTTP/2 连接序言只在新连接或 h2c 升级之后被识别
+ *
+ * @author helyho
+ *
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class HttpMessageSplitterUnit extends TestCase {
+	private static final String PREFACE = "PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n";
+
+	public void testPrefaceOnFreshConnection() {
+		TestSession session = new TestSession();
+		assertTrue(HttpMessageSplitter.isExpectHttp2Preface(session));
+		assertEquals(PREFACE.length(), new HttpMessageSplitter().canSplite(session, buffer(PREFACE)));
+
+		//序言还不完整时继续等待
+		assertEquals(-1, new HttpMessageSplitter().canSplite(session, buffer(PREFACE.substring(0, 10))));
+	}
+
+	public void testPrefaceAfterH2cUpgrade() {
+		TestSession session = new TestSession();
+		session.setAttribute("Type", "HTTP2");
+		assertTrue(HttpMessageSplitter.isExpectHttp2Preface(session));
+		assertEquals(PREFACE.length(), new HttpMessageSplitter().canSplite(session, buffer(PREFACE)));
+
+		//收到序言之后只判断 HTTP/2 帧
+		session.setAttribute("Http2Preface", true);
+		assertFalse(HttpMessageSplitter.isExpectHttp2Preface(session));
+	}
+
+	public void testNoPrefaceAfterHttp1() {
+		TestSession session = new TestSession();
+		session.setAttribute("Type", "HTTP");
+		assertFalse(HttpMessageSplitter.isExpectHttp2Preface(session));
+		assertEquals(-1, new HttpMessageSplitter().canSplite(session, buffer(PREFACE.substring(0, 10))));
+
+		session.setAttribute("Type", "WebSocket");
+		assertFalse(HttpMessageSplitter.isExpectHttp2Preface(session));
+		//WebSocket 连接上以 "PRI" 开头的数据按帧判断
+		assertEquals(-1, new HttpMessageSplitter().canSplite(session, buffer(PREFACE)));
+	}
+
+	public void testHttpRequest() {
+		TestSession session = new TestSession();
+		assertEquals(0, new HttpMessageSplitter().canSplite(session, buffer("GET / HTTP/1.1\r\nHost: a\r\n\r\n")));
+	}
+
+	private static ByteBuffer buffer(String data) {
+		return ByteBuffer.wrap(data.getBytes());
+	}
+
+	private static class TestSocketContext extends SocketContext {
+		private TestSocketContext() {
+			super("127.0.0.1", 0, 1000);
+		}
+
+		@Override
+		public <T> void setOption(SocketOption<T> name, T value) throws IOException {
+		}
+
+		@Override
+		public void start() throws IOException {
+		}
+
+		@Override
+		public boolean isOpen() {
+			return true;
+		}
+
+		@Override
+		public boolean isConnected() {
+			return true;
+		}
+
+		@Override
+		public boolean close() {
+			return true;
+		}
+	}
+
+	private static class TestSession extends IoSession<TestSocketContext> {
+		private TestSession() {
+			super(new TestSocketContext());
+		}
+
+		@Override
+		protected int send0(ByteBuffer buffer) throws IOException {
+			return 0;
+		}
+
+		@Override
+		protected int read0(ByteBuffer buffer) throws IOException {
+			return 0;
+		}
+
+		@Override
+		public String loaclAddress() {
+			return "127.0.0.1";
+		}
+
+		@Override
+		public int loaclPort() {
+			return 0;
+		}
+
+		@Override
+		public String remoteAddress() {
+			return "127.0.0.1";
+		}
+
+		@Override
+		public int remotePort() {
+			return 0;
+		}
+
+		@Override
+		protected MessageSplitter getMessagePartition() {
+			return null;
+		}
+
+		@Override
+		public boolean isConnected() {
+			return true;
+		}
+
+		@Override
+		public boolean isOpen() {
+			return true;
+		}
+
+		@Override
+		public boolean close() {
+			return true;
+		}
+
+		@Override
+		public String toString() {
+			return "TestSession";
+		}
+	}
+}
@@ -3,10 +3,12 @@ package org.voovan.test.http;
 import junit.framework.TestCase;
 import org.voovan.http.message.HttpParser;
 import org.voovan.http.message.Request;
+import org.voovan.http.message.packet.Cookie;
 import org.voovan.tools.ByteBufferChannel;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.List;
 
 public class HttpParserUnit extends TestCase {
 
@@ -94,4 +96,31 @@ public class HttpParserUnit extends TestCase {
 			assertEquals(request.getQueryString("UTF-8"),"name=helyho&age=32%3D&address=wlmq");
 	}
 
+	public void testCookie() throws IOException{
+		String httpRequestCookie =
+				"GET / HTTP/1.1\r\n"+
+				"Cookie: BAIDUID=57939E50:FG=1; name=\"helyho\"; path=/x\r\n"+
+				"Cookie: age=32\r\n"+
+				"Host: 127.0.0.1:1031\r\n"+
+				"\r\n";
+		ByteBufferChannel b = new ByteBufferChannel();
+		b.writeEnd(ByteBuffer.wrap(httpRequestCookie.getBytes()));
+		Request request = HttpParser.parseRequest(b, 30000);
+		assertEquals(request.header().size(),1);
+
+		//按需查找时不解析其他的 Cookie
+		assertEquals(Cookie.findRequestCookie("a=1; name=\"helyho\"", "name").getValue(), "helyho");
+		assertNull(Cookie.findRequestCookie("a=1; names=2", "name"));
+
+		List<Cookie> cookies = request.cookies();
+		assertEquals(cookies.size(),4);
+		assertEquals(cookies.get(0).getName(),"BAIDUID");
+		assertEquals(cookies.get(0).getValue(),"57939E50:FG=1");
+		assertEquals(cookies.get(1).getValue(),"helyho");
+		assertEquals(cookies.get(2).getName(),"path");
+		assertEquals(cookies.get(3).getValue(),"32");
+
+		//只解析一次
+		assertEquals(request.cookies().size(),4);
+	}
 }
@@ -0,0 +1,248 @@
+package org.voovan.test.http;
+
+import junit.framework.TestCase;
+import org.voovan.http.server.HttpRequest;
+import org.voovan.http.server.HttpResponse;
+import org.voovan.http.server.HttpRouter;
+import org.voovan.http.server.WebServer;
+import org.voovan.http.server.context.WebServerConfig;
+import org.voovan.tools.TEnv;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * HTTP 管线化请求测试
+ * 		在本地端口启动 WebServer, 通过 Socket 在一个连接上连续发送多个请求
+ *
+ * @author helyho
+ *
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class HttpPipelineUnit extends TestCase {
+	private static final int PORT = 28091;
+	private static WebServer webServer;
+	private static final AtomicInteger counted = new AtomicInteger();
+
+	private static synchronized void startServer() {
+		if (webServer != null) {
+			return;
+		}
+
+		WebServerConfig config = new WebServerConfig();
+		config.setPort(PORT);
+		config.setGzip(false);
+		config.setPipelineConcurrent(true);
+		webServer = WebServer.newInstance(config);
+		webServer.get("/echo/:name", new HttpRouter() {
+			@Override
+			public void process(HttpRequest request, HttpResponse response) throws Exception {
+				response.write(request.getParameter("name"));
+			}
+		});
+		webServer.get("/count/:name", new HttpRouter() {
+			@Override
+			public void process(HttpRequest request, HttpResponse response) throws Exception {
+				counted.incrementAndGet();
+				response.write(request.getParameter("name"));
+			}
+		});
+		webServer.get("/close/:name", new HttpRouter() {
+			@Override
+			public void process(HttpRequest request, HttpResponse response) throws Exception {
+				//等待之后的请求提交到线程池
+				TEnv.sleep(200);
+				response.header().put("Connection", "close");
+				response.write(request.getParameter("name"));
+			}
+		});
+
+		Thread serverThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				webServer.serve();
+			}
+		});
+		serverThread.setDaemon(true);
+		serverThread.start();
+
+		//等待服务端口可以连接
+		for (int i = 0; i < 100; i++) {
+			try {
+				new Socket("127.0.0.1", PORT).close();
+				return;
+			} catch (IOException e) {
+				TEnv.sleep(50);
+			}
+		}
+	}
+
+	public void testPipelineWithoutConnectionHeader() throws IOException {
+		startServer();
+		Socket socket = new Socket("127.0.0.1", PORT);
+		socket.setSoTimeout(5000);
+		try {
+			//HTTP/1.1 的请求没有 Connection 头时默认保持连接, 所有的响应都按顺序返回
+			send(socket, request("/echo/a", "HTTP/1.1", null) + request("/echo/b", "HTTP/1.1", null) +
+					request("/echo/c", "HTTP/1.1", null));
+			List<String> responses = readResponses(socket.getInputStream(), 3);
+			assertEquals(3, responses.size());
+			assertResponse(responses.get(0), "a", "keep-alive");
+			assertResponse(responses.get(1), "b", "keep-alive");
+			assertResponse(responses.get(2), "c", "keep-alive");
+
+			//连接仍然可用
+			send(socket, request("/echo/d", "HTTP/1.1", null));
+			responses = readResponses(socket.getInputStream(), 1);
+			assertResponse(responses.get(0), "d", "keep-alive");
+		} finally {
+			socket.close();
+		}
+	}
+
+	public void testPipelineStopsAtClose() throws IOException {
+		startServer();
+		Socket socket = new Socket("127.0.0.1", PORT);
+		socket.setSoTimeout(5000);
+		try {
+			//Connection: close 之后的请求不再处理, 响应之后关闭连接
+			send(socket, request("/echo/a", "HTTP/1.1", null) + request("/echo/b", "HTTP/1.1", "close") +
+					request("/echo/c", "HTTP/1.1", null));
+			List<String> responses = readResponses(socket.getInputStream(), 3);
+			assertEquals(2, responses.size());
+			assertResponse(responses.get(0), "a", "keep-alive");
+			assertResponse(responses.get(1), "b", "close");
+		} finally {
+			socket.close();
+		}
+	}
+
+	public void testNoHandlerRunsAfterClose() throws IOException {
+		startServer();
+		counted.set(0);
+		Socket socket = new Socket("127.0.0.1", PORT);
+		socket.setSoTimeout(5000);
+		try {
+			//Connection: close 之后排队的请求不会执行处理器
+			send(socket, request("/echo/a", "HTTP/1.1", "close") + request("/count/b", "HTTP/1.1", null) +
+					request("/count/c", "HTTP/1.1", null));
+			List<String> responses = readResponses(socket.getInputStream(), 3);
+			assertEquals(1, responses.size());
+			assertResponse(responses.get(0), "a", "close");
+			TEnv.sleep(200);
+			assertEquals(0, counted.get());
+		} finally {
+			socket.close();
+		}
+	}
+
+	public void testHandlerCloseStopsPipeline() throws IOException {
+		startServer();
+		Socket socket = new Socket("127.0.0.1", PORT);
+		socket.setSoTimeout(5000);
+		try {
+			//处理器设置 Connection: close 时, 之后的请求的响应不再发送
+			send(socket, request("/close/a", "HTTP/1.1", null) + request("/echo/b", "HTTP/1.1", null));
+			List<String> responses = readResponses(socket.getInputStream(), 2);
+			assertEquals(1, responses.size());
+			assertResponse(responses.get(0), "a", "close");
+		} finally {
+			socket.close();
+		}
+	}
+
+	public void testHttp10() throws IOException {
+		startServer();
+		Socket socket = new Socket("127.0.0.1", PORT);
+		socket.setSoTimeout(5000);
+		try {
+			//HTTP/1.0 只在请求包含 Connection: keep-alive 时保持连接
+			send(socket, request("/echo/a", "HTTP/1.0", "keep-alive") + request("/echo/b", "HTTP/1.0", null) +
+					request("/echo/c", "HTTP/1.0", null));
+			List<String> responses = readResponses(socket.getInputStream(), 3);
+			assertEquals(2, responses.size());
+			assertResponse(responses.get(0), "a", "keep-alive");
+			assertResponse(responses.get(1), "b", "close");
+		} finally {
+			socket.close();
+		}
+	}
+
+	private static String request(String path, String version, String connection) {
+		return "GET " + path + " " + version + "\r\n" +
+				"Host: 127.0.0.1\r\n" +
+				(connection == null ? "" : "Connection: " + connection + "\r\n") +
+				"\r\n";
+	}
+
+	private static void send(Socket socket, String requests) throws IOException {
+		OutputStream outputStream = socket.getOutputStream();
+		outputStream.write(requests.getBytes("UTF-8"));
+		outputStream.flush();
+	}
+
+	private static void assertResponse(String response, String body, String connection) {
+		assertTrue(response, response.startsWith("HTTP/1.1 200"));
+		assertTrue(response, response.contains("\r\nConnection: " + connection + "\r\n"));
+		assertTrue(response, response.endsWith("\r\n\r\n" + body));
+	}
+
+	/**
+	 * 读取响应, 直到读取到指定数量的响应或者连接关闭
+	 * @param inputStream 输入流
+	 * @param count 响应数量
+	 * @return 响应报文的集合
+	 * @throws IOException IO 异常
+	 */
+	private static List<String> readResponses(InputStream inputStream, int count) throws IOException {
+		List<String> responses = new ArrayList<String>();
+		while (responses.size() < count) {
+			String head = readHead(inputStream);
+			if (head == null) {
+				break;
+			}
+
+			int contentLength = 0;
+			for (String line : head.split("\r\n")) {
+				if (line.toLowerCase().startsWith("content-length:")) {
+					contentLength = Integer.parseInt(line.substring(15).trim());
+				}
+			}
+
+			byte[] body = new byte[contentLength];
+			int offset = 0;
+			while (offset < contentLength) {
+				int length = inputStream.read(body, offset, contentLength - offset);
+				if (length < 0) {
+					throw new IOException("Connection closed while reading body");
+				}
+				offset += length;
+			}
+			responses.add(head + new String(body, "UTF-8"));
+		}
+		return responses;
+	}
+
+	private static String readHead(InputStream inputStream) throws IOException {
+		ByteArrayOutputStream head = new ByteArrayOutputStream();
+		//最后读取的 4 个字节, 为 \r\n\r\n 时报文头结束
+		int lastBytes = 0;
+		while (lastBytes != 0x0D0A0D0A) {
+			int value = inputStream.read();
+			if (value < 0) {
+				return head.size() == 0 ? null : head.toString("UTF-8");
+			}
+			head.write(value);
+			lastBytes = (lastBytes << 8) | value;
+		}
+		return head.toString("UTF-8");
+	}
+}
@@ -0,0 +1,128 @@
+package org.voovan.test.http;
+
+import junit.framework.TestCase;
+import org.voovan.http.message.Request;
+import org.voovan.http.message.Response;
+import org.voovan.http.message.packet.Cookie;
+import org.voovan.http.server.HttpDispatcher;
+import org.voovan.http.server.HttpRequest;
+import org.voovan.http.server.HttpResponse;
+import org.voovan.http.server.HttpSession;
+import org.voovan.http.server.SessionManager;
+import org.voovan.http.server.context.WebContext;
+import org.voovan.http.server.context.WebServerConfig;
+import org.voovan.http.server.session.MapSessionStore;
+
+import java.util.HashMap;
+
+/**
+ * 按需创建 Session 测试
+ *
+ * @author helyho
+ *
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class HttpSessionUnit extends TestCase {
+	private SessionManager sessionManager;
+	private HttpDispatcher httpDispatcher;
+
+	@Override
+	public void setUp() {
+		WebServerConfig config = new WebServerConfig();
+		sessionManager = new SessionManager(config, new MapSessionStore());
+		httpDispatcher = new HttpDispatcher(config, sessionManager);
+	}
+
+	@Override
+	public void tearDown() {
+		sessionManager.close();
+	}
+
+	public void testNoSessionWithoutCookie() {
+		HttpResponse response = newResponse();
+		HttpRequest request = newRequest(null);
+		httpDispatcher.disposeSession(request, response);
+
+		//没有调用 getSession() 时不创建 Session, 也不发送 Cookie
+		assertNull(request.getSession(false));
+		assertTrue(response.cookies().isEmpty());
+		assertEquals(0, sessionManager.getSessionStore().size());
+	}
+
+	public void testCreateOnFirstUse() {
+		HttpResponse response = newResponse();
+		HttpRequest request = newRequest(null);
+		httpDispatcher.disposeSession(request, response);
+
+		HttpSession session = request.getSession();
+		assertNotNull(session);
+		assertSame(session, request.getSession());
+		assertSame(session, request.getSession(false));
+		assertEquals(1, sessionManager.getSessionStore().size());
+
+		//只发送一次 Session 的 Cookie
+		assertEquals(1, response.cookies().size());
+		Cookie cookie = response.cookies().get(0);
+		assertEquals(WebContext.getSessionName(), cookie.getName());
+		assertEquals(session.getId(), cookie.getValue());
+	}
+
+	public void testExistingSession() {
+		HttpResponse firstResponse = newResponse();
+		HttpRequest firstRequest = newRequest(null);
+		httpDispatcher.disposeSession(firstRequest, firstResponse);
+		HttpSession session = firstRequest.getSession();
+
+		//之后的请求通过 Cookie 找到同一个 Session, 不再发送 Cookie
+		HttpResponse response = newResponse();
+		HttpRequest request = newRequest(session.getId());
+		httpDispatcher.disposeSession(request, response);
+		assertEquals(session.getId(), request.getSession(false).getId());
+		assertEquals(session.getId(), request.getSession().getId());
+		assertTrue(response.cookies().isEmpty());
+		assertEquals(1, sessionManager.getSessionStore().size());
+	}
+
+	public void testUnknownSession() {
+		HttpResponse response = newResponse();
+		HttpRequest request = newRequest("unknown");
+		httpDispatcher.disposeSession(request, response);
+		assertNull(request.getSession(false));
+
+		//Cookie 中的 Session 不存在时创建新的 Session
+		HttpSession session = request.getSession();
+		assertFalse("unknown".equals(session.getId()));
+		assertEquals(1, response.cookies().size());
+	}
+
+	public void testExpiredSession() {
+		HttpSession expiredSession = new HttpSession("expired", System.currentTimeMillis() - 10000, 1000,
+				new HashMap<String, Object>());
+		sessionManager.addSession(expiredSession);
+
+		//失效的 Session 在查找时移除, 不会被刷新
+		assertNull(sessionManager.getSession("expired"));
+		assertNull(sessionManager.getSessionStore().get("expired"));
+
+		HttpRequest request = newRequest("expired");
+		httpDispatcher.disposeSession(request, newResponse());
+		assertNull(request.getSession(false));
+	}
+
+	private static HttpRequest newRequest(String sessionId) {
+		Request request = new Request();
+		request.header().put("Host", "127.0.0.1:28080");
+		if (sessionId != null) {
+			request.cookies().add(Cookie.newInstance("127.0.0.1", WebContext.getSessionName(), sessionId, -1));
+		}
+		return new HttpRequest(request, "UTF-8") {
+		};
+	}
+
+	private static HttpResponse newResponse() {
+		return new HttpResponse(new Response(), "UTF-8") {
+		};
+	}
+}
@@ -0,0 +1,116 @@
+package org.voovan.test.http;
+
+import junit.framework.TestCase;
+import org.voovan.http.message.Request;
+import org.voovan.http.message.Response;
+import org.voovan.http.server.HttpRequest;
+import org.voovan.http.server.HttpResponse;
+import org.voovan.http.server.router.MimeFileRouter;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 静态文件 Range 请求测试
+ *
+ * @author helyho
+ *
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class MimeFileRouterUnit extends TestCase {
+
+	private static void assertRanges(List<long[]> ranges, long... positions){
+		assertNotNull(ranges);
+		assertEquals(positions.length / 2, ranges.size());
+		for(int i = 0; i < ranges.size(); i++){
+			assertEquals(positions[i * 2], ranges.get(i)[0]);
+			assertEquals(positions[i * 2 + 1], ranges.get(i)[1]);
+		}
+	}
+
+	public void testSuffixRange(){
+		assertRanges(MimeFileRouter.parseRanges("bytes=-100", 1000), 900, 999);
+		//后缀长度超过文件大小时返回完整的文件
+		assertRanges(MimeFileRouter.parseRanges("bytes=-2000", 1000), 0, 999);
+		assertRanges(MimeFileRouter.parseRanges("bytes=-0", 1000));
+	}
+
+	public void testOpenEndedRange(){
+		assertRanges(MimeFileRouter.parseRanges("bytes=500-", 1000), 500, 999);
+		assertRanges(MimeFileRouter.parseRanges("bytes=999-", 1000), 999, 999);
+		//结束位置超过文件大小时截断到文件末尾
+		assertRanges(MimeFileRouter.parseRanges("bytes=900-5000", 1000), 900, 999);
+	}
+
+	public void testMultiRange(){
+		//乱序, 重叠以及相邻的范围按起始位置排序后合并
+		assertRanges(MimeFileRouter.parseRanges("bytes=500-599, 0-99, 50-149, 150-199", 1000), 0, 199, 500, 599);
+		assertRanges(MimeFileRouter.parseRanges("bytes=800-899,-150", 1000), 800, 999);
+		assertRanges(MimeFileRouter.parseRanges("bytes=0-0,2-2", 1000), 0, 0, 2, 2);
+		//无法满足的范围被忽略
+		assertRanges(MimeFileRouter.parseRanges("bytes=0-9,2000-3000", 1000), 0, 9);
+	}
+
+	public void testUnsatisfiableRange(){
+		assertRanges(MimeFileRouter.parseRanges("bytes=1000-1100", 1000));
+		assertRanges(MimeFileRouter.parseRanges("bytes=1000-", 1000));
+		assertRanges(MimeFileRouter.parseRanges("bytes=2000-,3000-4000", 1000));
+		assertRanges(MimeFileRouter.parseRanges("bytes=-10", 0));
+	}
+
+	public void testMalformedRange(){
+		assertNull(MimeFileRouter.parseRanges("items=0-99", 1000));
+		assertNull(MimeFileRouter.parseRanges("bytes=100", 1000));
+		assertNull(MimeFileRouter.parseRanges("bytes=-", 1000));
+		assertNull(MimeFileRouter.parseRanges("bytes=a-99", 1000));
+		assertNull(MimeFileRouter.parseRanges("bytes=0-1x", 1000));
+		assertNull(MimeFileRouter.parseRanges("bytes=200-100", 1000));
+		assertNull(MimeFileRouter.parseRanges("bytes=0-9,,20-29", 1000));
+
+		//范围过多
+		StringBuilder rangeStr = new StringBuilder("bytes=0-0");
+		for(int i = 1; i <= 32; i++){
+			rangeStr.append(",").append(i * 2).append("-").append(i * 2);
+		}
+		assertNull(MimeFileRouter.parseRanges(rangeStr.toString(), 1000));
+	}
+
+	public void testFillMimeFile() throws IOException {
+		File file = File.createTempFile("range", ".txt");
+		file.deleteOnExit();
+		FileOutputStream fileOutputStream = new FileOutputStream(file);
+		try {
+			fileOutputStream.write("0123456789".getBytes());
+		} finally {
+			fileOutputStream.close();
+		}
+
+		MimeFileRouter mimeFileRouter = new MimeFileRouter(file.getParent());
+
+		HttpResponse response = fillMimeFile(mimeFileRouter, file, "bytes=20-");
+		assertEquals(416, response.protocol().getStatus());
+		assertEquals("bytes */10", response.header().get("Content-Range"));
+
+		response = fillMimeFile(mimeFileRouter, file, "bytes=-3");
+		assertEquals(206, response.protocol().getStatus());
+		assertEquals("bytes 7-9/10", response.header().get("Content-Range"));
+		assertEquals("789", new String(response.body().getBodyBytes()));
+
+		//格式错误时忽略 Range 返回完整的文件
+		response = fillMimeFile(mimeFileRouter, file, "bytes=5-1");
+		assertEquals(200, response.protocol().getStatus());
+		assertEquals(10, response.body().size());
+	}
+
+	private static HttpResponse fillMimeFile(MimeFileRouter mimeFileRouter, File file, String range) throws IOException {
+		HttpRequest request = new HttpRequest(new Request(), "UTF-8") {};
+		request.header().put("Range", range);
+		HttpResponse response = new HttpResponse(new Response(), "UTF-8") {};
+		mimeFileRouter.fillMimeFile(file, request, response);
+		return response;
+	}
+}
@@ -0,0 +1,139 @@
+package org.voovan.test.http;
+
+import junit.framework.TestCase;
+import org.voovan.http.websocket.PerMessageDeflate;
+import org.voovan.http.websocket.WebSocketFrame;
+import org.voovan.http.websocket.WebSocketFrame.Opcode;
+
+import java.nio.ByteBuffer;
+
+/**
+ * WebSocket permessage-deflate 扩展测试
+ *
+ * @author helyho
+ *
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class PerMessageDeflateUnit extends TestCase {
+
+	private static byte[] toBytes(ByteBuffer byteBuffer){
+		byte[] bytes = new byte[byteBuffer.remaining()];
+		byteBuffer.duplicate().get(bytes);
+		return bytes;
+	}
+
+	/**
+	 * 经过编码和解析, 模拟网络传输
+	 */
+	private static WebSocketFrame transfer(WebSocketFrame webSocketFrame){
+		return WebSocketFrame.parse(webSocketFrame.toByteBuffer());
+	}
+
+	public void testNegotiate() throws Exception {
+		assertNull(PerMessageDeflate.negotiate(null, false));
+		assertNull(PerMessageDeflate.negotiate("x-webkit-deflate-frame", false));
+		assertNull(PerMessageDeflate.negotiate("permessage-deflate; server_max_window_bits=10", false));
+
+		PerMessageDeflate serverDeflate = PerMessageDeflate.negotiate(
+				"permessage-deflate; server_max_window_bits=10, permessage-deflate; client_max_window_bits; client_no_context_takeover", false);
+		assertNotNull(serverDeflate);
+		assertEquals("permessage-deflate; client_no_context_takeover", serverDeflate.getResponseHeader());
+
+		serverDeflate = PerMessageDeflate.negotiate("permessage-deflate", true);
+		assertEquals("permessage-deflate; server_no_context_takeover", serverDeflate.getResponseHeader());
+
+		PerMessageDeflate clientDeflate = PerMessageDeflate.accept(serverDeflate.getResponseHeader(), false);
+		assertTrue(clientDeflate.isServerNoContextTakeover());
+		assertFalse(clientDeflate.isClientNoContextTakeover());
+		assertNull(PerMessageDeflate.accept(null, false));
+
+		try {
+			PerMessageDeflate.accept("permessage-deflate; client_max_window_bits=9", false);
+			fail("client_max_window_bits=9 must be rejected");
+		} catch (Exception e) {
+			//客户端无法限制压缩窗口
+		}
+	}
+
+	public void testRfcExample() throws Exception {
+		//RFC 7692 7.2.3.1 中 "Hello" 的压缩结果
+		PerMessageDeflate serverDeflate = PerMessageDeflate.negotiate("permessage-deflate", false);
+		WebSocketFrame webSocketFrame = serverDeflate.compress(WebSocketFrame.newInstance(true, Opcode.TEXT, false, ByteBuffer.wrap("Hello".getBytes())));
+		assertTrue(webSocketFrame.isRsv1());
+		byte[] expect = new byte[]{(byte) 0xf2, 0x48, (byte) 0xcd, (byte) 0xc9, (byte) 0xc9, 0x07, 0x00};
+		assertEquals(ByteBuffer.wrap(expect), webSocketFrame.getFrameData());
+
+		PerMessageDeflate clientDeflate = PerMessageDeflate.accept("permessage-deflate", false);
+		WebSocketFrame plainFrame = clientDeflate.decompress(transfer(webSocketFrame));
+		assertEquals(0, plainFrame.getErrorCode());
+		assertFalse(plainFrame.isRsv1());
+		assertEquals("Hello", new String(toBytes(plainFrame.getFrameData())));
+		serverDeflate.release();
+		clientDeflate.release();
+	}
+
+	public void testContextTakeover() throws Exception {
+		for (boolean noContextTakeover : new boolean[]{false, true}) {
+			PerMessageDeflate clientDeflate = PerMessageDeflate.accept(PerMessageDeflate.offer(noContextTakeover), noContextTakeover);
+			PerMessageDeflate serverDeflate = PerMessageDeflate.negotiate(PerMessageDeflate.offer(noContextTakeover), false);
+
+			String message = "{\"device\":\"sensor-1\",\"temperature\":21.5,\"humidity\":40}";
+			int lastSize = Integer.MAX_VALUE;
+			for (int i = 0; i < 3; i++) {
+				WebSocketFrame compressedFrame = clientDeflate.compress(WebSocketFrame.newInstance(true, Opcode.TEXT, true, ByteBuffer.wrap(message.getBytes())));
+				int size = compressedFrame.getFrameData().remaining();
+				WebSocketFrame plainFrame = serverDeflate.decompress(transfer(compressedFrame));
+				assertEquals(message, new String(toBytes(plainFrame.getFrameData())));
+
+				//保持上下文时重复的消息压缩后更小
+				if (i > 0) {
+					assertTrue(noContextTakeover ? size == lastSize : size < lastSize);
+				}
+				lastSize = size;
+			}
+			clientDeflate.release();
+			serverDeflate.release();
+		}
+	}
+
+	public void testFragmentAndUncompressed() throws Exception {
+		PerMessageDeflate serverDeflate = PerMessageDeflate.negotiate("permessage-deflate", false);
+		PerMessageDeflate clientDeflate = PerMessageDeflate.accept("permessage-deflate", false);
+
+		byte[] part = new byte[70000];
+		for (int i = 0; i < part.length; i++) {
+			part[i] = (byte) (i % 61);
+		}
+
+		WebSocketFrame first = serverDeflate.compress(WebSocketFrame.newInstance(false, Opcode.BINARY, false, ByteBuffer.wrap(part)));
+		assertTrue(first.isRsv1());
+		WebSocketFrame firstPlain = clientDeflate.decompress(transfer(first));
+		int firstLength = firstPlain.getFrameData().remaining();
+
+		WebSocketFrame last = serverDeflate.compress(WebSocketFrame.newInstance(true, Opcode.CONTINUOUS, false, ByteBuffer.wrap(part)));
+		assertFalse(last.isRsv1());
+		WebSocketFrame lastPlain = clientDeflate.decompress(transfer(last));
+		assertEquals(part.length * 2, firstLength + lastPlain.getFrameData().remaining());
+		assertEquals(ByteBuffer.wrap(part, part.length - 10, 10), ByteBuffer.wrap(toBytes(lastPlain.getFrameData()), lastPlain.getFrameData().remaining() - 10, 10));
+
+		//未压缩的消息和控制帧原样通过
+		WebSocketFrame plain = clientDeflate.decompress(transfer(WebSocketFrame.newInstance(true, Opcode.TEXT, false, ByteBuffer.wrap("plain".getBytes()))));
+		assertEquals("plain", new String(toBytes(plain.getFrameData())));
+		WebSocketFrame ping = serverDeflate.compress(WebSocketFrame.newInstance(true, Opcode.PING, false, ByteBuffer.wrap("p".getBytes())));
+		assertFalse(ping.isRsv1());
+
+		//控制帧不能设置 RSV1
+		WebSocketFrame badFrame = WebSocketFrame.newInstance(true, Opcode.PING, false, ByteBuffer.allocate(0));
+		badFrame.setRsv1(true);
+		assertEquals(1002, clientDeflate.decompress(transfer(badFrame)).getErrorCode());
+
+		//错误的压缩数据
+		WebSocketFrame corruptFrame = WebSocketFrame.newInstance(true, Opcode.TEXT, false, ByteBuffer.wrap(new byte[]{(byte) 0xff, (byte) 0xff, 0x01}));
+		corruptFrame.setRsv1(true);
+		assertEquals(1007, clientDeflate.decompress(transfer(corruptFrame)).getErrorCode());
+		serverDeflate.release();
+		clientDeflate.release();
+	}
+}
@@ -0,0 +1,166 @@
+package org.voovan.test.http;
+
+import junit.framework.TestCase;
+import org.voovan.http.server.HttpSession;
+import org.voovan.http.server.SessionManager;
+import org.voovan.http.server.context.WebServerConfig;
+import org.voovan.http.server.session.MappedFileSessionStore;
+import org.voovan.http.server.session.OffHeapSessionStore;
+import org.voovan.http.server.session.SessionStore;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Session 存储测试
+ *
+ * @author helyho
+ *
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class SessionStoreUnit extends TestCase {
+
+	private static HttpSession newSession(String id, String value){
+		Map<String, Object> attributes = new HashMap<String, Object>();
+		if(value != null) {
+			attributes.put("name", value);
+			attributes.put("count", 1);
+		}
+		return new HttpSession(id, System.currentTimeMillis(), 60000, attributes);
+	}
+
+	private static void assertStore(SessionStore sessionStore){
+		sessionStore.put(newSession("a", "helyho"));
+		sessionStore.put(newSession("b", null));
+
+		HttpSession session = sessionStore.get("a");
+		assertEquals("helyho", session.getAttribute("name"));
+		assertEquals(1, session.getAttribute("count"));
+		assertEquals(60000, session.getMaxInactiveInterval());
+		assertEquals(0, sessionStore.get("b").getAttributes().size());
+		assertNull(sessionStore.get("c"));
+
+		sessionStore.touch("a", 1000);
+		assertEquals(61000, sessionStore.getExpireTime("a"));
+		assertEquals(-1, sessionStore.getExpireTime("c"));
+
+		//替换已存在的 Session
+		session.setAttribute("count", 2);
+		sessionStore.put(session);
+		assertEquals(2, sessionStore.get("a").getAttribute("count"));
+		assertEquals(2, sessionStore.size());
+
+		sessionStore.remove("b");
+		assertNull(sessionStore.get("b"));
+		assertEquals(1, sessionStore.size());
+
+		//属性无法序列化时移除旧的数据, 不返回过期的属性
+		session.setAttribute("object", new Object());
+		sessionStore.put(session);
+		assertNull(sessionStore.get("a"));
+		assertEquals(0, sessionStore.size());
+		sessionStore.put(newSession("a", "helyho"));
+	}
+
+	public void testOffHeap(){
+		OffHeapSessionStore sessionStore = new OffHeapSessionStore();
+		assertStore(sessionStore);
+		sessionStore.close();
+		assertEquals(0, sessionStore.getUsedSize());
+	}
+
+	public void testOffHeapEvict(){
+		OffHeapSessionStore sessionStore = new OffHeapSessionStore(12 * 3);
+		for(int i = 0; i < 5; i++){
+			sessionStore.put(newSession("s" + i, null));
+		}
+		//访问过的 Session 不会被优先淘汰
+		sessionStore.get("s2");
+		sessionStore.put(newSession("s5", null));
+
+		assertEquals(3, sessionStore.size());
+		assertNotNull(sessionStore.get("s2"));
+		assertNotNull(sessionStore.get("s4"));
+		assertNotNull(sessionStore.get("s5"));
+		sessionStore.close();
+	}
+
+	public void testMappedFile() throws IOException {
+		File file = File.createTempFile("session", ".dat");
+		try {
+			MappedFileSessionStore sessionStore = new MappedFileSessionStore(file.getPath(), 512, 4);
+			assertStore(sessionStore);
+
+			//超过槽位大小的 Session 不会被保存
+			sessionStore.put(newSession("big", new String(new char[1024])));
+			assertNull(sessionStore.get("big"));
+
+			//槽位用完时淘汰最久没有访问的 Session
+			for(int i = 0; i < 4; i++){
+				sessionStore.put(newSession("s" + i, "v" + i));
+			}
+			assertEquals(4, sessionStore.size());
+			assertNull(sessionStore.get("a"));
+			sessionStore.close();
+
+			//重新打开后 Session 仍然存在
+			sessionStore = new MappedFileSessionStore(file.getPath(), 512, 4);
+			assertEquals(4, sessionStore.size());
+			assertEquals("v3", sessionStore.get("s3").getAttribute("name"));
+			sessionStore.close();
+
+			//关闭后不再保存和读取 Session
+			sessionStore.put(newSession("closed", "v"));
+			assertNull(sessionStore.get("s3"));
+			assertNull(sessionStore.get("closed"));
+			assertEquals(-1, sessionStore.getExpireTime("s3"));
+			sessionStore.touch("s3", 1000);
+			sessionStore.remove("s3");
+			assertEquals(0, sessionStore.size());
+
+			//格式不同时重新初始化
+			sessionStore = new MappedFileSessionStore(file.getPath(), 1024, 4);
+			assertEquals(0, sessionStore.size());
+			sessionStore.close();
+		} finally {
+			file.delete();
+		}
+	}
+
+	@SuppressWarnings("deprecation")
+	public void testSessionContainer(){
+		SessionStore sessionStore = new OffHeapSessionStore();
+		SessionManager sessionManager = new SessionManager(new WebServerConfig(), sessionStore);
+		try {
+			sessionStore.put(newSession("a", "helyho"));
+
+			//兼容的 Map 视图直接读写 Session 存储
+			Map<String, HttpSession> sessionContainer = sessionManager.getSessionContainer();
+			assertEquals(1, sessionContainer.size());
+			assertTrue(sessionContainer.containsKey("a"));
+			assertEquals("helyho", sessionContainer.get("a").getAttribute("name"));
+			assertNull(sessionContainer.get("c"));
+
+			assertNull(sessionContainer.put("b", newSession("b", "v2")));
+			assertEquals("v2", sessionStore.get("b").getAttribute("name"));
+			assertEquals(2, sessionContainer.keySet().size());
+
+			assertEquals("helyho", sessionContainer.remove("a").getAttribute("name"));
+			assertNull(sessionStore.get("a"));
+
+			Iterator<String> iterator = sessionContainer.keySet().iterator();
+			assertEquals("b", iterator.next());
+			iterator.remove();
+			assertFalse(iterator.hasNext());
+			assertEquals(0, sessionStore.size());
+			assertTrue(sessionContainer.isEmpty());
+		} finally {
+			sessionManager.close();
+		}
+	}
+}
@@ -0,0 +1,91 @@
+package org.voovan.test.http;
+
+import junit.framework.TestCase;
+import org.voovan.http.websocket.WebSocketFrame;
+import org.voovan.network.messagesplitter.HttpMessageSplitter;
+
+import java.nio.ByteBuffer;
+
+/**
+ * WebSocket 帧编解码测试
+ *
+ * @author helyho
+ *
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class WebSocketFrameUnit extends TestCase {
+
+	private static ByteBuffer payload(int length){
+		ByteBuffer byteBuffer = ByteBuffer.allocate(length);
+		for(int i = 0; i < length; i++){
+			byteBuffer.put((byte) (i * 31 + 7));
+		}
+		byteBuffer.flip();
+		return byteBuffer;
+	}
+
+	public void testEncodeDecode() {
+		int[] lengths = new int[]{0, 1, 7, 8, 13, 125, 126, 1000, 65535, 65536, 100003};
+		for(boolean mask : new boolean[]{false, true}) {
+			for (int length : lengths) {
+				ByteBuffer data = payload(length);
+				WebSocketFrame webSocketFrame = WebSocketFrame.newInstance(true, WebSocketFrame.Opcode.BINARY, mask, data);
+				ByteBuffer frameBuffer = webSocketFrame.toByteBuffer();
+
+				//编码不改变负载数据
+				assertEquals(length, data.remaining());
+				assertEquals(webSocketFrame.getFrameLength(), frameBuffer.remaining());
+				assertEquals(frameBuffer.remaining(), HttpMessageSplitter.isWebSocketFrame(frameBuffer));
+
+				WebSocketFrame parsedFrame = WebSocketFrame.parse(frameBuffer);
+				assertEquals(0, parsedFrame.getErrorCode());
+				assertTrue(parsedFrame.isFin());
+				assertEquals(mask, parsedFrame.isTransfereMask());
+				assertEquals(WebSocketFrame.Opcode.BINARY, parsedFrame.getOpcode());
+				assertEquals(data, parsedFrame.getFrameData());
+				assertFalse(frameBuffer.hasRemaining());
+			}
+		}
+	}
+
+	public void testIncompleteFrame() {
+		WebSocketFrame webSocketFrame = WebSocketFrame.newInstance(false, WebSocketFrame.Opcode.TEXT, true, payload(300));
+		ByteBuffer frameBuffer = webSocketFrame.toByteBuffer();
+		frameBuffer.limit(frameBuffer.limit() - 1);
+		assertEquals(-1, HttpMessageSplitter.isWebSocketFrame(frameBuffer));
+
+		WebSocketFrame parsedFrame = WebSocketFrame.parse(frameBuffer);
+		assertFalse(parsedFrame.isFin());
+		assertEquals(1002, parsedFrame.getErrorCode());
+	}
+
+	public void testRsvRejected() {
+		//RSV1 由 permessage-deflate 使用, 解析时保留给扩展判断
+		ByteBuffer frameBuffer = ByteBuffer.wrap(new byte[]{(byte) 0xC1, 0x00});
+		assertEquals(2, HttpMessageSplitter.isWebSocketFrame(frameBuffer));
+		WebSocketFrame webSocketFrame = WebSocketFrame.parse(frameBuffer);
+		assertEquals(0, webSocketFrame.getErrorCode());
+		assertTrue(webSocketFrame.isRsv1());
+
+		frameBuffer = ByteBuffer.wrap(new byte[]{(byte) 0xA1, 0x00});
+		assertEquals(-1, HttpMessageSplitter.isWebSocketFrame(frameBuffer));
+		assertEquals(1002, WebSocketFrame.parse(frameBuffer).getErrorCode());
+	}
+
+	public void testPayloadLength() {
+		for(int length : new int[]{0, 125, 126, 65535, 65536}) {
+			ByteBuffer frameBuffer = WebSocketFrame.newInstance(true, WebSocketFrame.Opcode.BINARY, true, payload(length)).toByteBuffer();
+			assertEquals(length, HttpMessageSplitter.getWebSocketPayloadLength(frameBuffer));
+		}
+
+		//帧头部不完整
+		assertEquals(-1, HttpMessageSplitter.getWebSocketPayloadLength(ByteBuffer.wrap(new byte[]{(byte) 0x82, 127, 0, 0})));
+
+		//只接收到帧头部时也能得到声明的负载长度
+		ByteBuffer frameBuffer = ByteBuffer.wrap(new byte[]{(byte) 0x82, 127, 0, 0, 0, 0, 0, 16, 0, 0});
+		assertEquals(1L << 20, HttpMessageSplitter.getWebSocketPayloadLength(frameBuffer));
+		assertEquals(-1, HttpMessageSplitter.isWebSocketFrame(frameBuffer));
+	}
+}
@@ -0,0 +1,406 @@
+package org.voovan.test.http;
+
+import junit.framework.TestCase;
+import org.voovan.http.websocket.WebSocketFrame;
+import org.voovan.http.websocket.WebSocketHub;
+import org.voovan.http.websocket.WebSocketHub.SlowConsumerPolicy;
+import org.voovan.network.IoSession;
+import org.voovan.network.MessageSplitter;
+import org.voovan.network.SocketContext;
+import org.voovan.tools.TEnv;
+
+import java.io.IOException;
+import java.net.SocketOption;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * WebSocket 广播中心测试
+ * 		使用只记录发送内容的会话, 可以让会话的发送阻塞来模拟慢速的客户端
+ *
+ * @author helyho
+ *
+ * Voovan Framework.
+ * WebSite: https://github.com/helyho/Voovan
+ * Licence: Apache v2 License
+ */
+public class WebSocketHubUnit extends TestCase {
+	private ExecutorService executor;
+
+	@Override
+	public void setUp() {
+		executor = Executors.newFixedThreadPool(4);
+	}
+
+	@Override
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	public void testFanOut() {
+		WebSocketHub hub = new WebSocketHub(16, SlowConsumerPolicy.DROP_NEWEST, executor);
+		TestSession session1 = new TestSession();
+		TestSession session2 = new TestSession();
+		TestSession session3 = new TestSession();
+		TestSession other = new TestSession();
+		hub.subscribe("news", session1);
+		hub.subscribe("news", session2);
+		hub.subscribe("news", session3);
+		hub.subscribe("other", other);
+		assertEquals(3, hub.getSubscriberCount("news"));
+
+		assertEquals(3, hub.publish("news", text("hello")));
+		assertEquals(3, hub.publish("news", text("world")));
+
+		byte[] expect1 = frameBytes("hello");
+		byte[] expect2 = frameBytes("world");
+		for (TestSession session : new TestSession[]{session1, session2, session3}) {
+			session.waitSent(2);
+			assertTrue(Arrays.equals(expect1, session.getSent(0)));
+			assertTrue(Arrays.equals(expect2, session.getSent(1)));
+		}
+		assertEquals(0, other.sentCount());
+		assertEquals(0, hub.getDroppedCount());
+
+		//没有订阅者的主题
+		assertEquals(0, hub.publish("nobody", text("hello")));
+	}
+
+	public void testDropNewest() throws InterruptedException {
+		WebSocketHub hub = new WebSocketHub(2, SlowConsumerPolicy.DROP_NEWEST, executor);
+		TestSession session = new TestSession();
+		session.block();
+		hub.subscribe("news", session);
+
+		//第一条消息阻塞在发送中, 之后的两条消息占满发送队列
+		assertEquals(1, hub.publish("news", text("1")));
+		session.waitSending();
+		assertEquals(1, hub.publish("news", text("2")));
+		assertEquals(1, hub.publish("news", text("3")));
+		assertEquals(0, hub.publish("news", text("4")));
+		assertEquals(1, hub.getDroppedCount());
+
+		session.unblock();
+		session.waitSent(3);
+		assertTrue(Arrays.equals(frameBytes("1"), session.getSent(0)));
+		assertTrue(Arrays.equals(frameBytes("2"), session.getSent(1)));
+		assertTrue(Arrays.equals(frameBytes("3"), session.getSent(2)));
+		TEnv.sleep(100);
+		assertEquals(3, session.sentCount());
+		assertTrue(session.isConnected());
+	}
+
+	public void testCoalesce() throws InterruptedException {
+		WebSocketHub hub = new WebSocketHub(2, SlowConsumerPolicy.COALESCE, executor);
+		TestSession session = new TestSession();
+		session.block();
+		hub.subscribe("news", session);
+		hub.subscribe("other", session);
+
+		assertEquals(1, hub.publish("news", text("1")));
+		session.waitSending();
+		assertEquals(1, hub.publish("news", text("2")));
+		assertEquals(1, hub.publish("other", text("x")));
+
+		//合并同一主题中尚未发送的消息, 其他主题的消息保留
+		assertEquals(1, hub.publish("news", text("3")));
+		assertEquals(1, hub.getDroppedCount());
+
+		session.unblock();
+		session.waitSent(3);
+		assertTrue(Arrays.equals(frameBytes("1"), session.getSent(0)));
+		assertTrue(Arrays.equals(frameBytes("x"), session.getSent(1)));
+		assertTrue(Arrays.equals(frameBytes("3"), session.getSent(2)));
+	}
+
+	public void testConcurrentPublishBound() throws InterruptedException {
+		final WebSocketHub hub = new WebSocketHub(8, SlowConsumerPolicy.DROP_NEWEST, executor);
+		TestSession session = new TestSession();
+		session.block();
+		hub.subscribe("news", session);
+
+		assertEquals(1, hub.publish("news", text("0")));
+		session.waitSending();
+
+		//并发发布时发送队列也不会超过上限
+		final AtomicInteger accepted = new AtomicInteger();
+		final CountDownLatch start = new CountDownLatch(1);
+		Thread[] publishers = new Thread[8];
+		for (int i = 0; i < publishers.length; i++) {
+			publishers[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					for (int j = 0; j < 200; j++) {
+						accepted.addAndGet(hub.publish("news", text("m")));
+					}
+				}
+			});
+			publishers[i].start();
+		}
+		start.countDown();
+		for (Thread publisher : publishers) {
+			publisher.join();
+		}
+
+		assertEquals(8, accepted.get());
+		assertEquals(8 * 200 - 8, hub.getDroppedCount());
+
+		session.unblock();
+		session.waitSent(9);
+	}
+
+	public void testDisconnect() throws InterruptedException {
+		WebSocketHub hub = new WebSocketHub(1, SlowConsumerPolicy.DISCONNECT, executor);
+		TestSession slow = new TestSession();
+		TestSession fast = new TestSession();
+		slow.block();
+		hub.subscribe("news", slow);
+		hub.subscribe("news", fast);
+
+		//快速的会话每次发布之后都等待发送完成, 只有慢速的会话积压消息
+		assertEquals(2, hub.publish("news", text("1")));
+		slow.waitSending();
+		fast.waitSent(1);
+		assertEquals(2, hub.publish("news", text("2")));
+		fast.waitSent(2);
+
+		//发送线程持有会话的锁, 发布方不能等待会话关闭
+		long start = System.currentTimeMillis();
+		assertEquals(1, hub.publish("news", text("3")));
+		assertTrue(System.currentTimeMillis() - start < 1000);
+		//新发布的消息和队列中尚未发送的消息都被丢弃
+		assertEquals(2, hub.getDroppedCount());
+		assertEquals(1, hub.getSubscriberCount("news"));
+		assertTrue(slow.isConnected());
+
+		//写操作结束后会话被关闭
+		slow.unblock();
+		slow.waitClosed();
+		assertFalse(slow.isConnected());
+
+		fast.waitSent(3);
+		assertEquals(1, hub.publish("news", text("4")));
+	}
+
+	public void testUnsubscribeOnClose() {
+		WebSocketHub hub = new WebSocketHub(16, SlowConsumerPolicy.DROP_NEWEST, executor);
+		TestSession closed = new TestSession();
+		TestSession open = new TestSession();
+		hub.subscribe("news", closed);
+		hub.subscribe("other", closed);
+		hub.subscribe("news", open);
+
+		//发布时发现会话已断开, 取消它的所有订阅
+		closed.close();
+		assertEquals(1, hub.publish("news", text("1")));
+		assertEquals(1, hub.getSubscriberCount("news"));
+		assertEquals(0, hub.getSubscriberCount("other"));
+		assertFalse(hub.getTopics().contains("other"));
+
+		//连接关闭时取消所有订阅
+		hub.unsubscribeAll(open);
+		assertEquals(0, hub.getSubscriberCount("news"));
+		assertTrue(hub.getTopics().isEmpty());
+		assertEquals(0, hub.publish("news", text("2")));
+	}
+
+	public void testUnsubscribe() {
+		WebSocketHub hub = new WebSocketHub(16, SlowConsumerPolicy.DROP_NEWEST, executor);
+		TestSession session = new TestSession();
+		hub.subscribe("news", session);
+		hub.subscribe("other", session);
+
+		hub.unsubscribe("news", session);
+		assertEquals(0, hub.publish("news", text("1")));
+		assertEquals(1, hub.publish("other", text("2")));
+		session.waitSent(1);
+		assertTrue(Arrays.equals(frameBytes("2"), session.getSent(0)));
+	}
+
+	public void testSendTimeout() {
+		TestSession session = new TestSession();
+		new WebSocketHub(16, SlowConsumerPolicy.DROP_NEWEST, executor, 5000).subscribe("news", session);
+		assertEquals(5000, session.socketContext().getSendTimeout());
+
+		//会话已经设置的发送超时时间不被覆盖
+		TestSession configured = new TestSession();
+		configured.socketContext().setSendTimeout(100);
+		new WebSocketHub(16, SlowConsumerPolicy.DROP_NEWEST, executor, 5000).subscribe("news", configured);
+		assertEquals(100, configured.socketContext().getSendTimeout());
+	}
+
+	private static WebSocketFrame text(String message) {
+		return WebSocketFrame.newInstance(true, WebSocketFrame.Opcode.TEXT, false, ByteBuffer.wrap(message.getBytes()));
+	}
+
+	private static byte[] frameBytes(String message) {
+		ByteBuffer byteBuffer = text(message).toByteBuffer();
+		byte[] bytes = new byte[byteBuffer.remaining()];
+		byteBuffer.get(bytes);
+		return bytes;
+	}
+
+	private static class TestSocketContext extends SocketContext {
+		private TestSocketContext() {
+			super("127.0.0.1", 0, 1000);
+		}
+
+		@Override
+		public <T> void setOption(SocketOption<T> name, T value) throws IOException {
+		}
+
+		@Override
+		public void start() throws IOException {
+		}
+
+		@Override
+		public boolean isOpen() {
+			return true;
+		}
+
+		@Override
+		public boolean isConnected() {
+			return true;
+		}
+
+		@Override
+		public boolean close() {
+			return true;
+		}
+	}
+
+	/**
+	 * 记录发送内容的会话
+	 * 		和 AioSession 一样, 关闭会话需要获得会话的锁
+	 */
+	private static class TestSession extends IoSession<TestSocketContext> {
+		private final List<byte[]> sent = new ArrayList<byte[]>();
+		private volatile boolean connected = true;
+		private volatile CountDownLatch gate;
+		private final CountDownLatch sending = new CountDownLatch(1);
+		private final CountDownLatch closed = new CountDownLatch(1);
+
+		private TestSession() {
+			super(new TestSocketContext());
+		}
+
+		private void block() {
+			gate = new CountDownLatch(1);
+		}
+
+		private void unblock() {
+			gate.countDown();
+		}
+
+		private void waitSending() throws InterruptedException {
+			assertTrue(sending.await(5, TimeUnit.SECONDS));
+		}
+
+		private void waitClosed() throws InterruptedException {
+			assertTrue(closed.await(5, TimeUnit.SECONDS));
+		}
+
+		private void waitSent(int count) {
+			for (int i = 0; i < 500 && sentCount() < count; i++) {
+				TEnv.sleep(10);
+			}
+			assertEquals(count, sentCount());
+		}
+
+		private int sentCount() {
+			synchronized (sent) {
+				return sent.size();
+			}
+		}
+
+		private byte[] getSent(int index) {
+			synchronized (sent) {
+				return sent.get(index);
+			}
+		}
+
+		@Override
+		protected int send0(ByteBuffer buffer) throws IOException {
+			sending.countDown();
+			CountDownLatch currentGate = gate;
+			if (currentGate != null) {
+				try {
+					currentGate.await();
+				} catch (InterruptedException e) {
+					throw new IOException(e);
+				}
+			}
+
+			byte[] bytes = new byte[buffer.remaining()];
+			buffer.get(bytes);
+			synchronized (sent) {
+				sent.add(bytes);
+			}
+			return bytes.length;
+		}
+
+		@Override
+		protected int read0(ByteBuffer buffer) throws IOException {
+			return 0;
+		}
+
+		@Override
+		public String loaclAddress() {
+			return "127.0.0.1";
+		}
+
+		@Override
+		public int loaclPort() {
+			return 0;
+		}
+
+		@Override
+		public String remoteAddress() {
+			return "127.0.0.1";
+		}
+
+		@Override
+		public int remotePort() {
+			return 0;
+		}
+
+		@Override
+		protected MessageSplitter getMessagePartition() {
+			return null;
+		}
+
+		@Override
+		public boolean isConnected() {
+			return connected;
+		}
+
+		@Override
+		public boolean isOpen() {
+			return connected;
+		}
+
+		@Override
+		public synchronized boolean close() {
+			connected = false;
+			closed.countDown();
+			return true;
+		}
+
+		@Override
+		public String toString() {
+			return "TestSession";
+		}
+	}
+}